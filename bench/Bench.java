@@ -0,0 +1,58 @@
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A minimal timing harness for the benchmarks of this folder.
+ * The sources of the ContactManager are in the default package, which JMH refuses to benchmark,
+ * so each benchmark is a plain class with a main method which uses this harness: the operation is
+ * run for a number of warm-up rounds (to let the JIT compile it) and then timed over a number of
+ * measured rounds, reporting the average time per operation.
+ *
+ * Compile the classes of src/ first, then run for example:
+ * <pre>
+ *     javac -d out src/*.java
+ *     javac -cp out -d out bench/*.java
+ *     java -cp out BenchMeetingLookup
+ * </pre>
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class Bench {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static volatile int sink;
+
+    /**
+     * Time an operation and print the average nanoseconds per call.
+     * The operation receives the index of the call and returns a value which is consumed by the harness,
+     * so that the JIT cannot remove the work as dead code.
+     *
+     * @param name the name to print for the operation.
+     * @param opsPerRound how many times the operation is called in each round.
+     * @param op the operation to be timed.
+     * @return the average time per operation, in nanoseconds.
+     */
+    public static double run(String name, int opsPerRound, IntUnaryOperator op) {
+        for (int r = 0; r < WARMUP_ROUNDS; r++) {
+            round(opsPerRound, op);
+        }
+        long total = 0;
+        for (int r = 0; r < MEASURED_ROUNDS; r++) {
+            total += round(opsPerRound, op);
+        }
+        double nsPerOp = (double) total / ((long) MEASURED_ROUNDS * opsPerRound);
+        System.out.printf("%-50s %14.1f ns/op%n", name, nsPerOp);
+        return nsPerOp;
+    }
+
+    private static long round(int ops, IntUnaryOperator op) {
+        int acc = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            acc += op.applyAsInt(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        sink += acc;
+        return elapsed;
+    }
+
+}
@@ -0,0 +1,84 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Compare the time taken to load contacts and meetings into a ContactManagerImpl by calling
+ * addNewContact() and addNewPastMeeting() / addFutureMeeting() for each record, with the one taken
+ * by importContacts() and importMeetings(), sequential and parallel.
+ *
+ * The data is 100,000 contacts and 1,000,000 meetings (two thirds of them past) of 1 to 4 random
+ * contacts, in random order of date; the sizes can also be given as arguments, e.g.
+ * <pre>
+ *     java -Xmx4g -cp out BenchBulkImport 100000 1000000
+ * </pre>
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class BenchBulkImport {
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int contactCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int meetingCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Clock clock = Clock.fixed(new GregorianCalendar(2015, 1, 1).toInstant(), ZoneId.systemDefault());
+        Path file = Files.createTempFile("BenchBulkImport", ".bin");
+        Files.delete(file);
+        List<ContactRecord> contacts = new ArrayList<>(contactCount);
+        for (int i = 0; i < contactCount; i++) {
+            contacts.add(new ContactRecord("Contact" + i, "Notes"));
+        }
+        Random random = new Random(42);
+        List<MeetingRecord> meetings = new ArrayList<>(meetingCount);
+        for (int i = 0; i < meetingCount; i++) {
+            int[] attendees = new int[1 + random.nextInt(4)];
+            for (int a = 0; a < attendees.length; a++) {
+                attendees[a] = 1000 + random.nextInt(contactCount);     // the ids given to the contacts
+            }
+            boolean past = i % 3 != 0;
+            long date = new GregorianCalendar(past ? 2010 : 2020, 0, 1).getTimeInMillis()
+                    + random.nextInt(365) * 86_400_000L;
+            meetings.add(new MeetingRecord(date, attendees, past ? "Notes" : null));
+        }
+        System.out.printf("%,d contacts, %,d meetings%n", contactCount, meetingCount);
+        long single = Long.MAX_VALUE;
+        long sequential = Long.MAX_VALUE;
+        long parallel = Long.MAX_VALUE;
+        for (int r = 0; r < RUNS; r++) {
+            long start = System.nanoTime();
+            ContactManagerImpl manager = new ContactManagerImpl(file, clock, StorageMode.SNAPSHOT);
+            for (ContactRecord c : contacts) {
+                manager.addNewContact(c.getName(), c.getNotes());
+            }
+            for (MeetingRecord m : meetings) {
+                Calendar date = Calendar.getInstance();
+                date.setTimeInMillis(m.getDate());
+                if (m.isPast()) {
+                    manager.addNewPastMeeting(manager.getContacts(m.getContactIds()), date, m.getNotes());
+                } else {
+                    manager.addFutureMeeting(manager.getContacts(m.getContactIds()), date);
+                }
+            }
+            single = Math.min(single, System.nanoTime() - start);
+            sequential = Math.min(sequential, timeImport(file, clock, contacts, meetings, false));
+            parallel = Math.min(parallel, timeImport(file, clock, contacts, meetings, true));
+        }
+        System.out.printf("single-item methods in a loop   %8.0f ms%n", single / 1e6);
+        System.out.printf("import, sequential              %8.0f ms   (%.1fx)%n", sequential / 1e6, (double) single / sequential);
+        System.out.printf("import, parallel (%2d threads)   %8.0f ms   (%.1fx)%n",
+                Runtime.getRuntime().availableProcessors(), parallel / 1e6, (double) single / parallel);
+    }
+
+    private static long timeImport(Path file, Clock clock, List<ContactRecord> contacts, List<MeetingRecord> meetings,
+                                   boolean parallel) {
+        long start = System.nanoTime();
+        ContactManagerImpl manager = new ContactManagerImpl(file, clock, StorageMode.SNAPSHOT);
+        manager.importContacts(contacts.iterator(), parallel);
+        manager.importMeetings(meetings.iterator(), parallel);
+        return System.nanoTime() - start;
+    }
+
+}
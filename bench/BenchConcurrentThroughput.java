@@ -0,0 +1,100 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compare the throughput of {@see ContactManagerImpl}, whose methods all take the same lock,
+ * with the ones of {@see ConcurrentContactManager} and {@see VersionedContactManager}, from 1 to 32 threads.
+ *
+ * Each thread runs a mix of 90% queries (a meeting by id, the future meetings of a contact)
+ * and 10% changes (a new future meeting of a contact, notes added to a past meeting)
+ * for a fixed time, over 10,000 contacts and 100,000 meetings.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class BenchConcurrentThroughput {
+    private static final int CONTACTS = 10_000;
+    private static final int MEETINGS = 100_000;
+    private static final long MILLIS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        int[] threads = {1, 2, 4, 8, 16, 32};
+        Clock clock = Clock.fixed(new GregorianCalendar(2015, 1, 1).toInstant(), ZoneId.systemDefault());
+        Path file = Files.createTempFile("BenchConcurrentThroughput", ".bin");
+        Path ids = file.resolveSibling(file.getFileName() + ".ids");
+        Files.delete(file);
+        try {
+            for (int n : threads) {
+                double locked = measure(new ContactManagerImpl(file, clock, StorageMode.SNAPSHOT), n);
+                Files.deleteIfExists(ids);  // so that meeting ids start from 1 again
+                double concurrent = measure(new ConcurrentContactManager(file, clock), n);
+                double versioned = measure(new VersionedContactManager(file, clock), n);
+                System.out.printf("%2d threads   ContactManagerImpl %,12.0f ops/s   ConcurrentContactManager %,12.0f ops/s"
+                        + "   VersionedContactManager %,12.0f ops/s%n", n, locked, concurrent, versioned);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(ids);
+        }
+    }
+
+    private static double measure(ContactManager manager, int threads) throws Exception {
+        for (int i = 0; i < CONTACTS; i++) {
+            manager.addNewContact("Contact" + i, "");
+        }
+        Contact[] contacts = manager.getContacts("Contact").toArray(new Contact[0]);
+        Random random = new Random(42);
+        for (int i = 0; i < MEETINGS; i++) {
+            Set<Contact> attendees = Collections.singleton(contacts[random.nextInt(CONTACTS)]);
+            if (i % 2 == 0) {
+                manager.addNewPastMeeting(attendees, new GregorianCalendar(2010, 0, 1 + random.nextInt(365)), "");
+            } else {
+                manager.addFutureMeeting(attendees, new GregorianCalendar(2020, 0, 1 + random.nextInt(365)));
+            }
+        }
+        run(manager, contacts, threads, MILLIS / 4);     // warm-up
+        return run(manager, contacts, threads, MILLIS);
+    }
+
+    private static double run(ContactManager manager, Contact[] contacts, int threads, long millis) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        LongAdder ops = new LongAdder();
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            results.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                long count = 0;
+                Calendar future = new GregorianCalendar(2021, 1, 1);
+                while (System.nanoTime() < end) {
+                    int op = random.nextInt(100);
+                    Contact contact = contacts[random.nextInt(contacts.length)];
+                    int id = 1 + 2 * random.nextInt(MEETINGS / 2);  // the odd ids are past meetings
+                    if (op < 60) {
+                        manager.getMeeting(id);
+                    } else if (op < 90) {
+                        manager.getFutureMeetingList(contact);
+                    } else if (op < 95) {
+                        manager.addFutureMeeting(Collections.singleton(contact), future);
+                    } else {
+                        manager.addMeetingNotes(id, "n");
+                    }
+                    count++;
+                }
+                ops.add(count);
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+        return ops.sum() * 1000.0 / millis;
+    }
+
+}
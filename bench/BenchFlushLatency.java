@@ -0,0 +1,92 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Measure the latency of a change (addNewContact) made while the data is being flushed by another thread,
+ * against the same change made with no flush running: with a flush which holds the lock of the
+ * ContactManager while it writes, a change waits for the whole flush.
+ * The data is 10,000 contacts and 1,000,000 meetings as in {@see BenchMeetingScan} (the number of meetings
+ * can also be given as argument), saved in mode SNAPSHOT. Changes are made with no flush running, and then
+ * while another thread calls flush() five times in a row; the latencies are collected in a {@see Histogram}.
+ * Only public methods are used, so the benchmark can be run against other versions of the ContactManager, e.g.
+ * <pre>
+ *     java -Xms4g -Xmx4g -cp out BenchFlushLatency 1000000
+ * </pre>
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class BenchFlushLatency {
+    private static final int CONTACTS = 10_000;
+    private static final int CHANGES = 200_000;
+    private static final int FLUSHES = 5;
+    private static int added;
+
+    private static Histogram changes(ContactManagerImpl manager, int count, Thread flusher) {
+        Histogram latencies = new Histogram();
+        for (int i = 0; i < count || flusher != null && flusher.isAlive(); i++) {
+            long start = System.nanoTime();
+            manager.addNewContact("New contact " + added++, "");
+            latencies.record(System.nanoTime() - start);
+            if (i % 64 == 0) {
+                Thread.yield();     // let the flusher run on a single CPU too
+            }
+        }
+        return latencies;
+    }
+
+    private static void print(String phase, Histogram h) {
+        System.out.printf("%-32s %,10d changes, p50 %,9d ns, p99 %,11d ns, p99.9 %,11d ns, max %,12d ns%n",
+                phase, h.getCount(), h.getValueAtPercentile(50), h.getValueAtPercentile(99),
+                h.getValueAtPercentile(99.9), h.getMax());
+    }
+
+    public static void main(String[] args) throws Exception {
+        int meetingCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Clock clock = Clock.fixed(new GregorianCalendar(2015, 1, 1).toInstant(), ZoneId.systemDefault());
+        Path file = Files.createTempFile("BenchFlushLatency", ".bin");
+        Files.delete(file);
+        try {
+            ContactManagerImpl manager = new ContactManagerImpl(file, clock, StorageMode.SNAPSHOT);
+            List<ContactRecord> contacts = new ArrayList<>(CONTACTS);
+            for (int i = 0; i < CONTACTS; i++) {
+                contacts.add(new ContactRecord("Contact " + i, ""));
+            }
+            int[] contactIds = manager.importContacts(contacts.iterator(), false);
+            Random random = new Random(42);
+            List<MeetingRecord> records = new ArrayList<>(meetingCount);
+            for (int i = 0; i < meetingCount; i++) {
+                int[] attendees = new int[1 + random.nextInt(4)];
+                for (int a = 0; a < attendees.length; a++) {
+                    attendees[a] = contactIds[random.nextInt(CONTACTS)];
+                }
+                boolean past = i % 3 != 0;
+                long date = new GregorianCalendar(past ? 2010 : 2020, 0, 1).getTimeInMillis()
+                        + random.nextInt(365) * 86_400_000L;
+                records.add(new MeetingRecord(date, attendees, past ? "Notes of meeting " + i : null));
+            }
+            manager.importMeetings(records.iterator(), false);
+            records = null;
+            changes(manager, CHANGES, null);    // warm-up
+            manager.flush();
+            print("addNewContact, no flush", changes(manager, CHANGES, null));
+            Thread flusher = new Thread(() -> {
+                for (int i = 0; i < FLUSHES; i++) {
+                    manager.flush();
+                }
+            });
+            long start = System.nanoTime();
+            flusher.start();
+            Histogram during = changes(manager, 0, flusher);
+            print("addNewContact, flushing", during);
+            System.out.printf("%d flushes of %,d meetings in %,d ms%n", FLUSHES, meetingCount,
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".tmp"));
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+import java.util.*;
+
+/**
+ * Measure the heap used by meetings, comparing the Calendar that MeetingImpl used to hold
+ * with the date in milliseconds that it holds now, and the Set of five contacts that it used to hold
+ * with the sorted array of their ids that it holds now.
+ * The heap is measured after a garbage collection, before and after allocating the objects,
+ * so the figures are approximate: run with a fixed heap (e.g. -Xms2g -Xmx2g) for stable results.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class BenchMeetingFootprint {
+    private static final int COUNT = 200_000;
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) {
+        Contact[] all = new Contact[1000];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = new ContactImpl("Contact" + i, i, "");
+        }
+        ContactResolver resolver = id -> all[id];
+        Set<Contact> contacts = AttendeeSet.of(Collections.singleton(all[0]), resolver);
+
+        long before = usedHeap();
+        Calendar[] calendars = new Calendar[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            calendars[i] = new GregorianCalendar(2001, 1, 1, 10, i % 60);
+        }
+        long calendarBytes = (usedHeap() - before) / COUNT;
+
+        before = usedHeap();
+        Meeting[] meetings = new Meeting[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            meetings[i] = new PastMeetingImpl(calendars[i].getTimeInMillis(), contacts, i, "");
+        }
+        long meetingBytes = (usedHeap() - before) / COUNT;
+
+        Random random = new Random(42);
+        before = usedHeap();
+        Object[] sets = new Object[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            sets[i] = fiveContacts(all, random);
+        }
+        long setBytes = (usedHeap() - before) / COUNT;
+
+        before = usedHeap();
+        Meeting[] attended = new Meeting[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            attended[i] = new PastMeetingImpl(calendars[i].getTimeInMillis(),
+                    AttendeeSet.of(fiveContacts(all, random), resolver), i, "");
+        }
+        long attendedBytes = (usedHeap() - before) / COUNT;
+
+        System.out.printf("Calendar held by each meeting before:  %5d bytes%n", calendarBytes);
+        System.out.printf("PastMeetingImpl with a long date now:  %5d bytes%n", meetingBytes);
+        System.out.printf("LinkedHashSet of 5 contacts before:     %5d bytes%n", setBytes);
+        System.out.printf("PastMeetingImpl with 5 contact ids now: %5d bytes%n", attendedBytes);
+        System.out.println("objects measured: "
+                + (calendars.length + meetings.length + sets.length + attended.length));  // keeps them reachable
+    }
+
+    private static Set<Contact> fiveContacts(Contact[] all, Random random) {
+        Set<Contact> set = new LinkedHashSet<>();
+        while (set.size() < 5) {
+            set.add(all[random.nextInt(all.length)]);
+        }
+        return set;
+    }
+
+}
@@ -0,0 +1,43 @@
+import java.util.*;
+
+/**
+ * Compare the lookup of a meeting by id through {@see IntHashMap} (as done by ContactManagerImpl)
+ * with the linear scan of a LinkedList of meetings that it replaces.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class BenchMeetingLookup {
+
+    public static void main(String[] args) {
+        int[] sizes = {1_000, 10_000, 100_000};
+        for (int size : sizes) {
+            Set<Contact> contacts = new HashSet<>();
+            contacts.add(new ContactImpl("Contact", 1000));
+            Calendar date = new GregorianCalendar(2001, 12, 12, 12, 12);
+            List<Meeting> list = new LinkedList<>();
+            IntHashMap<Meeting> index = new IntHashMap<>();
+            for (int id = 1; id <= size; id++) {
+                Meeting m = new PastMeetingImpl(date, contacts, id);
+                list.add(m);
+                index.put(id, m);
+            }
+            int[] ids = new int[1024];
+            Random random = new Random(42);
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = 1 + random.nextInt(size);
+            }
+            int scanOps = Math.max(10, 10_000_000 / size);
+            Bench.run("linked list scan, " + size + " meetings", scanOps, i -> {
+                int id = ids[i & 1023];
+                for (Meeting m : list) {
+                    if (m.getId() == id) {
+                        return m.getId();
+                    }
+                }
+                return 0;
+            });
+            Bench.run("IntHashMap lookup, " + size + " meetings", 1_000_000, i -> index.get(ids[i & 1023]).getId());
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Compare the time taken to show the first 20 future meetings of a contact by taking them from
+ * getFutureMeetingList(), which returns all of them, with the one taken by getFutureMeetingPage()
+ * and by the first 20 elements of getFutureMeetingStream(), for contacts with 1,000 to 100,000 meetings.
+ * The time of reading a page in the middle of the list with its cursor is also measured.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class BenchMeetingPages {
+    private static final int PAGE = 20;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {1_000, 10_000, 100_000};
+        Clock clock = Clock.fixed(new GregorianCalendar(2015, 1, 1).toInstant(), ZoneId.systemDefault());
+        Path file = Files.createTempFile("BenchMeetingPages", ".bin");
+        Files.delete(file);
+        for (int size : sizes) {
+            ContactManagerImpl manager = new ContactManagerImpl(file, clock, StorageMode.SNAPSHOT);
+            manager.addNewContact("Contact", "");
+            Contact contact = manager.getContacts("Contact").iterator().next();
+            Random random = new Random(42);
+            List<MeetingRecord> records = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                long date = new GregorianCalendar(2020, 0, 1).getTimeInMillis() + random.nextInt(1_000_000) * 60_000L;
+                records.add(new MeetingRecord(date, new int[] {contact.getId()}, null));
+            }
+            manager.importMeetings(records.iterator(), false);
+            MeetingCursor middle = manager.getFutureMeetingPage(contact, MeetingCursor.START, size / 2).getNext();
+            int ops = Math.max(10, 2_000_000 / size);
+            Bench.run("list, first " + PAGE + " of " + size, ops,
+                    i -> manager.getFutureMeetingList(contact).subList(0, PAGE).size());
+            Bench.run("page, first " + PAGE + " of " + size, 100_000,
+                    i -> manager.getFutureMeetingPage(contact, MeetingCursor.START, PAGE).getMeetings().size());
+            Bench.run("stream, first " + PAGE + " of " + size, 100_000,
+                    i -> manager.getFutureMeetingStream(contact).limit(PAGE).collect(Collectors.toList()).size());
+            Bench.run("page, " + PAGE + " in the middle of " + size, 100_000,
+                    i -> manager.getFutureMeetingPage(contact, middle, PAGE).getMeetings().size());
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Measure the queries of a ContactManagerImpl which visit every meeting: getMeetings() over the whole
+ * range of dates (reading the ids, and then also the contacts of each meeting), flush() in mode SNAPSHOT
+ * and exportData(), together with the heap held by the meetings.
+ * The data is 10,000 contacts and 1,000,000 meetings (two thirds of them past, with notes) of 1 to 4
+ * random contacts; the number of meetings can also be given as argument. Only public methods are used,
+ * so the benchmark can be run against other versions of the ContactManager, e.g.
+ * <pre>
+ *     java -Xms4g -Xmx4g -cp out BenchMeetingScan 1000000
+ * </pre>
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class BenchMeetingScan {
+    private static final int CONTACTS = 10_000;
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int meetingCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Clock clock = Clock.fixed(new GregorianCalendar(2015, 1, 1).toInstant(), ZoneId.systemDefault());
+        Path file = Files.createTempFile("BenchMeetingScan", ".bin");
+        Path data = Files.createTempFile("BenchMeetingScan", ".txt");
+        Files.delete(file);
+        try {
+            ContactManagerImpl manager = new ContactManagerImpl(file, clock, StorageMode.SNAPSHOT);
+            List<ContactRecord> contacts = new ArrayList<>(CONTACTS);
+            for (int i = 0; i < CONTACTS; i++) {
+                contacts.add(new ContactRecord("Contact " + i, ""));
+            }
+            int[] contactIds = manager.importContacts(contacts.iterator(), false);
+            Random random = new Random(42);
+            List<MeetingRecord> records = new ArrayList<>(meetingCount);
+            for (int i = 0; i < meetingCount; i++) {
+                int[] attendees = new int[1 + random.nextInt(4)];
+                for (int a = 0; a < attendees.length; a++) {
+                    attendees[a] = contactIds[random.nextInt(CONTACTS)];
+                }
+                boolean past = i % 3 != 0;
+                long date = new GregorianCalendar(past ? 2010 : 2020, 0, 1).getTimeInMillis()
+                        + random.nextInt(365) * 86_400_000L;
+                records.add(new MeetingRecord(date, attendees, past ? "Notes of meeting " + i : null));
+            }
+            long before = usedHeap();
+            manager.importMeetings(records.iterator(), false);
+            records = null;
+            long retained = usedHeap() - before;
+            System.out.printf("%,d meetings: %,d bytes retained by the import, %.1f per meeting%n",
+                    meetingCount, retained, (double) retained / meetingCount);
+            Calendar from = new GregorianCalendar(2000, 0, 1);
+            Calendar to = new GregorianCalendar(2030, 0, 1);
+            int ops = Math.max(1, 2_000_000 / meetingCount);
+            double ids = Bench.run("getMeetings(), all, ids", ops, i -> {
+                int sum = 0;
+                for (Meeting m : manager.getMeetings(from, to)) {
+                    sum += m.getId();
+                }
+                return sum;
+            });
+            double attendees = Bench.run("getMeetings(), all, contacts", ops, i -> {
+                int sum = 0;
+                for (Meeting m : manager.getMeetings(from, to)) {
+                    sum += m.getContacts().size();
+                }
+                return sum;
+            });
+            double flush = Bench.run("flush(), SNAPSHOT", 1, i -> {
+                manager.flush();
+                return i;
+            });
+            double export = Bench.run("exportData(), CSV", 1, i -> (int) manager.exportData(data, DataFormat.CSV));
+            System.out.printf("per meeting: %.1f ns (ids), %.1f ns (contacts), %.1f ns (flush), %.1f ns (export)%n",
+                    ids / meetingCount, attendees / meetingCount, flush / meetingCount, export / meetingCount);
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(data);
+        }
+    }
+
+}
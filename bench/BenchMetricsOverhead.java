@@ -0,0 +1,64 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Measure the overhead of the {@see Metrics} of a ContactManagerImpl on its cheapest operations, by timing
+ * each of them with the metrics disabled and then enabled, on 10,000 contacts and 100,000 meetings.
+ * The cost of recording a value in a {@see Histogram} is also measured alone.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class BenchMetricsOverhead {
+    private static final int CONTACTS = 10_000;
+    private static final int MEETINGS = 100_000;
+    private static final int OPS = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        Clock clock = Clock.fixed(new GregorianCalendar(2015, 1, 1).toInstant(), ZoneId.systemDefault());
+        Path file = Files.createTempFile("BenchMetricsOverhead", ".bin");
+        Files.delete(file);
+        ContactManagerImpl manager = new ContactManagerImpl(file, clock, StorageMode.SNAPSHOT);
+        List<ContactRecord> contacts = new ArrayList<>(CONTACTS);
+        for (int i = 0; i < CONTACTS; i++) {
+            contacts.add(new ContactRecord("Contact " + i, ""));
+        }
+        int[] contactIds = manager.importContacts(contacts.iterator(), false);
+        Random random = new Random(42);
+        List<MeetingRecord> records = new ArrayList<>(MEETINGS);
+        for (int i = 0; i < MEETINGS; i++) {
+            boolean past = i % 2 == 0;
+            long date = new GregorianCalendar(past ? 2010 : 2020, 0, 1).getTimeInMillis()
+                    + random.nextInt(365) * 86_400_000L;
+            records.add(new MeetingRecord(date, new int[] {contactIds[random.nextInt(CONTACTS)]}, past ? "" : null));
+        }
+        int[] meetingIds = manager.importMeetings(records.iterator(), false);
+        Contact[] byId = new Contact[CONTACTS];
+        for (int i = 0; i < CONTACTS; i++) {
+            byId[i] = manager.getContacts(contactIds[i]).iterator().next();
+        }
+        Metrics metrics = manager.getMetrics();
+        for (boolean enabled : new boolean[] {false, true, false, true}) {
+            metrics.setEnabled(enabled);
+            String state = enabled ? ", enabled" : ", disabled";
+            Bench.run("getMeeting()" + state, OPS,
+                    i -> manager.getMeeting(meetingIds[i % MEETINGS]).getId());
+            Bench.run("getContacts(int...)" + state, OPS,
+                    i -> manager.getContacts(contactIds[i % CONTACTS]).size());
+            Bench.run("getFutureMeetingList(Contact)" + state, OPS,
+                    i -> manager.getFutureMeetingList(byId[i % CONTACTS]).size());
+            Bench.run("getContactsByPrefix(\"Contact 1\", 10)" + state, OPS / 10,
+                    i -> manager.getContactsByPrefix("Contact 1", 10).size());
+        }
+        System.out.println(metrics.getOperation(Metrics.Operation.GET_MEETING));
+        Histogram histogram = new Histogram();
+        Bench.run("Histogram.record()", OPS * 10, i -> {
+            histogram.record(i & 0xfffff);
+            return i;
+        });
+        Files.deleteIfExists(file);
+    }
+
+}
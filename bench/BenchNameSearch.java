@@ -0,0 +1,62 @@
+import java.util.*;
+
+/**
+ * Compare the search of contacts by a substring of their name through the trigram {@see NameIndex}
+ * (as done by ContactManagerImpl.getContacts(String)) with a scan of all the names,
+ * over 1M generated names, for short (3 characters) and long (10 characters) queries.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class BenchNameSearch {
+    private static final String[] SYLLABLES = {"an", "be", "ca", "do", "el", "fi", "go", "ha", "il", "jo",
+            "ka", "lu", "ma", "ne", "ol", "pa", "ri", "sa", "to", "va"};
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+        String[] names = new String[size];
+        NameIndex index = new NameIndex();
+        for (int id = 0; id < size; id++) {
+            names[id] = word(random) + " " + word(random);
+            index.add(id, names[id]);
+        }
+        for (int length : new int[] {3, 10}) {
+            String[] queries = new String[256];
+            for (int i = 0; i < queries.length; i++) {
+                String name = names[random.nextInt(size)];
+                int start = random.nextInt(Math.max(1, name.length() - length));
+                queries[i] = name.substring(start, Math.min(name.length(), start + length));
+            }
+            Bench.run("scan, " + length + "-char query, " + size + " names", 20, i -> {
+                String query = queries[i & 255];
+                int found = 0;
+                for (String name : names) {
+                    if (name.contains(query)) {
+                        found++;
+                    }
+                }
+                return found;
+            });
+            Bench.run("trigram index, " + length + "-char query, " + size + " names", length < 5 ? 200 : 20_000, i -> {
+                String query = queries[i & 255];
+                int found = 0;
+                for (int id : index.search(query)) {
+                    if (names[id].contains(query)) {
+                        found++;
+                    }
+                }
+                return found;
+            });
+        }
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0, n = 2 + random.nextInt(3); i < n; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+        return word.toString();
+    }
+
+}
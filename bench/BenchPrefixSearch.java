@@ -0,0 +1,61 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.*;
+
+/**
+ * Measure the latency of ContactManagerImpl.getContactsByPrefix() (top 10 contacts in order of name)
+ * with millions of contacts, for prefixes of 1 to 4 characters, reporting the median and the 99th and
+ * 99.9th percentiles of the single calls after a warm-up.
+ *
+ * The number of contacts can be given as argument (2M by default).
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class BenchPrefixSearch {
+    private static final int CALLS = 200_000;
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Path file = Files.createTempFile("BenchPrefixSearch", ".bin");
+        Files.delete(file);
+        ContactManagerImpl manager = new ContactManagerImpl(file, Clock.systemDefaultZone(), StorageMode.SNAPSHOT);
+        Random random = new Random(42);
+        String[] names = new String[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = name(random);
+            manager.addNewContact(names[i], "");
+        }
+        for (int length = 1; length <= 4; length++) {
+            String[] prefixes = new String[1024];
+            for (int i = 0; i < prefixes.length; i++) {
+                String name = names[random.nextInt(size)];
+                prefixes[i] = name.substring(0, Math.min(length, name.length()));
+            }
+            int found = 0;
+            for (int i = 0; i < CALLS; i++) {     // warm-up
+                found += manager.getContactsByPrefix(prefixes[i & 1023], 10).size();
+            }
+            long[] nanos = new long[CALLS];
+            for (int i = 0; i < CALLS; i++) {
+                long start = System.nanoTime();
+                found += manager.getContactsByPrefix(prefixes[i & 1023], 10).size();
+                nanos[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(nanos);
+            System.out.printf("%,d contacts, %d-char prefix: p50 %,8d ns   p99 %,8d ns   p99.9 %,8d ns   (%d)%n",
+                    size, length, nanos[CALLS / 2], nanos[CALLS * 99 / 100], nanos[CALLS * 999 / 1000], found);
+        }
+    }
+
+    private static String name(Random random) {
+        StringBuilder name = new StringBuilder();
+        name.append((char) ('A' + random.nextInt(26)));
+        for (int i = 0, n = 3 + random.nextInt(8); i < n; i++) {
+            name.append((char) ('a' + random.nextInt(26)));
+        }
+        return name.toString();
+    }
+
+}
@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Measure the throughput of exportData() and importData() of a ContactManagerImpl in each {@see DataFormat},
+ * in MB/s and records/s, and of a {@see RecordReader} alone (parsing the file without importing it).
+ *
+ * The data is 100,000 contacts and 1,000,000 meetings (two thirds of them past, with notes) of 1 to 4
+ * random contacts; the sizes can also be given as arguments, e.g.
+ * <pre>
+ *     java -Xmx4g -cp out BenchRecordStreaming 100000 1000000
+ * </pre>
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class BenchRecordStreaming {
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int contactCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int meetingCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Clock clock = Clock.fixed(new GregorianCalendar(2015, 1, 1).toInstant(), ZoneId.systemDefault());
+        Path file = Files.createTempFile("BenchRecordStreaming", ".bin");
+        Path data = Files.createTempFile("BenchRecordStreaming", ".txt");
+        Files.delete(file);
+        try {
+            ContactManagerImpl manager = new ContactManagerImpl(file, clock, StorageMode.SNAPSHOT);
+            List<ContactRecord> contacts = new ArrayList<>(contactCount);
+            for (int i = 0; i < contactCount; i++) {
+                contacts.add(new ContactRecord("Contact, " + i, "Notes about \"Contact " + i + "\""));
+            }
+            manager.importContacts(contacts.iterator(), true);
+            Random random = new Random(42);
+            List<MeetingRecord> meetings = new ArrayList<>(meetingCount);
+            for (int i = 0; i < meetingCount; i++) {
+                int[] attendees = new int[1 + random.nextInt(4)];
+                for (int a = 0; a < attendees.length; a++) {
+                    attendees[a] = 1000 + random.nextInt(contactCount);
+                }
+                boolean past = i % 3 != 0;
+                long date = new GregorianCalendar(past ? 2010 : 2020, 0, 1).getTimeInMillis()
+                        + random.nextInt(365) * 86_400_000L;
+                meetings.add(new MeetingRecord(date, attendees, past ? "Notes of meeting " + i : null));
+            }
+            manager.importMeetings(meetings.iterator(), true);
+            meetings = null;
+            long records = contactCount + meetingCount;
+            System.out.printf("%,d contacts, %,d meetings%n", contactCount, meetingCount);
+            for (DataFormat format : DataFormat.values()) {
+                long export = Long.MAX_VALUE;
+                long parse = Long.MAX_VALUE;
+                long sequential = Long.MAX_VALUE;
+                long parallel = Long.MAX_VALUE;
+                for (int r = 0; r < RUNS; r++) {
+                    long start = System.nanoTime();
+                    manager.exportData(data, format);
+                    export = Math.min(export, System.nanoTime() - start);
+                    start = System.nanoTime();
+                    try (RecordReader reader = new RecordReader(data, format)) {
+                        reader.read(new RecordReader.Handler() {
+                            @Override
+                            public void contactRead(int id, String name, String notes) {
+                            }
+
+                            @Override
+                            public void meetingRead(int id, long date, String notes, int[] contacts) {
+                            }
+                        });
+                    }
+                    parse = Math.min(parse, System.nanoTime() - start);
+                    sequential = Math.min(sequential, timeImport(file, clock, data, format, false));
+                    parallel = Math.min(parallel, timeImport(file, clock, data, format, true));
+                }
+                long size = Files.size(data);
+                System.out.printf("%s, %,.1f MB%n", format, size / 1e6);
+                print("exportData()", export, size, records);
+                print("RecordReader alone", parse, size, records);
+                print("importData(), sequential", sequential, size, records);
+                print("importData(), parallel", parallel, size, records);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(data);
+        }
+    }
+
+    private static void print(String label, long nanos, long size, long records) {
+        System.out.printf("    %-26s %8.0f ms   %8.1f MB/s   %,12.0f records/s%n",
+                label, nanos / 1e6, size / 1e6 / (nanos / 1e9), records / (nanos / 1e9));
+    }
+
+    private static long timeImport(Path file, Clock clock, Path data, DataFormat format, boolean parallel) {
+        long start = System.nanoTime();
+        ContactManagerImpl manager = new ContactManagerImpl(file, clock, StorageMode.SNAPSHOT);
+        manager.importData(data, format, parallel);
+        return System.nanoTime() - start;
+    }
+
+}
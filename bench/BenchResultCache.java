@@ -0,0 +1,100 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Measure the caches of the results of a ContactManagerImpl (see {@see ResultCache}) on a skewed workload:
+ * 20,000 contacts with 1,000,000 future meetings, whose lists of future meetings are requested with a Zipf
+ * distribution (exponent 1, so the first 1,000 contacts get about 70% of the requests), with one request
+ * in ten for the meetings of a day (also Zipf, over a year) and one in a hundred adding a meeting, which
+ * invalidates the lists it belongs to.
+ * The same sequence of calls is timed without the caches and with caches of a few sizes, printing the
+ * hit rate recorded by the {@see Metrics}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class BenchResultCache {
+    private static final int CONTACTS = 20_000;
+    private static final int MEETINGS = 1_000_000;
+    private static final int DAYS = 365;
+    private static final int OPS = 200_000;
+    private static final long DAY = 86_400_000L;
+
+    /**
+     * Returns a sequence of ranks from 0 to n - 1, drawn with a Zipf distribution of exponent 1.
+     */
+    private static int[] zipf(int n, int count, Random random) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        int[] ranks = new int[count];
+        for (int i = 0; i < count; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            ranks[i] = Math.min(rank < 0 ? -rank - 1 : rank, n - 1);
+        }
+        return ranks;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Clock clock = Clock.fixed(new GregorianCalendar(2015, 1, 1).toInstant(), ZoneId.systemDefault());
+        Path file = Files.createTempFile("BenchResultCache", ".bin");
+        Files.delete(file);
+        ContactManagerImpl manager = new ContactManagerImpl(file, clock, StorageMode.SNAPSHOT);
+        List<ContactRecord> contacts = new ArrayList<>(CONTACTS);
+        for (int i = 0; i < CONTACTS; i++) {
+            contacts.add(new ContactRecord("Contact " + i, ""));
+        }
+        int[] contactIds = manager.importContacts(contacts.iterator(), false);
+        Random random = new Random(42);
+        long firstDay = new GregorianCalendar(2020, 0, 1).getTimeInMillis();
+        List<MeetingRecord> records = new ArrayList<>(MEETINGS);
+        for (int i = 0; i < MEETINGS; i++) {
+            long date = firstDay + random.nextInt(DAYS) * DAY + random.nextInt(24) * DAY / 24;
+            records.add(new MeetingRecord(date, new int[] {contactIds[random.nextInt(CONTACTS)]}, null));
+        }
+        manager.importMeetings(records.iterator(), false);
+        Contact[] byRank = new Contact[CONTACTS];
+        for (int i = 0; i < CONTACTS; i++) {
+            byRank[i] = manager.getContacts(contactIds[i]).iterator().next();
+        }
+        Calendar[] days = new Calendar[DAYS];
+        for (int d = 0; d < DAYS; d++) {
+            days[d] = new GregorianCalendar();
+            days[d].setTimeInMillis(firstDay + d * DAY);
+        }
+        int[] contactRanks = zipf(CONTACTS, OPS, random);
+        int[] dayRanks = zipf(DAYS, OPS, random);
+        int[] kinds = new int[OPS];
+        for (int i = 0; i < OPS; i++) {
+            int k = random.nextInt(100);
+            kinds[i] = k == 0 ? 2 : k <= 10 ? 1 : 0;
+        }
+        Metrics metrics = manager.getMetrics();
+        metrics.setEnabled(true);
+        for (int capacity : new int[] {0, 200, 2_000, 20_000}) {
+            manager.setResultCache(capacity, Duration.ofMinutes(10));
+            metrics.reset();
+            Bench.run("Zipf workload, cache of " + capacity, OPS, i -> {
+                if (kinds[i] == 0) {
+                    return manager.getFutureMeetingList(byRank[contactRanks[i]]).size();
+                } else if (kinds[i] == 1) {
+                    return manager.getFutureMeetingList(days[dayRanks[i]]).size();
+                } else {
+                    Contact c = byRank[contactRanks[i]];
+                    return manager.addFutureMeeting(Collections.singleton(c), days[dayRanks[i]]);
+                }
+            });
+            System.out.printf("    hit rate: by contact %.1f%%, by day %.1f%%%n",
+                    100 * metrics.getOperation(Metrics.Operation.GET_FUTURE_MEETING_LIST).getCacheHitRate(),
+                    100 * metrics.getOperation(Metrics.Operation.GET_FUTURE_MEETING_LIST_BY_DATE).getCacheHitRate());
+        }
+        Files.deleteIfExists(file);
+    }
+
+}
@@ -0,0 +1,84 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.*;
+
+/**
+ * Compare the time taken to create a ContactManagerImpl from a snapshot file in mode SNAPSHOT
+ * (everything decoded by the constructor) and in mode MAPPED (the file is only mapped, and the first
+ * query by id only decodes the records it returns), for files of 10K, 1M and 10M meetings with one contact every ten meetings.
+ *
+ * Each size is measured on a freshly written file, over a few runs; the sizes can also be given
+ * as arguments, e.g.
+ * <pre>
+ *     java -Xmx12g -cp out BenchStartup 10000 1000000 10000000
+ * </pre>
+ * (10M meetings need a heap of several GB once decoded).
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class BenchStartup {
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = {10_000, 1_000_000, 10_000_000};
+        if (args.length > 0) {
+            sizes = Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        }
+        Path file = Files.createTempFile("BenchStartup", ".bin");
+        try {
+            for (int size : sizes) {
+                write(file, size);
+                System.out.printf("%,d meetings, %,d bytes%n", size, Files.size(file));
+                long eager = Long.MAX_VALUE;
+                long mapped = Long.MAX_VALUE;
+                long firstQuery = Long.MAX_VALUE;
+                for (int r = 0; r < RUNS; r++) {
+                    long start = System.nanoTime();
+                    ContactManagerImpl snapshot = new ContactManagerImpl(file, Clock.systemDefaultZone(), StorageMode.SNAPSHOT);
+                    eager = Math.min(eager, System.nanoTime() - start);
+                    snapshot = null;
+                    System.gc();
+                    start = System.nanoTime();
+                    ContactManagerImpl lazy = new ContactManagerImpl(file, Clock.systemDefaultZone(), StorageMode.MAPPED);
+                    long created = System.nanoTime();
+                    lazy.getMeeting(size / 2);
+                    mapped = Math.min(mapped, created - start);
+                    firstQuery = Math.min(firstQuery, System.nanoTime() - created);
+                    lazy = null;
+                    System.gc();
+                }
+                System.out.printf("    %-40s %12.3f ms%n", "SNAPSHOT constructor", eager / 1e6);
+                System.out.printf("    %-40s %12.3f ms%n", "MAPPED constructor", mapped / 1e6);
+                System.out.printf("    %-40s %12.3f ms%n", "MAPPED first query", firstQuery / 1e6);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Write a snapshot with the given number of meetings, sharing a few sets of contacts
+     * so that the file can be generated without holding millions of sets in memory.
+     */
+    private static void write(Path file, int size) throws IOException {
+        int contactCount = Math.max(1, size / 10);
+        List<Contact> contacts = new ArrayList<>(contactCount);
+        for (int i = 0; i < contactCount; i++) {
+            contacts.add(new ContactImpl("Contact" + i, i, ""));
+        }
+        List<Set<Contact>> groups = new ArrayList<>();
+        for (int g = 0; g < Math.min(1024, contactCount); g++) {
+            groups.add(Collections.singleton(contacts.get(g)));
+        }
+        long base = new GregorianCalendar(2001, 1, 1).getTimeInMillis();
+        List<Meeting> meetings = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            meetings.add(new PastMeetingImpl(base + id * 60_000L, groups.get(id % groups.size()), id, ""));
+        }
+        new Snapshot(contactCount, size, contacts, meetings).write(file);
+    }
+
+}
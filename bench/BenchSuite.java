@@ -0,0 +1,332 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A benchmark of every operation of the {@see ContactManager} interface, on both {@see ContactManagerImpl}
+ * and {@see ConcurrentContactManager}, for each combination of the given dataset sizes and thread counts.
+ * The results are printed as a table and written as JSON, and can be compared with the JSON of a previous
+ * version to find regressions.
+ *
+ * A dataset of a given size has that many meetings (half past and half future, in random order of date)
+ * of 1 to 3 of size / 10 contacts. It is built once for each implementation and size; then each operation
+ * is run by each number of threads at the same time, for a warm-up period and then for a measured one,
+ * reporting the operations per second of all the threads and the average time of an operation.
+ * The operations which do not change the data run first (including flush and load, which save and restore
+ * the dataset), and the ones which add data after them, as they make the dataset grow while they run.
+ *
+ * Run for example (see {@see Bench} to compile):
+ * <pre>
+ *     java -Xmx4g -cp out BenchSuite --sizes 1000,100000 --threads 1,4 --label v2 --out v2.json
+ *     java -Xmx4g -cp out BenchSuite --sizes 1000,100000 --threads 1,4 --label v3 --out v3.json --compare v2.json
+ * </pre>
+ * With --compare, every result which is slower than the same one in the given file by more than
+ * --tolerance percent (10 by default) is reported as a regression, and the exit status is 1 if there is any.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class BenchSuite {
+    private static final Pattern RESULT = Pattern.compile("\\{\"benchmark\":\"([^\"]*)\",\"implementation\":\"([^\"]*)\","
+            + "\"size\":(\\d+),\"threads\":(\\d+),\"opsPerSecond\":([0-9.Ee+-]+),\"nsPerOp\":([0-9.Ee+-]+)}");
+    private static volatile int sink;
+
+    /**
+     * An operation of the benchmark, called with the random generator of the thread.
+     * It returns a value which is consumed, so that the JIT cannot remove the work as dead code.
+     */
+    private interface Operation {
+        int run(Random random);
+    }
+
+    /**
+     * The result of an operation, for an implementation, a size and a number of threads.
+     */
+    private static final class Result {
+        final String benchmark;
+        final String implementation;
+        final int size;
+        final int threads;
+        final double opsPerSecond;
+        final double nsPerOp;
+
+        Result(String benchmark, String implementation, int size, int threads, double opsPerSecond, double nsPerOp) {
+            this.benchmark = benchmark;
+            this.implementation = implementation;
+            this.size = size;
+            this.threads = threads;
+            this.opsPerSecond = opsPerSecond;
+            this.nsPerOp = nsPerOp;
+        }
+
+        String key() {
+            return benchmark + " " + implementation + " " + size + " " + threads;
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT, "{\"benchmark\":\"%s\",\"implementation\":\"%s\",\"size\":%d,\"threads\":%d,"
+                    + "\"opsPerSecond\":%.1f,\"nsPerOp\":%.1f}", benchmark, implementation, size, threads, opsPerSecond, nsPerOp);
+        }
+    }
+
+    /**
+     * The data and the manager of a benchmark, with the ids used by the operations.
+     */
+    private static final class Dataset {
+        final Path file;
+        final Clock clock;
+        final Function<Dataset, ContactManager> open;
+        final ContactManager manager;
+        final Contact[] contacts;
+        final int[] pastIds;
+        final int[] allIds;
+
+        Dataset(Path file, Clock clock, Function<Dataset, ContactManager> open, int size) {
+            this.file = file;
+            this.clock = clock;
+            this.open = open;
+            manager = open.apply(this);
+            int contactCount = Math.max(size / 10, 10);
+            for (int i = 0; i < contactCount; i++) {
+                manager.addNewContact(String.format("Contact%07d", i), "Notes");
+            }
+            contacts = manager.getContacts("Contact").toArray(new Contact[0]);
+            Random random = new Random(42);
+            for (int i = 0; i < size; i++) {
+                boolean past = i % 2 == 0;
+                Calendar date = new GregorianCalendar(past ? 2010 : 2020, 0, 1);
+                date.add(Calendar.MINUTE, random.nextInt(365 * 24 * 60));
+                if (past) {
+                    manager.addNewPastMeeting(attendees(random), date, "Notes");
+                } else {
+                    manager.addFutureMeeting(attendees(random), date);
+                }
+            }
+            List<Meeting> meetings = manager.getMeetings(new GregorianCalendar(2000, 0, 1), new GregorianCalendar(2030, 0, 1));
+            allIds = meetings.stream().mapToInt(Meeting::getId).toArray();
+            pastIds = meetings.stream().filter(m -> m instanceof PastMeeting).mapToInt(Meeting::getId).toArray();
+            manager.flush();
+        }
+
+        Set<Contact> attendees(Random random) {
+            Set<Contact> set = new HashSet<>();
+            int n = 1 + random.nextInt(3);
+            for (int i = 0; i < n; i++) {
+                set.add(contacts[random.nextInt(contacts.length)]);
+            }
+            return set;
+        }
+
+        Contact contact(Random random) {
+            return contacts[random.nextInt(contacts.length)];
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+        int[] sizes = parseInts(options.getOrDefault("--sizes", "1000,100000"));
+        int[] threadCounts = parseInts(options.getOrDefault("--threads", "1,4"));
+        long millis = Long.parseLong(options.getOrDefault("--millis", "1000"));
+        String label = options.getOrDefault("--label", "unlabelled");
+        Path out = Paths.get(options.getOrDefault("--out", "bench-results.json"));
+        Clock clock = Clock.fixed(new GregorianCalendar(2015, 1, 1).toInstant(), ZoneId.systemDefault());
+        Map<String, Function<Dataset, ContactManager>> implementations = new LinkedHashMap<>();
+        implementations.put("ContactManagerImpl", d -> new ContactManagerImpl(d.file, d.clock, StorageMode.SNAPSHOT));
+        implementations.put("ConcurrentContactManager", d -> new ConcurrentContactManager(d.file, d.clock));
+
+        List<Result> results = new ArrayList<>();
+        Path dir = Files.createTempDirectory("BenchSuite");
+        try {
+            for (Map.Entry<String, Function<Dataset, ContactManager>> impl : implementations.entrySet()) {
+                for (int size : sizes) {
+                    Path file = dir.resolve(impl.getKey() + size + ".bin");
+                    Dataset d = new Dataset(file, clock, impl.getValue(), size);
+                    for (Map.Entry<String, Operation> op : operations(d).entrySet()) {
+                        for (int threads : threadCounts) {
+                            run(op.getValue(), threads, millis / 4);   // warm-up
+                            long[] measured = run(op.getValue(), threads, millis);
+                            Result r = new Result(op.getKey(), impl.getKey(), size, threads,
+                                    measured[0] * 1e9 / measured[1], (double) measured[1] * threads / measured[0]);
+                            System.out.printf("%-28s %-26s %,9d %3d threads %,16.0f ops/s %,14.1f ns/op%n",
+                                    r.benchmark, r.implementation, r.size, r.threads, r.opsPerSecond, r.nsPerOp);
+                            results.add(r);
+                        }
+                    }
+                }
+            }
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path f : files) {
+                    Files.delete(f);
+                }
+            }
+            Files.delete(dir);
+        }
+        write(out, label, results);
+        System.out.println("Results written to " + out);
+        if (options.containsKey("--compare")) {
+            double tolerance = Double.parseDouble(options.getOrDefault("--tolerance", "10"));
+            if (compare(read(Paths.get(options.get("--compare"))), results, tolerance) > 0) {
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * The operations of the benchmark, by name: the ones which do not change the data first.
+     */
+    private static Map<String, Operation> operations(Dataset d) {
+        ContactManager m = d.manager;
+        Map<String, Operation> ops = new LinkedHashMap<>();
+        ops.put("getMeeting", r -> m.getMeeting(d.allIds[r.nextInt(d.allIds.length)]).getId());
+        ops.put("getPastMeeting", r -> m.getPastMeeting(d.pastIds[r.nextInt(d.pastIds.length)]).getId());
+        ops.put("getContacts(ids)", r -> m.getContacts(d.contact(r).getId(), d.contact(r).getId()).size());
+        ops.put("getContacts(name)", r -> m.getContacts(String.format("%07d", r.nextInt(d.contacts.length))).size());
+        ops.put("getContactsByPrefix", r -> m.getContactsByPrefix("Contact00" + r.nextInt(10), 20).size());
+        ops.put("getFutureMeetingList(contact)", r -> m.getFutureMeetingList(d.contact(r)).size());
+        ops.put("getPastMeetingList(contact)", r -> m.getPastMeetingList(d.contact(r)).size());
+        ops.put("getFutureMeetingPage", r -> m.getFutureMeetingPage(d.contact(r), MeetingCursor.START, 20)
+                .getMeetings().size());
+        ops.put("getFutureMeetingList(date)", r -> {
+            Calendar day = new GregorianCalendar(2020, 0, 1);
+            day.add(Calendar.DAY_OF_MONTH, r.nextInt(365));
+            return m.getFutureMeetingList(day).size();
+        });
+        ops.put("getMeetings(from,to)", r -> {
+            Calendar from = new GregorianCalendar(2010, 0, 1);
+            from.add(Calendar.DAY_OF_MONTH, r.nextInt(365));
+            Calendar to = (Calendar) from.clone();
+            to.add(Calendar.DAY_OF_MONTH, 7);
+            return m.getMeetings(from, to).size();
+        });
+        ops.put("flush", r -> {
+            m.flush();
+            return 1;
+        });
+        ops.put("load", r -> d.open.apply(d).getContacts(d.contact(r).getId()).size());
+        ops.put("addNewContact", r -> {
+            m.addNewContact("New", "Notes");
+            return 1;
+        });
+        ops.put("addFutureMeeting", r -> m.addFutureMeeting(d.attendees(r), new GregorianCalendar(2021, 0, 1)));
+        ops.put("addNewPastMeeting", r -> {
+            m.addNewPastMeeting(d.attendees(r), new GregorianCalendar(2011, 0, 1), "Notes");
+            return 1;
+        });
+        ops.put("addMeetingNotes", r -> {
+            m.addMeetingNotes(d.pastIds[r.nextInt(d.pastIds.length)], "n");
+            return 1;
+        });
+        return ops;
+    }
+
+    /**
+     * Run an operation on the given number of threads at the same time, for the given time.
+     *
+     * @return the number of operations, and the nanoseconds elapsed.
+     */
+    private static long[] run(Operation op, int threads, long millis) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        LongAdder ops = new LongAdder();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+                long count = 0;
+                int acc = 0;
+                do {
+                    acc += op.run(random);
+                    count++;
+                } while (System.nanoTime() < end);
+                ops.add(count);
+                sink += acc;
+                return null;
+            }));
+        }
+        start.await();
+        long begin = System.nanoTime();
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        return new long[] {ops.sum(), elapsed};
+    }
+
+    private static int[] parseInts(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /**
+     * Write the results as JSON, one result per line.
+     */
+    private static void write(Path out, String label, List<Result> results) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"label\":\"").append(label.replace("\\", "\\\\").replace("\"", "\\\"")).append("\",\n");
+        json.append("\"java\":\"").append(System.getProperty("java.version")).append("\",\n");
+        json.append("\"processors\":").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        json.append("\"results\":[\n");
+        for (int i = 0; i < results.size(); i++) {
+            json.append(results.get(i).toJson()).append(i + 1 < results.size() ? ",\n" : "\n");
+        }
+        json.append("]}\n");
+        Files.write(out, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read the results from a JSON file written by this benchmark.
+     */
+    private static Map<String, Result> read(Path file) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        Matcher m = RESULT.matcher(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        while (m.find()) {
+            Result r = new Result(m.group(1), m.group(2), Integer.parseInt(m.group(3)), Integer.parseInt(m.group(4)),
+                    Double.parseDouble(m.group(5)), Double.parseDouble(m.group(6)));
+            results.put(r.key(), r);
+        }
+        return results;
+    }
+
+    /**
+     * Print the change in throughput of each result found in the baseline.
+     *
+     * @return the number of regressions, i.e. results slower than the baseline by more than the tolerance.
+     */
+    private static int compare(Map<String, Result> baseline, List<Result> results, double tolerance) {
+        int regressions = 0;
+        System.out.println("Compared with the baseline:");
+        for (Result r : results) {
+            Result old = baseline.get(r.key());
+            if (old == null) {
+                continue;
+            }
+            double change = (r.opsPerSecond / old.opsPerSecond - 1) * 100;
+            boolean regression = change < -tolerance;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-28s %-26s %,9d %3d threads %+8.1f%%%s%n", r.benchmark, r.implementation, r.size,
+                    r.threads, change, regression ? "   REGRESSION" : "");
+        }
+        System.out.println(regressions + " regressions");
+        return regressions;
+    }
+
+}
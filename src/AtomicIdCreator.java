@@ -0,0 +1,228 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implementation of {@see IdCreator} which can be used by many threads at the same time,
+ * and issues ids in the range of a long.
+ *
+ * Each thread reserves a block of consecutive ids with a single atomic operation, and then issues
+ * them on its own, so threads only meet once per block. As the ids of a block are issued in any order
+ * with respect to those of other threads, ids are unique but not sequential, and the ids left in the
+ * block of a thread which stops are never issued.
+ *
+ * If a file is given, the end of the last block reserved (the high-water mark) is saved in it before
+ * any id of the block is issued, replacing the file in a single step, so that after a restart, even
+ * after a crash, ids carry on after every id which may have been issued before.
+ *
+ * As for {@see IdCreatorImpl}, contact ids start from 1000 and meeting ids from 1.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class AtomicIdCreator implements IdCreator {
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+    private final Path file;
+    private final int blockSize;
+    private final Sequence contacts;
+    private final Sequence meetings;
+    private final Object persistLock = new Object();
+    private long persistedContacts;
+    private long persistedMeetings;
+
+    /**
+     * A sequence of ids, issued by each thread from its own block.
+     */
+    private final class Sequence {
+        final AtomicLong reserved;
+        // {next, remaining}: a count rather than an end, which could not be past the last id of a long
+        final ThreadLocal<long[]> block = ThreadLocal.withInitial(() -> new long[2]);
+
+        Sequence(long last) {
+            reserved = new AtomicLong(last);
+        }
+
+        long next() {
+            long[] b = block.get();
+            if (b[1] == 0) {
+                long last;
+                long end;
+                do {
+                    last = reserved.get();
+                    end = Math.addExact(last, blockSize);  // fails rather than wrapping around
+                } while (!reserved.compareAndSet(last, end));
+                persist();
+                b[0] = end - blockSize + 1;
+                b[1] = blockSize;
+            }
+            b[1]--;
+            return b[0]++;
+        }
+    }
+
+    /**
+     * Constructor for an IdCreator which is not saved, with blocks of DEFAULT_BLOCK_SIZE ids.
+     */
+    public AtomicIdCreator() {
+        this(null, DEFAULT_BLOCK_SIZE, 999, 0);
+    }
+
+    /**
+     * Constructor for an IdCreator whose high-water mark is saved in the given file.
+     * If the file exists, ids carry on after the mark saved in it.
+     *
+     * @param file the file where the high-water mark is saved.
+     * @param blockSize the number of ids reserved by a thread at a time.
+     * @throws NullPointerException if the file is null.
+     * @throws IllegalArgumentException if blockSize is not positive.
+     * @throws UncheckedIOException if the file exists but cannot be read.
+     */
+    public AtomicIdCreator(Path file, int blockSize) {
+        this(requireFile(file), blockSize, 999, 0);
+    }
+
+    private static Path requireFile(Path file) {
+        if (file == null) {
+            throw new NullPointerException("File cannot be null");
+        }
+        return file;
+    }
+
+    /**
+     * Constructor for an IdCreator whose high-water mark is saved in the given file, which issues ids
+     * after both the given ones and the mark saved in the file (e.g. the last ids found in the data
+     * of a ContactManager restored from disk).
+     *
+     * @param file the file where the high-water mark is saved, or null if it is not saved.
+     * @param blockSize the number of ids reserved by a thread at a time.
+     * @param lastContactId a Contact id which has already been issued.
+     * @param lastMeetingId a Meeting id which has already been issued.
+     * @throws IllegalArgumentException if blockSize is not positive.
+     * @throws UncheckedIOException if the file exists but cannot be read.
+     */
+    public AtomicIdCreator(Path file, int blockSize, long lastContactId, long lastMeetingId) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("The size of a block must be positive");
+        }
+        this.file = file;
+        this.blockSize = blockSize;
+        if (file != null) {
+            try {
+                ByteBuffer marks = ByteBuffer.wrap(Files.readAllBytes(file));
+                persistedContacts = marks.getLong();
+                persistedMeetings = marks.getLong();
+            } catch (NoSuchFileException ex) {
+                // nothing has been issued yet
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot read " + file, ex);
+            }
+        }
+        contacts = new Sequence(Math.max(lastContactId, persistedContacts));
+        meetings = new Sequence(Math.max(lastMeetingId, persistedMeetings));
+    }
+
+    /**
+     * Save the current high-water marks, unless another thread has already saved them:
+     * the new file is written and forced to disk next to the old one, and then moved over it, forcing
+     * the folder too, so that the new marks are not lost after a crash.
+     */
+    private void persist() {
+        if (file == null) {
+            return;
+        }
+        synchronized (persistLock) {
+            long c = contacts.reserved.get();
+            long m = meetings.reserved.get();
+            if (c <= persistedContacts && m <= persistedMeetings) {
+                return;
+            }
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer marks = ByteBuffer.allocate(16).putLong(c).putLong(m);
+                marks.flip();
+                while (marks.hasRemaining()) {
+                    channel.write(marks);
+                }
+                channel.force(true);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot save " + file, ex);
+            }
+            try {
+                Snapshot.moveDurably(temp, file);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot save " + file, ex);
+            }
+            persistedContacts = c;
+            persistedMeetings = m;
+        }
+    }
+
+    /**
+     * Create an unique id to be associated with a Contact, in the range of a long.
+     *
+     * @return an unique id for a new Contact.
+     * @throws ArithmeticException if all the ids of a long have been issued.
+     * @throws UncheckedIOException if a new block is needed and its high-water mark cannot be saved.
+     */
+    public long nextContactId() {
+        return contacts.next();
+    }
+
+    /**
+     * Create an unique id to be associated with a Meeting, in the range of a long.
+     *
+     * @return an unique id for a new Meeting.
+     * @throws ArithmeticException if all the ids of a long have been issued.
+     * @throws UncheckedIOException if a new block is needed and its high-water mark cannot be saved.
+     */
+    public long nextMeetingId() {
+        return meetings.next();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return an unique id for a new Contact.
+     * @throws ArithmeticException if the id does not fit in an int, rather than wrapping around.
+     */
+    @Override
+    public int createContactId() {
+        return Math.toIntExact(nextContactId());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return an unique id for the Meeting.
+     * @throws ArithmeticException if the id does not fit in an int, rather than wrapping around.
+     */
+    @Override
+    public int createMeetingId() {
+        return Math.toIntExact(nextMeetingId());
+    }
+
+    /**
+     * Returns the high-water mark of the Contact ids: no id after it has been issued yet.
+     *
+     * @return the last Contact id reserved by any thread.
+     */
+    public long getContactHighWaterMark() {
+        return contacts.reserved.get();
+    }
+
+    /**
+     * Returns the high-water mark of the Meeting ids: no id after it has been issued yet.
+     *
+     * @return the last Meeting id reserved by any thread.
+     */
+    public long getMeetingHighWaterMark() {
+        return meetings.reserved.get();
+    }
+
+}
@@ -0,0 +1,176 @@
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The contacts of a meeting, held as a sorted array of their ids and resolved to Contact objects
+ * by a {@see ContactResolver} only when they are read.
+ * Membership is checked by a binary search of the id, followed by a check that the contact is the
+ * same object known to the resolver (as ContactImpl does not override equals).
+ * The set is read-only, and iterates over the contacts in order of id.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class AttendeeSet extends AbstractSet<Contact> {
+    private final int[] ids;
+    private final ContactResolver resolver;
+
+    /**
+     * A resolver over the contacts of a single set, for meetings created outside a ContactManager.
+     */
+    private static class LocalResolver implements ContactResolver {
+        final int[] ids;
+        final Contact[] contacts;
+
+        LocalResolver(int[] ids, Contact[] contacts) {
+            this.ids = ids;
+            this.contacts = contacts;
+        }
+
+        @Override
+        public Contact getContact(int id) {
+            int pos = Arrays.binarySearch(ids, id);
+            return pos >= 0 ? contacts[pos] : null;
+        }
+    }
+
+    /**
+     * Constructor for a view of the given ids.
+     *
+     * @param ids the ids of the contacts, sorted and without duplicates; the array is not copied.
+     * @param resolver the resolver of the contacts.
+     */
+    AttendeeSet(int[] ids, ContactResolver resolver) {
+        this.ids = ids;
+        this.resolver = resolver;
+    }
+
+    /**
+     * Returns the contacts of the given set as an AttendeeSet whose contacts are resolved by the given
+     * resolver, which must know all of them. If the set is already an AttendeeSet with the same resolver,
+     * it is returned as it is.
+     *
+     * @param contacts the contacts.
+     * @param resolver the resolver of the contacts.
+     * @return the contacts as an AttendeeSet.
+     * @throws NullPointerException if any of the arguments, or any of the contacts, is null.
+     */
+    public static AttendeeSet of(Set<Contact> contacts, ContactResolver resolver) {
+        if (contacts == null || resolver == null) {
+            throw new NullPointerException("Argument cannot be null");
+        } else if (contacts instanceof AttendeeSet && ((AttendeeSet) contacts).resolver == resolver) {
+            return (AttendeeSet) contacts;
+        }
+        int[] ids = new int[contacts.size()];
+        int n = 0;
+        for (Contact c : contacts) {
+            ids[n++] = c.getId();
+        }
+        Arrays.sort(ids, 0, n);
+        return new AttendeeSet(distinct(ids, n), resolver);
+    }
+
+    /**
+     * Returns the contacts of the given set as an AttendeeSet which resolves them by itself
+     * (e.g. for a meeting created outside a ContactManager). If the set is already an AttendeeSet,
+     * it is returned as it is. Contacts with the same id are kept once.
+     *
+     * @param contacts the contacts.
+     * @return the contacts as an AttendeeSet.
+     * @throws NullPointerException if the set, or any of the contacts, is null.
+     */
+    public static AttendeeSet copyOf(Set<Contact> contacts) {
+        if (contacts == null) {
+            throw new NullPointerException("Set<Contact> cannot be null");
+        } else if (contacts instanceof AttendeeSet) {
+            return (AttendeeSet) contacts;
+        }
+        Contact[] sorted = contacts.toArray(new Contact[0]);
+        Arrays.sort(sorted, (a, b) -> Integer.compare(a.getId(), b.getId()));
+        int[] ids = new int[sorted.length];
+        int n = 0;
+        for (Contact c : sorted) {
+            if (n == 0 || ids[n - 1] != c.getId()) {
+                sorted[n] = c;
+                ids[n++] = c.getId();
+            }
+        }
+        ids = Arrays.copyOf(ids, n);
+        return new AttendeeSet(ids, new LocalResolver(ids, Arrays.copyOf(sorted, n)));
+    }
+
+    private static int[] distinct(int[] sorted, int length) {
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            if (n == 0 || sorted[n - 1] != sorted[i]) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+    }
+
+    /**
+     * Returns whether the contact with the given id is one of the attendees, with a binary search.
+     *
+     * @param id the id of a contact.
+     * @return true if the contact with the given id is one of the attendees.
+     */
+    public boolean containsId(int id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    /**
+     * Returns the ids of the attendees, in ascending order. The array must not be modified.
+     *
+     * @return the ids of the attendees.
+     */
+    int[] ids() {
+        return ids;
+    }
+
+    /**
+     * Returns the resolver of the attendees.
+     *
+     * @return the resolver of the attendees.
+     */
+    ContactResolver resolver() {
+        return resolver;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Contact)) {
+            return false;
+        }
+        int id = ((Contact) o).getId();
+        return containsId(id) && resolver.getContact(id) == o;
+    }
+
+    @Override
+    public Iterator<Contact> iterator() {
+        return new Iterator<Contact>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < ids.length;
+            }
+
+            @Override
+            public Contact next() {
+                if (next == ids.length) {
+                    throw new NoSuchElementException();
+                }
+                return resolver.getContact(ids[next++]);
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+}
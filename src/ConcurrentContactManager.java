@@ -0,0 +1,604 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Implementation of interface {@see ContactManager} which can be used by many threads at the same time,
+ * without a global lock.
+ *
+ * Contacts and meetings are held in concurrent maps, and the chronological indexes (of all the meetings,
+ * and of the meetings of each contact) are concurrent skip lists, so queries never block and only see
+ * meetings which have been completely stored. Ids are issued by an {@see AtomicIdCreator}, whose
+ * high-water mark is saved next to the data file with the extension ".ids": ids are unique but not
+ * sequential, as each thread issues them from its own block. The snapshot records the largest ids stored
+ * rather than the high-water marks, so that the ids of a file loaded by ContactManagerImpl, which sizes
+ * its storage by the last meeting id, only have the gaps of the blocks not used up before a restart.
+ * The only exception is the {@see NameIndex} of the names, which is not concurrent: a search waits only
+ * while a contact is being added to it.
+ * Changes to an existing meeting (its conversion to PastMeeting, or new notes) are serialized by a lock
+ * chosen among a fixed number of stripes by the id of the meeting, so that changes to different
+ * meetings proceed in parallel.
+ * flush() takes the exclusive side of a read/write lock whose shared side is held by every change,
+ * so that the snapshot written is consistent while changes do not wait for one another.
+ *
+ * The data is saved to the same {@see Snapshot} file as {@see ContactManagerImpl}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class ConcurrentContactManager implements ContactManager {
+    private static final Path FILE = Paths.get("Contact.txt");
+    private static final int STRIPES = 64;
+    private final Path file;
+    private final Clock clock;
+    private final AtomicIdCreator idCreator;
+    private final AtomicInteger lastContactId;  // the largest id of a contact stored
+    private final AtomicInteger lastMeetingId;  // the largest id of a meeting stored
+    private final ConcurrentSkipListMap<Integer, Contact> contacts = new ConcurrentSkipListMap<>();
+    private final ContactResolver resolver = id -> contacts.get(id);
+    private final ConcurrentSkipListSet<NameKey> contactsByPrefix = new ConcurrentSkipListSet<>();
+    private final NameIndex contactsByName = new NameIndex();   // guarded by nameLock
+    private final ReentrantReadWriteLock nameLock = new ReentrantReadWriteLock();
+    private final ConcurrentHashMap<Integer, Meeting> meetings = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<DateKey> meetingsByDate = new ConcurrentSkipListSet<>();
+    private final ConcurrentHashMap<Integer, ConcurrentSkipListSet<DateKey>> meetingsByContact = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private final ReentrantLock fileLock = new ReentrantLock();
+
+    /**
+     * The position of a meeting in a chronological index: its date, and then its id.
+     */
+    private static final class DateKey implements Comparable<DateKey> {
+        final long date;
+        final int id;
+
+        DateKey(long date, int id) {
+            this.date = date;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(DateKey other) {
+            return date != other.date ? Long.compare(date, other.date) : Integer.compare(id, other.id);
+        }
+    }
+
+    /**
+     * The position of a contact in the index by name: its name, and then its id.
+     */
+    private static final class NameKey implements Comparable<NameKey> {
+        final String name;
+        final int id;
+
+        NameKey(String name, int id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(NameKey other) {
+            int cmp = name.compareTo(other.name);
+            return cmp != 0 ? cmp : Integer.compare(id, other.id);
+        }
+    }
+
+    /**
+     * Constructor for the ContactManager, restoring the data saved in the file "Contact.txt" if it exists,
+     * and using the system clock.
+     *
+     * @throws UncheckedIOException if the file exists but cannot be read.
+     */
+    public ConcurrentContactManager() {
+        this(FILE, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Constructor for a ContactManager which saves its data to the given file, and uses the given clock
+     * to decide whether a meeting is in the past or in the future.
+     *
+     * @param file the file where the data is saved.
+     * @param clock the clock giving the current time.
+     * @throws NullPointerException if any of the arguments is null.
+     * @throws UncheckedIOException if the file exists but cannot be read.
+     */
+    public ConcurrentContactManager(Path file, Clock clock) {
+        if (file == null || clock == null) {
+            throw new NullPointerException("Argument cannot be null");
+        }
+        this.file = file;
+        this.clock = clock;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        Snapshot snapshot;
+        try {
+            snapshot = Snapshot.read(file);
+        } catch (NoSuchFileException fl) {  // initialize a new ContactManager from scratch
+            IdCreatorImpl fresh = new IdCreatorImpl();
+            snapshot = new Snapshot(fresh.getLastContactId(), fresh.getLastMeetingId(),
+                    new ArrayList<>(), new ArrayList<>());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read " + file, ex);
+        }
+        idCreator = new AtomicIdCreator(file.resolveSibling(file.getFileName() + ".ids"),
+                AtomicIdCreator.DEFAULT_BLOCK_SIZE, snapshot.getLastContactId(), snapshot.getLastMeetingId());
+        lastContactId = new AtomicInteger(snapshot.getLastContactId());
+        lastMeetingId = new AtomicInteger(snapshot.getLastMeetingId());
+        for (Contact c : snapshot.getContacts()) {
+            storeContact(c);
+        }
+        for (Meeting m : snapshot.getMeetings()) {
+            storeMeeting(m);
+        }
+    }
+
+    /**
+     * Add a new contact to the map by id, and then to the indexes of the names.
+     *
+     * @param c the contact to be stored.
+     */
+    private void storeContact(Contact c) {
+        contacts.put(c.getId(), c);
+        lastContactId.accumulateAndGet(c.getId(), Math::max);
+        contactsByPrefix.add(new NameKey(c.getName(), c.getId()));
+        nameLock.writeLock().lock();
+        try {
+            contactsByName.add(c.getId(), c.getName());
+        } finally {
+            nameLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add a new meeting to the map by id and to the chronological indexes.
+     * The meeting is put in the map first, so that every id found in an index can be resolved.
+     *
+     * @param m the meeting to be stored.
+     */
+    private void storeMeeting(Meeting m) {
+        meetings.put(m.getId(), m);
+        lastMeetingId.accumulateAndGet(m.getId(), Math::max);
+        DateKey key = new DateKey(ContactManagerImpl.dateOf(m), m.getId());
+        meetingsByDate.add(key);
+        for (int c : ContactManagerImpl.attendeesOf(m)) {
+            meetingsByContact.computeIfAbsent(c, id -> new ConcurrentSkipListSet<>()).add(key);
+        }
+    }
+
+    /**
+     * Returns the lock which serializes the changes to the meeting with the given id.
+     */
+    private ReentrantLock stripe(int id) {
+        return stripes[(id * 0x9E3779B9) >>> 26];
+    }
+
+    /**
+     * Check whether a contact is known, i.e. it is the same object held by this ContactManager.
+     */
+    private boolean isKnown(Contact c) {
+        return c != null && contacts.get(c.getId()) == c;
+    }
+
+    private boolean checkContacts(Set<Contact> toCheck) {
+        for (Contact c : toCheck) {
+            if (!isKnown(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<Meeting> resolve(Collection<DateKey> keys) {
+        List<Meeting> list = new ArrayList<>();
+        for (DateKey key : keys) {
+            list.add(meetings.get(key.id));
+        }
+        return list;
+    }
+
+    /**
+     * Convert a FutureMeeting to PastMeeting without notes, unless another thread has already
+     * converted it.
+     *
+     * @param id the id of the meeting to be converted.
+     * @return the PastMeeting, either converted by this call or previously.
+     */
+    private PastMeeting convertToPastMeeting(int id) {
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        flushLock.readLock().lock();
+        try {
+            Meeting m = meetings.get(id);
+            if (m instanceof FutureMeeting) {
+                m = PastMeetingImpl.createChecked(ContactManagerImpl.dateOf(m), m.getContacts(), id, "");
+                meetings.put(id, m);
+            }
+            return (PastMeeting) m;
+        } finally {
+            flushLock.readLock().unlock();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if the meeting is set for a time in the past,
+     *     or if any contact is unknown / non-existent
+     */
+    @Override
+    public int addFutureMeeting(Set<Contact> contacts, Calendar date) {
+        if (contacts == null || date == null) {
+            throw new NullPointerException("Argument cannot be null");
+        } else if (!checkContacts(contacts)) {
+            throw new IllegalArgumentException("All the contacts of the meeting need to be valid");
+        } else if (date.getTimeInMillis() < clock.millis()) {
+            throw new IllegalArgumentException("Cannot create a FutureMeeting with a past date");
+        }
+        flushLock.readLock().lock();
+        try {
+            int id = idCreator.createMeetingId();
+            storeMeeting(new FutureMeetingImpl(date, AttendeeSet.of(contacts, resolver), id));
+            return id;
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * If the meeting with the requested ID has a past date but has not been converted to PastMeeting yet,
+     * it will be converted without notes
+     */
+    @Override
+    public PastMeeting getPastMeeting(int id) {
+        Meeting m = meetings.get(id);
+        if (m == null) {
+            return null;
+        } else if (ContactManagerImpl.dateOf(m) > clock.millis()) {
+            throw new IllegalArgumentException("Meeting " + id + " is happening in the future");
+        } else if (m instanceof FutureMeeting) {
+            return convertToPastMeeting(id);
+        } else {
+            return (PastMeeting) m;
+        }
+    }
+
+    @Override
+    public FutureMeeting getFutureMeeting(int id) {
+        Meeting m = meetings.get(id);
+        if (m == null) {
+            return null;
+        } else if (ContactManagerImpl.dateOf(m) < clock.millis()) {
+            throw new IllegalArgumentException("Meeting " + id + " is happening in the past");
+        } else {
+            return (FutureMeeting) m;
+        }
+    }
+
+    @Override
+    public Meeting getMeeting(int id) {
+        return meetings.get(id);
+    }
+
+    @Override
+    public List<Meeting> getFutureMeetingList(Contact contact) {
+        if (contact == null) {
+            throw new NullPointerException("Cannot have a null contact");
+        } else if (!isKnown(contact)) {
+            throw new IllegalArgumentException(contact.getName() + " has not been added to the list of contacts");
+        }
+        ConcurrentSkipListSet<DateKey> postings = meetingsByContact.get(contact.getId());
+        if (postings == null) {
+            return new ArrayList<>();
+        }
+        return resolve(postings.tailSet(new DateKey(clock.millis() + 1, Integer.MIN_VALUE)));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The parameter date will use only the date part (year, month and day) and ignore the time.
+     */
+    @Override
+    public List<Meeting> getFutureMeetingList(Calendar date) {
+        if (date == null) {
+            throw new NullPointerException("Cannot have a null date");
+        }
+        Calendar day = (Calendar) date.clone();
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        long from = day.getTimeInMillis();
+        day.add(Calendar.DAY_OF_MONTH, 1);
+        return resolve(meetingsByDate.subSet(new DateKey(from, Integer.MIN_VALUE),
+                new DateKey(day.getTimeInMillis(), Integer.MIN_VALUE)));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * FutureMeetings with a past date are returned as they are, without being converted to PastMeetings.
+     */
+    @Override
+    public List<Meeting> getMeetings(Calendar from, Calendar to) {
+        if (from == null || to == null) {
+            throw new NullPointerException("Cannot have a null date");
+        } else if (from.after(to)) {
+            throw new IllegalArgumentException("The start of the range cannot be after its end");
+        }
+        return resolve(meetingsByDate.subSet(new DateKey(from.getTimeInMillis(), Integer.MIN_VALUE),
+                new DateKey(to.getTimeInMillis(), Integer.MIN_VALUE)));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * If a meeting with matching contacts is a FutureMeeting with a past date,
+     * it will be converted to a PastMeeting without notes
+     */
+    @Override
+    public List<PastMeeting> getPastMeetingList(Contact contact) {
+        if (contact == null) {
+            throw new NullPointerException("Cannot have null argument");
+        } else if (!isKnown(contact)) {
+            throw new IllegalArgumentException(contact.getName() + " has not been added to the Contacts list");
+        }
+        List<PastMeeting> list = new ArrayList<>();
+        ConcurrentSkipListSet<DateKey> postings = meetingsByContact.get(contact.getId());
+        if (postings != null) {
+            for (DateKey key : postings.headSet(new DateKey(clock.millis(), Integer.MIN_VALUE))) {
+                Meeting m = meetings.get(key.id);
+                list.add(m instanceof FutureMeeting ? convertToPastMeeting(key.id) : (PastMeeting) m);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * This implementation throws an IllegalArgumentException also if the date
+     * as parameter is set for a future date
+     */
+    @Override
+    public void addNewPastMeeting(Set<Contact> contacts, Calendar date, String text) {
+        if (contacts == null || date == null || text == null) {
+            throw new NullPointerException("Cannot have a null argument");
+        } else if (contacts.isEmpty()) {
+            throw new IllegalArgumentException("The set of contacts is empty");
+        } else if (date.getTimeInMillis() > clock.millis()) {
+            throw new IllegalArgumentException("Cannot create a past meeting with a future date");
+        } else if (!checkContacts(contacts)) {
+            throw new IllegalArgumentException("All the contacts of the meeting need to be valid");
+        }
+        flushLock.readLock().lock();
+        try {
+            int id = idCreator.createMeetingId();
+            storeMeeting(PastMeetingImpl.createChecked(date.getTimeInMillis(), AttendeeSet.of(contacts, resolver), id,
+                    text));
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Notes added to the same meeting by different threads are all kept, in the order the threads
+     * acquire the lock of the meeting.
+     */
+    @Override
+    public void addMeetingNotes(int id, String text) {
+        if (text == null) {
+            throw new NullPointerException("Cannot have null notes");
+        }
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        flushLock.readLock().lock();
+        try {
+            Meeting m = meetings.get(id);
+            if (m == null) {
+                throw new IllegalArgumentException("The meeting does not exist");
+            }
+            long date = ContactManagerImpl.dateOf(m);
+            if (date > clock.millis()) {
+                throw new IllegalStateException("Meeting " + id + " is set for a date in the future.");
+            }
+            if (m instanceof PastMeetingImpl) {
+                ((PastMeetingImpl) m).addNotes(text);   // in place, so the meeting is not replaced
+            } else {
+                meetings.put(id, PastMeetingImpl.createChecked(date, m.getContacts(), id, text));
+            }
+        } finally {
+            flushLock.readLock().unlock();
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void addNewContact(String name, String notes) {
+        if (name == null || notes == null) {
+            throw new NullPointerException("Argument cannot be null");
+        }
+        flushLock.readLock().lock();
+        try {
+            int id = idCreator.createContactId();
+            storeContact(new ContactImpl(name, id, notes));
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<Contact> getContacts(int... ids) {
+        Set<Contact> set = new LinkedHashSet<>(ids.length * 2);
+        for (int id : ids) {
+            Contact c = contacts.get(id);
+            if (c == null) {
+                throw new IllegalArgumentException(id + " do not correspond to a real contact");
+            }
+            set.add(c);
+        }
+        return set;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The candidates are found in the {@see NameIndex} of the trigrams of the names, under the shared side
+     * of a read/write lock whose exclusive side is only held while a contact is added to it, and then
+     * checked without the lock. Names shorter than a trigram are found by scanning the contacts.
+     */
+    @Override
+    public Set<Contact> getContacts(String name) {
+        if (name == null || name.equals("")) {
+            throw new NullPointerException("Name of the contact to get cannot be null or empty");
+        }
+        Set<Contact> set = new LinkedHashSet<>();
+        if (NameIndex.canSearch(name)) {
+            int[] candidates;
+            nameLock.readLock().lock();
+            try {
+                candidates = contactsByName.search(name);
+            } finally {
+                nameLock.readLock().unlock();
+            }
+            for (int id : candidates) {
+                Contact c = contacts.get(id);
+                if (c.getName().contains(name)) {
+                    set.add(c);
+                }
+            }
+        } else {    // too short for the index
+            for (Contact c : contacts.values()) {
+                if (c.getName().contains(name)) {
+                    set.add(c);
+                }
+            }
+        }
+        return set;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The contacts are read in order from a concurrent skip list of the names.
+     */
+    @Override
+    public List<Contact> getContactsByPrefix(String prefix, int limit) {
+        if (prefix == null) {
+            throw new NullPointerException("Prefix cannot be null");
+        } else if (limit < 0) {
+            throw new IllegalArgumentException("The number of contacts cannot be negative");
+        }
+        List<Contact> list = new ArrayList<>(Math.min(limit, 64));
+        for (NameKey key : contactsByPrefix.tailSet(new NameKey(prefix, Integer.MIN_VALUE))) {
+            if (list.size() == limit || !key.name.startsWith(prefix)) {
+                break;
+            }
+            list.add(contacts.get(key.id));
+        }
+        return list;
+    }
+
+    @Override
+    public MeetingPage<Meeting> getFutureMeetingPage(Contact contact, MeetingCursor after, int limit) {
+        checkPage(contact, after, limit);
+        MeetingCursor from = after.atLeast(clock.millis(), Integer.MAX_VALUE);
+        return page(contact, from, Long.MAX_VALUE, limit, key -> meetings.get(key.id));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * If a meeting of the page is a FutureMeeting with a past date,
+     * it will be converted to a PastMeeting without notes
+     */
+    @Override
+    public MeetingPage<PastMeeting> getPastMeetingPage(Contact contact, MeetingCursor after, int limit) {
+        checkPage(contact, after, limit);
+        return page(contact, after, clock.millis(), limit, key -> {
+            Meeting m = meetings.get(key.id);
+            return m instanceof FutureMeeting ? convertToPastMeeting(key.id) : (PastMeeting) m;
+        });
+    }
+
+    private void checkPage(Contact contact, MeetingCursor after, int limit) {
+        if (contact == null || after == null) {
+            throw new NullPointerException("Argument cannot be null");
+        } else if (!isKnown(contact)) {
+            throw new IllegalArgumentException(contact.getName() + " has not been added to the list of contacts");
+        } else if (limit < 0) {
+            throw new IllegalArgumentException("The number of meetings cannot be negative");
+        }
+    }
+
+    /**
+     * Read a page of the meetings of a contact: the first ones after the cursor and before the given date,
+     * up to the limit. One more meeting is looked for, to know whether there is a next page.
+     */
+    private <T extends Meeting> MeetingPage<T> page(Contact contact, MeetingCursor after, long to, int limit,
+                                                    Function<DateKey, T> resolve) {
+        List<T> list = new ArrayList<>(Math.min(limit, 64));
+        ConcurrentSkipListSet<DateKey> postings = meetingsByContact.get(contact.getId());
+        if (postings == null || after.getDate() >= to) {
+            return new MeetingPage<>(list, null);
+        }
+        DateKey last = null;
+        for (DateKey key : postings.subSet(new DateKey(after.getDate(), after.getId()), false,
+                new DateKey(to, Integer.MIN_VALUE), false)) {
+            if (list.size() == limit) {
+                return new MeetingPage<>(list, last == null ? after : new MeetingCursor(last.date, last.id));
+            }
+            list.add(resolve.apply(key));
+            last = key;
+        }
+        return new MeetingPage<>(list, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The data is written as a binary {@see Snapshot}. Changes only wait while the snapshot is taken,
+     * not while it is written; concurrent calls of flush() write their snapshots one at a time.
+     * The snapshot is written and forced to disk next to the file and then moved over it, so that the
+     * file always holds a complete snapshot even if the application stops while writing
+     * (see {@see Snapshot#replace(Path)}).
+     *
+     * @throws UncheckedIOException if the data cannot be saved.
+     */
+    @Override
+    public void flush() {
+        fileLock.lock();
+        try {
+            Snapshot snapshot;
+            flushLock.writeLock().lock();
+            try {
+                snapshot = new Snapshot(lastContactId.get(), lastMeetingId.get(),
+                        new ArrayList<>(contacts.values()), resolve(meetingsByDate));
+            } finally {
+                flushLock.writeLock().unlock();
+            }
+            snapshot.replace(file);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot save to " + file, ex);
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+}
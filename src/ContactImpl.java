@@ -1,4 +1,4 @@
-import java.io.Serializable;
+import java.io.*;
 
 /**
  * Implementation of interface {@see Contact}.
@@ -6,14 +6,40 @@ import java.io.Serializable;
  * the numbers, and managed by the class above that (@see ContactManagerImpl). In this sense this
  * class is dependant on the ContactManager. This implementation just accepts any number given
  * at construction time as final.
+ *
+ * The notes are held as {@see Notes}, so that adding notes takes time proportional to the notes added.
+ * The serialized form still has the notes as a String.
+ * A ContactManager which records the changes to its contacts (e.g. in a {@see WriteAheadLog}) sets a
+ * {@see NotesWriter}, which then adds the notes on its behalf.
  * 
  * @author federico.bartolomei (BBK-PiJ-2014-21)
  */
 public class ContactImpl implements Serializable, Contact {
     private static final long serialVersionUID = 1L;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("name", String.class),
+            new ObjectStreamField("id", int.class),
+            new ObjectStreamField("notes", String.class)
+    };
     private String name;
-    private final int id;
-    private String notes;
+    private int id;     // only assigned by the constructors and readObject
+    private Notes notes;
+    private volatile NotesWriter writer;    // null unless the ContactManager records the notes added
+
+    /**
+     * Adds notes to a contact on behalf of its ContactManager, so that the ContactManager can record
+     * them together with the change.
+     */
+    interface NotesWriter {
+
+        /**
+         * Add notes to a contact, calling appendNotes().
+         *
+         * @param contact the contact.
+         * @param text the notes to be added.
+         */
+        void addNotes(ContactImpl contact, String text);
+    }
 
     /**
      * Constructor for a new contact, with name, id and notes.
@@ -31,7 +57,7 @@ public class ContactImpl implements Serializable, Contact {
         } else {
             this.name = name;
             this.id = id;
-            this.notes = notes;
+            this.notes = new Notes(notes);
         }
     }
     
@@ -48,7 +74,7 @@ public class ContactImpl implements Serializable, Contact {
         } else {
             this.name = name;
             this.id = id;
-            notes = "";
+            notes = new Notes("");
         }
     }
 
@@ -79,7 +105,7 @@ public class ContactImpl implements Serializable, Contact {
      */
     @Override
     public String getNotes() {
-        return notes;
+        return notes.toString();
     }
 
     /**
@@ -92,13 +118,51 @@ public class ContactImpl implements Serializable, Contact {
     public void addNotes(String notes) {
         if (notes == null) {
             throw new NullPointerException("Notes cannot be null");
+        }
+        NotesWriter w = writer;
+        if (w == null) {
+            this.notes.append(notes);
         } else {
-            if (this.notes.equals("")) {
-                this.notes = notes;
-            } else {
-                this.notes += " " + notes;
-            }
+            w.addNotes(this, notes);
         }
     }
+
+    /**
+     * Set the writer which adds the notes of this contact from now on, instead of addNotes() itself.
+     *
+     * @param writer the writer, or null to add the notes directly.
+     */
+    void setNotesWriter(NotesWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Add notes after the existing ones, as addNotes() does without a writer.
+     *
+     * @param text the notes to be added.
+     * @return the length of the notes before the addition.
+     */
+    int appendNotes(String text) {
+        synchronized (notes) {  // the lock of the Notes, so that no other addition comes in between
+            int previousLength = notes.length();
+            notes.append(text);
+            return previousLength;
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("name", name);
+        fields.put("id", id);
+        fields.put("notes", getNotes());
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        name = (String) fields.get("name", null);
+        id = fields.get("id", 0);
+        notes = new Notes((String) fields.get("notes", ""));
+    }
     
 }
@@ -1,6 +1,7 @@
 import java.util.Calendar;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * A class to manage your contacts and meetings.
@@ -69,6 +70,22 @@ public interface ContactManager {
      */
     List<Meeting> getFutureMeetingList(Calendar date);
 
+    /**
+     * Returns the list of meetings that are scheduled for, or that took
+     * place in, the specified range of dates.
+     *
+     * If there are none, the returned list will be empty. Otherwise,
+     * the list will be chronologically sorted and will not contain any
+     * duplicates.
+     *
+     * @param from the first date of the range (inclusive)
+     * @param to   the end of the range (exclusive)
+     * @return the list of meetings in the range (maybe empty)
+     * @throws NullPointerException if any of the arguments is null
+     * @throws IllegalArgumentException if from is after to
+     */
+    List<Meeting> getMeetings(Calendar from, Calendar to);
+
     /**
      * Returns the list of past meetings in which this contact has participated.
      *
@@ -137,6 +154,79 @@ public interface ContactManager {
      */
     Set<Contact> getContacts(String name);
 
+    /**
+     * Returns the contacts whose name starts with the given prefix, sorted by name
+     * (and contacts with the same name by id), up to a maximum number.
+     * Names are compared character by character, so the comparison is case-sensitive.
+     *
+     * @param prefix the start of the names to search for (if empty, all the names match)
+     * @param limit the maximum number of contacts to return
+     * @return the first contacts in order of name whose name starts with the prefix (maybe empty)
+     * @throws NullPointerException if the prefix is null
+     * @throws IllegalArgumentException if the limit is negative
+     */
+    List<Contact> getContactsByPrefix(String prefix, int limit);
+
+    /**
+     * Returns a page of the list of future meetings scheduled with this contact: the first meetings
+     * of the list after the given cursor, in chronological order, up to a maximum number.
+     * The next page is read by passing the cursor returned with this one, so that the cost of a page
+     * depends on its size rather than on the length of the list.
+     *
+     * @param contact one of the user's contacts
+     * @param after the cursor returned with the previous page, or MeetingCursor.START for the first page
+     * @param limit the maximum number of meetings to return
+     * @return the page of future meetings, and the cursor of the next page
+     * @throws NullPointerException if the contact or the cursor are null
+     * @throws IllegalArgumentException if the contact does not exist, or the limit is negative
+     */
+    MeetingPage<Meeting> getFutureMeetingPage(Contact contact, MeetingCursor after, int limit);
+
+    /**
+     * Returns a page of the list of past meetings in which this contact has participated: the first meetings
+     * of the list after the given cursor, in chronological order, up to a maximum number.
+     * The next page is read by passing the cursor returned with this one, so that the cost of a page
+     * depends on its size rather than on the length of the list.
+     *
+     * @param contact one of the user's contacts
+     * @param after the cursor returned with the previous page, or MeetingCursor.START for the first page
+     * @param limit the maximum number of meetings to return
+     * @return the page of past meetings, and the cursor of the next page
+     * @throws NullPointerException if the contact or the cursor are null
+     * @throws IllegalArgumentException if the contact does not exist, or the limit is negative
+     */
+    MeetingPage<PastMeeting> getPastMeetingPage(Contact contact, MeetingCursor after, int limit);
+
+    /**
+     * Returns the future meetings scheduled with this contact as a Stream, in chronological order.
+     * The meetings are read a page at a time as the stream is consumed, e.g. only the first page
+     * is read if the stream is limited to fewer meetings than a page.
+     *
+     * @param contact one of the user's contacts
+     * @return the stream of future meetings (maybe empty)
+     * @throws NullPointerException if the contact is null
+     * @throws IllegalArgumentException if the contact does not exist
+     */
+    default Stream<Meeting> getFutureMeetingStream(Contact contact) {
+        return MeetingPage.stream(getFutureMeetingPage(contact, MeetingCursor.START, MeetingPage.STREAM_PAGE),
+                after -> getFutureMeetingPage(contact, after, MeetingPage.STREAM_PAGE));
+    }
+
+    /**
+     * Returns the past meetings in which this contact has participated as a Stream, in chronological order.
+     * The meetings are read a page at a time as the stream is consumed, e.g. only the first page
+     * is read if the stream is limited to fewer meetings than a page.
+     *
+     * @param contact one of the user's contacts
+     * @return the stream of past meetings (maybe empty)
+     * @throws NullPointerException if the contact is null
+     * @throws IllegalArgumentException if the contact does not exist
+     */
+    default Stream<PastMeeting> getPastMeetingStream(Contact contact) {
+        return MeetingPage.stream(getPastMeetingPage(contact, MeetingCursor.START, MeetingPage.STREAM_PAGE),
+                after -> getPastMeetingPage(contact, after, MeetingPage.STREAM_PAGE));
+    }
+
     /**
      * Save all data to disk.
      *
@@ -1,35 +1,451 @@
-import java.io.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
 
 /**
  * Implementation of interface {@see ContactManager}
  *
+ * The public methods are synchronized on the ContactManager, so that due FutureMeetings can be
+ * converted to PastMeetings by a background {@see MeetingSweeper} while the ContactManager is in use.
+ * The data is saved by a background thread too (see flushAsync()), which holds the lock only while
+ * it captures the data, and not while it writes it.
+ * The lists of future meetings of the contacts and of the days most often requested can be kept in
+ * a {@see ResultCache} (see setResultCache()).
+ * A ContactManager should be closed when no longer used, to stop its flusher thread and release the
+ * file of its log.
+ *
  * @author federico.bartolomei (BBK-PiJ-2014-21)
  */
-public class ContactManagerImpl implements ContactManager {
+public class ContactManagerImpl implements ContactManager, AutoCloseable {
+    private static final Path FILE = Paths.get("Contact.txt");
+    private static final long MIN_COMPACTION = 1 << 20;
+    private static final int EXPORT_CHUNK = 1 << 12;
+    private static final int IMPORT_BATCH = 1 << 16;
+    private static final long MAX_DAY = 48 * 60 * 60 * 1000L;   // longer than any day of any time zone
+    private final Path file;
+    private final Clock clock;
+    private final StorageMode mode;
+    private final WriteAheadLog log;
     private IdCreatorImpl idCreator;
     private Set<Contact> contactSet;
-    private List<Meeting> meetings;
+    private IntHashMap<Contact> contactIndex;
+    private NameIndex contactsByName;
+    private PrefixIndex contactsByPrefix;
+    private MeetingStore meetingStore;
+    private DateIndex meetingsByDate;
+    private IntHashMap<DateIndex> meetingsByContact;
+    private DateIndex pendingMeetings;
+    private Snapshot unloaded;
+    private boolean unloadedRead;   // whether contacts or meetings have been returned from the unloaded snapshot
+    private final Metrics metrics = new Metrics();
+    private long scanned;       // the index entries visited by the current call, for the metrics
+    private long conversions;   // the meetings converted by the current call, for the metrics
+    private long cacheHits;     // the results of the current call found in the caches, for the metrics
+    private ResultCache<Integer, FutureList> futureByContact;   // null if the caches are disabled
+    private ResultCache<DayRange, Meeting[]> meetingsByDay;     // null if the caches are disabled
+    private final TreeSet<DayRange> cachedDays = new TreeSet<>();   // the keys of meetingsByDay
+    private final Object flushLock = new Object();  // guards the three fields below
+    private FlushGroup nextFlush;   // the flush joined by the requests made now, not started yet
+    private boolean flushing;       // whether the flusher is running
+    private boolean closed;         // whether close() has been called
+    private final ExecutorService flusher = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "ContactManagerFlusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private final ContactImpl.NotesWriter notesWriter = this::addContactNotes;
+    private final ContactResolver resolver = id -> {
+        synchronized (this) {   // the contacts of a meeting may be read while a contact is added
+            return contactIndex.get(id);
+        }
+    };
 
     /**
      * Constructor for the ContactManager. If a file called "Contact.txt" is found on the same folder,
-     * all the fields will be de-serialized to restore the last version of the ContactManager.
+     * the {@see Snapshot} saved in it is read to restore the last version of the ContactManager.
      * Otherwise a new instance would start from scratch.
+     * The meetings are saved to disk as a list, and held in memory by a columnar {@see MeetingStore}
+     * and by the indexes built from it: by date, and by date for each contact.
+     *
+     * @throws UncheckedIOException if the file exists but cannot be read, or has a log which is not empty.
      */
     public ContactManagerImpl() {
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream("Contact.txt"))) {
-            idCreator = (IdCreatorImpl) in.readObject();
-            contactSet = (LinkedHashSet) in.readObject();
-            meetings = (LinkedList) in.readObject();
-        } catch (FileNotFoundException fl) {    // initialize a new ContactManager from scratch
-            idCreator = new IdCreatorImpl();
-            contactSet = new LinkedHashSet<>();
-            meetings = new LinkedList<>();
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Constructor for a ContactManager which uses the given clock to decide whether a meeting is
+     * in the past or in the future (e.g. a fixed clock, to make tests and benchmarks deterministic).
+     * The clock is read once at the beginning of each operation, so every meeting visited by an
+     * operation is compared with the same current time.
+     * Data is restored from the file "Contact.txt" as for {@see #ContactManagerImpl()}.
+     *
+     * @param clock the clock giving the current time.
+     * @throws NullPointerException if the clock is null.
+     * @throws UncheckedIOException if the file exists but cannot be read, or has a log which is not empty.
+     */
+    public ContactManagerImpl(Clock clock) {
+        this(FILE, clock, StorageMode.SNAPSHOT);
+    }
+
+    /**
+     * Constructor for a ContactManager which saves its data to the given file, in the given mode.
+     * Data is restored from the {@see Snapshot} in the file, if it exists.
+     * In mode WRITE_AHEAD_LOG the changes are also recorded in a {@see WriteAheadLog} in the same folder,
+     * with the name of the file followed by ".log": the changes recorded after the last snapshot are
+     * replayed on top of it, so that every change saved by flush() is restored. The notes added to the
+     * contacts are recorded too, through the {@see ContactImpl.NotesWriter} of the ContactManager.
+     * In mode MAPPED the file is only memory-mapped here: the contacts and meetings requested by id are
+     * decoded from it one at a time, and the whole data is loaded by the first call of any other method.
+     * In the other modes the file cannot be opened while its log holds changes, which would otherwise be
+     * lost: it must be opened in mode WRITE_AHEAD_LOG and compacted first.
+     *
+     * @param file the file where the data is saved.
+     * @param clock the clock giving the current time.
+     * @param mode the way the data is saved.
+     * @throws NullPointerException if any of the arguments is null.
+     * @throws UncheckedIOException if the file or the log exist but cannot be read
+     *     (in mode MAPPED, possibly when the ContactManager is first used), or if the log is not empty
+     *     and the mode is not WRITE_AHEAD_LOG.
+     */
+    public ContactManagerImpl(Path file, Clock clock, StorageMode mode) {
+        if (file == null || clock == null || mode == null) {
+            throw new NullPointerException("Argument cannot be null");
+        }
+        this.file = file;
+        this.clock = clock;
+        this.mode = mode;
+        Path logFile = file.resolveSibling(file.getFileName() + ".log");
+        if (mode != StorageMode.WRITE_AHEAD_LOG) {
+            checkNoLog(logFile);
+        }
+        Snapshot snapshot;
+        try {
+            snapshot = mode == StorageMode.MAPPED ? Snapshot.map(file) : Snapshot.read(file);
+        } catch (NoSuchFileException fl) {  // initialize a new ContactManager from scratch
+            IdCreatorImpl fresh = new IdCreatorImpl();
+            snapshot = new Snapshot(fresh.getLastContactId(), fresh.getLastMeetingId(),
+                    new ArrayList<>(), new ArrayList<>());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read " + file, ex);
+        }
+        if (mode == StorageMode.MAPPED) {
+            unloaded = snapshot;
+        } else {
+            load(snapshot);
+        }
+        if (mode == StorageMode.WRITE_AHEAD_LOG) {
+            try {
+                WriteAheadLog wal = new WriteAheadLog(logFile);
+                try {
+                    Recovery recovery = new Recovery();
+                    wal.replay(recovery);
+                    idCreator = new IdCreatorImpl(recovery.lastContactId, recovery.lastMeetingId);
+                } catch (IOException | RuntimeException ex) {
+                    wal.close();
+                    throw ex;
+                }
+                log = wal;  // assigned after the replay, so that the changes replayed are not logged again
+                for (Contact c : contactSet) {
+                    recordNotes(c);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot read " + logFile, ex);
+            } catch (IllegalArgumentException ex) {     // a meeting id not issued in order
+                throw new UncheckedIOException(new IOException("Invalid log " + logFile + ": " + ex.getMessage(), ex));
+            }
+        } else {
+            log = null;
+        }
+    }
+
+    /**
+     * Check that there is no log of changes next to the file, as a ContactManager in mode WRITE_AHEAD_LOG
+     * leaves until it is compacted. The changes in the log are only read in that mode: in the others they
+     * would be lost, and their ids issued again.
+     *
+     * @param logFile the file of the log.
+     * @throws UncheckedIOException if the log is not empty, or its size cannot be read.
+     */
+    private static void checkNoLog(Path logFile) {
+        try {
+            if (Files.exists(logFile) && Files.size(logFile) > 0) {
+                throw new UncheckedIOException(new IOException("The log " + logFile + " has changes not in the snapshot:"
+                        + " open it in mode WRITE_AHEAD_LOG and compact it first"));
+            }
         } catch (IOException ex) {
-            ex.printStackTrace();
-        } catch (ClassNotFoundException cl) {
-            cl.printStackTrace();
+            throw new UncheckedIOException("Cannot read " + logFile, ex);
+        }
+    }
+
+    /**
+     * In mode WRITE_AHEAD_LOG, have the notes added to a contact recorded in the log.
+     *
+     * @param contact a contact of the ContactManager.
+     */
+    private void recordNotes(Contact contact) {
+        if (log != null && contact instanceof ContactImpl) {
+            ((ContactImpl) contact).setNotesWriter(notesWriter);
+        }
+    }
+
+    /**
+     * Add notes to a contact and record them in the log, holding the lock of the ContactManager so that
+     * the notes are logged in the order they are added.
+     *
+     * @param contact a contact of the ContactManager.
+     * @param text the notes to be added.
+     */
+    private synchronized void addContactNotes(ContactImpl contact, String text) {
+        log.logContactNotes(contact.getId(), contact.appendNotes(text), text);
+    }
+
+    /**
+     * Build the state of the ContactManager from a snapshot: the contacts, and the indexes of the meetings.
+     *
+     * @param snapshot the snapshot to be loaded.
+     */
+    private void load(Snapshot snapshot) {
+        idCreator = new IdCreatorImpl(snapshot.getLastContactId(), snapshot.getLastMeetingId());
+        contactSet = new LinkedHashSet<>(snapshot.getContacts());
+        List<Meeting> meetings = snapshot.getMeetings();
+        contactIndex = new IntHashMap<>(contactSet.size());
+        contactsByName = new NameIndex();
+        contactsByPrefix = new PrefixIndex();
+        for (Contact c : contactSet) {
+            contactIndex.put(c.getId(), c);
+            contactsByName.add(c.getId(), c.getName());
+            contactsByPrefix.add(c.getName(), c.getId());
+        }
+        meetingStore = new MeetingStore(resolver);
+        meetingStore.setLastId(snapshot.getLastMeetingId());
+        meetingStore.ensureCapacity(meetings.size(), 0);   // the ids are expected to be dense
+        meetingsByDate = new DateIndex();
+        meetingsByContact = new IntHashMap<>(contactSet.size());
+        pendingMeetings = new DateIndex();
+        try {
+            for (Meeting m : meetings) {
+                addMeeting(m.getId(), dateOf(m), attendeesOf(m),
+                        m instanceof PastMeeting ? ((PastMeeting) m).getNotes() : null);
+            }
+        } catch (IllegalArgumentException ex) {     // an id not issued, or repeated
+            throw new UncheckedIOException(new IOException("Invalid snapshot " + file + ": " + ex.getMessage(), ex));
+        }
+        if (futureByContact != null) {
+            futureByContact.invalidateAll();
+            meetingsByDay.invalidateAll();
+        }
+    }
+
+    /**
+     * In mode MAPPED, load the mapped snapshot the first time the ContactManager is used.
+     * Every public method calls this before reading or changing the state, except the ones which
+     * find contacts or meetings by id: they are decoded from the snapshot until it is loaded (see
+     * readUnloaded()).
+     */
+    private void ensureLoaded() {
+        if (unloaded != null) {
+            load(unloaded);
+            unloaded = null;
+        }
+    }
+
+    /**
+     * In mode MAPPED, before the snapshot is loaded, returns a meeting decoded from it on its own.
+     * The contacts and meetings decoded this way are the ones the ContactManager holds once the snapshot
+     * is loaded, so a contact keeps the notes added to it; a meeting, though, does not show the changes
+     * made after the snapshot is loaded.
+     *
+     * @param id the id of the meeting.
+     * @return the meeting, or null if the snapshot has no meeting with that id.
+     */
+    private Meeting readUnloaded(int id) {
+        unloadedRead = true;
+        return unloaded.getMeeting(id);
+    }
+
+    /**
+     * Applies the changes read from the {@see WriteAheadLog} to the data restored from the snapshot.
+     * A change which is already part of the snapshot is skipped, and the last ids found in the log
+     * are kept so that new ids are not reused.
+     */
+    private class Recovery implements WriteAheadLog.Handler {
+        private int lastContactId = idCreator.getLastContactId();
+        private int lastMeetingId = idCreator.getLastMeetingId();
+
+        @Override
+        public void contactAdded(int id, String name, String notes) {
+            if (contactIndex.get(id) == null) {
+                Contact contact = new ContactImpl(name, id, notes);
+                contactSet.add(contact);
+                contactIndex.put(id, contact);
+                contactsByName.add(id, name);
+                contactsByPrefix.add(name, id);
+            }
+            lastContactId = Math.max(lastContactId, id);
+        }
+
+        @Override
+        public void meetingAdded(int id, long date, String notes, int[] contacts) {
+            if (!meetingStore.contains(id)) {
+                meetingStore.setLastId(lastMeetingId + 1);     // the ids are logged in the order they are issued
+                int[] ids = contacts.clone();
+                Arrays.sort(ids);
+                addMeeting(id, date, ids, notes);
+            }
+            lastMeetingId = Math.max(lastMeetingId, id);
+        }
 
+        @Override
+        public void notesAdded(int id, int previousLength, String text) {
+            if (previousLength < 0 && meetingStore.isFuture(id)) {
+                convertToPastMeeting(id, text);
+            } else if (meetingStore.isPast(id) && meetingStore.notesOf(id).length() == previousLength) {
+                appendNotes(id, text);
+            }
+        }
+
+        @Override
+        public void meetingPromoted(int id) {
+            if (meetingStore.isFuture(id)) {
+                convertToPastMeeting(id);
+            }
+        }
+
+        @Override
+        public void contactNotesAdded(int id, int previousLength, String text) {
+            Contact contact = contactIndex.get(id);
+            if (contact != null && contact.getNotes().length() == previousLength) {
+                contact.addNotes(text);
+            }
+        }
+    }
+
+    /**
+     * Add a stored meeting to the chronological indexes: the one of all the meetings and the one
+     * of each of its contacts.
+     *
+     * @param id the id of the meeting to be indexed.
+     */
+    private void indexByDate(int id) {
+        long date = meetingStore.dateOf(id);
+        meetingsByDate.add(date, id);
+        meetingStore.forEachAttendee(id, c -> {
+            DateIndex postings = meetingsByContact.get(c);
+            if (postings == null) {
+                postings = new DateIndex();
+                meetingsByContact.put(c, postings);
+            }
+            postings.add(date, id);
+        });
+    }
+
+    /**
+     * Add a new meeting to the {@see MeetingStore} and to the chronological indexes.
+     * New FutureMeetings are also queued by date, to be converted when they become due.
+     *
+     * @param id the id of the meeting.
+     * @param date the date of the meeting, in milliseconds since the epoch.
+     * @param attendees the sorted ids of the contacts of the meeting.
+     * @param notes the notes of a PastMeeting, or null for a FutureMeeting.
+     */
+    private void addMeeting(int id, long date, int[] attendees, String notes) {
+        meetingStore.add(id, date, attendees, notes);
+        indexByDate(id);
+        if (notes == null) {
+            pendingMeetings.add(date, id);
+        }
+        invalidateCaches(date, attendees, notes == null);
+    }
+
+    /**
+     * Remove from the caches the results which a new meeting would be part of: the lists of the day of
+     * the meeting and, if it is a FutureMeeting or has a future date, the future meetings of its contacts.
+     * A PastMeeting with a past date cannot appear in a list of future meetings, which only keeps the
+     * meetings after the current time.
+     *
+     * @param date the date of the meeting.
+     * @param attendees the ids of the contacts of the meeting.
+     * @param future whether the meeting is a FutureMeeting.
+     */
+    private void invalidateCaches(long date, int[] attendees, boolean future) {
+        if (futureByContact == null) {
+            return;
+        }
+        if (future || date > clock.millis()) {
+            for (int c : attendees) {
+                futureByContact.invalidate(c);
+            }
+        }
+        invalidateDay(date);
+    }
+
+    /**
+     * Remove from the cache the lists of meetings of the days which contain a date, because a meeting
+     * on that date has been added or converted.
+     *
+     * @param date the date of the meeting changed.
+     */
+    private void invalidateDay(long date) {
+        if (meetingsByDay == null || cachedDays.isEmpty()) {
+            return;
+        }
+        List<DayRange> days = new ArrayList<>(cachedDays.subSet(new DayRange(date - MAX_DAY, Long.MIN_VALUE), true,
+                new DayRange(date, Long.MAX_VALUE), true));
+        for (DayRange day : days) {
+            if (day.to > date) {
+                meetingsByDay.invalidate(day);
+            }
+        }
+    }
+
+    /**
+     * Returns the date of a meeting in milliseconds since the epoch, without creating a Calendar
+     * for the meetings implemented by this package.
+     *
+     * @param m a meeting.
+     * @return the date of the meeting, in milliseconds since the epoch.
+     */
+    static long dateOf(Meeting m) {
+        if (m instanceof MeetingStore.View) {
+            return ((MeetingStore.View) m).getTimeInMillis();
+        } else if (m instanceof MeetingImpl) {
+            return ((MeetingImpl) m).getTimeInMillis();
+        } else {
+            return m.getDate().getTimeInMillis();
+        }
+    }
+
+    /**
+     * Returns the ids of the contacts of a meeting, in ascending order, without resolving the contacts
+     * if the meeting is a MeetingImpl or a view of a {@see MeetingStore}. The array must not be modified.
+     *
+     * @param m the meeting.
+     * @return the sorted ids of the contacts of the meeting.
+     */
+    static int[] attendeesOf(Meeting m) {
+        if (m instanceof MeetingStore.View) {
+            return ((MeetingStore.View) m).getAttendeeIds();
+        } else if (m instanceof MeetingImpl) {
+            return ((MeetingImpl) m).getAttendeeIds();
+        } else {
+            return AttendeeSet.copyOf(m.getContacts()).ids();
         }
     }
 
@@ -52,61 +468,105 @@ public class ContactManagerImpl implements ContactManager {
     }
 
     /**
-     * Sort a list of Meetings by date and time
+     * Returns the list of the meetings whose date is in the range [from, to), in chronological order.
      *
-     * @param list the list to be sorted.
+     * @param from the first date of the range (inclusive), in milliseconds since the epoch.
+     * @param to the last date of the range (exclusive), in milliseconds since the epoch.
+     * @return the list of meetings in the range.
      */
-    private void sortMeetingsDate(List<? extends Meeting> list) {
-        list.sort((date1, date2) -> date1.getDate().compareTo(date2.getDate()));
+    private List<Meeting> meetingsInRange(long from, long to) {
+        List<Meeting> list = new ArrayList<>();
+        meetingsByDate.forEachInRange(from, to, id -> list.add(meetingStore.get(id)));
+        return list;
     }
 
     /**
-     * Compare the date (year, month, day) of two Calendar instances,
-     * without checking the time, and return whether the three fields are equals
-     * (i.e. if the two dates are the same, regardless of the hours, minutes, etc.)
+     * Returns a meeting with a past date as a PastMeeting, converting it without notes if it is
+     * still a FutureMeeting.
+     * This method is called from getPastMeeting(id), getPastMeetingList(Contact) and getPastMeetingPage().
      *
-     * @param date1 a Calendar date.
-     * @param date2 a Calendar date.
-     * @return true if the two dates are equals (in terms of year, month and day), false otherwise.
+     * @param id the id of the meeting.
+     * @return the PastMeeting.
      */
-    private boolean sameDate(Calendar date1, Calendar date2) {
-        if (date1.get(Calendar.YEAR) == date2.get(Calendar.YEAR)) {
-            if (date1.get(Calendar.MONTH) == date2.get(Calendar.MONTH)) {
-                if (date1.get(Calendar.DAY_OF_MONTH) == date2.get(Calendar.DAY_OF_MONTH)) {
-                    return true;
-                }
-            }
+    private PastMeeting pastMeeting(int id) {
+        if (meetingStore.isFuture(id)) {
+            convertToPastMeeting(id);
         }
-        return false;
+        return (PastMeeting) meetingStore.get(id);
     }
 
     /**
      * Convert a FutureMeeting to PastMeeting, without adding notes.
-     * This method is called from getPastMeeting(id) and getPastMeetingList(Set<Contact>)
-     * when a matching FutureMeeting with a past date is found.
      *
-     * @param f the FutureMeeting to be converted to PastMeeting.
+     * @param id the id of the FutureMeeting to be converted to PastMeeting.
      */
-    private PastMeeting convertToPastMeeting(FutureMeeting f) {
-        PastMeeting p = new PastMeetingImpl(f.getDate(), f.getContacts(), f.getId());
-        meetings.remove(f);
-        meetings.add(p);
-        return p;
+    private void convertToPastMeeting(int id) {
+        convertToPastMeeting(id, "");
     }
 
     /**
      * Convert a FutureMeeting to PastMeeting, with notes.
      * This method is called from addMeetingNotes()
      *
-     * @param f the FutureMeeting to be converted to PastMeeting.
+     * @param id the id of the FutureMeeting to be converted to PastMeeting.
      * @param notes the notes to be added to the PastMeeting.
-     * @return the converted PastMeeting.
      */
-    private PastMeeting convertToPastMeeting(FutureMeeting f, String notes) {
-        PastMeeting p = new PastMeetingImpl(f.getDate(), f.getContacts(), f.getId(), notes);
-        meetings.remove(f);
-        meetings.add(p);
-        return p;
+    private void convertToPastMeeting(int id, String notes) {
+        meetingStore.convert(id, notes);
+        pendingMeetings.remove(meetingStore.dateOf(id), id);
+        invalidateDay(meetingStore.dateOf(id));
+        conversions++;
+        if (log != null) {
+            if (notes.isEmpty()) {
+                log.logPromotion(id);
+            } else {
+                log.logNotes(id, -1, notes);
+            }
+        }
+    }
+
+    /**
+     * Add notes to a PastMeeting, after the ones it already has.
+     * The meeting is updated in place: its {@see Notes} are appended to, and are not copied.
+     *
+     * @param id the id of the PastMeeting to be updated.
+     * @param text the notes to be added.
+     */
+    private void appendNotes(int id, String text) {
+        Notes notes = meetingStore.notesOf(id);
+        if (log != null) {
+            log.logNotes(id, notes.length(), text);
+        }
+        notes.append(text);
+    }
+
+    /**
+     * Convert to PastMeetings (without notes) the FutureMeetings whose date has passed,
+     * starting from the earliest one, up to a maximum number.
+     * This method is called by a {@see MeetingSweeper}, so that the conversion does not happen
+     * while serving a query; the queries still convert a due FutureMeeting they find, if the
+     * sweeper has not reached it yet.
+     *
+     * @param max the maximum number of meetings to convert.
+     * @return the number of meetings converted.
+     * @throws IllegalArgumentException if max is negative.
+     */
+    public synchronized int promoteDueMeetings(int max) {
+        long start = startCall();
+        ensureLoaded();
+        if (max < 0) {
+            throw new IllegalArgumentException("The number of meetings cannot be negative");
+        }
+        int promoted = pendingMeetings.removeBefore(clock.millis(), max, id -> {
+            meetingStore.convert(id, "");
+            invalidateDay(meetingStore.dateOf(id));
+            if (log != null) {
+                log.logPromotion(id);
+            }
+        });
+        conversions = promoted;
+        endCall(Metrics.Operation.PROMOTE_DUE_MEETINGS, start, promoted);
+        return promoted;
     }
 
     /**
@@ -125,17 +585,23 @@ public class ContactManagerImpl implements ContactManager {
      *     or if any contact is unknown / non-existent
      */
     @Override
-    public int addFutureMeeting(Set<Contact> contacts, Calendar date) {
+    public synchronized int addFutureMeeting(Set<Contact> contacts, Calendar date) {
+        long start = startCall();
+        ensureLoaded();
         if(contacts == null || date == null) {
             throw new NullPointerException("Argument cannot be null");
         } else if(!checkContacts(contacts)) {
             throw new IllegalArgumentException("All the contacts of the meeting need to be valid");
-        } else if(date.before(Calendar.getInstance())) {
+        } else if(date.getTimeInMillis() < clock.millis()) {
             throw new IllegalArgumentException("Cannot create a FutureMeeting with a past date");
         } else {
             int id = idCreator.createMeetingId();
-            FutureMeeting meeting = new FutureMeetingImpl(date, contacts, id);
-            meetings.add(meeting);
+            meetingStore.setLastId(id);
+            addMeeting(id, date.getTimeInMillis(), AttendeeSet.of(contacts, resolver).ids(), null);
+            if (log != null) {
+                log.logMeeting(id, date.getTimeInMillis(), null, contacts);
+            }
+            endCall(Metrics.Operation.ADD_FUTURE_MEETING, start, 1);
             return id;
         }
     }
@@ -151,21 +617,27 @@ public class ContactManagerImpl implements ContactManager {
      * @throws IllegalArgumentException if there is a meeting with that ID happening in the future
      */
     @Override
-    public PastMeeting getPastMeeting(int id) {
-        for(Meeting m : meetings) {
-            if(m.getId()==id) {
-                if (m.getDate().after(Calendar.getInstance())) {
-                    throw new IllegalArgumentException("Meeting " + id + " is happening in the future");
-                } else {
-                    if (m instanceof FutureMeeting) {
-                        return convertToPastMeeting((FutureMeeting) m);
-                    } else {
-                        return (PastMeeting) m;
-                    }
-                }
+    public synchronized PastMeeting getPastMeeting(int id) {
+        long start = startCall();
+        Meeting m = unloaded == null ? null : readUnloaded(id);
+        PastMeeting p;
+        if (unloaded != null && (m == null || m instanceof PastMeeting)) {   // no conversion is needed
+            if (m != null && dateOf(m) > clock.millis()) {
+                throw new IllegalArgumentException("Meeting " + id + " is happening in the future");
+            }
+            p = (PastMeeting) m;
+        } else {
+            ensureLoaded();
+            if (!meetingStore.contains(id)) {
+                p = null;
+            } else if (meetingStore.dateOf(id) > clock.millis()) {
+                throw new IllegalArgumentException("Meeting " + id + " is happening in the future");
+            } else {
+                p = pastMeeting(id);
             }
         }
-        return null;
+        endCall(Metrics.Operation.GET_PAST_MEETING, start, p == null ? 0 : 1);
+        return p;
     }
 
     /**
@@ -176,17 +648,22 @@ public class ContactManagerImpl implements ContactManager {
      * @throws IllegalArgumentException if there is a meeting with that ID happening in the past
      */
     @Override
-    public FutureMeeting getFutureMeeting(int id) {
-        for(Meeting m : meetings) {
-            if(m.getId()==id) {
-                if(m.getDate().before(Calendar.getInstance())) {
-                    throw new IllegalArgumentException("Meeting " + id + " is happening in the past");
-                } else {
-                    return (FutureMeeting)m;
-                }
+    public synchronized FutureMeeting getFutureMeeting(int id) {
+        long start = startCall();
+        Meeting m = unloaded == null ? null : readUnloaded(id);
+        if (unloaded != null && (m == null || m instanceof FutureMeeting)) {
+            if (m != null && dateOf(m) < clock.millis()) {
+                throw new IllegalArgumentException("Meeting " + id + " is happening in the past");
+            }
+        } else {
+            ensureLoaded();
+            if (meetingStore.contains(id) && meetingStore.dateOf(id) < clock.millis()) {
+                throw new IllegalArgumentException("Meeting " + id + " is happening in the past");
             }
+            m = meetingStore.get(id);
         }
-        return null;
+        endCall(Metrics.Operation.GET_FUTURE_MEETING, start, m == null ? 0 : 1);
+        return (FutureMeeting) m;
     }
 
     /**
@@ -196,13 +673,11 @@ public class ContactManagerImpl implements ContactManager {
      * @return the meeting with the requested ID, or null if it there is none
      */
     @Override
-    public Meeting getMeeting(int id) {
-        for(Meeting m : meetings) {
-            if(m.getId()==id) {
-                return m;
-            }
-        }
-        return null;
+    public synchronized Meeting getMeeting(int id) {
+        long start = startCall();
+        Meeting m = unloaded == null ? meetingStore.get(id) : readUnloaded(id);
+        endCall(Metrics.Operation.GET_MEETING, start, m == null ? 0 : 1);
+        return m;
     }
 
     /**
@@ -212,24 +687,42 @@ public class ContactManagerImpl implements ContactManager {
      * That is, a Contact object with matching name, id and notes passed as parameter would still throw an
      * exception if it is not a reference of the corresponding Contact in contactSet
      *
+     * Only the meetings of the contact are visited, through its chronological index. If the cache is
+     * enabled, the list is taken from it when it has been computed since the last change to the future
+     * meetings of the contact, dropping the meetings which have become due since.
+     *
      * @param contact one of the user's contacts
      * @return the list of future meeting(s) scheduled with this contact (maybe empty)
      * @throws IllegalArgumentException if the contact does not exist
      */
     @Override
-    public List<Meeting> getFutureMeetingList(Contact contact) {
+    public synchronized List<Meeting> getFutureMeetingList(Contact contact) {
+        long start = startCall();
+        ensureLoaded();
         if(contact == null) {
             throw new NullPointerException("Cannot have a null contact");
         } else if(!contactSet.contains(contact)) {
             throw new IllegalArgumentException(contact.getName() + " has not been added to the list of contacts");
         } else {
-            List<Meeting> list = new LinkedList<>();
-            for (Meeting m : meetings) {
-                if(m.getDate().after(Calendar.getInstance()) && (m.getContacts().contains(contact))) {
-                    list.add(m);
+            long now = clock.millis();
+            FutureList cached = futureByContact == null ? null : futureByContact.get(contact.getId());
+            List<Meeting> list;
+            if (cached != null && now >= cached.computedAt) {
+                list = cached.after(now);
+                cacheHits++;
+                scanned = 0;
+            } else {
+                List<Meeting> found = new ArrayList<>();
+                DateIndex postings = meetingsByContact.get(contact.getId());
+                if (postings != null) {
+                    postings.forEachInRange(now + 1, Long.MAX_VALUE, id -> found.add(meetingStore.get(id)));
+                }
+                if (futureByContact != null) {
+                    futureByContact.put(contact.getId(), new FutureList(found, now));
                 }
+                list = found;
             }
-            sortMeetingsDate(list);
+            endCall(Metrics.Operation.GET_FUTURE_MEETING_LIST, start, list.size());
             return list;
         }
     }
@@ -238,6 +731,9 @@ public class ContactManagerImpl implements ContactManager {
      * {@inheritDoc}
      *
      * The parameter date will use only the date part (year, month and day) and ignore the time.
+     * The meetings of that day are read as a range of the index by date, from midnight to midnight
+     * in the time zone of the parameter. If the cache is enabled, the list is taken from it when it has
+     * been computed since the last meeting of that day was added or converted.
      *
      * As this implementation manages the creation of meeting ids itself,
      * "duplicate" meetings and contacts (i.e. with same id) are automatically avoided.
@@ -248,17 +744,60 @@ public class ContactManagerImpl implements ContactManager {
      * @return the list of meetings
      */
     @Override
-    public List<Meeting> getFutureMeetingList(Calendar date) {
+    public synchronized List<Meeting> getFutureMeetingList(Calendar date) {
+        long start = startCall();
+        ensureLoaded();
         if (date == null) {
             throw new NullPointerException("Cannot have a null date");
         } else {
-            List<Meeting> list = new LinkedList<>();
-            for (Meeting m : meetings) {
-                if (sameDate(m.getDate(), date)) {
-                    list.add(m);
+            Calendar day = (Calendar) date.clone();
+            day.set(Calendar.HOUR_OF_DAY, 0);
+            day.set(Calendar.MINUTE, 0);
+            day.set(Calendar.SECOND, 0);
+            day.set(Calendar.MILLISECOND, 0);
+            long from = day.getTimeInMillis();
+            day.add(Calendar.DAY_OF_MONTH, 1);
+            DayRange key = new DayRange(from, day.getTimeInMillis());
+            Meeting[] cached = meetingsByDay == null ? null : meetingsByDay.get(key);
+            List<Meeting> list;
+            if (cached != null) {
+                list = new ArrayList<>(Arrays.asList(cached));
+                cacheHits++;
+                scanned = 0;
+            } else {
+                list = meetingsInRange(key.from, key.to);
+                if (meetingsByDay != null) {
+                    cachedDays.add(key);    // before put(), which may evict the new entry at once
+                    meetingsByDay.put(key, list.toArray(new Meeting[0]));
                 }
             }
-            sortMeetingsDate(list);
+            endCall(Metrics.Operation.GET_FUTURE_MEETING_LIST_BY_DATE, start, list.size());
+            return list;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * FutureMeetings with a past date are returned as they are, without being converted to PastMeetings.
+     *
+     * @param from the first date of the range (inclusive)
+     * @param to the end of the range (exclusive)
+     * @return the list of meetings in the range (maybe empty)
+     * @throws NullPointerException if any of the arguments is null
+     * @throws IllegalArgumentException if from is after to
+     */
+    @Override
+    public synchronized List<Meeting> getMeetings(Calendar from, Calendar to) {
+        long start = startCall();
+        ensureLoaded();
+        if (from == null || to == null) {
+            throw new NullPointerException("Cannot have a null date");
+        } else if (from.after(to)) {
+            throw new IllegalArgumentException("The start of the range cannot be after its end");
+        } else {
+            List<Meeting> list = meetingsInRange(from.getTimeInMillis(), to.getTimeInMillis());
+            endCall(Metrics.Operation.GET_MEETINGS, start, list.size());
             return list;
         }
     }
@@ -268,6 +807,7 @@ public class ContactManagerImpl implements ContactManager {
      *
      * If a meeting with matching contacts is a FutureMeeting with a past date,
      * it will be converted to a PastMeeting without notes
+     * Only the meetings of the contact are visited, through its chronological index.
      *
      * As this implementation manages the creation of meeting ids itself,
      * "duplicate" meetings and contacts (i.e. with same id) are automatically avoided.
@@ -279,24 +819,21 @@ public class ContactManagerImpl implements ContactManager {
      * @throws IllegalArgumentException if the contact does not exist
      */
     @Override
-    public List<PastMeeting> getPastMeetingList(Contact contact) {
+    public synchronized List<PastMeeting> getPastMeetingList(Contact contact) {
+        long start = startCall();
+        ensureLoaded();
         if(contact == null) {
             throw new NullPointerException("Cannot have null argument");
         } else if(!contactSet.contains(contact)) {
             throw new IllegalArgumentException(contact.getName() + " has not been added to the Contacts list");
         } else {
-            List<PastMeeting> list = new LinkedList<>();
-            for(Meeting m : meetings) {
-                if(m.getDate().before(Calendar.getInstance()) && m.getContacts().contains(contact)) {
-                    if (m instanceof FutureMeeting) {
-                        PastMeeting converted = convertToPastMeeting((FutureMeeting) m);
-                        list.add(converted);
-                    } else {
-                        list.add((PastMeeting) m);
-                    }
-                }
+            List<PastMeeting> list = new ArrayList<>();
+            DateIndex postings = meetingsByContact.get(contact.getId());
+            if (postings != null) {
+                long now = clock.millis();
+                postings.forEachInRange(Long.MIN_VALUE, now, id -> list.add(pastMeeting(id)));
             }
-            sortMeetingsDate(list);
+            endCall(Metrics.Operation.GET_PAST_MEETING_LIST, start, list.size());
             return list;
         }
     }
@@ -316,19 +853,25 @@ public class ContactManagerImpl implements ContactManager {
      * @throws NullPointerException if any of the arguments is null
      */
     @Override
-    public void addNewPastMeeting(Set<Contact> contacts, Calendar date, String text) {
+    public synchronized void addNewPastMeeting(Set<Contact> contacts, Calendar date, String text) {
+        long start = startCall();
+        ensureLoaded();
         if (contacts == null || date == null || text == null) {
             throw new NullPointerException("Cannot have a null argument");
         } else if (contacts.isEmpty()) {
             throw new IllegalArgumentException("The set of contacts is empty");
-        } else if (Calendar.getInstance().before(date)) {
+        } else if (date.getTimeInMillis() > clock.millis()) {
             throw new IllegalArgumentException("Cannot create a past meeting with a future date");
         } else if (!checkContacts(contacts)) {
             throw new IllegalArgumentException("All the contacts of the meeting need to be valid");
         } else {
             int id = idCreator.createMeetingId();
-            PastMeeting pastMeeting = new PastMeetingImpl(date, contacts, id, text);
-            meetings.add(pastMeeting);
+            meetingStore.setLastId(id);
+            addMeeting(id, date.getTimeInMillis(), AttendeeSet.of(contacts, resolver).ids(), text);
+            if (log != null) {
+                log.logMeeting(id, date.getTimeInMillis(), text, contacts);
+            }
+            endCall(Metrics.Operation.ADD_NEW_PAST_MEETING, start, 0);
         }
     }
 
@@ -342,33 +885,22 @@ public class ContactManagerImpl implements ContactManager {
      * @throws NullPointerException if the notes are null
      */
     @Override
-    public void addMeetingNotes(int id, String text) {
+    public synchronized void addMeetingNotes(int id, String text) {
+        long start = startCall();
+        ensureLoaded();
         if (text == null) {
             throw new NullPointerException("Cannot have null notes");
         }
-        for (Meeting m : meetings) {
-            if (m.getId() == id) {  // meeting is found
-                if (m.getDate().after(Calendar.getInstance())) {
-                    throw new IllegalStateException("Meeting " + id + " is set for a date in the future.");
-                } else {
-                    PastMeeting updated;
-                    if (m instanceof PastMeeting) {
-                        if (((PastMeeting) m).getNotes().equals("")) {  // PastMeeting with no notes
-                            updated = new PastMeetingImpl(m.getDate(), m.getContacts(), m.getId(), text);
-                        } else {    // append new notes after the old ones
-                            String notes = ((PastMeeting) m).getNotes() + " " + text;
-                            updated = new PastMeetingImpl(m.getDate(), m.getContacts(), m.getId(), notes);
-                        }
-                        meetings.remove(m);
-                        meetings.add(updated);
-                    } else {    // the Meeting is a FutureMeeting to be converted
-                        convertToPastMeeting((FutureMeeting) m, text);
-                    }
-                    return;
-                }
-            }
-        }   // meeting is not found
-        throw new IllegalArgumentException("The meeting does not exist");
+        if (!meetingStore.contains(id)) {
+            throw new IllegalArgumentException("The meeting does not exist");
+        } else if (meetingStore.dateOf(id) > clock.millis()) {
+            throw new IllegalStateException("Meeting " + id + " is set for a date in the future.");
+        } else if (meetingStore.isPast(id)) {
+            appendNotes(id, text);
+        } else {    // the Meeting is a FutureMeeting to be converted
+            convertToPastMeeting(id, text);
+        }
+        endCall(Metrics.Operation.ADD_MEETING_NOTES, start, 0);
     }
 
     /**
@@ -379,12 +911,23 @@ public class ContactManagerImpl implements ContactManager {
      * @throws NullPointerException if the name or the notes are null
      */
     @Override
-    public void addNewContact(String name, String notes) {
+    public synchronized void addNewContact(String name, String notes) {
+        long start = startCall();
+        ensureLoaded();
         if(name == null || notes == null) {
             throw new NullPointerException("Argument cannot be null");
         } else {
             int id = idCreator.createContactId();
-            contactSet.add(new ContactImpl(name, id, notes));
+            Contact contact = new ContactImpl(name, id, notes);
+            contactSet.add(contact);
+            contactIndex.put(id, contact);
+            contactsByName.add(id, name);
+            contactsByPrefix.add(name, id);
+            if (log != null) {
+                log.logContact(id, name, notes);
+                recordNotes(contact);
+            }
+            endCall(Metrics.Operation.ADD_NEW_CONTACT, start, 0);
         }
     }
 
@@ -396,20 +939,18 @@ public class ContactManagerImpl implements ContactManager {
      * @throws IllegalArgumentException if any of the IDs do not correspond to a real contact
      */
     @Override
-    public Set<Contact> getContacts(int... ids) {
-        Set<Contact> contacts = new LinkedHashSet<Contact>();
+    public synchronized Set<Contact> getContacts(int... ids) {
+        long start = startCall();
+        Set<Contact> contacts = new LinkedHashSet<Contact>(ids.length * 2);
+        unloadedRead |= unloaded != null;
         for(int id : ids) {
-            boolean found = false;
-            for(Contact c : contactSet) {
-                if (c.getId() == id) {
-                    contacts.add(c);
-                    found = true;
-                }
-            }
-            if(!found) {
+            Contact c = unloaded == null ? contactIndex.get(id) : unloaded.getContact(id);
+            if(c == null) {
                 throw new IllegalArgumentException(id + " do not correspond to a real contact");
             }
+            contacts.add(c);
         }
+        endCall(Metrics.Operation.GET_CONTACTS_BY_ID, start, contacts.size());
         return contacts;
     }
 
@@ -417,37 +958,1012 @@ public class ContactManagerImpl implements ContactManager {
      * {@inheritDoc}
      *
      * If the name do not correspond to a real contact, an empty Set will be returned.
+     * Names are searched through the {@see NameIndex} of their trigrams, so only the contacts whose
+     * name contains all the trigrams of the string are checked; strings shorter than three characters
+     * are checked against every name. The contacts are returned in the order of their ids.
      *
      * @param name the string to search for
      * @return a list with the contacts whose name contains that string
      * @throws NullPointerException if the parameter is null
      */
     @Override
-    public Set<Contact> getContacts(String name) {
+    public synchronized Set<Contact> getContacts(String name) {
+        long start = startCall();
+        ensureLoaded();
         Set<Contact> contacts = new LinkedHashSet<Contact>();
         if(name == null || name.equals("")) {
             throw new NullPointerException("Name of the contact to get cannot be null or empty");
         }
-        for(Contact c : contactSet) {
-            if(c.getName().contains(name)) {
-                contacts.add(c);
+        if (NameIndex.canSearch(name)) {
+            int[] candidates = contactsByName.search(name);
+            for (int id : candidates) {
+                Contact c = contactIndex.get(id);
+                if (c.getName().contains(name)) {
+                    contacts.add(c);
+                }
+            }
+            scanned = candidates.length;
+        } else {    // too short for the index
+            for(Contact c : contactSet) {
+                if(c.getName().contains(name)) {
+                    contacts.add(c);
+                }
             }
+            scanned = contactSet.size();
         }
+        endCall(Metrics.Operation.GET_CONTACTS_BY_NAME, start, contacts.size());
         return contacts;
     }
 
     /**
      * {@inheritDoc}
+     *
+     * The contacts are read in order from the {@see PrefixIndex} of the names, starting from the first
+     * name not before the prefix, so the time taken depends on the limit rather than on the number of contacts.
+     *
+     * @param prefix the start of the names to search for (if empty, all the names match)
+     * @param limit the maximum number of contacts to return
+     * @return the first contacts in order of name whose name starts with the prefix (maybe empty)
+     * @throws NullPointerException if the prefix is null
+     * @throws IllegalArgumentException if the limit is negative
      */
     @Override
-    public void flush() {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream("Contact.txt"))) {
-            out.writeObject(idCreator);
-            out.writeObject(contactSet);
-            out.writeObject(meetings);
+    public synchronized List<Contact> getContactsByPrefix(String prefix, int limit) {
+        long start = startCall();
+        ensureLoaded();
+        if (prefix == null) {
+            throw new NullPointerException("Prefix cannot be null");
+        } else if (limit < 0) {
+            throw new IllegalArgumentException("The number of contacts cannot be negative");
+        }
+        List<Contact> contacts = new ArrayList<>(Math.min(limit, 64));
+        contactsByPrefix.forEachWithPrefix(prefix, limit, id -> contacts.add(contactIndex.get(id)));
+        endCall(Metrics.Operation.GET_CONTACTS_BY_PREFIX, start, contacts.size());
+        return contacts;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The page is read from the chronological index of the contact, starting after the cursor.
+     */
+    @Override
+    public synchronized MeetingPage<Meeting> getFutureMeetingPage(Contact contact, MeetingCursor after, int limit) {
+        long start = startCall();
+        ensureLoaded();
+        checkPage(contact, after, limit);
+        MeetingCursor from = after.atLeast(clock.millis(), Integer.MAX_VALUE);
+        MeetingPage<Meeting> page = page(contact, from, Long.MAX_VALUE, limit, id -> meetingStore.get(id));
+        endCall(Metrics.Operation.GET_FUTURE_MEETING_PAGE, start, page.getMeetings().size());
+        return page;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The page is read from the chronological index of the contact, starting after the cursor.
+     * If a meeting of the page is a FutureMeeting with a past date, it will be converted to a PastMeeting
+     * without notes.
+     */
+    @Override
+    public synchronized MeetingPage<PastMeeting> getPastMeetingPage(Contact contact, MeetingCursor after, int limit) {
+        long start = startCall();
+        ensureLoaded();
+        checkPage(contact, after, limit);
+        MeetingPage<PastMeeting> page = page(contact, after, clock.millis(), limit, this::pastMeeting);
+        endCall(Metrics.Operation.GET_PAST_MEETING_PAGE, start, page.getMeetings().size());
+        return page;
+    }
+
+    private void checkPage(Contact contact, MeetingCursor after, int limit) {
+        if (contact == null || after == null) {
+            throw new NullPointerException("Argument cannot be null");
+        } else if (!contactSet.contains(contact)) {
+            throw new IllegalArgumentException(contact.getName() + " has not been added to the list of contacts");
+        } else if (limit < 0) {
+            throw new IllegalArgumentException("The number of meetings cannot be negative");
+        }
+    }
+
+    /**
+     * Read a page of the meetings of a contact: the first ones after the cursor and before the given date,
+     * up to the limit. One more meeting is looked for, to know whether there is a next page.
+     */
+    private <T extends Meeting> MeetingPage<T> page(Contact contact, MeetingCursor after, long to, int limit,
+                                                    IntFunction<T> resolve) {
+        List<T> list = new ArrayList<>(Math.min(limit, 64));
+        DateIndex postings = meetingsByContact.get(contact.getId());
+        if (postings == null) {
+            return new MeetingPage<>(list, null);
+        }
+        int max = (int) Math.min(limit + 1L, Integer.MAX_VALUE);
+        int found = postings.forEachAfter(after.getDate(), after.getId(), to, max, id -> {
+            if (list.size() < limit) {
+                list.add(resolve.apply(id));
+            }
+        });
+        scanned = found;
+        if (found <= limit) {
+            return new MeetingPage<>(list, null);
+        } else if (list.isEmpty()) {
+            return new MeetingPage<>(list, after);
+        }
+        Meeting last = list.get(list.size() - 1);
+        return new MeetingPage<>(list, new MeetingCursor(dateOf(last), last.getId()));
+    }
+
+    /**
+     * Add many new contacts at once, e.g. when the data of a new customer is loaded.
+     * The contacts are given consecutive ids in the order of the records, and the index of the names
+     * by prefix is built once for all of them (after sorting them, in parallel if requested) instead
+     * of once for each contact, as calling addNewContact() for each record would do.
+     * The records are all read before any contact is added, so that either all of them are imported,
+     * or none if any record is null.
+     *
+     * @param records the data of the new contacts (e.g. the iterator of a Stream).
+     * @param parallel whether to sort the contacts in parallel, on the common ForkJoinPool.
+     * @return the ids of the new contacts, in the order of the records.
+     * @throws NullPointerException if the iterator or any of the records is null.
+     */
+    public synchronized int[] importContacts(Iterator<ContactRecord> records, boolean parallel) {
+        long start = startCall();
+        ensureLoaded();
+        List<ContactRecord> batch = drain(records);
+        int n = batch.size();
+        int[] ids = new int[n];
+        Contact[] added = new Contact[n];
+        contactIndex.ensureCapacity(contactIndex.size() + n);
+        for (int i = 0; i < n; i++) {
+            ContactRecord r = batch.get(i);
+            ids[i] = idCreator.createContactId();
+            added[i] = new ContactImpl(r.getName(), ids[i], r.getNotes());
+            contactSet.add(added[i]);
+            contactIndex.put(ids[i], added[i]);
+            contactsByName.add(ids[i], r.getName());     // ids are increasing, so this appends to each list
+            if (log != null) {
+                log.logContact(ids[i], r.getName(), r.getNotes());
+                recordNotes(added[i]);
+            }
+        }
+        Comparator<Contact> byName = Comparator.comparing(Contact::getName).thenComparingInt(Contact::getId);
+        if (parallel) {
+            Arrays.parallelSort(added, byName);
+        } else {
+            Arrays.sort(added, byName);
+        }
+        String[] names = new String[n];
+        int[] sortedIds = new int[n];
+        for (int i = 0; i < n; i++) {
+            names[i] = added[i].getName();
+            sortedIds[i] = added[i].getId();
+        }
+        contactsByPrefix.addAll(names, sortedIds, 0, n);
+        endCall(Metrics.Operation.IMPORT_CONTACTS, start, n);
+        return ids;
+    }
+
+    /**
+     * Add many new meetings at once, e.g. when the data of a new customer is loaded.
+     * The records are all read and validated before any meeting is added, so that either all of them
+     * are imported, or none if any of them is not valid: as for addNewPastMeeting() and addFutureMeeting(),
+     * each contact must be known, PastMeetings cannot be in the future and FutureMeetings cannot be in the past.
+     * The meetings are given consecutive ids in the order of the records, and the chronological indexes
+     * are built once for all of them, merging the new meetings sorted by date with the ones already indexed.
+     * If requested, the validation, the creation of the meetings, the sorting and the indexes of the
+     * contacts are run in parallel on the common ForkJoinPool.
+     *
+     * @param records the data of the new meetings (e.g. the iterator of a Stream).
+     * @param parallel whether to run the import in parallel.
+     * @return the ids of the new meetings, in the order of the records.
+     * @throws NullPointerException if the iterator or any of the records is null.
+     * @throws IllegalArgumentException if any of the records is not valid.
+     */
+    public synchronized int[] importMeetings(Iterator<MeetingRecord> records, boolean parallel) {
+        long start = startCall();
+        ensureLoaded();
+        int[] ids = importMeetings(drain(records), clock.millis(), parallel);
+        endCall(Metrics.Operation.IMPORT_MEETINGS, start, ids.length);
+        return ids;
+    }
+
+    /**
+     * Add the meetings of an import, validated against the given current time.
+     */
+    private int[] importMeetings(List<MeetingRecord> batch, long now, boolean parallel) {
+        int n = batch.size();
+        int[][] attendees = new int[n][];
+        long[] dates = new long[n];
+        boolean[] future = new boolean[n];
+        Optional<String> invalid = range(n, parallel).mapToObj(i -> {
+            MeetingRecord r = batch.get(i);
+            attendees[i] = r.sortedContactIds();
+            dates[i] = r.getDate();
+            future[i] = !r.isPast();
+            if (r.isPast() && r.getDate() > now) {
+                return "Record " + i + " is a past meeting with a future date";
+            } else if (!r.isPast() && r.getDate() < now) {
+                return "Record " + i + " is a future meeting with a past date";
+            }
+            for (int c : attendees[i]) {
+                if (contactIndex.get(c) == null) {
+                    return "Record " + i + " refers to the unknown contact " + c;
+                }
+            }
+            return null;
+        }).filter(Objects::nonNull).findFirst();
+        if (invalid.isPresent()) {
+            throw new IllegalArgumentException(invalid.get());
+        }
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = idCreator.createMeetingId();
+        }
+        long pooled = 0;
+        for (int[] contacts : attendees) {
+            pooled += contacts.length;
+        }
+        if (n > 0) {
+            meetingStore.setLastId(ids[n - 1]);
+            meetingStore.ensureCapacity(ids[n - 1], (int) Math.min(pooled, Integer.MAX_VALUE));
+        }
+        for (int i = 0; i < n; i++) {
+            meetingStore.add(ids[i], dates[i], attendees[i], batch.get(i).getNotes());
+            invalidateCaches(dates[i], attendees[i], future[i]);
+            if (log != null) {
+                log.logMeeting(ids[i], dates[i], batch.get(i).getNotes(), attendees[i]);
+            }
+        }
+        indexAllByDate(ids, dates, future, attendees, parallel);
+        return ids;
+    }
+
+    /**
+     * Add new meetings to the chronological indexes all at once: the meetings are sorted by date,
+     * grouped by contact keeping that order (with a counting sort), and then merged with the entries
+     * of each index in a single pass.
+     * The meetings are given as parallel arrays, so that the sorting and grouping only read primitives.
+     *
+     * @param ids the ids of the new meetings, in increasing order.
+     * @param dates the dates of the new meetings.
+     * @param future whether each new meeting is a FutureMeeting.
+     * @param attendees the sorted ids of the contacts of each new meeting.
+     * @param parallel whether to sort the meetings and to merge the indexes of the contacts in parallel.
+     */
+    private void indexAllByDate(int[] ids, long[] dates, boolean[] future, int[][] attendees, boolean parallel) {
+        int n = ids.length;
+        int[] firstAttendee = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            firstAttendee[i + 1] = firstAttendee[i] + attendees[i].length;
+        }
+        // the entries of each contact are placed after the ones of the previous contacts
+        int[] attendeeSlots = new int[firstAttendee[n]];
+        int[] slotContacts = contactSlots(attendees, attendeeSlots);
+        int[] counts = new int[slotContacts.length];
+        for (int slot : attendeeSlots) {
+            counts[slot]++;
+        }
+        int[] ends = new int[slotContacts.length];
+        for (int slot = 0, offset = 0; slot < ends.length; slot++) {
+            ends[slot] = offset;    // the next position of the entries of the contact, and finally their end
+            offset += counts[slot];
+        }
+        long[] sortedDates = new long[n];
+        int[] sortedIds = new int[n];
+        long[] pendingDates = new long[n];
+        int[] pendingIds = new int[n];
+        int pending = 0;
+        long[] entryDates = new long[attendeeSlots.length];
+        int[] entryIds = new int[attendeeSlots.length];
+        int[] order = chronologicalOrder(dates, parallel);
+        for (int k = 0; k < n; k++) {
+            int i = order[k];
+            sortedDates[k] = dates[i];
+            sortedIds[k] = ids[i];
+            if (future[i]) {
+                pendingDates[pending] = dates[i];
+                pendingIds[pending++] = ids[i];
+            }
+            for (int a = firstAttendee[i]; a < firstAttendee[i + 1]; a++) {
+                int position = ends[attendeeSlots[a]]++;
+                entryDates[position] = dates[i];
+                entryIds[position] = ids[i];
+            }
+        }
+        meetingsByDate.addAll(sortedDates, sortedIds, 0, n);
+        pendingMeetings.addAll(pendingDates, pendingIds, 0, pending);
+        DateIndex[] indexes = new DateIndex[slotContacts.length];
+        for (int slot = 0; slot < indexes.length; slot++) {
+            if (counts[slot] > 0) {
+                indexes[slot] = meetingsByContact.get(slotContacts[slot]);
+                if (indexes[slot] == null) {
+                    indexes[slot] = new DateIndex();
+                    meetingsByContact.put(slotContacts[slot], indexes[slot]);
+                }
+            }
+        }
+        range(indexes.length, parallel).forEach(slot -> {  // each index is only merged by one task
+            if (indexes[slot] != null) {
+                indexes[slot].addAll(entryDates, entryIds, ends[slot] - counts[slot], ends[slot]);
+            }
+        });
+    }
+
+    /**
+     * Number the contacts of the given meetings from 0, and store the number of the contact of each
+     * attendee, in order of meeting. If the ids of the contacts are dense (as the ones issued by
+     * IdCreatorImpl) the number is just the difference with the lowest id, otherwise the contacts
+     * are numbered in order of first appearance.
+     *
+     * @param attendees the sorted ids of the contacts of each meeting.
+     * @param attendeeSlots where to store the number of the contact of each attendee.
+     * @return the id of the contact of each number.
+     */
+    private int[] contactSlots(int[][] attendees, int[] attendeeSlots) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int[] contacts : attendees) {
+            min = Math.min(min, contacts[0]);
+            max = Math.max(max, contacts[contacts.length - 1]);
+        }
+        int a = 0;
+        if (max - min < 4L * contactIndex.size() + 1024) {
+            int[] slotContacts = new int[(int) Math.max(0, max - min + 1)];
+            for (int slot = 0; slot < slotContacts.length; slot++) {
+                slotContacts[slot] = (int) (min + slot);
+            }
+            for (int[] contacts : attendees) {
+                for (int c : contacts) {
+                    attendeeSlots[a++] = (int) (c - min);
+                }
+            }
+            return slotContacts;
+        }
+        IntHashMap<int[]> slots = new IntHashMap<>();
+        int[] slotContacts = new int[16];
+        int count = 0;
+        for (int[] contacts : attendees) {
+            for (int c : contacts) {
+                int[] slot = slots.get(c);
+                if (slot == null) {
+                    slot = new int[] {count};
+                    slots.put(c, slot);
+                    if (count == slotContacts.length) {
+                        slotContacts = Arrays.copyOf(slotContacts, count * 2);
+                    }
+                    slotContacts[count++] = c;
+                }
+                attendeeSlots[a++] = slot[0];
+            }
+        }
+        return Arrays.copyOf(slotContacts, count);
+    }
+
+    /**
+     * Returns the positions of the given dates in chronological order, and in order of position
+     * for the same date (i.e. in order of id, as the ids of an import are increasing).
+     * If the dates span a range which leaves enough bits, each date is packed with its position in a
+     * long and the longs are sorted as primitives; otherwise the positions are sorted with a Comparator.
+     *
+     * @param dates the dates to be sorted.
+     * @param parallel whether to sort in parallel.
+     * @return the positions of the dates, in chronological order.
+     */
+    private static int[] chronologicalOrder(long[] dates, boolean parallel) {
+        int n = dates.length;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (long date : dates) {
+            min = Math.min(min, date);
+            max = Math.max(max, date);
+        }
+        int positionBits = 32 - Integer.numberOfLeadingZeros(Math.max(n - 1, 1));
+        int[] order = new int[n];
+        if (n > 0 && max - min >= 0 && 64 - Long.numberOfLeadingZeros(max - min) + positionBits < 64) {
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = (dates[i] - min) << positionBits | i;
+            }
+            if (parallel) {
+                Arrays.parallelSort(keys);
+            } else {
+                Arrays.sort(keys);
+            }
+            long mask = (1L << positionBits) - 1;
+            for (int k = 0; k < n; k++) {
+                order[k] = (int) (keys[k] & mask);
+            }
+        } else {
+            Integer[] positions = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                positions[i] = i;
+            }
+            Comparator<Integer> chronological = Comparator.<Integer>comparingLong(i -> dates[i])
+                    .thenComparingInt(i -> i);
+            if (parallel) {
+                Arrays.parallelSort(positions, chronological);
+            } else {
+                Arrays.sort(positions, chronological);
+            }
+            for (int k = 0; k < n; k++) {
+                order[k] = positions[k];
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Read all the records of an import, so that they can be validated before any of them is added.
+     *
+     * @throws NullPointerException if the iterator or any of the records is null.
+     */
+    private static <T> List<T> drain(Iterator<T> records) {
+        if (records == null) {
+            throw new NullPointerException("Records cannot be null");
+        }
+        List<T> batch = new ArrayList<>();
+        while (records.hasNext()) {
+            T record = records.next();
+            if (record == null) {
+                throw new NullPointerException("Records cannot be null");
+            }
+            batch.add(record);
+        }
+        return batch;
+    }
+
+    private static IntStream range(int n, boolean parallel) {
+        IntStream range = IntStream.range(0, n);
+        return parallel ? range.parallel() : range;
+    }
+
+    /**
+     * Write all the contacts and meetings to a file in the given text format, the contacts first and then
+     * the meetings, each in order of id, so that the file can be loaded by importData() (e.g. into another
+     * ContactManager, or by another program).
+     * The data is collected a chunk of ids at a time while holding the lock of the ContactManager, and
+     * written without it: the export does not copy all the meetings, and other methods are only delayed
+     * by the time needed to collect a chunk. Only the contacts and meetings which exist when the export
+     * starts are written, so every contact of a meeting written is also in the file; notes added to them
+     * while the export is running may or may not be included.
+     *
+     * @param target the file to be written, which is replaced if it exists.
+     * @param format the format of the file.
+     * @return the number of records written.
+     * @throws NullPointerException if any of the arguments is null.
+     * @throws UncheckedIOException if the file cannot be written.
+     */
+    public long exportData(Path target, DataFormat format) {
+        long start = metrics.start();
+        if (target == null || format == null) {
+            throw new NullPointerException("Argument cannot be null");
+        }
+        int lastContact;
+        int lastMeeting;
+        synchronized (this) {
+            ensureLoaded();
+            lastContact = idCreator.getLastContactId();
+            lastMeeting = idCreator.getLastMeetingId();
+        }
+        long records = 0;
+        try (RecordWriter writer = new RecordWriter(target, format)) {
+            List<Contact> contacts = new ArrayList<>();
+            for (long from = 0; from <= lastContact; from += EXPORT_CHUNK) {
+                collect(id -> contactIndex.get(id), from, lastContact, contacts);
+                for (Contact c : contacts) {
+                    writer.writeContact(c);
+                }
+                records += contacts.size();
+                contacts.clear();
+            }
+            List<Meeting> meetings = new ArrayList<>();
+            for (long from = 0; from <= lastMeeting; from += EXPORT_CHUNK) {
+                collect(id -> meetingStore.get(id), from, lastMeeting, meetings);
+                for (Meeting m : meetings) {
+                    writer.writeMeeting(m);
+                }
+                records += meetings.size();
+                meetings.clear();
+            }
         } catch (IOException ex) {
-            ex.printStackTrace();
+            throw new UncheckedIOException("Cannot export to " + target, ex);
+        }
+        metrics.record(Metrics.Operation.EXPORT_DATA, start, records, records, 0, 0);
+        return records;
+    }
+
+    /**
+     * Add to the chunk the items with the ids from the given one, up to EXPORT_CHUNK ids or the last one.
+     */
+    private synchronized <T> void collect(IntFunction<T> index, long from, int last, List<T> chunk) {
+        for (long id = from; id <= last && id < from + EXPORT_CHUNK; id++) {
+            T item = index.apply((int) id);
+            if (item != null) {
+                chunk.add(item);
+            }
         }
     }
 
+    /**
+     * Add the contacts and meetings read from a file in the given text format, as written by exportData().
+     * The file is read a record at a time, and the records are imported in batches with importContacts()
+     * and importMeetings(), so that the memory used does not depend on the size of the file.
+     * The contacts are given new ids, and the meetings refer to them by the ids found in the file, so a meeting
+     * can only refer to a contact which comes before it in the file.
+     * A FutureMeeting whose date has passed is added as a PastMeeting without notes.
+     * Each batch is validated before it is added, but a batch which is not valid does not undo the ones
+     * already added.
+     *
+     * @param source the file to be read.
+     * @param format the format of the file.
+     * @param parallel whether to run each batch in parallel, on the common ForkJoinPool.
+     * @return the number of records read.
+     * @throws NullPointerException if the file or the format are null.
+     * @throws IllegalArgumentException if a meeting refers to a contact which is not in the file before it,
+     *     or is a PastMeeting in the future.
+     * @throws UncheckedIOException if the file cannot be read, or a record is not valid.
+     */
+    public long importData(Path source, DataFormat format, boolean parallel) {
+        long start = metrics.start();
+        if (source == null || format == null) {
+            throw new NullPointerException("Argument cannot be null");
+        }
+        try (RecordReader reader = new RecordReader(source, format)) {
+            DataImport handler = new DataImport(parallel);
+            long records = reader.read(handler);
+            handler.flushContacts();
+            handler.flushMeetings();
+            metrics.record(Metrics.Operation.IMPORT_DATA, start, records, records, handler.converted, 0);
+            return records;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot import " + source, ex);
+        }
+    }
+
+    /**
+     * Collects the records read by importData() into batches, and imports each batch when it is full,
+     * or when a record of the other kind is read.
+     */
+    private class DataImport implements RecordReader.Handler {
+        private final boolean parallel;
+        private final IntHashMap<Integer> contactIds = new IntHashMap<>();   // from the file to the new ones
+        private final int[] fileIds = new int[IMPORT_BATCH];
+        private final List<ContactRecord> contacts = new ArrayList<>();
+        private final List<MeetingRecord> meetings = new ArrayList<>();
+        private long converted;     // due FutureMeetings added as PastMeetings
+
+        DataImport(boolean parallel) {
+            this.parallel = parallel;
+        }
+
+        @Override
+        public void contactRead(int id, String name, String notes) {
+            flushMeetings();
+            fileIds[contacts.size()] = id;
+            contacts.add(new ContactRecord(name, notes));
+            if (contacts.size() == IMPORT_BATCH) {
+                flushContacts();
+            }
+        }
+
+        @Override
+        public void meetingRead(int id, long date, String notes, int[] attendees) {
+            flushContacts();
+            for (int i = 0; i < attendees.length; i++) {
+                Integer c = contactIds.get(attendees[i]);
+                if (c == null) {    // rather than binding to whichever contact has that id here
+                    throw new IllegalArgumentException("Meeting " + id + " refers to contact " + attendees[i]
+                            + ", which is not in the file");
+                }
+                attendees[i] = c;
+            }
+            meetings.add(new MeetingRecord(date, attendees, notes));
+            if (meetings.size() == IMPORT_BATCH) {
+                flushMeetings();
+            }
+        }
+
+        void flushContacts() {
+            if (!contacts.isEmpty()) {
+                int[] ids = importContacts(contacts.iterator(), parallel);
+                for (int i = 0; i < ids.length; i++) {
+                    contactIds.put(fileIds[i], ids[i]);
+                }
+                contacts.clear();
+            }
+        }
+
+        void flushMeetings() {
+            if (meetings.isEmpty()) {
+                return;
+            }
+            synchronized (ContactManagerImpl.this) {   // the meetings are checked against the same time
+                ensureLoaded();
+                long now = clock.millis();
+                for (int i = 0; i < meetings.size(); i++) {
+                    MeetingRecord r = meetings.get(i);
+                    if (!r.isPast() && r.getDate() < now) {
+                        meetings.set(i, new MeetingRecord(r.getDate(), r.sortedContactIds(), ""));
+                        converted++;
+                    }
+                }
+                importMeetings(meetings, now, parallel);
+            }
+            meetings.clear();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * In mode SNAPSHOT the data is written to the file as a binary {@see Snapshot}, with the meetings
+     * in chronological order.
+     * In mode WRITE_AHEAD_LOG only the changes made since the last flush are appended to the log and
+     * forced to disk; the log is then compacted if it has grown larger than the snapshot.
+     * In mode MAPPED nothing is written if the ContactManager has not been used since it was created.
+     * Finding contacts or meetings by id counts as a use, as notes may have been added to the contacts.
+     * The snapshot is written and forced to disk next to the file, and then moved over it, so the file
+     * always holds a complete snapshot (see {@see Snapshot#replace(Path)}); in mode WRITE_AHEAD_LOG the
+     * log is only emptied once the move has reached the disk.
+     *
+     * This is flushAsync() waiting for the data to be saved: the ContactManager can be used by other
+     * threads meanwhile. It cannot be called while holding the lock of the ContactManager, which the
+     * flusher needs to capture the data.
+     *
+     * @throws UncheckedIOException if the data cannot be saved.
+     * @throws IllegalStateException if the caller holds the lock of the ContactManager, or if the
+     *     ContactManager has been closed.
+     */
+    @Override
+    public void flush() {
+        checkNotLocked();
+        long start = metrics.start();
+        await(requestFlush(false));
+        metrics.record(Metrics.Operation.FLUSH, start, 0, 0, 0, 0);
+    }
+
+    /**
+     * Stop the flusher thread of the ContactManager, once the flushes already requested have been
+     * written, and close its {@see WriteAheadLog} in mode WRITE_AHEAD_LOG. The changes made since the
+     * last flush are not saved, and the ContactManager cannot be flushed afterwards. Closing it again
+     * has no effect.
+     *
+     * @throws UncheckedIOException if the log cannot be closed.
+     * @throws IllegalStateException if the caller holds the lock of the ContactManager.
+     */
+    @Override
+    public void close() {
+        checkNotLocked();
+        synchronized (flushLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flusher.shutdown();
+        boolean interrupted = false;
+        while (!flusher.isTerminated()) {
+            try {
+                flusher.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                interrupted = true;     // the pending flushes still need the log
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (log != null) {
+            try {
+                synchronized (this) {
+                    log.close();
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot close the log of " + file, ex);
+            }
+        }
+    }
+
+    /**
+     * Check that the caller does not hold the lock of the ContactManager, which it would need to
+     * wait for the flusher.
+     *
+     * @throws IllegalStateException if the caller holds the lock.
+     */
+    private void checkNotLocked() {
+        if (Thread.holdsLock(this)) {
+            throw new IllegalStateException("Cannot wait for the flusher while holding the lock of the ContactManager");
+        }
+    }
+
+    /**
+     * Save all data to disk as flush() does, without waiting for it. The data is captured under the lock
+     * of the ContactManager, which takes a copy of a few bytes for each meeting, and is then written by
+     * a background thread while the ContactManager keeps being used.
+     *
+     * Requests are grouped: while a flush is being written, the requests made are all satisfied by the
+     * single flush which follows it, and which captures every change made before they were requested.
+     * A flush which fails does not stop the following ones.
+     *
+     * @return a future completed when the data as it was when the method was called has been saved and
+     *     forced to disk, or completed exceptionally with an UncheckedIOException if it cannot be saved.
+     * @throws IllegalStateException if the ContactManager has been closed.
+     */
+    public CompletableFuture<Void> flushAsync() {
+        long start = metrics.start();
+        CompletableFuture<Void> done = requestFlush(false);
+        if (start != Metrics.DISABLED) {
+            done.thenRun(() -> metrics.record(Metrics.Operation.FLUSH_ASYNC, start, 0, 0, 0, 0));
+        }
+        return done;
+    }
+
+    /**
+     * Fold the {@see WriteAheadLog} into the snapshot: the whole data is written to a new snapshot,
+     * which replaces the old one in a single step, and the log is emptied.
+     * This is done by flush() when the log grows larger than the snapshot, and may also be called
+     * directly (e.g. periodically, or before closing the application).
+     * In the other modes it is the same as flush(). It is written by the same background thread as the
+     * flushes, so the ContactManager can be used by other threads meanwhile.
+     *
+     * @throws UncheckedIOException if the data cannot be saved.
+     * @throws IllegalStateException if the caller holds the lock of the ContactManager, or if the
+     *     ContactManager has been closed.
+     */
+    public void compact() {
+        checkNotLocked();
+        long start = metrics.start();
+        await(requestFlush(true));
+        metrics.record(Metrics.Operation.COMPACT, start, 0, 0, 0, 0);
+    }
+
+    /**
+     * The requests of flush which are satisfied by the same write.
+     */
+    private static class FlushGroup {
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        boolean compact;
+    }
+
+    /**
+     * Join the group of requests which will be satisfied by the next flush, starting the flusher if
+     * it is idle.
+     *
+     * @param compact whether the log must be compacted by the flush.
+     * @return the future of the next flush.
+     * @throws IllegalStateException if the ContactManager has been closed.
+     */
+    private CompletableFuture<Void> requestFlush(boolean compact) {
+        synchronized (flushLock) {
+            if (closed) {
+                throw new IllegalStateException("The ContactManager " + file + " has been closed");
+            } else if (nextFlush == null) {
+                nextFlush = new FlushGroup();
+            }
+            nextFlush.compact |= compact;
+            CompletableFuture<Void> done = nextFlush.done;
+            if (!flushing) {
+                flushing = true;
+                flusher.execute(this::runFlushes);
+            }
+            return done;
+        }
+    }
+
+    /**
+     * Save the data for each group of requests in turn, until no more requests are waiting.
+     */
+    private void runFlushes() {
+        while (true) {
+            FlushGroup group;
+            synchronized (flushLock) {
+                group = nextFlush;
+                nextFlush = null;
+                if (group == null) {
+                    flushing = false;
+                    return;
+                }
+            }
+            try {
+                save(group.compact);
+                group.done.complete(null);
+            } catch (IOException ex) {
+                group.done.completeExceptionally(new UncheckedIOException("Cannot save to " + file, ex));
+            } catch (Throwable ex) {
+                group.done.completeExceptionally(ex);
+            }
+        }
+    }
+
+    /**
+     * Save the data, holding the lock of the ContactManager only while the data (or the records of the log)
+     * are captured, and not while they are written.
+     *
+     * @param compact whether the log must be compacted.
+     * @throws IOException if the data cannot be written.
+     */
+    private void save(boolean compact) throws IOException {
+        Snapshot snapshot;
+        ByteBuffer records;
+        synchronized (this) {
+            if (unloaded != null && !unloadedRead) {
+                return;     // the data is still the one in the file
+            }
+            ensureLoaded();     // the contacts read from the snapshot may have been changed
+            snapshot = log == null ? snapshot() : null;
+            records = log == null ? null : log.drain();
+        }
+        if (log == null) {
+            snapshot.replace(file);
+            return;
+        }
+        log.write(records);
+        if (compact || log.size() > Math.max(MIN_COMPACTION, Files.exists(file) ? Files.size(file) : 0)) {
+            synchronized (this) {
+                snapshot = snapshot();
+            }
+            snapshot.replace(file);
+            log.truncate();     // the records logged after the snapshot are still pending
+        }
+    }
+
+    /**
+     * Wait for a flush, throwing the exception it failed with.
+     *
+     * @param done the future of the flush.
+     */
+    private static void await(CompletableFuture<Void> done) {
+        try {
+            done.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the metrics of the operations of this ContactManager, which are disabled until
+     * {@see Metrics#setEnabled(boolean)} is called.
+     *
+     * @return the metrics of this ContactManager.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Enable, resize or disable the caches of the results of getFutureMeetingList(Contact) and of
+     * getFutureMeetingList(Calendar): each keeps the lists of up to the given number of contacts (or days),
+     * chosen by {@see ResultCache} among the most often requested. A list is removed from its cache when
+     * a change makes it out of date (a meeting added, or converted to PastMeeting on that day), or when
+     * it has been kept for the given time, as measured by the clock of the ContactManager (rounded down to
+     * milliseconds, but at least one). The lists cached so far are discarded.
+     * The calls which find their result in a cache are counted by the metrics of the operation.
+     *
+     * @param capacity the maximum number of lists in each cache, or 0 to disable the caches.
+     * @param timeToLive the time after which a list is computed again.
+     * @throws NullPointerException if the time to live is null.
+     * @throws IllegalArgumentException if the capacity is negative or the time to live is not positive.
+     */
+    public synchronized void setResultCache(int capacity, Duration timeToLive) {
+        if (timeToLive == null) {
+            throw new NullPointerException("Argument cannot be null");
+        } else if (capacity < 0) {
+            throw new IllegalArgumentException("The capacity of the cache cannot be negative");
+        } else if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("The time to live must be positive");
+        }
+        cachedDays.clear();
+        if (capacity == 0) {
+            futureByContact = null;
+            meetingsByDay = null;
+        } else {
+            long ttl = timeToLive.compareTo(Duration.ofMillis(Long.MAX_VALUE)) >= 0 ? Long.MAX_VALUE
+                    : Math.max(1, timeToLive.toMillis());
+            futureByContact = new ResultCache<>(capacity, ttl, clock::millis, null);
+            meetingsByDay = new ResultCache<>(capacity, ttl, clock::millis, cachedDays::remove);
+        }
+    }
+
+    /**
+     * The future meetings of a contact as they were at a given time, in chronological order.
+     */
+    private static class FutureList {
+        final Meeting[] meetings;
+        final long[] dates;
+        final long computedAt;
+
+        FutureList(List<Meeting> list, long computedAt) {
+            meetings = list.toArray(new Meeting[0]);
+            dates = new long[meetings.length];
+            for (int i = 0; i < meetings.length; i++) {
+                dates[i] = dateOf(meetings[i]);
+            }
+            this.computedAt = computedAt;
+        }
+
+        /**
+         * Returns the meetings after a time, which is not before the time of the list.
+         */
+        List<Meeting> after(long now) {
+            int first = Arrays.binarySearch(dates, now + 1);
+            if (first < 0) {
+                first = -first - 1;
+            }
+            while (first > 0 && dates[first - 1] > now) {   // the search may find any of equal dates
+                first--;
+            }
+            return new ArrayList<>(Arrays.asList(meetings).subList(first, meetings.length));
+        }
+    }
+
+    /**
+     * A day as the range of dates [from, to), ordered by its start.
+     */
+    private static final class DayRange implements Comparable<DayRange> {
+        final long from;
+        final long to;
+
+        DayRange(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public int compareTo(DayRange other) {
+            int c = Long.compare(from, other.from);
+            return c != 0 ? c : Long.compare(to, other.to);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof DayRange && ((DayRange) o).from == from && ((DayRange) o).to == to;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(from) * 31 + Long.hashCode(to);
+        }
+    }
+
+    /**
+     * Start timing a call of a synchronized method, and reset the figures counted by the call.
+     *
+     * @return the value to be passed to endCall().
+     */
+    private long startCall() {
+        long start = metrics.start();
+        if (start != Metrics.DISABLED) {
+            scanned = -1;
+            conversions = 0;
+            cacheHits = 0;
+        }
+        return start;
+    }
+
+    /**
+     * Record a call of a synchronized method which has completed. If the call has not counted the index
+     * entries it visited, they are taken to be as many as the items returned.
+     *
+     * @param op the operation called.
+     * @param start the value returned by startCall().
+     * @param resultSize the number of items returned.
+     */
+    private void endCall(Metrics.Operation op, long start, long resultSize) {
+        if (start != Metrics.DISABLED) {
+            metrics.record(op, start, resultSize, scanned < 0 ? resultSize : scanned, conversions, cacheHits);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the current data, with the meetings in chronological order, which can be
+     * written without the lock of the ContactManager.
+     *
+     * @return a snapshot of the current data.
+     */
+    private Snapshot snapshot() {
+        return new Snapshot(idCreator.getLastContactId(), idCreator.getLastMeetingId(),
+                new ArrayList<>(contactSet), meetingStore.capture(meetingsByDate.toArray()));
+    }
+
 }
@@ -0,0 +1,44 @@
+/**
+ * The data of a new contact to be imported into a ContactManager with
+ * {@see ContactManagerImpl#importContacts}: the contact is given its id when it is imported.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class ContactRecord {
+    private final String name;
+    private final String notes;
+
+    /**
+     * Constructor for the data of a new contact.
+     *
+     * @param name the name of the contact.
+     * @param notes the notes about the contact.
+     * @throws NullPointerException if the name or the notes are null.
+     */
+    public ContactRecord(String name, String notes) {
+        if (name == null || notes == null) {
+            throw new NullPointerException("Name and notes cannot be null");
+        }
+        this.name = name;
+        this.notes = notes;
+    }
+
+    /**
+     * Returns the name of the contact.
+     *
+     * @return the name of the contact.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the notes about the contact.
+     *
+     * @return the notes about the contact.
+     */
+    public String getNotes() {
+        return notes;
+    }
+
+}
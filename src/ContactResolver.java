@@ -0,0 +1,16 @@
+/**
+ * Finds a contact by its id. Meetings hold the ids of their contacts, and use a resolver
+ * (usually shared by all the meetings of a ContactManager) to return the Contact objects.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public interface ContactResolver {
+
+    /**
+     * Returns the contact with the given id.
+     *
+     * @param id the id of the contact.
+     * @return the contact with the given id, or null if there is none.
+     */
+    Contact getContact(int id);
+}
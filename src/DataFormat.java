@@ -0,0 +1,33 @@
+/**
+ * The text formats in which the contacts and meetings of a {@see ContactManagerImpl} can be exported
+ * and imported, one record per line, by {@see RecordWriter} and {@see RecordReader}.
+ * Contacts come before the meetings which refer to them; dates are in milliseconds since the epoch,
+ * and text is encoded in UTF-8.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public enum DataFormat {
+
+    /**
+     * Comma-separated values, as in RFC 4180: the first field is the kind of record, followed by
+     * <pre>
+     *     contact,id,name,notes
+     *     past,id,date,contact ids separated by ';',notes
+     *     future,id,date,contact ids separated by ';'
+     * </pre>
+     * A field containing a comma, a double quote or a line break is enclosed in double quotes,
+     * and its double quotes are doubled.
+     */
+    CSV,
+
+    /**
+     * One JSON object per line (JSON Lines), e.g.
+     * <pre>
+     *     {"type":"contact","id":1000,"name":"Name","notes":"Notes"}
+     *     {"type":"past","id":1,"date":1420070400000,"contacts":[1000,1001],"notes":"Notes"}
+     *     {"type":"future","id":2,"date":1735689600000,"contacts":[1000]}
+     * </pre>
+     * The members of an object can be in any order, and members with other names are ignored.
+     */
+    JSON_LINES
+}
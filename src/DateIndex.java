@@ -0,0 +1,184 @@
+import java.util.function.IntConsumer;
+
+/**
+ * A sorted collection of meeting ids keyed by the date of the meeting (in milliseconds since the epoch),
+ * used by {@see ContactManagerImpl} to keep meetings in chronological order: all the meetings by date,
+ * and the meetings of each contact.
+ *
+ * Entries are ordered by date and then by id, and held in blocks of parallel primitive arrays
+ * (a two-level B+tree, see {@see SortedBlocks}), so a range of dates is found with two binary searches
+ * and read by walking consecutive blocks. Small indexes (e.g. the meetings of one contact) fit in a
+ * single block which grows as needed.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class DateIndex extends SortedBlocks<long[]> {
+    private long key;   // the date searched for
+
+    /**
+     * Constructor for an empty index.
+     */
+    public DateIndex() {
+    }
+
+    @Override
+    protected long[] newKeys(int capacity) {
+        return new long[capacity];
+    }
+
+    @Override
+    protected int compareKeys(long[] dates1, int i1, long[] dates2, int i2) {
+        return Long.compare(dates1[i1], dates2[i2]);
+    }
+
+    @Override
+    protected int compareToKey(long[] dates, int i) {
+        return Long.compare(dates[i], key);
+    }
+
+    @Override
+    protected void setKey(long[] dates, int i) {
+        dates[i] = key;
+    }
+
+    /**
+     * Add a meeting to the index. Adding the same entry twice has no effect.
+     *
+     * @param date the date of the meeting, in milliseconds since the epoch.
+     * @param id the id of the meeting.
+     */
+    public void add(long date, int id) {
+        key = date;
+        insert(id);
+    }
+
+    /**
+     * Add many meetings to the index at once, e.g. when they are imported: the entries are merged with
+     * the blocks of the index they fall into, and the other blocks are not copied, so that importing
+     * in batches does not rebuild the whole index for each batch.
+     * Entries already in the index, or repeated, are only kept once.
+     *
+     * @param dates the dates of the meetings, in milliseconds since the epoch.
+     * @param ids the ids of the meetings.
+     * @param from the first entry to add (inclusive).
+     * @param to the last entry to add (exclusive); the entries in the range must be sorted by date and then by id.
+     * @throws IllegalArgumentException if the entries are not sorted.
+     */
+    public void addAll(long[] dates, int[] ids, int from, int to) {
+        merge(dates, ids, from, to);
+    }
+
+    /**
+     * Remove a meeting from the index.
+     *
+     * @param date the date of the meeting, as it was added to the index.
+     * @param id the id of the meeting.
+     * @return true if the meeting was in the index, false otherwise.
+     */
+    public boolean remove(long date, int id) {
+        key = date;
+        return delete(id);
+    }
+
+    /**
+     * Remove the earliest meetings whose date is before the given one, up to a maximum number,
+     * performing the given action on the id of each of them in chronological order.
+     * This allows the index to be used as a priority queue of meetings by date.
+     *
+     * @param to the date (exclusive) before which meetings are removed, in milliseconds since the epoch.
+     * @param max the maximum number of meetings to remove.
+     * @param action the action to be performed on the id of each removed meeting.
+     * @return the number of meetings removed.
+     */
+    public int removeBefore(long to, int max, IntConsumer action) {
+        int removed = 0;
+        while (removed < max && size() > 0) {
+            Block<long[]> block = blocks.get(0);
+            int n = 0;
+            while (n < block.size && removed + n < max && block.keys[n] < to) {
+                action.accept(block.ids[n]);
+                n++;
+            }
+            if (n == 0) {
+                break;
+            }
+            boolean emptied = n == block.size;
+            deleteFirst(n);
+            removed += n;
+            if (!emptied) {
+                break;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Perform the given action on the id of every meeting whose date is in the range [from, to),
+     * in chronological order.
+     * The index must not be modified by the action.
+     *
+     * @param from the first date of the range (inclusive), in milliseconds since the epoch.
+     * @param to the last date of the range (exclusive), in milliseconds since the epoch.
+     * @param action the action to be performed on the id of each meeting.
+     */
+    public void forEachInRange(long from, long to, IntConsumer action) {
+        key = from;
+        for (int b = findBlock(); b < blocks.size(); b++) {
+            Block<long[]> block = blocks.get(b);
+            for (int i = lowerBound(block); i < block.size; i++) {
+                if (block.keys[i] >= to) {
+                    return;
+                }
+                action.accept(block.ids[i]);
+            }
+        }
+    }
+
+    /**
+     * Perform the given action on the id of the first meetings after the entry (date, id) whose date is
+     * before the given one, up to a maximum number, in chronological order: the entry does not need to be
+     * in the index, so this can read a range one page at a time, starting after the last entry of the
+     * previous page, in time proportional to the page.
+     * The index must not be modified by the action.
+     *
+     * @param date the date of the entry after which to start, in milliseconds since the epoch.
+     * @param id the id of the entry after which to start.
+     * @param to the last date of the range (exclusive), in milliseconds since the epoch.
+     * @param max the maximum number of meetings.
+     * @param action the action to be performed on the id of each meeting.
+     * @return the number of meetings on which the action was performed.
+     */
+    public int forEachAfter(long date, int id, long to, int max, IntConsumer action) {
+        key = date;
+        int b = findBlock(id);
+        int pos = search(blocks.get(b), id);
+        int i = pos >= 0 ? pos + 1 : -(pos + 1);
+        int count = 0;
+        for (; b < blocks.size() && count < max; b++, i = 0) {
+            Block<long[]> block = blocks.get(b);
+            for (; i < block.size && count < max; i++) {
+                if (block.keys[i] >= to) {
+                    return count;
+                }
+                action.accept(block.ids[i]);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Perform the given action on the id of every meeting of the index, in chronological order.
+     * The index must not be modified by the action.
+     *
+     * @param action the action to be performed on the id of each meeting.
+     */
+    public void forEach(IntConsumer action) {
+        for (Block<long[]> block : blocks) {
+            for (int i = 0; i < block.size; i++) {
+                action.accept(block.ids[i]);
+            }
+        }
+    }
+
+}
@@ -12,4 +12,8 @@ public class FutureMeetingImpl extends MeetingImpl implements Serializable, Futu
         super(date, contacts, id);
     }
 
+    public FutureMeetingImpl(long date, Set<Contact> contacts, int id) {
+        super(date, contacts, id);
+    }
+
 }
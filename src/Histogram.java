@@ -0,0 +1,129 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative values (e.g. latencies in nanoseconds, or sizes), with buckets of
+ * logarithmic width as in HdrHistogram: the values below 32 have a bucket each, and every following
+ * power of two is split into 32 buckets of equal width, so that a value is known with an error of less
+ * than 1/32 of it (about 3%) however large it is, in a fixed array of about a thousand counters.
+ * Values can be recorded by several threads at once, without locks; the values read while others are
+ * recorded may miss the last ones.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class Histogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final long MAX_VALUE = (1L << 40) - 1;  // about 18 minutes in nanoseconds
+    private final AtomicLongArray counts = new AtomicLongArray(bucketOf(MAX_VALUE) + 1);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    /**
+     * Record a value; values larger than MAX_VALUE are counted as MAX_VALUE.
+     *
+     * @param value the value to be recorded.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Cannot record a negative value");
+        }
+        value = Math.min(value, MAX_VALUE);
+        counts.incrementAndGet(bucketOf(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return the number of values recorded.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return the largest value recorded, or 0 if there are none.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the values recorded.
+     *
+     * @return the mean of the values, or 0 if there are none.
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the values fall, i.e. the highest value
+     * of the bucket which holds the value at that position (but not more than the largest value).
+     *
+     * @param percentile the percentage, from 0 to 100.
+     * @return the value at the percentile, or 0 if there are none.
+     * @throws IllegalArgumentException if the percentile is not between 0 and 100.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("The percentile must be between 0 and 100");
+        }
+        long[] copy = new long[counts.length()];
+        long count = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long position = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        int i = 0;
+        while (seen + copy[i] < position) {
+            seen += copy[i++];
+        }
+        return Math.min(highestOf(i), getMax());
+    }
+
+    /**
+     * Forget all the values recorded.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        sum.reset();
+        max.reset();
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift << SUB_BITS) + (int) (value >>> shift);
+    }
+
+    static long highestOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BITS) - 1;
+        long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+}
@@ -13,6 +13,24 @@ public class IdCreatorImpl implements Serializable, IdCreator {
     private int contactID = 999;
     private int meetingID = 0;
 
+    /**
+     * Constructor for a new IdCreator, which will issue the first ids.
+     */
+    public IdCreatorImpl() {
+    }
+
+    /**
+     * Constructor for an IdCreator which carries on from the last ids issued by a previous one
+     * (e.g. when the ContactManager is restored from disk).
+     *
+     * @param lastContactId the last id issued for a Contact.
+     * @param lastMeetingId the last id issued for a Meeting.
+     */
+    public IdCreatorImpl(int lastContactId, int lastMeetingId) {
+        contactID = lastContactId;
+        meetingID = lastMeetingId;
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -40,6 +58,24 @@ public class IdCreatorImpl implements Serializable, IdCreator {
         meetingID++;
         return meetingID;
     }
+
+    /**
+     * Returns the last id issued for a Contact.
+     *
+     * @return the last id issued for a Contact.
+     */
+    public int getLastContactId() {
+        return contactID;
+    }
+
+    /**
+     * Returns the last id issued for a Meeting.
+     *
+     * @return the last id issued for a Meeting.
+     */
+    public int getLastMeetingId() {
+        return meetingID;
+    }
     
     
 }    
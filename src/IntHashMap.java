@@ -0,0 +1,256 @@
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A hash map from primitive int keys to objects, used by {@see ContactManagerImpl} to index
+ * contacts and meetings by their unique id.
+ * Keys are stored in a plain int array (no boxing to Integer) and collisions are resolved by
+ * open addressing with linear probing, so a lookup is usually a single probe into two arrays.
+ * Removal shifts the following entries back instead of leaving tombstones, so the table never
+ * degrades after many removals.
+ * Null values are not allowed, as a null slot marks an empty position of the table.
+ * The table has at most 2^30 slots, so a map holds at most 2^29 entries.
+ *
+ * @param <V> the type of the values.
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class IntHashMap<V> {
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+    static final int MAX_SIZE = MAX_CAPACITY / 2;
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+    private int threshold;
+
+    /**
+     * Constructor for an empty map with a default capacity.
+     */
+    public IntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Constructor for an empty map which can hold the expected number of entries without resizing.
+     *
+     * @param expected the number of entries the map is expected to hold.
+     * @throws IllegalArgumentException if expected is negative, or larger than MAX_SIZE.
+     */
+    public IntHashMap(int expected) {
+        if (expected < 0) {
+            throw new IllegalArgumentException("Expected size cannot be negative");
+        }
+        allocate(capacityFor(MIN_CAPACITY, expected));
+    }
+
+    /**
+     * Returns the capacity of the table which holds the expected number of entries, doubling the given one.
+     *
+     * @throws IllegalArgumentException if expected is larger than MAX_SIZE.
+     */
+    private static int capacityFor(int capacity, int expected) {
+        if (expected > MAX_SIZE) {
+            throw new IllegalArgumentException("A map cannot hold more than " + MAX_SIZE + " entries");
+        }
+        while (capacity / 2 < expected) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        threshold = capacity / 2;   // load factor 0.5 keeps probe sequences short
+    }
+
+    /**
+     * Spread the bits of the key, as the ids are issued sequentially and would otherwise
+     * fill contiguous runs of the table.
+     */
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Returns the value associated with the key, or null if there is none.
+     *
+     * @param key the key to look up.
+     * @return the value associated with the key, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        for (int i = slot(key); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the map contains the key.
+     *
+     * @param key the key to look up.
+     * @return true if there is a value associated with the key, false otherwise.
+     */
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Associate the value with the key, replacing the previous value if any.
+     *
+     * @param key the key.
+     * @param value the value to be associated with the key.
+     * @return the previous value associated with the key, or null if there was none.
+     * @throws NullPointerException if the value is null.
+     * @throws IllegalStateException if the key is new and the map already holds MAX_SIZE entries.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Value cannot be null");
+        }
+        int i = slot(key);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        if (size == MAX_SIZE) {
+            throw new IllegalStateException("A map cannot hold more than " + MAX_SIZE + " entries");
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > threshold) {
+            resize();
+        }
+        return null;
+    }
+
+    /**
+     * Remove the value associated with the key, if any.
+     *
+     * @param key the key to be removed.
+     * @return the value previously associated with the key, or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int i = slot(key);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                shiftBack(i);
+                size--;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Close the gap left at position free by moving back the entries of the same probe sequence,
+     * so that every remaining entry is still reachable from its home slot.
+     */
+    private void shiftBack(int free) {
+        int i = free;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == null) {
+                break;
+            }
+            int home = slot(keys[i]);
+            // the entry can move to free only if free lies cyclically between its home slot and i
+            if (((i - home) & mask) >= ((i - free) & mask)) {
+                keys[free] = keys[i];
+                values[free] = values[i];
+                free = i;
+            }
+        }
+        values[free] = null;
+    }
+
+    private void resize() {
+        rehash(keys.length << 1);
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != null) {
+                int i = slot(oldKeys[j]);
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /**
+     * Make room for the expected number of entries, so that they can be added without resizing
+     * the table at every doubling (e.g. before adding many entries at once).
+     *
+     * @param expected the number of entries the map is expected to hold.
+     * @throws IllegalArgumentException if expected is larger than MAX_SIZE.
+     */
+    public void ensureCapacity(int expected) {
+        int capacity = capacityFor(keys.length, expected);
+        if (capacity > keys.length) {
+            rehash(capacity);
+        }
+    }
+
+    /**
+     * Returns the number of entries in the map.
+     *
+     * @return the number of entries in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the map is empty.
+     *
+     * @return true if the map contains no entries, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all the entries of the map, keeping its current capacity.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Perform the given action on every value of the map, in no particular order.
+     * The map must not be modified by the action.
+     *
+     * @param action the action to be performed on each value.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (Object value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ * A position in the chronological order of meetings (a date, and then a meeting id), used as a continuation
+ * token to read a list of meetings one page at a time: each {@see MeetingPage} returns the cursor of its last
+ * meeting, and the next page starts after it, so reading a page costs the same wherever it is in the list.
+ * A cursor can be turned into a String with toString() (e.g. to be sent to a client) and back with valueOf().
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public final class MeetingCursor implements Comparable<MeetingCursor> {
+
+    /**
+     * The position before all the meetings, to read the first page.
+     */
+    public static final MeetingCursor START = new MeetingCursor(Long.MIN_VALUE, Integer.MIN_VALUE);
+
+    private final long date;
+    private final int id;
+
+    /**
+     * Constructor for the position of a meeting.
+     *
+     * @param date the date of the meeting, in milliseconds since the epoch.
+     * @param id the id of the meeting.
+     */
+    MeetingCursor(long date, int id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    /**
+     * Returns the cursor of a token returned by toString().
+     *
+     * @param token the token of a cursor.
+     * @return the cursor.
+     * @throws NullPointerException if the token is null.
+     * @throws IllegalArgumentException if the token is not valid.
+     */
+    public static MeetingCursor valueOf(String token) {
+        if (token == null) {
+            throw new NullPointerException("Token cannot be null");
+        }
+        int colon = token.indexOf(':');
+        try {
+            return new MeetingCursor(Long.parseLong(token.substring(0, Math.max(colon, 0))),
+                    Integer.parseInt(token.substring(colon + 1)));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid token " + token, ex);
+        }
+    }
+
+    /**
+     * Returns the date of the position.
+     *
+     * @return the date, in milliseconds since the epoch.
+     */
+    public long getDate() {
+        return date;
+    }
+
+    /**
+     * Returns the meeting id of the position.
+     *
+     * @return the meeting id.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the later of this cursor and the given position.
+     */
+    MeetingCursor atLeast(long date, int id) {
+        return compareTo(date, id) >= 0 ? this : new MeetingCursor(date, id);
+    }
+
+    private int compareTo(long date, int id) {
+        return this.date != date ? Long.compare(this.date, date) : Integer.compare(this.id, id);
+    }
+
+    @Override
+    public int compareTo(MeetingCursor other) {
+        return compareTo(other.date, other.id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        } else if (!(o instanceof MeetingCursor)) {
+            return false;
+        }
+        MeetingCursor other = (MeetingCursor) o;
+        return date == other.date && id == other.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(date) * 31 + id;
+    }
+
+    /**
+     * Returns the token of the cursor, which can be read back by valueOf().
+     *
+     * @return the date and the id, separated by a colon.
+     */
+    @Override
+    public String toString() {
+        return date + ":" + id;
+    }
+
+}
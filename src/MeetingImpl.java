@@ -1,5 +1,7 @@
-import java.io.Serializable;
+import java.io.*;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
@@ -10,13 +12,30 @@ import java.util.Set;
  * at construction time as final. This is to make conversions between Meetings easier, being the ContactManager
  * able to move and re-assign ID numbers.
  *
+ * The date is held as milliseconds since the epoch, so the meeting does not change if the Calendar
+ * given at construction time is modified afterwards, and dates can be compared without going through
+ * Calendar. A Calendar is only created when the date is requested with getDate().
+ * The contacts are held as the sorted array of their ids, and resolved to Contact objects only when
+ * they are requested with getContacts(), by the {@see ContactResolver} of the {@see AttendeeSet} given
+ * at construction time (the one of the ContactManager, shared by all its meetings), or by one holding
+ * just the contacts of the meeting if a different set is given.
+ * The serialized form is still the one with a Calendar date and a Set of contacts, so that files saved
+ * by previous versions can be read.
+ *
  * @author federico.bartolomei (BBK-PiJ-2014-21)
  */
 public class MeetingImpl implements Serializable, Meeting {
     private static final long serialVersionUID = 1L;
-    private Calendar date;
-    private Set<Contact> contacts;
-    private final int id;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("date", Calendar.class),
+            new ObjectStreamField("contacts", Set.class),
+            new ObjectStreamField("id", int.class)
+    };
+    private long date;
+    private int[] attendees;    // sorted ids of the contacts
+    private ContactResolver resolver;
+    private int id;     // only assigned by the constructor and readObject
+
     /**
      * Constructor for a new Meeting.
      *
@@ -35,11 +54,37 @@ public class MeetingImpl implements Serializable, Meeting {
         } else if(contacts.isEmpty()) {
             throw new IllegalArgumentException("Set<Contact> must contain a minimum of one contact");
         }
+        this.date = date.getTimeInMillis();
+        setContacts(contacts);
+        this.id = id;
+    }
+
+    /**
+     * Constructor for a new Meeting, with the date in milliseconds since the epoch.
+     *
+     * @param date the date of the meeting, in milliseconds since the epoch.
+     * @param contacts the contacts that attended the meeting
+     * @param id the unique-id of the meeting
+     * @throws NullPointerException if the list of contacts is null
+     * @throws IllegalArgumentException if the list of contacts is empty
+     */
+    public MeetingImpl(long date, Set<Contact> contacts, int id) {
+        if(contacts == null) {
+            throw new NullPointerException("Set<Contact> cannot be null");
+        } else if(contacts.isEmpty()) {
+            throw new IllegalArgumentException("Set<Contact> must contain a minimum of one contact");
+        }
         this.date = date;
-        this.contacts = contacts;
+        setContacts(contacts);
         this.id = id;
     }
 
+    private void setContacts(Set<Contact> contacts) {
+        AttendeeSet attendeeSet = AttendeeSet.copyOf(contacts);
+        attendees = attendeeSet.ids();
+        resolver = attendeeSet.resolver();
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -53,21 +98,72 @@ public class MeetingImpl implements Serializable, Meeting {
     /**
      * {@inheritDoc}
      *
+     * A new Calendar is returned at every call: modifying it does not change the meeting.
+     *
      * @return the date of the meeting
      */
     @Override
     public Calendar getDate() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(date);
+        return calendar;
+    }
+
+    /**
+     * Returns the date of the meeting as milliseconds since the epoch.
+     *
+     * @return the date of the meeting, in milliseconds since the epoch.
+     */
+    public long getTimeInMillis() {
         return date;
     }
 
     /**
      * {@inheritDoc}
      *
+     * The set returned is a read-only view of the contacts, in order of id.
+     *
      * @return the list of contacts that attended the meeting
      */
     @Override
     public Set<Contact> getContacts() {
-        return contacts;
+        return new AttendeeSet(attendees, resolver);
+    }
+
+    /**
+     * Returns whether the contact with the given id attended the meeting, with a binary search
+     * of the ids of the contacts.
+     *
+     * @param contactId the id of a contact.
+     * @return true if the contact with the given id attended the meeting.
+     */
+    public boolean hasAttendee(int contactId) {
+        return Arrays.binarySearch(attendees, contactId) >= 0;
     }
-    
+
+    /**
+     * Returns the ids of the contacts of the meeting, in ascending order. The array must not be modified.
+     *
+     * @return the sorted ids of the contacts.
+     */
+    int[] getAttendeeIds() {
+        return attendees;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("date", getDate());
+        fields.put("contacts", new LinkedHashSet<>(getContacts()));
+        fields.put("id", id);
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        date = ((Calendar) fields.get("date", null)).getTimeInMillis();
+        setContacts((Set<Contact>) fields.get("contacts", null));
+        id = fields.get("id", 0);
+    }
+
 }
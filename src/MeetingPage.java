@@ -0,0 +1,92 @@
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A page of a chronological list of meetings, as returned by
+ * {@see ContactManager#getFutureMeetingPage} and {@see ContactManager#getPastMeetingPage}:
+ * the meetings of the page, and the {@see MeetingCursor} after which the next page starts.
+ *
+ * @param <T> the type of the meetings.
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class MeetingPage<T extends Meeting> {
+    static final int STREAM_PAGE = 64;
+    private final List<T> meetings;
+    private final MeetingCursor next;
+
+    /**
+     * Constructor for a page.
+     *
+     * @param meetings the meetings of the page, in chronological order.
+     * @param next the position of the last meeting of the page, or null if there are no more meetings.
+     */
+    MeetingPage(List<T> meetings, MeetingCursor next) {
+        this.meetings = Collections.unmodifiableList(meetings);
+        this.next = next;
+    }
+
+    /**
+     * Returns the meetings of the page.
+     *
+     * @return the meetings of the page in chronological order (maybe empty), in a read-only list.
+     */
+    public List<T> getMeetings() {
+        return meetings;
+    }
+
+    /**
+     * Returns the cursor to read the next page.
+     *
+     * @return the position after which the next page starts, or null if this is the last page.
+     */
+    public MeetingCursor getNext() {
+        return next;
+    }
+
+    /**
+     * Returns whether there are more meetings after this page.
+     *
+     * @return true if there is a next page, false otherwise.
+     */
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    /**
+     * Returns a sequential Stream of the meetings of the given page and of the following ones,
+     * each of which is only read when the stream reaches it.
+     *
+     * @param first the first page.
+     * @param fetch reads the page after a cursor.
+     * @return the stream of the meetings, in chronological order.
+     */
+    static <T extends Meeting> Stream<T> stream(MeetingPage<T> first, Function<MeetingCursor, MeetingPage<T>> fetch) {
+        Spliterator<T> pages = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            private MeetingPage<T> page = first;
+            private Iterator<T> meetings = first.getMeetings().iterator();
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                while (!meetings.hasNext()) {
+                    if (!page.hasNext()) {
+                        return false;
+                    }
+                    page = fetch.apply(page.getNext());
+                    meetings = page.getMeetings().iterator();
+                }
+                action.accept(meetings.next());
+                return true;
+            }
+        };
+        return StreamSupport.stream(pages, false);
+    }
+
+}
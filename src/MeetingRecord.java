@@ -0,0 +1,101 @@
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * The data of a new meeting to be imported into a ContactManager with
+ * {@see ContactManagerImpl#importMeetings}: the meeting is given its id when it is imported,
+ * and its contacts are given by id, as they are already known to the ContactManager.
+ * A record with notes is a PastMeeting, and one without notes a FutureMeeting.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class MeetingRecord {
+    private final long date;
+    private final int[] contactIds;
+    private final String notes;
+
+    /**
+     * Constructor for the data of a new meeting.
+     *
+     * @param date the date of the meeting, in milliseconds since the epoch.
+     * @param contactIds the ids of the contacts of the meeting; the array is copied.
+     * @param notes the notes of a PastMeeting, or null for a FutureMeeting.
+     * @throws NullPointerException if the ids of the contacts are null.
+     * @throws IllegalArgumentException if there are no contacts.
+     */
+    public MeetingRecord(long date, int[] contactIds, String notes) {
+        if (contactIds == null) {
+            throw new NullPointerException("Contact ids cannot be null");
+        } else if (contactIds.length == 0) {
+            throw new IllegalArgumentException("A meeting must have a minimum of one contact");
+        }
+        this.date = date;
+        this.contactIds = contactIds.clone();
+        this.notes = notes;
+    }
+
+    /**
+     * Constructor for the data of a new meeting.
+     *
+     * @param date the date of the meeting.
+     * @param contactIds the ids of the contacts of the meeting; the array is copied.
+     * @param notes the notes of a PastMeeting, or null for a FutureMeeting.
+     * @throws NullPointerException if the date or the ids of the contacts are null.
+     * @throws IllegalArgumentException if there are no contacts.
+     */
+    public MeetingRecord(Calendar date, int[] contactIds, String notes) {
+        this(date.getTimeInMillis(), contactIds, notes);
+    }
+
+    /**
+     * Returns the date of the meeting.
+     *
+     * @return the date of the meeting, in milliseconds since the epoch.
+     */
+    public long getDate() {
+        return date;
+    }
+
+    /**
+     * Returns the ids of the contacts of the meeting.
+     *
+     * @return a copy of the ids of the contacts of the meeting.
+     */
+    public int[] getContactIds() {
+        return contactIds.clone();
+    }
+
+    /**
+     * Returns the ids of the contacts of the meeting, sorted and without repetitions.
+     */
+    int[] sortedContactIds() {
+        int[] ids = contactIds.clone();
+        Arrays.sort(ids);
+        int n = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (n == 0 || ids[n - 1] != ids[i]) {
+                ids[n++] = ids[i];
+            }
+        }
+        return n == ids.length ? ids : Arrays.copyOf(ids, n);
+    }
+
+    /**
+     * Returns the notes of the meeting.
+     *
+     * @return the notes of a PastMeeting, or null for a FutureMeeting.
+     */
+    public String getNotes() {
+        return notes;
+    }
+
+    /**
+     * Returns whether the record is of a PastMeeting.
+     *
+     * @return true if the meeting has notes, false if it is a FutureMeeting.
+     */
+    public boolean isPast() {
+        return notes != null;
+    }
+
+}
@@ -0,0 +1,371 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * The meetings of a {@see ContactManagerImpl}, held by columns rather than as one object each: parallel
+ * arrays indexed by the id of the meeting hold its kind (absent, future or past), its date, the position
+ * and number of its contacts in a pool of ids shared by all the meetings, and its notes.
+ * A scan over many meetings reads consecutive elements of a few primitive arrays, instead of following
+ * a reference to an object (and from it to the array of its contacts) for each meeting, and a meeting
+ * costs about 21 bytes plus 4 for each contact, without the headers and references of its objects.
+ *
+ * The meetings are handed out as {@see View}s, created when they are requested: flyweights which hold
+ * the id, the date and the position of the contacts of the meeting, and read the contacts from the pool
+ * (which is only appended to, so the contacts of a meeting never move in the array a view refers to).
+ * The view of a PastMeeting shares the {@see Notes} of the meeting, so it shows the notes added after it
+ * was created. Two views of the same meeting and kind are equal.
+ *
+ * The ids are used as positions of the arrays, so they are expected to be dense, as the ones issued by
+ * {@see IdCreatorImpl}. Only the ids up to the last one issued (see setLastId()) can be added, so that a
+ * corrupt id read from a file cannot grow the arrays beyond the ids actually issued.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class MeetingStore {
+    private static final byte ABSENT = 0;
+    private static final byte FUTURE = 1;
+    private static final byte PAST = 2;
+    private static final int MIN_CAPACITY = 16;
+    private final ContactResolver resolver;
+    private byte[] kinds = new byte[MIN_CAPACITY];
+    private long[] dates = new long[MIN_CAPACITY];
+    private int[] firstAttendee = new int[MIN_CAPACITY];
+    private int[] attendeeCount = new int[MIN_CAPACITY];
+    private Notes[] notes = new Notes[MIN_CAPACITY];
+    private int[] pool = new int[MIN_CAPACITY];
+    private int poolSize;
+    private int size;
+    private int lastId;
+
+    /**
+     * Constructor for an empty store.
+     *
+     * @param resolver the resolver of the contacts of the meetings.
+     * @throws NullPointerException if the resolver is null.
+     */
+    public MeetingStore(ContactResolver resolver) {
+        if (resolver == null) {
+            throw new NullPointerException("Argument cannot be null");
+        }
+        this.resolver = resolver;
+    }
+
+    /**
+     * Set the last id issued for a meeting, which is the largest id that can be added.
+     * The arrays are not grown by this method.
+     *
+     * @param lastId the last id issued.
+     */
+    public void setLastId(int lastId) {
+        this.lastId = lastId;
+    }
+
+    /**
+     * Make room for the meetings with ids up to the given one, and for the given number of contacts
+     * of new meetings, so that adding them does not grow the arrays more than once.
+     *
+     * @param maxId the largest id expected.
+     * @param attendees the number of contacts of the new meetings.
+     */
+    public void ensureCapacity(int maxId, int attendees) {
+        if (maxId >= kinds.length) {
+            int capacity = (int) Math.min(Math.max(maxId + 1L, kinds.length * 3L / 2), Integer.MAX_VALUE - 8);
+            kinds = Arrays.copyOf(kinds, capacity);
+            dates = Arrays.copyOf(dates, capacity);
+            firstAttendee = Arrays.copyOf(firstAttendee, capacity);
+            attendeeCount = Arrays.copyOf(attendeeCount, capacity);
+            notes = Arrays.copyOf(notes, capacity);
+        }
+        if ((long) poolSize + attendees > pool.length) {
+            long capacity = Math.max((long) poolSize + attendees, pool.length * 3L / 2);
+            pool = Arrays.copyOf(pool, (int) Math.min(capacity, Integer.MAX_VALUE - 8));
+        }
+    }
+
+    /**
+     * Add a meeting.
+     *
+     * @param id the id of the meeting.
+     * @param date the date of the meeting, in milliseconds since the epoch.
+     * @param attendees the ids of the contacts of the meeting, sorted and without duplicates (the array is copied).
+     * @param text the notes of a PastMeeting, or null for a FutureMeeting.
+     * @throws IllegalArgumentException if the id is negative or larger than the last id issued,
+     *     or a meeting with the same id is already stored.
+     */
+    public void add(int id, long date, int[] attendees, String text) {
+        if (id < 0) {
+            throw new IllegalArgumentException("The id of a meeting cannot be negative");
+        } else if (id > lastId) {
+            throw new IllegalArgumentException("Meeting " + id + " has not been issued, the last id is " + lastId);
+        }
+        ensureCapacity(id, attendees.length);
+        if (kinds[id] != ABSENT) {
+            throw new IllegalArgumentException("Meeting " + id + " is already stored");
+        }
+        kinds[id] = text == null ? FUTURE : PAST;
+        dates[id] = date;
+        firstAttendee[id] = poolSize;
+        attendeeCount[id] = attendees.length;
+        System.arraycopy(attendees, 0, pool, poolSize, attendees.length);
+        poolSize += attendees.length;
+        notes[id] = text == null ? null : new Notes(text);
+        size++;
+    }
+
+    /**
+     * Returns the number of meetings stored.
+     *
+     * @return the number of meetings.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether a meeting with the given id is stored.
+     *
+     * @param id the id of the meeting.
+     * @return true if the meeting is stored.
+     */
+    public boolean contains(int id) {
+        return kindOf(id) != ABSENT;
+    }
+
+    /**
+     * Returns whether the meeting with the given id is a FutureMeeting.
+     *
+     * @param id the id of the meeting.
+     * @return true if the meeting is stored and is a FutureMeeting.
+     */
+    public boolean isFuture(int id) {
+        return kindOf(id) == FUTURE;
+    }
+
+    /**
+     * Returns whether the meeting with the given id is a PastMeeting.
+     *
+     * @param id the id of the meeting.
+     * @return true if the meeting is stored and is a PastMeeting.
+     */
+    public boolean isPast(int id) {
+        return kindOf(id) == PAST;
+    }
+
+    private byte kindOf(int id) {
+        return id >= 0 && id < kinds.length ? kinds[id] : ABSENT;
+    }
+
+    /**
+     * Returns the date of a meeting which is stored.
+     *
+     * @param id the id of the meeting.
+     * @return the date of the meeting, in milliseconds since the epoch.
+     */
+    public long dateOf(int id) {
+        return dates[id];
+    }
+
+    /**
+     * Pass the ids of the contacts of a meeting which is stored to the given action, in ascending order.
+     *
+     * @param id the id of the meeting.
+     * @param action the action to be called for each contact.
+     */
+    public void forEachAttendee(int id, IntConsumer action) {
+        for (int a = firstAttendee[id]; a < firstAttendee[id] + attendeeCount[id]; a++) {
+            action.accept(pool[a]);
+        }
+    }
+
+    /**
+     * Turn a FutureMeeting into a PastMeeting with the given notes; it keeps its date and contacts.
+     *
+     * @param id the id of the FutureMeeting.
+     * @param text the notes of the PastMeeting.
+     * @throws IllegalStateException if the meeting is not a FutureMeeting.
+     */
+    public void convert(int id, String text) {
+        if (!isFuture(id)) {
+            throw new IllegalStateException("Meeting " + id + " is not a FutureMeeting");
+        }
+        notes[id] = new Notes(text);
+        kinds[id] = PAST;
+    }
+
+    /**
+     * Returns the notes of a PastMeeting which is stored, which are updated in place when added to.
+     *
+     * @param id the id of the PastMeeting.
+     * @return the notes of the meeting.
+     */
+    public Notes notesOf(int id) {
+        return notes[id];
+    }
+
+    /**
+     * Returns a view of the meeting with the given id: a {@see PastMeeting} or a {@see FutureMeeting}
+     * according to its current kind.
+     *
+     * @param id the id of the meeting.
+     * @return a view of the meeting, or null if there is none.
+     */
+    public Meeting get(int id) {
+        switch (kindOf(id)) {
+            case FUTURE:
+                return new FutureView(this, id, dates[id], pool, firstAttendee[id], attendeeCount[id]);
+            case PAST:
+                return new PastView(this, id, dates[id], pool, firstAttendee[id], attendeeCount[id], notes[id]);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the given meetings as they are now, as a list whose views can be created on another thread
+     * while the store keeps changing: the kinds and the notes of the meetings are copied (a few bytes for
+     * each meeting), and the other columns are shared, as they never change once a meeting is stored.
+     * The notes of a PastMeeting are still updated in place, so the list may show notes added later.
+     *
+     * @param ids the ids of meetings which are stored, in the order of the list.
+     * @return a read-only list of the views of the meetings.
+     */
+    public List<Meeting> capture(int[] ids) {
+        return new Capture(this, ids);
+    }
+
+    /**
+     * The list returned by capture(), which creates a view of a meeting each time it is read.
+     */
+    private static class Capture extends AbstractList<Meeting> implements RandomAccess {
+        private final MeetingStore store;
+        private final int[] ids;
+        private final byte[] kinds;
+        private final long[] dates;
+        private final int[] firstAttendee;
+        private final int[] attendeeCount;
+        private final Notes[] notes;
+        private final int[] pool;
+
+        Capture(MeetingStore store, int[] ids) {
+            this.store = store;
+            this.ids = ids;
+            this.kinds = store.kinds.clone();
+            this.dates = store.dates;
+            this.firstAttendee = store.firstAttendee;
+            this.attendeeCount = store.attendeeCount;
+            this.notes = store.notes.clone();
+            this.pool = store.pool;
+        }
+
+        @Override
+        public Meeting get(int index) {
+            int id = ids[index];
+            if (kinds[id] == FUTURE) {
+                return new FutureView(store, id, dates[id], pool, firstAttendee[id], attendeeCount[id]);
+            }
+            return new PastView(store, id, dates[id], pool, firstAttendee[id], attendeeCount[id], notes[id]);
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    /**
+     * A meeting of the store as seen by the users of the ContactManager. It holds what it needs of the
+     * columns of the store when it is created, so it can be read without the lock of the ContactManager.
+     */
+    public abstract static class View implements Meeting {
+        private final MeetingStore store;
+        private final int id;
+        private final long date;
+        private final int[] pool;
+        private final int first;
+        private final int count;
+
+        View(MeetingStore store, int id, long date, int[] pool, int first, int count) {
+            this.store = store;
+            this.id = id;
+            this.date = date;
+            this.pool = pool;
+            this.first = first;
+            this.count = count;
+        }
+
+        @Override
+        public int getId() {
+            return id;
+        }
+
+        @Override
+        public Calendar getDate() {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(date);
+            return calendar;
+        }
+
+        /**
+         * Returns the date of the meeting without creating a Calendar.
+         *
+         * @return the date of the meeting, in milliseconds since the epoch.
+         */
+        public long getTimeInMillis() {
+            return date;
+        }
+
+        @Override
+        public Set<Contact> getContacts() {
+            return new AttendeeSet(getAttendeeIds(), store.resolver);
+        }
+
+        /**
+         * Returns the ids of the contacts of the meeting, in ascending order, in a new array.
+         *
+         * @return the sorted ids of the contacts.
+         */
+        int[] getAttendeeIds() {
+            return Arrays.copyOfRange(pool, first, first + count);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == null || o.getClass() != getClass()) {
+                return false;
+            }
+            View other = (View) o;
+            return other.store == store && other.id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+
+    private static class FutureView extends View implements FutureMeeting {
+        FutureView(MeetingStore store, int id, long date, int[] pool, int first, int count) {
+            super(store, id, date, pool, first, count);
+        }
+    }
+
+    private static class PastView extends View implements PastMeeting {
+        private final Notes notes;
+
+        PastView(MeetingStore store, int id, long date, int[] pool, int first, int count, Notes notes) {
+            super(store, id, date, pool, first, count);
+            this.notes = notes;
+        }
+
+        @Override
+        public String getNotes() {
+            return notes.toString();
+        }
+    }
+
+}
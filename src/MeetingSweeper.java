@@ -0,0 +1,88 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A background task which periodically converts the due FutureMeetings of a {@see ContactManagerImpl}
+ * to PastMeetings, so that the conversion is done off the path of the queries.
+ * At every run the due meetings are converted in batches of a fixed size, releasing the lock
+ * of the ContactManager between one batch and the next, so that queries are never held up for
+ * longer than the conversion of a single batch.
+ *
+ * The sweeper runs on its own daemon thread from start() until close().
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class MeetingSweeper implements AutoCloseable {
+    private final ContactManagerImpl manager;
+    private final long period;
+    private final TimeUnit unit;
+    private final int batchSize;
+    private ScheduledExecutorService executor;
+
+    /**
+     * Constructor for a sweeper of the given ContactManager. The sweeper does not run until start() is called.
+     *
+     * @param manager the ContactManager whose meetings will be converted.
+     * @param period the time between two runs of the sweeper.
+     * @param unit the unit of the period.
+     * @param batchSize the maximum number of meetings converted while holding the lock of the ContactManager.
+     * @throws NullPointerException if manager or unit are null.
+     * @throws IllegalArgumentException if period or batchSize are not positive.
+     */
+    public MeetingSweeper(ContactManagerImpl manager, long period, TimeUnit unit, int batchSize) {
+        if (manager == null || unit == null) {
+            throw new NullPointerException("Argument cannot be null");
+        } else if (period <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Period and batch size must be positive");
+        }
+        this.manager = manager;
+        this.period = period;
+        this.unit = unit;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Convert all the due meetings, one batch at a time.
+     * This is what the sweeper does at every run, and it may also be called directly.
+     *
+     * @return the number of meetings converted.
+     */
+    public int sweep() {
+        int total = 0;
+        int converted;
+        do {
+            converted = manager.promoteDueMeetings(batchSize);
+            total += converted;
+        } while (converted == batchSize && !Thread.currentThread().isInterrupted());
+        return total;
+    }
+
+    /**
+     * Start running the sweeper periodically, the first time straight away.
+     *
+     * @throws IllegalStateException if the sweeper has already been started.
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            throw new IllegalStateException("The sweeper has already been started");
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MeetingSweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::sweep, 0, period, unit);
+    }
+
+    /**
+     * Stop the sweeper. A run already in progress completes its current batch.
+     */
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of the operations of a {@see ContactManagerImpl}: for each public method, the number
+ * of calls, a {@see Histogram} of their latencies and one of the sizes of their results, the number of
+ * index entries they visited, the number of FutureMeetings they converted to PastMeetings and the number
+ * of results they found in the caches of the ContactManager.
+ * Only the calls which complete are recorded, and the latency of a synchronized method is the time
+ * spent holding the lock of the ContactManager (not the time spent waiting for it).
+ *
+ * The metrics are disabled when created: a disabled call costs a volatile read when it starts and a
+ * comparison when it ends, without reading the clock. They are read with {@see #getOperations()} (or
+ * {@see #getOperation(Operation)}), or through JMX once registered with {@see #register(String)}.
+ * The figures of an operation are allocated when it is first recorded.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class Metrics implements MetricsMXBean {
+    static final long DISABLED = Long.MIN_VALUE;
+    private static final String DOMAIN = "ContactManager";
+    private final AtomicReferenceArray<Stats> stats = new AtomicReferenceArray<>(Operation.values().length);
+    private volatile boolean enabled;
+    private ObjectName name;
+
+    /**
+     * The operations recorded, one for each public method of the ContactManager.
+     */
+    public enum Operation {
+        ADD_FUTURE_MEETING("addFutureMeeting"),
+        GET_PAST_MEETING("getPastMeeting"),
+        GET_FUTURE_MEETING("getFutureMeeting"),
+        GET_MEETING("getMeeting"),
+        GET_FUTURE_MEETING_LIST("getFutureMeetingList(Contact)"),
+        GET_FUTURE_MEETING_LIST_BY_DATE("getFutureMeetingList(Calendar)"),
+        GET_MEETINGS("getMeetings"),
+        GET_PAST_MEETING_LIST("getPastMeetingList"),
+        ADD_NEW_PAST_MEETING("addNewPastMeeting"),
+        ADD_MEETING_NOTES("addMeetingNotes"),
+        ADD_NEW_CONTACT("addNewContact"),
+        GET_CONTACTS_BY_ID("getContacts(int...)"),
+        GET_CONTACTS_BY_NAME("getContacts(String)"),
+        GET_CONTACTS_BY_PREFIX("getContactsByPrefix"),
+        GET_FUTURE_MEETING_PAGE("getFutureMeetingPage"),
+        GET_PAST_MEETING_PAGE("getPastMeetingPage"),
+        PROMOTE_DUE_MEETINGS("promoteDueMeetings"),
+        IMPORT_CONTACTS("importContacts"),
+        IMPORT_MEETINGS("importMeetings"),
+        EXPORT_DATA("exportData"),
+        IMPORT_DATA("importData"),
+        FLUSH("flush"),
+        FLUSH_ASYNC("flushAsync"),
+        COMPACT("compact");
+
+        private final String method;
+
+        Operation(String method) {
+            this.method = method;
+        }
+
+        @Override
+        public String toString() {
+            return method;
+        }
+    }
+
+    /**
+     * The figures of an operation.
+     */
+    private static class Stats {
+        final Histogram latencies = new Histogram();
+        final Histogram resultSizes = new Histogram();
+        final LongAdder scanned = new LongAdder();
+        final LongAdder conversions = new LongAdder();
+        final LongAdder cacheHits = new LongAdder();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Start timing a call.
+     *
+     * @return the time when the call started, or DISABLED if the metrics are disabled.
+     */
+    long start() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    /**
+     * Record a call which has completed, unless the metrics were disabled when it started.
+     *
+     * @param op the operation called.
+     * @param start the value returned by start() when the call started.
+     * @param resultSize the number of items returned.
+     * @param scanned the number of index entries visited.
+     * @param conversions the number of FutureMeetings converted to PastMeetings.
+     * @param cacheHits the number of results found in a cache.
+     */
+    void record(Operation op, long start, long resultSize, long scanned, long conversions, long cacheHits) {
+        if (start == DISABLED) {
+            return;
+        }
+        long latency = System.nanoTime() - start;
+        Stats s = stats.get(op.ordinal());
+        if (s == null) {
+            stats.compareAndSet(op.ordinal(), null, new Stats());
+            s = stats.get(op.ordinal());
+        }
+        s.latencies.record(latency);
+        s.resultSizes.record(resultSize);
+        s.scanned.add(scanned);
+        s.conversions.add(conversions);
+        s.cacheHits.add(cacheHits);
+    }
+
+    /**
+     * Returns a snapshot of the figures of an operation.
+     *
+     * @param op the operation.
+     * @return the snapshot of the operation (with no calls if it has not been called).
+     * @throws NullPointerException if the operation is null.
+     */
+    public OperationSnapshot getOperation(Operation op) {
+        Stats s = stats.get(op.ordinal());
+        if (s == null) {
+            return new OperationSnapshot(op.toString(), new Histogram(), new Histogram(), 0, 0, 0);
+        }
+        return new OperationSnapshot(op.toString(), s.latencies, s.resultSizes, s.scanned.sum(), s.conversions.sum(),
+                s.cacheHits.sum());
+    }
+
+    @Override
+    public List<OperationSnapshot> getOperations() {
+        List<OperationSnapshot> snapshots = new ArrayList<>();
+        for (Operation op : Operation.values()) {
+            if (stats.get(op.ordinal()) != null) {
+                snapshots.add(getOperation(op));
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * A call which is being recorded while the figures are reset may be lost.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < stats.length(); i++) {
+            stats.set(i, null);
+        }
+    }
+
+    /**
+     * Register the metrics in the platform MBeanServer, with the ObjectName "ContactManager:type=Metrics,name=...".
+     * The metrics can only be registered with one name at a time.
+     *
+     * @param name the name which tells these metrics from the ones of other ContactManagers.
+     * @return the ObjectName of the metrics.
+     * @throws NullPointerException if the name is null.
+     * @throws IllegalArgumentException if the name is already registered.
+     * @throws IllegalStateException if the metrics are already registered, or cannot be registered.
+     */
+    public synchronized ObjectName register(String name) {
+        if (name == null) {
+            throw new NullPointerException("Argument cannot be null");
+        } else if (this.name != null) {
+            throw new IllegalStateException("The metrics are already registered as " + this.name);
+        }
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=Metrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.name = objectName;
+            return objectName;
+        } catch (InstanceAlreadyExistsException | MalformedObjectNameException ex) {
+            throw new IllegalArgumentException("Cannot register the metrics as " + name, ex);
+        } catch (JMException ex) {
+            throw new IllegalStateException("Cannot register the metrics as " + name, ex);
+        }
+    }
+
+    /**
+     * Remove the metrics from the platform MBeanServer, if they are registered.
+     */
+    public synchronized void unregister() {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (InstanceNotFoundException ex) {
+            // already removed through the MBeanServer
+        } catch (JMException ex) {
+            throw new IllegalStateException("Cannot unregister " + name, ex);
+        }
+        name = null;
+    }
+
+}
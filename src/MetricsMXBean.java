@@ -0,0 +1,37 @@
+import java.util.List;
+
+/**
+ * The management interface of {@see Metrics}, through which the metrics of a ContactManager
+ * can be read and switched on or off with JMX (e.g. from JConsole or VisualVM).
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public interface MetricsMXBean {
+
+    /**
+     * Returns whether the operations are being recorded.
+     *
+     * @return true if the metrics are enabled.
+     */
+    boolean isEnabled();
+
+    /**
+     * Start or stop recording the operations. The figures already recorded are kept.
+     *
+     * @param enabled whether to record the operations.
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Returns a snapshot of the figures of every operation which has been called, in the order of the operations.
+     *
+     * @return the snapshots of the operations.
+     */
+    List<OperationSnapshot> getOperations();
+
+    /**
+     * Forget the figures recorded so far.
+     */
+    void reset();
+
+}
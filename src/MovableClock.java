@@ -0,0 +1,37 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Calendar;
+
+/**
+ * A clock whose current time is set by the tests, and may be read by other threads
+ * (e.g. by a {@see MeetingSweeper}).
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+class MovableClock extends Clock {
+    private volatile long millis;
+
+    MovableClock(Calendar date) {
+        moveTo(date);
+    }
+
+    void moveTo(Calendar date) {
+        millis = date.getTimeInMillis();
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneId.systemDefault();
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return this;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.Arrays;
+
+/**
+ * An index of the names of the contacts by their trigrams (the substrings of three characters),
+ * used by {@see ContactManagerImpl} to find the contacts whose name contains a given string
+ * without scanning all the names.
+ *
+ * For each trigram the index holds the sorted ids of the contacts whose name contains it (a posting list).
+ * A name containing the query contains all of its trigrams, so the candidates are found by intersecting
+ * the posting lists of the trigrams of the query, starting from the shortest one; the caller then checks
+ * each candidate with String.contains, which also discards the names that contain all the trigrams but
+ * not in the right sequence.
+ * Trigrams are folded into an int key of an {@see IntHashMap}: two trigrams sharing a key only add
+ * candidates, which are discarded by the same check.
+ * Queries shorter than a trigram cannot be answered by the index.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class NameIndex {
+    static final int GRAM = 3;
+    private final IntHashMap<Postings> postings = new IntHashMap<>();
+
+    /**
+     * The sorted ids of the contacts whose name contains a trigram.
+     */
+    private static class Postings {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                int pos = Arrays.binarySearch(ids, 0, size, id);
+                if (pos >= 0) {
+                    return;
+                }
+                insert(-(pos + 1), id);
+            } else {
+                insert(size, id);
+            }
+        }
+
+        private void insert(int pos, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                size--;
+            }
+        }
+    }
+
+    /**
+     * Returns the key of the trigram at a position of a string, also used by the persistent index of
+     * {@see VersionedContactManager}.
+     *
+     * @param s the string.
+     * @param i the position of the first character of the trigram.
+     * @return the key of the trigram.
+     */
+    static int key(String s, int i) {
+        long gram = (long) s.charAt(i) << 32 | (long) s.charAt(i + 1) << 16 | s.charAt(i + 2);
+        return (int) (gram ^ gram >>> 29);
+    }
+
+    /**
+     * Add a contact to the index.
+     *
+     * @param id the id of the contact.
+     * @param name the name of the contact.
+     */
+    public void add(int id, String name) {
+        for (int i = 0; i + GRAM <= name.length(); i++) {
+            int key = key(name, i);
+            Postings p = postings.get(key);
+            if (p == null) {
+                p = new Postings();
+                postings.put(key, p);
+            }
+            p.add(id);
+        }
+    }
+
+    /**
+     * Remove a contact from the index, e.g. before adding it again with a new name.
+     *
+     * @param id the id of the contact.
+     * @param name the name of the contact, as it was added to the index.
+     */
+    public void remove(int id, String name) {
+        for (int i = 0; i + GRAM <= name.length(); i++) {
+            int key = key(name, i);
+            Postings p = postings.get(key);
+            if (p != null) {
+                p.remove(id);
+                if (p.size == 0) {
+                    postings.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether a query can be answered by the index, i.e. it is at least as long as a trigram.
+     *
+     * @param query the string to search for.
+     * @return true if search() can be used for the query, false if the names have to be scanned.
+     */
+    public static boolean canSearch(String query) {
+        return query.length() >= GRAM;
+    }
+
+    /**
+     * Returns the ids of the contacts whose name may contain the query, in ascending order:
+     * every contact whose name contains the query is returned, together with some which do not.
+     *
+     * @param query the string to search for, at least as long as a trigram.
+     * @return the sorted ids of the candidate contacts.
+     * @throws IllegalArgumentException if the query is shorter than a trigram.
+     */
+    public int[] search(String query) {
+        if (!canSearch(query)) {
+            throw new IllegalArgumentException("The query must have at least " + GRAM + " characters");
+        }
+        int count = query.length() - GRAM + 1;
+        Postings[] lists = new Postings[count];
+        for (int i = 0; i < count; i++) {
+            lists[i] = postings.get(key(query, i));
+            if (lists[i] == null) {
+                return new int[0];
+            }
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        int[] result = Arrays.copyOf(lists[0].ids, lists[0].size);
+        int size = result.length;
+        for (int i = 1; i < count && size > 0; i++) {
+            if (lists[i] != lists[i - 1]) {     // a trigram repeated in the query has the same list
+                size = intersect(result, size, lists[i]);
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Keep in the first size entries of result only the ids which are also in the posting list,
+     * searching each of them with an exponential search from the position of the previous one,
+     * so that a short result is intersected with a long list in less than the length of the list.
+     *
+     * @return the number of ids kept.
+     */
+    private static int intersect(int[] result, int size, Postings list) {
+        int kept = 0;
+        int from = 0;
+        for (int r = 0; r < size && from < list.size; r++) {
+            int id = result[r];
+            int step = 1;
+            int high = from;
+            while (high < list.size && list.ids[high] < id) {
+                from = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            int pos = Arrays.binarySearch(list.ids, from, Math.min(high + 1, list.size), id);
+            if (pos >= 0) {
+                result[kept++] = id;
+                from = pos + 1;
+            } else {
+                from = -(pos + 1);
+            }
+        }
+        return kept;
+    }
+
+}
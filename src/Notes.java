@@ -0,0 +1,73 @@
+/**
+ * The notes of a contact or of a past meeting, which can be added to many times.
+ *
+ * New notes are appended to a StringBuilder, after a space if there are notes already, rather than
+ * concatenated to the old ones in a new String at every addition: adding notes takes time proportional
+ * to the notes added, instead of to all the notes. The String returned by toString() is only built when
+ * it is requested after an addition, and kept until the next one.
+ * Notes which are never added to are held as the String they were created with.
+ *
+ * The methods are synchronized, so that the notes can be read by a thread while another one adds to them.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class Notes {
+    private String text;            // the notes, or null if they have changed since they were last requested
+    private StringBuilder builder;  // null until notes are added
+
+    /**
+     * Constructor for the notes.
+     *
+     * @param text the initial notes.
+     * @throws NullPointerException if the notes are null.
+     */
+    public Notes(String text) {
+        if (text == null) {
+            throw new NullPointerException("Notes cannot be null");
+        }
+        this.text = text;
+    }
+
+    /**
+     * Add some notes after the existing ones, separated by a space (unless there are no notes yet).
+     *
+     * @param more the notes to be added.
+     * @throws NullPointerException if the notes are null.
+     */
+    public synchronized void append(String more) {
+        if (more == null) {
+            throw new NullPointerException("Notes cannot be null");
+        }
+        if (builder == null) {
+            builder = new StringBuilder(text.length() + 1 + more.length()).append(text);
+        }
+        if (builder.length() > 0) {
+            builder.append(' ');
+        }
+        builder.append(more);
+        text = null;
+    }
+
+    /**
+     * Returns the length of the notes, without building them.
+     *
+     * @return the number of characters of the notes.
+     */
+    public synchronized int length() {
+        return builder == null ? text.length() : builder.length();
+    }
+
+    /**
+     * Returns the notes.
+     *
+     * @return the notes.
+     */
+    @Override
+    public synchronized String toString() {
+        if (text == null) {
+            text = builder.toString();
+        }
+        return text;
+    }
+
+}
@@ -0,0 +1,209 @@
+/**
+ * The figures recorded by {@see Metrics} for one operation of a ContactManager, as they were when
+ * the snapshot was taken: how many calls completed, how long they took, how many items they returned,
+ * how many index entries they visited, how many FutureMeetings they converted to PastMeetings and how
+ * many results they found in a cache.
+ * Latencies are in nanoseconds. Through JMX each snapshot is shown as a composite value.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class OperationSnapshot {
+    private final String operation;
+    private final long calls;
+    private final double meanLatency;
+    private final long medianLatency;
+    private final long p90Latency;
+    private final long p99Latency;
+    private final long p999Latency;
+    private final long maxLatency;
+    private final double meanResultSize;
+    private final long p99ResultSize;
+    private final long maxResultSize;
+    private final long scanned;
+    private final long conversions;
+    private final long cacheHits;
+
+    /**
+     * Constructor for a snapshot, taking the figures from the histograms of the operation.
+     *
+     * @param operation the name of the operation.
+     * @param latencies the latencies of the calls.
+     * @param resultSizes the sizes of the results of the calls.
+     * @param scanned the number of index entries visited by the calls.
+     * @param conversions the number of FutureMeetings converted by the calls.
+     * @param cacheHits the number of results found in a cache by the calls.
+     */
+    OperationSnapshot(String operation, Histogram latencies, Histogram resultSizes, long scanned, long conversions,
+                      long cacheHits) {
+        this.operation = operation;
+        this.calls = latencies.getCount();
+        this.meanLatency = latencies.getMean();
+        this.medianLatency = latencies.getValueAtPercentile(50);
+        this.p90Latency = latencies.getValueAtPercentile(90);
+        this.p99Latency = latencies.getValueAtPercentile(99);
+        this.p999Latency = latencies.getValueAtPercentile(99.9);
+        this.maxLatency = latencies.getMax();
+        this.meanResultSize = resultSizes.getMean();
+        this.p99ResultSize = resultSizes.getValueAtPercentile(99);
+        this.maxResultSize = resultSizes.getMax();
+        this.scanned = scanned;
+        this.conversions = conversions;
+        this.cacheHits = cacheHits;
+    }
+
+    /**
+     * Returns the name of the operation, e.g. "getFutureMeetingList(Contact)".
+     *
+     * @return the name of the operation.
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Returns the number of calls which completed without throwing an exception.
+     *
+     * @return the number of calls.
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Returns the mean latency of a call.
+     *
+     * @return the mean latency, in nanoseconds.
+     */
+    public double getMeanLatency() {
+        return meanLatency;
+    }
+
+    /**
+     * Returns the latency not exceeded by half of the calls.
+     *
+     * @return the median latency, in nanoseconds.
+     */
+    public long getMedianLatency() {
+        return medianLatency;
+    }
+
+    /**
+     * Returns the latency not exceeded by 90% of the calls.
+     *
+     * @return the 90th percentile of the latency, in nanoseconds.
+     */
+    public long getP90Latency() {
+        return p90Latency;
+    }
+
+    /**
+     * Returns the latency not exceeded by 99% of the calls.
+     *
+     * @return the 99th percentile of the latency, in nanoseconds.
+     */
+    public long getP99Latency() {
+        return p99Latency;
+    }
+
+    /**
+     * Returns the latency not exceeded by 99.9% of the calls.
+     *
+     * @return the 99.9th percentile of the latency, in nanoseconds.
+     */
+    public long getP999Latency() {
+        return p999Latency;
+    }
+
+    /**
+     * Returns the latency of the slowest call.
+     *
+     * @return the largest latency, in nanoseconds.
+     */
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    /**
+     * Returns the mean number of items returned by a call (e.g. the meetings of a list, or the ids of an import);
+     * a single meeting or contact counts as 1, and null or no result as 0.
+     *
+     * @return the mean size of the results.
+     */
+    public double getMeanResultSize() {
+        return meanResultSize;
+    }
+
+    /**
+     * Returns the size of result not exceeded by 99% of the calls.
+     *
+     * @return the 99th percentile of the size of the results.
+     */
+    public long getP99ResultSize() {
+        return p99ResultSize;
+    }
+
+    /**
+     * Returns the size of the largest result.
+     *
+     * @return the largest size of a result.
+     */
+    public long getMaxResultSize() {
+        return maxResultSize;
+    }
+
+    /**
+     * Returns the total number of entries of the indexes visited by the calls (e.g. the candidates checked
+     * by a search of names), which is the size of the result for the operations which return every entry
+     * they visit.
+     *
+     * @return the number of entries visited.
+     */
+    public long getScanned() {
+        return scanned;
+    }
+
+    /**
+     * Returns the mean number of entries of the indexes visited by a call.
+     *
+     * @return the mean scan length.
+     */
+    public double getMeanScanLength() {
+        return calls == 0 ? 0 : (double) scanned / calls;
+    }
+
+    /**
+     * Returns the number of FutureMeetings with a past date converted to PastMeetings by the calls.
+     *
+     * @return the number of conversions.
+     */
+    public long getConversions() {
+        return conversions;
+    }
+
+    /**
+     * Returns the number of calls whose result was found in a cache.
+     *
+     * @return the number of cache hits.
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Returns the share of the calls whose result was found in a cache.
+     *
+     * @return the hit rate, from 0 to 1.
+     */
+    public double getCacheHitRate() {
+        return calls == 0 ? 0 : (double) cacheHits / calls;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d calls, latency mean %.0f ns, p50 %d, p99 %d, p99.9 %d, max %d; "
+                        + "result mean %.1f, max %d; scanned %d; conversions %d; cache hits %d", operation, calls,
+                meanLatency, medianLatency, p99Latency, p999Latency, maxLatency, meanResultSize, maxResultSize, scanned,
+                conversions, cacheHits);
+    }
+
+}
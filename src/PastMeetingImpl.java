@@ -1,15 +1,25 @@
-import java.io.Serializable;
+import java.io.*;
 import java.util.Calendar;
 import java.util.Set;
 
 /**
  * Implementation of interface {@see PastMeeting}.
  *
+ * The notes are held as {@see Notes}, so that adding notes updates the meeting in place and takes time
+ * proportional to the notes added. The serialized form still has the notes as a String.
+ *
+ * The constructors check that the date is not in the future of the system clock. A ContactManager, which
+ * checks the date against its own clock (e.g. a fixed clock in tests), or restores a meeting already checked,
+ * creates it with createChecked() instead.
+ *
  * @author federico.bartolomei (BBK-PiJ-2014-21)
  */
 public class PastMeetingImpl extends MeetingImpl implements Serializable, PastMeeting {
     private static final long serialVersionUID = 1L;
-    private String notes;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("notes", String.class)
+    };
+    private Notes notes;
 
     /**
      * Constructor for a past meeting without any notes.
@@ -23,10 +33,10 @@ public class PastMeetingImpl extends MeetingImpl implements Serializable, PastMe
      */
     public PastMeetingImpl(Calendar date, Set<Contact> contacts, int id) {
         super(date, contacts, id);
-        if(date.after(Calendar.getInstance())) {
+        if(getTimeInMillis() > System.currentTimeMillis()) {
             throw new IllegalArgumentException("Cannot create a PastMeeting with a future date");
         }
-        notes = "";
+        notes = new Notes("");
     }
 
     /**
@@ -43,13 +53,53 @@ public class PastMeetingImpl extends MeetingImpl implements Serializable, PastMe
         super(date, contacts, id);
         if (notes == null) {
             throw new NullPointerException("Cannot add null notes");
-        } else if(date.after(Calendar.getInstance())) {
+        } else if(getTimeInMillis() > System.currentTimeMillis()) {
+            throw new IllegalArgumentException("Cannot create a PastMeeting with a future date");
+        } else {
+            this.notes = new Notes(notes);
+        }
+    }
+
+    /**
+     * Constructor for a past meeting with notes, with the date in milliseconds since the epoch.
+     *
+     * @param date the date of the meeting, in milliseconds since the epoch
+     * @param contacts the contacts that attended the meeting
+     * @param id the unique-id of the meeting
+     * @param notes the notes about the meeting
+     * @throws NullPointerException for an attempt to add null notes
+     * @throws IllegalArgumentException if the date entered is in the future
+     */
+    public PastMeetingImpl(long date, Set<Contact> contacts, int id, String notes) {
+        this(date, contacts, id, notes, System.currentTimeMillis());
+    }
+
+    private PastMeetingImpl(long date, Set<Contact> contacts, int id, String notes, long now) {
+        super(date, contacts, id);
+        if (notes == null) {
+            throw new NullPointerException("Cannot add null notes");
+        } else if(date > now) {
             throw new IllegalArgumentException("Cannot create a PastMeeting with a future date");
         } else {
-            this.notes = notes;
+            this.notes = new Notes(notes);
         }
     }
 
+    /**
+     * Create a past meeting whose date is not checked against the system clock: it is used by a ContactManager,
+     * which has already checked the date against its own clock, or restores a meeting it checked before.
+     *
+     * @param date the date of the meeting, in milliseconds since the epoch
+     * @param contacts the contacts that attended the meeting
+     * @param id the unique-id of the meeting
+     * @param notes the notes about the meeting
+     * @return the new past meeting
+     * @throws NullPointerException for an attempt to add null notes
+     */
+    static PastMeetingImpl createChecked(long date, Set<Contact> contacts, int id, String notes) {
+        return new PastMeetingImpl(date, contacts, id, notes, Long.MAX_VALUE);
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -57,11 +107,21 @@ public class PastMeetingImpl extends MeetingImpl implements Serializable, PastMe
      */
     @Override
     public String getNotes() {
-        return notes;
+        return notes.toString();
     }
 
     /**
-     * Add some notes about the past meeting.
+     * Returns the length of the notes, without building them.
+     *
+     * @return the number of characters of the notes.
+     */
+    public int getNotesLength() {
+        return notes.length();
+    }
+
+    /**
+     * Add some notes about the past meeting, after the ones it already has.
+     * The meeting is updated in place, and can be read by other threads at the same time.
      *
      * @param newNotes the new notes to be added about the meeting
      * @throws NullPointerException for an attempt to add null notes
@@ -70,12 +130,19 @@ public class PastMeetingImpl extends MeetingImpl implements Serializable, PastMe
         if(newNotes==null) {
             throw new NullPointerException("Cannot add null notes");
         } else {
-            if(notes.equals("")) {
-                notes = newNotes;
-            } else {
-                notes += " " + newNotes;
-            }
+            notes.append(newNotes);
         }
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("notes", getNotes());
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        notes = new Notes((String) fields.get("notes", ""));
+    }
+
 }
@@ -0,0 +1,165 @@
+import java.util.function.Consumer;
+
+/**
+ * An immutable map from primitive int keys to objects, held in a hash array mapped trie (HAMT), used by
+ * {@see VersionedContactManager} to index contacts and meetings by their id in each version of its data.
+ * put() returns a new map, which shares with the old one every node but the (at most seven) on the path
+ * to the key, so both can be read at the same time by any thread without locks.
+ *
+ * Each node of the trie holds a bitmap of 32 bits, telling which of the 32 values of the next five bits of
+ * the key are present, and an array with only the children present, each either an entry or a node of
+ * the next level. The bits of the key are used from the lowest, so the ids issued in sequence fill the
+ * nodes evenly, and two keys always differ at some level, as the key is used as its own hash.
+ * Null values are not allowed, as get() returns null for a missing key.
+ *
+ * @param <V> the type of the values.
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public final class PersistentIntMap<V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(new Node(0, new Object[0]), 0);
+    private final Node root;
+    private final int size;
+
+    private static final class Node {
+        final int bitmap;
+        final Object[] children;
+
+        Node(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+    }
+
+    private static final class Entry {
+        final int key;
+        final Object value;
+
+        Entry(int key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private PersistentIntMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty map.
+     *
+     * @param <V> the type of the values.
+     * @return a map without entries.
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    /**
+     * Returns the value associated with the key.
+     *
+     * @param key the key.
+     * @return the value, or null if the key is not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Node node = root;
+        for (int shift = 0; ; shift += BITS) {
+            int bit = 1 << ((key >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object child = node.children[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (child instanceof Entry) {
+                Entry entry = (Entry) child;
+                return entry.key == key ? (V) entry.value : null;
+            }
+            node = (Node) child;
+        }
+    }
+
+    /**
+     * Returns a map with the key associated with the value, replacing the value it had if any.
+     * This map is not changed.
+     *
+     * @param key the key.
+     * @param value the value.
+     * @return the new map.
+     * @throws NullPointerException if the value is null.
+     */
+    public PersistentIntMap<V> put(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not allowed");
+        }
+        boolean added = get(key) == null;
+        return new PersistentIntMap<>(put(root, 0, new Entry(key, value)), added ? size + 1 : size);
+    }
+
+    private static Node put(Node node, int shift, Entry entry) {
+        int bit = 1 << ((entry.key >>> shift) & MASK);
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            Object[] children = new Object[node.children.length + 1];
+            System.arraycopy(node.children, 0, children, 0, index);
+            children[index] = entry;
+            System.arraycopy(node.children, index, children, index + 1, node.children.length - index);
+            return new Node(node.bitmap | bit, children);
+        }
+        Object child = node.children[index];
+        Object[] children = node.children.clone();
+        if (child instanceof Node) {
+            children[index] = put((Node) child, shift + BITS, entry);
+        } else if (((Entry) child).key == entry.key) {
+            children[index] = entry;
+        } else {
+            children[index] = merge((Entry) child, entry, shift + BITS);
+        }
+        return new Node(node.bitmap, children);
+    }
+
+    /**
+     * Returns the node which holds two entries whose keys are the same up to the given shift.
+     */
+    private static Node merge(Entry a, Entry b, int shift) {
+        int bitA = (a.key >>> shift) & MASK;
+        int bitB = (b.key >>> shift) & MASK;
+        if (bitA == bitB) {
+            return new Node(1 << bitA, new Object[] {merge(a, b, shift + BITS)});
+        }
+        Object[] children = bitA < bitB ? new Object[] {a, b} : new Object[] {b, a};
+        return new Node((1 << bitA) | (1 << bitB), children);
+    }
+
+    /**
+     * Returns the number of entries of the map.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Perform the given action on every value of the map, in no particular order.
+     *
+     * @param action the action to be performed on each value.
+     */
+    public void forEach(Consumer<? super V> action) {
+        forEach(root, action);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void forEach(Node node, Consumer<? super V> action) {
+        for (Object child : node.children) {
+            if (child instanceof Entry) {
+                action.accept((V) ((Entry) child).value);
+            } else {
+                forEach((Node) child, action);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable sorted set, held in an AVL tree, used by {@see VersionedContactManager} for the indexes
+ * by name and by date of each version of its data. with() returns a new set, which shares with the old one
+ * every node but the ones on the path to the new element (about log2 of the size, rebalancing included),
+ * so both can be read at the same time by any thread without locks.
+ * Elements are never removed, as nothing is ever removed from the indexes of a ContactManager.
+ *
+ * @param <E> the type of the elements.
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public final class PersistentSortedSet<E> implements Iterable<E> {
+    private final Comparator<? super E> comparator;
+    private final Node<E> root;
+    private final int size;
+
+    private static final class Node<E> {
+        final E element;
+        final Node<E> left;
+        final Node<E> right;
+        final int height;
+
+        Node(E element, Node<E> left, Node<E> right) {
+            this.element = element;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+        }
+    }
+
+    /**
+     * Constructor for an empty set.
+     *
+     * @param comparator the order of the elements.
+     * @throws NullPointerException if the comparator is null.
+     */
+    public PersistentSortedSet(Comparator<? super E> comparator) {
+        this(comparator, null, 0);
+    }
+
+    private PersistentSortedSet(Comparator<? super E> comparator, Node<E> root, int size) {
+        if (comparator == null) {
+            throw new NullPointerException("Argument cannot be null");
+        }
+        this.comparator = comparator;
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns a set with the given element added to the elements of this one, which is not changed.
+     *
+     * @param element the element to be added.
+     * @return the new set, or this set if it already contains the element.
+     * @throws NullPointerException if the element is null.
+     */
+    public PersistentSortedSet<E> with(E element) {
+        if (element == null) {
+            throw new NullPointerException("Argument cannot be null");
+        } else if (contains(element)) {
+            return this;
+        }
+        return new PersistentSortedSet<>(comparator, insert(root, element), size + 1);
+    }
+
+    private Node<E> insert(Node<E> node, E element) {
+        if (node == null) {
+            return new Node<>(element, null, null);
+        } else if (comparator.compare(element, node.element) < 0) {
+            return balance(node.element, insert(node.left, element), node.right);
+        } else {
+            return balance(node.element, node.left, insert(node.right, element));
+        }
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * Returns a node with the given element and children, rotated if the heights of the children
+     * differ by two (one insertion below a balanced node never unbalances it by more).
+     */
+    private static <E> Node<E> balance(E element, Node<E> left, Node<E> right) {
+        if (height(left) > height(right) + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.element, left.left, new Node<>(element, left.right, right));
+            }
+            return new Node<>(left.right.element, new Node<>(left.element, left.left, left.right.left),
+                    new Node<>(element, left.right.right, right));
+        } else if (height(right) > height(left) + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.element, new Node<>(element, left, right.left), right.right);
+            }
+            return new Node<>(right.left.element, new Node<>(element, left, right.left.left),
+                    new Node<>(right.element, right.left.right, right.right));
+        }
+        return new Node<>(element, left, right);
+    }
+
+    /**
+     * Returns whether the set contains an element equal to the given one in the order of the set.
+     *
+     * @param element the element to be looked for.
+     * @return true if the set contains the element.
+     */
+    public boolean contains(E element) {
+        Node<E> node = root;
+        while (node != null) {
+            int cmp = comparator.compare(element, node.element);
+            if (cmp == 0) {
+                return true;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of elements of the set.
+     *
+     * @return the number of elements.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an iterator over the elements of the set, in ascending order.
+     *
+     * @return an iterator over all the elements.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Ascending(null, true);
+    }
+
+    /**
+     * Returns an iterator over the elements of the set from the given one, in ascending order.
+     *
+     * @param from the element where the iteration starts (which need not be in the set).
+     * @param inclusive whether an element equal to from is included.
+     * @return an iterator over the elements after from.
+     */
+    public Iterator<E> iterator(E from, boolean inclusive) {
+        if (from == null) {
+            throw new NullPointerException("Argument cannot be null");
+        }
+        return new Ascending(from, inclusive);
+    }
+
+    /**
+     * An in-order walk of the tree, with the path of the nodes whose right side is still to be visited.
+     */
+    private class Ascending implements Iterator<E> {
+        private final Deque<Node<E>> path = new ArrayDeque<>();
+
+        Ascending(E from, boolean inclusive) {
+            Node<E> node = root;
+            while (node != null) {
+                int cmp = from == null ? -1 : comparator.compare(from, node.element);
+                if (cmp < 0 || cmp == 0 && inclusive) {
+                    path.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            if (path.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node<E> node = path.pop();
+            for (Node<E> n = node.right; n != null; n = n.left) {
+                path.push(n);
+            }
+            return node.element;
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A sorted collection of contact ids keyed by the name of the contact, used by {@see ContactManagerImpl}
+ * to find the contacts whose name starts with a prefix, in order of name.
+ *
+ * Entries are ordered by name and then by id, and held in blocks of parallel arrays (a two-level
+ * B+tree, see {@see SortedBlocks}): a binary search over the first name of each block, and then one
+ * inside the block, finds the first name not before the prefix, and the following entries are read
+ * in order until a name does not start with the prefix or enough entries have been found.
+ * A search therefore takes a logarithmic time plus the number of entries returned.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class PrefixIndex extends SortedBlocks<String[]> {
+    private String key;     // the name searched for
+
+    /**
+     * Constructor for an empty index.
+     */
+    public PrefixIndex() {
+    }
+
+    @Override
+    protected String[] newKeys(int capacity) {
+        return new String[capacity];
+    }
+
+    @Override
+    protected int compareKeys(String[] names1, int i1, String[] names2, int i2) {
+        return names1[i1].compareTo(names2[i2]);
+    }
+
+    @Override
+    protected int compareToKey(String[] names, int i) {
+        return names[i].compareTo(key);
+    }
+
+    @Override
+    protected void setKey(String[] names, int i) {
+        names[i] = key;
+    }
+
+    @Override
+    protected void clearKeys(String[] names, int from, int to) {
+        Arrays.fill(names, from, to, null);
+    }
+
+    /**
+     * Add a contact to the index. Adding the same entry twice has no effect.
+     *
+     * @param name the name of the contact.
+     * @param id the id of the contact.
+     */
+    public void add(String name, int id) {
+        key = name;
+        insert(id);
+    }
+
+    /**
+     * Add many contacts to the index at once, e.g. when they are imported: the entries are merged with
+     * the blocks of the index they fall into, as in {@see DateIndex#addAll}.
+     * Entries already in the index, or repeated, are only kept once.
+     *
+     * @param names the names of the contacts.
+     * @param ids the ids of the contacts.
+     * @param from the first entry to add (inclusive).
+     * @param to the last entry to add (exclusive); the entries in the range must be sorted by name and then by id.
+     * @throws IllegalArgumentException if the entries are not sorted.
+     */
+    public void addAll(String[] names, int[] ids, int from, int to) {
+        merge(names, ids, from, to);
+    }
+
+    /**
+     * Remove a contact from the index, e.g. before adding it again with a new name.
+     *
+     * @param name the name of the contact, as it was added to the index.
+     * @param id the id of the contact.
+     * @return true if the contact was in the index, false otherwise.
+     */
+    public boolean remove(String name, int id) {
+        key = name;
+        return delete(id);
+    }
+
+    /**
+     * Perform the given action on the id of the contacts whose name starts with the prefix,
+     * in order of name and id, up to a maximum number.
+     *
+     * @param prefix the start of the names to search for.
+     * @param limit the maximum number of contacts.
+     * @param action the action to be performed on the id of each contact.
+     * @return the number of contacts found.
+     */
+    public int forEachWithPrefix(String prefix, int limit, IntConsumer action) {
+        key = prefix;
+        int found = 0;
+        for (int b = findBlock(); b < blocks.size() && found < limit; b++) {
+            Block<String[]> block = blocks.get(b);
+            for (int i = lowerBound(block); i < block.size && found < limit; i++) {
+                if (!block.keys[i].startsWith(prefix)) {
+                    return found;
+                }
+                action.accept(block.ids[i]);
+                found++;
+            }
+        }
+        return found;
+    }
+
+}
@@ -0,0 +1,589 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the contacts and meetings written by a {@see RecordWriter} (or by any other program) in one of
+ * the text {@see DataFormat}s, passing them one at a time to a {@see Handler}.
+ *
+ * The file is read into a buffer which only grows to hold the longest record, so that the memory used
+ * does not depend on the size of the file. Each record is parsed in place: numbers are read straight from
+ * the bytes, and the only objects created are the Strings of names and notes, and the array of the contacts
+ * of each meeting. Blank lines are skipped, and a line may end with "\r\n" as well as with "\n".
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class RecordReader implements AutoCloseable {
+    static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] CONTACT = bytes("contact");
+    private static final byte[] PAST = bytes("past");
+    private static final byte[] FUTURE = bytes("future");
+    private static final byte[][] TYPES = {CONTACT, PAST, FUTURE};
+    private static final byte[] TYPE = bytes("type");
+    private static final byte[] ID = bytes("id");
+    private static final byte[] NAME = bytes("name");
+    private static final byte[] NOTES = bytes("notes");
+    private static final byte[] DATE = bytes("date");
+    private static final byte[] CONTACTS = bytes("contacts");
+    private static final byte[] NULL = bytes("null");
+
+    private final FileChannel channel;
+    private final DataFormat format;
+    private byte[] bytes;
+    private ByteBuffer buffer;      // wraps bytes: the data read ends at its position
+    private boolean eof;
+    private int start;              // the first byte of the current record
+    private int end;                // the end of the current record, without the line break
+    private int next;               // the first byte of the next record
+    private int pos;                // the next byte to be parsed
+    private int recordLines;
+    private long line = 1;
+    private byte[] text = new byte[256];
+    private int[] ids = new int[16];
+
+    /**
+     * Receives the records read by read(). The ids are the ones found in the file.
+     */
+    public interface Handler {
+
+        /**
+         * A contact was read.
+         *
+         * @param id the id of the contact.
+         * @param name the name of the contact.
+         * @param notes the notes about the contact.
+         */
+        void contactRead(int id, String name, String notes);
+
+        /**
+         * A meeting was read.
+         *
+         * @param id the id of the meeting.
+         * @param date the date of the meeting, in milliseconds since the epoch.
+         * @param notes the notes of a PastMeeting, or null for a FutureMeeting.
+         * @param contacts the ids of the contacts of the meeting, in the order found in the file.
+         */
+        void meetingRead(int id, long date, String notes, int[] contacts);
+    }
+
+    /**
+     * Constructor for a reader of the given file.
+     *
+     * @param file the file to be read.
+     * @param format the format of the records.
+     * @throws NullPointerException if any of the arguments is null.
+     * @throws IOException if the file cannot be opened.
+     */
+    public RecordReader(Path file, DataFormat format) throws IOException {
+        this(file, format, BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor for a reader whose buffer starts with the given size (e.g. a tiny one, to test
+     * records spanning many reads).
+     */
+    RecordReader(Path file, DataFormat format, int bufferSize) throws IOException {
+        if (file == null || format == null) {
+            throw new NullPointerException("Argument cannot be null");
+        }
+        this.format = format;
+        bytes = new byte[bufferSize];
+        buffer = ByteBuffer.wrap(bytes);
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Read all the records left in the file, passing them to the handler in the order they are found.
+     *
+     * @param handler the handler of the records.
+     * @return the number of records read.
+     * @throws IOException if the file cannot be read, or a record is not valid (the message gives its line).
+     */
+    public long read(Handler handler) throws IOException {
+        long records = 0;
+        while (nextRecord()) {
+            if (end > start && bytes[end - 1] == '\r') {
+                end--;
+            }
+            pos = start;
+            if (end > start) {
+                if (format == DataFormat.CSV) {
+                    parseCsv(handler);
+                } else {
+                    parseJson(handler);
+                }
+                records++;
+            }
+            line += recordLines;
+            start = next;
+        }
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Find the end of the record starting at start, reading more of the file if needed.
+     * In CSV a line break between double quotes is part of a field; in JSON a line break
+     * always ends a record, as it cannot appear in a string.
+     *
+     * @return false if there are no records left.
+     */
+    private boolean nextRecord() throws IOException {
+        boolean quoted = false;
+        int scan = start;
+        recordLines = 0;
+        while (true) {
+            int limit = buffer.position();
+            for (; scan < limit; scan++) {
+                byte b = bytes[scan];
+                if (b == '"' && format == DataFormat.CSV) {
+                    quoted = !quoted;
+                } else if (b == '\n') {
+                    recordLines++;
+                    if (!quoted) {
+                        end = scan;
+                        next = scan + 1;
+                        return true;
+                    }
+                }
+            }
+            if (eof) {
+                if (start == limit) {
+                    return false;
+                }
+                end = limit;
+                next = limit;
+                return true;
+            }
+            scan -= start;
+            fill();
+            scan += start;
+        }
+    }
+
+    /**
+     * Read more of the file, first moving the current record to the beginning of the buffer,
+     * or doubling the buffer if the record already fills it.
+     */
+    private void fill() throws IOException {
+        if (!buffer.hasRemaining()) {
+            int length = buffer.position() - start;
+            if (start > 0) {
+                System.arraycopy(bytes, start, bytes, 0, length);
+            } else {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                buffer = ByteBuffer.wrap(bytes);
+            }
+            buffer.position(length);
+            start = 0;
+        }
+        if (channel.read(buffer) < 0) {
+            eof = true;
+        }
+    }
+
+    private IOException error(String message) {
+        return new IOException("Line " + line + ": " + message);
+    }
+
+    private void parseCsv(Handler handler) throws IOException {
+        int fieldEnd = csvFieldEnd();
+        byte[] type = match(start, fieldEnd);
+        if (type == null) {
+            throw error("unknown type of record");
+        }
+        pos = fieldEnd;
+        csvSeparator();
+        int id = toInt(number());
+        csvSeparator();
+        if (type == CONTACT) {
+            String name = csvText();
+            csvSeparator();
+            String notes = csvText();
+            csvEnd();
+            handler.contactRead(id, name, notes);
+        } else {
+            long date = number();
+            csvSeparator();
+            int count = 0;
+            while (true) {
+                ids = count == ids.length ? Arrays.copyOf(ids, count * 2) : ids;
+                ids[count++] = toInt(number());
+                if (pos == end || bytes[pos] != ';') {
+                    break;
+                }
+                pos++;
+            }
+            String notes = null;
+            if (type == PAST) {
+                csvSeparator();
+                notes = csvText();
+            }
+            csvEnd();
+            handler.meetingRead(id, date, notes, Arrays.copyOf(ids, count));
+        }
+    }
+
+    private int csvFieldEnd() {
+        int i = pos;
+        while (i < end && bytes[i] != ',') {
+            i++;
+        }
+        return i;
+    }
+
+    private void csvSeparator() throws IOException {
+        if (pos == end || bytes[pos] != ',') {
+            throw error("missing field");
+        }
+        pos++;
+    }
+
+    private void csvEnd() throws IOException {
+        if (pos != end) {
+            throw error("too many fields");
+        }
+    }
+
+    /**
+     * Read a text field: a quoted field is copied without its quotes, and with its double quotes undoubled.
+     */
+    private String csvText() throws IOException {
+        if (pos == end || bytes[pos] != '"') {
+            int fieldEnd = csvFieldEnd();
+            String s = new String(bytes, pos, fieldEnd - pos, StandardCharsets.UTF_8);
+            pos = fieldEnd;
+            return s;
+        }
+        int length = 0;
+        pos++;
+        while (true) {
+            if (pos == end) {
+                throw error("unterminated quoted field");
+            }
+            byte b = bytes[pos++];
+            if (b == '"') {
+                if (pos == end || bytes[pos] != '"') {
+                    break;
+                }
+                pos++;
+            }
+            ensureText(length + 1);
+            text[length++] = b;
+        }
+        return new String(text, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void parseJson(Handler handler) throws IOException {
+        byte[] type = null;
+        long id = Long.MIN_VALUE;
+        long date = Long.MIN_VALUE;
+        boolean hasDate = false;
+        String name = null;
+        String notes = null;
+        int[] contacts = null;
+        jsonSpaces();
+        jsonExpect('{');
+        jsonSpaces();
+        if (pos < end && bytes[pos] == '}') {
+            pos++;
+        } else {
+            while (true) {
+                int length = jsonString();
+                jsonSpaces();
+                jsonExpect(':');
+                jsonSpaces();
+                if (isKey(length, TYPE)) {
+                    type = match(0, jsonString());
+                    if (type == null) {
+                        throw error("unknown type of record");
+                    }
+                } else if (isKey(length, ID)) {
+                    id = toInt(number());
+                } else if (isKey(length, DATE)) {
+                    date = number();
+                    hasDate = true;
+                } else if (isKey(length, NAME)) {
+                    name = new String(text, 0, jsonString(), StandardCharsets.UTF_8);
+                } else if (isKey(length, NOTES)) {
+                    notes = jsonNull() ? null : new String(text, 0, jsonString(), StandardCharsets.UTF_8);
+                } else if (isKey(length, CONTACTS)) {
+                    contacts = jsonNumbers();
+                } else {
+                    jsonSkip();
+                }
+                jsonSpaces();
+                if (pos < end && bytes[pos] == ',') {
+                    pos++;
+                    jsonSpaces();
+                } else {
+                    jsonExpect('}');
+                    break;
+                }
+            }
+        }
+        jsonSpaces();
+        if (pos != end) {
+            throw error("unexpected data after the object");
+        } else if (type == null || id == Long.MIN_VALUE) {
+            throw error("missing type or id");
+        } else if (type == CONTACT) {
+            if (name == null) {
+                throw error("missing name");
+            }
+            handler.contactRead((int) id, name, notes == null ? "" : notes);
+        } else {
+            if (!hasDate || contacts == null) {
+                throw error("missing date or contacts");
+            }
+            handler.meetingRead((int) id, date, type == PAST ? (notes == null ? "" : notes) : null, contacts);
+        }
+    }
+
+    private void jsonSpaces() {
+        while (pos < end && (bytes[pos] == ' ' || bytes[pos] == '\t')) {
+            pos++;
+        }
+    }
+
+    private void jsonExpect(char c) throws IOException {
+        if (pos == end || bytes[pos] != c) {
+            throw error("expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private boolean jsonNull() {
+        if (end - pos >= NULL.length && matches(bytes, pos, NULL)) {
+            pos += NULL.length;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Read a string, decoding its escapes into the UTF-8 bytes of text.
+     *
+     * @return the number of bytes of the string.
+     */
+    private int jsonString() throws IOException {
+        jsonExpect('"');
+        int length = 0;
+        while (true) {
+            if (pos == end) {
+                throw error("unterminated string");
+            }
+            byte b = bytes[pos++];
+            if (b == '"') {
+                return length;
+            }
+            ensureText(length + 4);
+            if (b != '\\') {
+                text[length++] = b;
+                continue;
+            }
+            if (pos == end) {
+                throw error("unterminated string");
+            }
+            b = bytes[pos++];
+            switch (b) {
+                case '"': case '\\': case '/':
+                    text[length++] = b;
+                    break;
+                case 'b':
+                    text[length++] = '\b';
+                    break;
+                case 'f':
+                    text[length++] = '\f';
+                    break;
+                case 'n':
+                    text[length++] = '\n';
+                    break;
+                case 'r':
+                    text[length++] = '\r';
+                    break;
+                case 't':
+                    text[length++] = '\t';
+                    break;
+                case 'u':
+                    int c = hex();
+                    if (Character.isHighSurrogate((char) c) && end - pos >= 6
+                            && bytes[pos] == '\\' && bytes[pos + 1] == 'u') {
+                        pos += 2;
+                        int low = hex();
+                        if (Character.isLowSurrogate((char) low)) {
+                            c = Character.toCodePoint((char) c, (char) low);
+                        } else {
+                            pos -= 6;   // decode the second escape on its own
+                        }
+                    }
+                    length = utf8(c, length);
+                    break;
+                default:
+                    throw error("invalid escape");
+            }
+        }
+    }
+
+    private int hex() throws IOException {
+        if (end - pos < 4) {
+            throw error("invalid escape");
+        }
+        int c = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(bytes[pos++], 16);
+            if (digit < 0) {
+                throw error("invalid escape");
+            }
+            c = c << 4 | digit;
+        }
+        return c;
+    }
+
+    /**
+     * Encode a code point in UTF-8 at the given position of text; an unpaired surrogate becomes '?'.
+     *
+     * @return the position after the encoded code point.
+     */
+    private int utf8(int c, int length) {
+        if (c < 0x80) {
+            text[length++] = (byte) c;
+        } else if (c < 0x800) {
+            text[length++] = (byte) (0xc0 | c >> 6);
+            text[length++] = (byte) (0x80 | c & 0x3f);
+        } else if (c >= 0x10000) {
+            text[length++] = (byte) (0xf0 | c >> 18);
+            text[length++] = (byte) (0x80 | c >> 12 & 0x3f);
+            text[length++] = (byte) (0x80 | c >> 6 & 0x3f);
+            text[length++] = (byte) (0x80 | c & 0x3f);
+        } else if (Character.isSurrogate((char) c)) {
+            text[length++] = '?';
+        } else {
+            text[length++] = (byte) (0xe0 | c >> 12);
+            text[length++] = (byte) (0x80 | c >> 6 & 0x3f);
+            text[length++] = (byte) (0x80 | c & 0x3f);
+        }
+        return length;
+    }
+
+    private int[] jsonNumbers() throws IOException {
+        jsonExpect('[');
+        jsonSpaces();
+        int count = 0;
+        if (pos < end && bytes[pos] == ']') {
+            pos++;
+            return new int[0];
+        }
+        while (true) {
+            ids = count == ids.length ? Arrays.copyOf(ids, count * 2) : ids;
+            ids[count++] = toInt(number());
+            jsonSpaces();
+            if (pos < end && bytes[pos] == ',') {
+                pos++;
+                jsonSpaces();
+            } else {
+                jsonExpect(']');
+                return Arrays.copyOf(ids, count);
+            }
+        }
+    }
+
+    /**
+     * Skip the value of a member which is not used: strings are skipped as a whole, so that the
+     * brackets and commas inside them are not taken for the structure of the value.
+     */
+    private void jsonSkip() throws IOException {
+        int depth = 0;
+        while (pos < end) {
+            byte b = bytes[pos];
+            if (b == '"') {
+                jsonString();
+                continue;
+            } else if (b == '[' || b == '{') {
+                depth++;
+            } else if (b == ']' || b == '}' || b == ',') {
+                if (depth == 0) {
+                    return;
+                } else if (b != ',') {
+                    depth--;
+                }
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Read an integer, which fits in a long, from the bytes at pos.
+     */
+    private long number() throws IOException {
+        boolean negative = pos < end && bytes[pos] == '-';
+        if (negative) {
+            pos++;
+        }
+        int first = pos;
+        long n = 0;     // accumulated as a negative number, so that Long.MIN_VALUE fits
+        try {
+            while (pos < end && bytes[pos] >= '0' && bytes[pos] <= '9') {
+                n = Math.subtractExact(Math.multiplyExact(n, 10), bytes[pos++] - '0');
+            }
+            if (pos == first) {
+                throw error("expected a number");
+            }
+            return negative ? n : Math.negateExact(n);
+        } catch (ArithmeticException ex) {
+            throw error("number too large");
+        }
+    }
+
+    private int toInt(long n) throws IOException {
+        if (n < Integer.MIN_VALUE || n > Integer.MAX_VALUE) {
+            throw error("id too large");
+        }
+        return (int) n;
+    }
+
+    private void ensureText(int length) {
+        if (length > text.length) {
+            text = Arrays.copyOf(text, Math.max(length, text.length * 2));
+        }
+    }
+
+    private boolean isKey(int length, byte[] key) {
+        return length == key.length && matches(text, 0, key);
+    }
+
+    /**
+     * Returns the type of record whose name is in the given range of the buffer (or of text, for JSON).
+     */
+    private byte[] match(int from, int to) {
+        byte[] source = format == DataFormat.CSV ? bytes : text;
+        for (byte[] type : TYPES) {
+            if (to - from == type.length && matches(source, from, type)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(byte[] source, int from, byte[] word) {
+        for (int i = 0; i < word.length; i++) {
+            if (source[from + i] != word[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,283 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes contacts and meetings to a file in one of the text {@see DataFormat}s, one record per line.
+ * Records are encoded straight into a buffer of fixed size, which is written to the file whenever it is
+ * full, so that the memory used does not depend on the number of records: the characters of names and
+ * notes are encoded to UTF-8 and numbers to digits one at a time, without creating Strings or byte arrays.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class RecordWriter implements AutoCloseable {
+    static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes();
+
+    private final FileChannel channel;
+    private final DataFormat format;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int size;
+    private final byte[] digits = new byte[20];
+    private long written;
+
+    /**
+     * Constructor for a writer which replaces the content of the given file, creating it if it does not exist.
+     *
+     * @param file the file to be written.
+     * @param format the format of the records.
+     * @throws NullPointerException if any of the arguments is null.
+     * @throws IOException if the file cannot be opened.
+     */
+    public RecordWriter(Path file, DataFormat format) throws IOException {
+        if (file == null || format == null) {
+            throw new NullPointerException("Argument cannot be null");
+        }
+        this.format = format;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Write a contact.
+     *
+     * @param c the contact.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeContact(Contact c) throws IOException {
+        if (format == DataFormat.CSV) {
+            ascii("contact,");
+            number(c.getId());
+            put(',');
+            csvText(c.getName());
+            put(',');
+            csvText(c.getNotes());
+        } else {
+            ascii("{\"type\":\"contact\",\"id\":");
+            number(c.getId());
+            ascii(",\"name\":");
+            jsonText(c.getName());
+            ascii(",\"notes\":");
+            jsonText(c.getNotes());
+            put('}');
+        }
+        put('\n');
+    }
+
+    /**
+     * Write a meeting, as a PastMeeting if it is one, otherwise as a FutureMeeting.
+     * Its contacts are written by id.
+     *
+     * @param m the meeting.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeMeeting(Meeting m) throws IOException {
+        boolean past = m instanceof PastMeeting;
+        int[] contacts = ContactManagerImpl.attendeesOf(m);
+        if (format == DataFormat.CSV) {
+            ascii(past ? "past," : "future,");
+            number(m.getId());
+            put(',');
+            number(ContactManagerImpl.dateOf(m));
+            put(',');
+            for (int i = 0; i < contacts.length; i++) {
+                if (i > 0) {
+                    put(';');
+                }
+                number(contacts[i]);
+            }
+            if (past) {
+                put(',');
+                csvText(((PastMeeting) m).getNotes());
+            }
+        } else {
+            ascii(past ? "{\"type\":\"past\",\"id\":" : "{\"type\":\"future\",\"id\":");
+            number(m.getId());
+            ascii(",\"date\":");
+            number(ContactManagerImpl.dateOf(m));
+            ascii(",\"contacts\":[");
+            for (int i = 0; i < contacts.length; i++) {
+                if (i > 0) {
+                    put(',');
+                }
+                number(contacts[i]);
+            }
+            put(']');
+            if (past) {
+                ascii(",\"notes\":");
+                jsonText(((PastMeeting) m).getNotes());
+            }
+            put('}');
+        }
+        put('\n');
+    }
+
+    /**
+     * Returns the number of bytes written so far, including the ones still in the buffer.
+     *
+     * @return the size of the records written.
+     */
+    public long getBytesWritten() {
+        return written + size;
+    }
+
+    /**
+     * Write the records still in the buffer and close the file.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void drain() throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(buffer, 0, size);
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+        written += size;
+        size = 0;
+    }
+
+    /**
+     * Make room in the buffer for the given number of bytes, at most BUFFER_SIZE.
+     */
+    private void room(int length) throws IOException {
+        if (size + length > BUFFER_SIZE) {
+            drain();
+        }
+    }
+
+    private void put(char b) throws IOException {
+        room(1);
+        buffer[size++] = (byte) b;
+    }
+
+    private void put(byte[] bytes, int from, int to) throws IOException {
+        room(to - from);
+        System.arraycopy(bytes, from, buffer, size, to - from);
+        size += to - from;
+    }
+
+    private void ascii(String s) throws IOException {
+        room(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buffer[size++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void number(long n) throws IOException {
+        if (n == Long.MIN_VALUE) {
+            put(MIN_LONG, 0, MIN_LONG.length);
+            return;
+        }
+        int pos = digits.length;
+        long rest = Math.abs(n);
+        do {
+            digits[--pos] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest > 0);
+        if (n < 0) {
+            digits[--pos] = '-';
+        }
+        put(digits, pos, digits.length);
+    }
+
+    /**
+     * Write a field of a CSV record, enclosed in double quotes if it contains a comma, a double quote
+     * or a line break, or if it has leading or trailing spaces (which some readers would trim).
+     */
+    private void csvText(String s) throws IOException {
+        boolean quoted = !s.isEmpty() && (s.charAt(0) == ' ' || s.charAt(s.length() - 1) == ' ');
+        for (int i = 0; i < s.length() && !quoted; i++) {
+            char c = s.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (quoted) {
+            put('"');
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            room(4);
+            if (c == '"') {
+                buffer[size++] = '"';
+                buffer[size++] = '"';
+            } else if (c < 0x80) {
+                buffer[size++] = (byte) c;
+            } else {
+                i = utf8(s, i);
+            }
+        }
+        if (quoted) {
+            put('"');
+        }
+    }
+
+    private void jsonText(String s) throws IOException {
+        put('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                room(1);
+                buffer[size++] = (byte) c;
+            } else if (c == '"' || c == '\\') {
+                put('\\');
+                put(c);
+            } else if (c == '\n') {
+                put('\\');
+                put('n');
+            } else if (c == '\r') {
+                put('\\');
+                put('r');
+            } else if (c == '\t') {
+                put('\\');
+                put('t');
+            } else if (c < 0x20) {
+                ascii("\\u00");
+                put((char) HEX[c >> 4]);
+                put((char) HEX[c & 0xf]);
+            } else {
+                room(4);
+                i = utf8(s, i);
+            }
+        }
+        put('"');
+    }
+
+    /**
+     * Encode the character at position i of the string, which is not ASCII, in UTF-8;
+     * a surrogate pair is encoded as a single code point, and an unpaired surrogate as '?'.
+     * The buffer must have room for 4 bytes.
+     *
+     * @return the position of the last character encoded.
+     */
+    private int utf8(String s, int i) {
+        char c = s.charAt(i);
+        if (c < 0x800) {
+            buffer[size++] = (byte) (0xc0 | c >> 6);
+            buffer[size++] = (byte) (0x80 | c & 0x3f);
+        } else if (!Character.isSurrogate(c)) {
+            buffer[size++] = (byte) (0xe0 | c >> 12);
+            buffer[size++] = (byte) (0x80 | c >> 6 & 0x3f);
+            buffer[size++] = (byte) (0x80 | c & 0x3f);
+        } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(++i));
+            buffer[size++] = (byte) (0xf0 | cp >> 18);
+            buffer[size++] = (byte) (0x80 | cp >> 12 & 0x3f);
+            buffer[size++] = (byte) (0x80 | cp >> 6 & 0x3f);
+            buffer[size++] = (byte) (0x80 | cp & 0x3f);
+        } else {
+            buffer[size++] = (byte) '?';
+        }
+        return i;
+    }
+
+}
@@ -0,0 +1,366 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * A bounded cache of query results, used by {@see ContactManagerImpl} to keep the meeting lists of
+ * the contacts and of the days most often requested. It is not thread-safe: the ContactManager only
+ * uses it while holding its own lock.
+ *
+ * Entries are evicted by size with the W-TinyLFU policy of Caffeine: a new entry enters a small LRU
+ * window (1% of the capacity), and when it leaves the window it is only admitted to the main part of the
+ * cache if it has been requested more often than the entry it would evict. The frequencies are estimated
+ * by a count-min sketch of 4 counters per key, halved every 10 requests per entry of capacity so that
+ * old popularity fades. The main part is a segmented LRU: entries hit again move from the probation
+ * segment to the protected one (80% of the main part), so a scan of keys requested once cannot flush
+ * the entries which are requested repeatedly.
+ * Entries also expire a fixed time after they were stored; an expired entry is removed when it is next
+ * requested, or evicted by size before the others of its segment are.
+ *
+ * @param <K> the type of the keys, which must implement hashCode() and equals().
+ * @param <V> the type of the values.
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class ResultCache<K, V> {
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private final Map<K, Node<K, V>> map = new HashMap<>();
+    private final Segment<K, V> window = new Segment<>();
+    private final Segment<K, V> probation = new Segment<>();
+    private final Segment<K, V> protectedSegment = new Segment<>();
+    private final int capacity;
+    private final int windowCapacity;
+    private final int protectedCapacity;
+    private final long timeToLive;
+    private final LongSupplier ticker;
+    private final FrequencySketch sketch;
+    private final Consumer<? super K> onRemoval;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    private static final class Node<K, V> {
+        final K key;
+        V value;
+        long expiresAt;
+        int segment;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * A list of nodes in order of access, from the least recently used (the head).
+     */
+    private static final class Segment<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+        int size;
+
+        void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            size--;
+        }
+    }
+
+    /**
+     * A count-min sketch of the frequency of the keys, with counters of 4 bits packed in longs.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {0x97CB3127L, 0xB39E2C1DL, 0xD6E8FEB8L, 0xA5A4F0A1L};
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(8, capacity - 1) << 1);
+            table = new long[width];
+            mask = width - 1;
+            sampleSize = 10 * Math.max(capacity, 8);
+        }
+
+        private int indexOf(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int min = 15;
+            for (int row = 0; row < 4; row++) {
+                int counter = (int) (table[indexOf(hash, row)] >>> (row << 4 | (hash & 3) << 2)) & 15;
+                min = Math.min(min, counter);
+            }
+            return min;
+        }
+
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            for (int row = 0; row < 4; row++) {
+                int index = indexOf(hash, row);
+                int shift = row << 4 | (hash & 3) << 2;
+                if (((table[index] >>> shift) & 15) < 15) {
+                    table[index] += 1L << shift;
+                }
+            }
+            if (++additions == sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & 0x7777_7777_7777_7777L;    // halve every counter
+                }
+                additions /= 2;
+            }
+        }
+
+        private static int spread(int h) {
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Constructor for a cache of the given size, whose entries expire after the given time.
+     *
+     * @param capacity the maximum number of entries.
+     * @param timeToLive the time after which an entry expires, in the unit of the ticker.
+     * @param ticker the source of the current time (e.g. System::nanoTime).
+     * @param onRemoval the action to be performed on the key of each entry which leaves the cache
+     *                  (evicted, expired or invalidated), or null.
+     * @throws IllegalArgumentException if the capacity or the time to live are not positive.
+     * @throws NullPointerException if the ticker is null.
+     */
+    public ResultCache(int capacity, long timeToLive, LongSupplier ticker, Consumer<? super K> onRemoval) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity of the cache must be positive");
+        } else if (timeToLive <= 0) {
+            throw new IllegalArgumentException("The time to live of the entries must be positive");
+        } else if (ticker == null) {
+            throw new NullPointerException("Argument cannot be null");
+        }
+        this.capacity = capacity;
+        this.windowCapacity = Math.max(1, capacity / 100);
+        this.protectedCapacity = (capacity - windowCapacity) * 4 / 5;
+        this.timeToLive = timeToLive;
+        this.ticker = ticker;
+        this.sketch = new FrequencySketch(capacity);
+        this.onRemoval = onRemoval;
+    }
+
+    /**
+     * Returns the value cached for the key, recording the request.
+     *
+     * @param key the key.
+     * @return the value, or null if it is not cached or has expired.
+     */
+    public V get(K key) {
+        sketch.increment(key);
+        Node<K, V> node = map.get(key);
+        if (node != null && node.expiresAt - ticker.getAsLong() <= 0) {
+            remove(node);
+            node = null;
+        }
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        touch(node);
+        return node.value;
+    }
+
+    /**
+     * Move a node which has been hit to the most recently used end of its segment, promoting it
+     * from probation to protected.
+     */
+    private void touch(Node<K, V> node) {
+        if (node.segment == PROBATION) {
+            probation.remove(node);
+            node.segment = PROTECTED;
+            protectedSegment.addLast(node);
+            if (protectedSegment.size > protectedCapacity) {
+                Node<K, V> demoted = protectedSegment.head;
+                protectedSegment.remove(demoted);
+                demoted.segment = PROBATION;
+                probation.addLast(demoted);
+            }
+        } else {
+            Segment<K, V> segment = node.segment == WINDOW ? window : protectedSegment;
+            segment.remove(node);
+            segment.addLast(node);
+        }
+    }
+
+    /**
+     * Store the value of a key, replacing the one it had, and evict an entry if the cache is full.
+     * A new entry may be evicted at once, when it leaves the window, if it is requested less often
+     * than the entries of the main part.
+     *
+     * @param key the key.
+     * @param value the value.
+     * @throws NullPointerException if the key or the value are null.
+     */
+    public void put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("Argument cannot be null");
+        }
+        long expiresAt = ticker.getAsLong() + timeToLive;
+        Node<K, V> node = map.get(key);
+        if (node != null) {
+            node.value = value;
+            node.expiresAt = expiresAt;
+            touch(node);
+            return;
+        }
+        node = new Node<>(key);
+        node.value = value;
+        node.expiresAt = expiresAt;
+        node.segment = WINDOW;
+        map.put(key, node);
+        window.addLast(node);
+        if (window.size > windowCapacity) {
+            Node<K, V> candidate = window.head;
+            window.remove(candidate);
+            candidate.segment = PROBATION;
+            probation.addLast(candidate);
+            if (map.size() > capacity) {
+                evict(candidate);
+            }
+        }
+    }
+
+    /**
+     * Evict either the candidate which has just left the window, or the victim of the main part
+     * (the least recently used entry of probation, or of protected if probation is empty), keeping
+     * the one more often requested. An expired victim is always evicted.
+     */
+    private void evict(Node<K, V> candidate) {
+        Node<K, V> victim = probation.head != candidate ? probation.head : candidate.next;
+        if (victim == null) {
+            victim = protectedSegment.head;
+        }
+        if (victim == null) {
+            victim = candidate;
+        } else if (victim.expiresAt - ticker.getAsLong() > 0
+                && sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+            victim = candidate;
+        }
+        remove(victim);
+        evictions++;
+    }
+
+    private void remove(Node<K, V> node) {
+        map.remove(node.key);
+        (node.segment == WINDOW ? window : node.segment == PROBATION ? probation : protectedSegment).remove(node);
+        if (onRemoval != null) {
+            onRemoval.accept(node.key);
+        }
+    }
+
+    /**
+     * Remove the entry of a key, if it is cached, because its value is no longer valid.
+     *
+     * @param key the key.
+     */
+    public void invalidate(K key) {
+        Node<K, V> node = map.get(key);
+        if (node != null) {
+            remove(node);
+            invalidations++;
+        }
+    }
+
+    /**
+     * Remove all the entries. The frequencies and the counts of the requests are kept.
+     */
+    public void invalidateAll() {
+        invalidations += map.size();
+        for (Node<K, V> node : new ArrayList<>(map.values())) {
+            remove(node);
+        }
+    }
+
+    /**
+     * Returns the number of entries cached, including the expired ones not yet removed.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Returns the number of requests which found a value.
+     *
+     * @return the number of hits.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of requests which did not find a value.
+     *
+     * @return the number of misses.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the share of the requests which found a value.
+     *
+     * @return the hit rate, from 0 to 1 (0 if there have been no requests).
+     */
+    public double getHitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    /**
+     * Returns the number of entries evicted by size.
+     *
+     * @return the number of evictions.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of entries removed because their values were no longer valid.
+     *
+     * @return the number of invalidations.
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+}
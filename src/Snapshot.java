@@ -0,0 +1,822 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * The state of a ContactManager as it is saved to disk: the last ids issued, the contacts and the meetings.
+ *
+ * A snapshot is written in a compact binary format, through a FileChannel:
+ * <pre>
+ *     int    MAGIC ("CMSN")
+ *     short  VERSION
+ *     int    last contact id, int last meeting id
+ *     int    number of strings, then for each one: int length, UTF-8 bytes
+ *     int    number of contacts, then for each one in order of id: int id, int name, int notes
+ *     int    number of meetings, then for each one: int record length, followed by the record
+ *            int id, byte kind (FUTURE or PAST), long date, int notes, int n, n * int contact id
+ *     int    number of strings, then for each one: int position of its length
+ *     int    number of meetings, then for each one in order of id: int id, int position of its record length
+ *     int    position of the number of contacts, int position of the first of these two tables, int MAGIC
+ * </pre>
+ * Names and notes are written once in the table of strings, and referred to by their position
+ * in the table (-1 for the notes of a FutureMeeting). Meetings refer to their contacts by id,
+ * and dates are written in milliseconds since the epoch.
+ * Positions are counted in bytes from the start of the file. The tables of positions are only used
+ * when the file is mapped, which requires it to be smaller than 2 GB, so they are written as ints.
+ * Contacts have records of a fixed size, in order of id, so they are found without a table.
+ * Files of version 1, which have no tables of positions and contacts in any order, are still read.
+ *
+ * Files written by previous versions with Java serialization (which start with the serialization
+ * stream header, rather than MAGIC) are still read, and are converted to the binary format the next
+ * time a snapshot is written.
+ *
+ * A snapshot may also be memory-mapped with map(), in which case only the header and the end of the file
+ * are read straight away. A contact or meeting requested by id is then decoded on its own, found with
+ * a binary search of the contacts or of the table of the positions of the meetings, and all the contacts
+ * and meetings are decoded from the mapped file the first time the lists are requested. A mapped snapshot
+ * is not thread-safe.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class Snapshot {
+    static final int MAGIC = 0x434D534E;
+    static final short VERSION = 2;
+    static final short FIRST_VERSION = 1;   // without the tables of positions
+    static final byte FUTURE = 0;
+    static final byte PAST = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int lastContactId;
+    private final int lastMeetingId;
+    private List<Contact> contacts;
+    private List<Meeting> meetings;
+    private boolean indexed;        // whether the file read has the tables of positions
+    private ByteBuffer mapped;
+    private int stringTable = -1;   // the positions of the tables of a mapped file not decoded yet, or -1
+    private int meetingTable;
+    private int contactRecords;     // the position of the number of contacts of a mapped file
+    private IntHashMap<Contact> contactsById;   // the contacts decoded so far, or all of them
+    private IntHashMap<Meeting> meetingsById;   // the meetings decoded so far, or all of them
+
+    /**
+     * Constructor for a snapshot of the given state.
+     * All the contacts of the meetings are expected to be in the list of contacts.
+     *
+     * @param lastContactId the last id issued for a Contact.
+     * @param lastMeetingId the last id issued for a Meeting.
+     * @param contacts the contacts.
+     * @param meetings the meetings.
+     * @throws NullPointerException if contacts or meetings are null.
+     */
+    public Snapshot(int lastContactId, int lastMeetingId, List<Contact> contacts, List<Meeting> meetings) {
+        if (contacts == null || meetings == null) {
+            throw new NullPointerException("Argument cannot be null");
+        }
+        this.lastContactId = lastContactId;
+        this.lastMeetingId = lastMeetingId;
+        this.contacts = contacts;
+        this.meetings = meetings;
+    }
+
+    /**
+     * Returns the last id issued for a Contact.
+     *
+     * @return the last id issued for a Contact.
+     */
+    public int getLastContactId() {
+        return lastContactId;
+    }
+
+    /**
+     * Returns the last id issued for a Meeting.
+     *
+     * @return the last id issued for a Meeting.
+     */
+    public int getLastMeetingId() {
+        return lastMeetingId;
+    }
+
+    /**
+     * Returns the contacts of the snapshot.
+     * For a mapped snapshot, the contacts and the meetings are decoded by the first call of this
+     * method or of getMeetings(); the ones already decoded by getContact() and getMeeting() are kept.
+     *
+     * @return the contacts of the snapshot.
+     * @throws UncheckedIOException if the snapshot is mapped and its content is not valid.
+     */
+    public List<Contact> getContacts() {
+        decode();
+        return contacts;
+    }
+
+    /**
+     * Returns the meetings of the snapshot, with their contacts taken from getContacts().
+     *
+     * @return the meetings of the snapshot.
+     * @throws UncheckedIOException if the snapshot is mapped and its content is not valid.
+     */
+    public List<Meeting> getMeetings() {
+        decode();
+        return meetings;
+    }
+
+    /**
+     * Returns whether the contacts and meetings of the snapshot are held in memory,
+     * rather than still to be decoded from a mapped file.
+     *
+     * @return false if the snapshot is mapped and has not been decoded yet, true otherwise.
+     */
+    public boolean isDecoded() {
+        return mapped == null;
+    }
+
+    private void decode() {
+        if (mapped != null) {
+            try {
+                readContent(new Input(mapped));
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Invalid content of the mapped snapshot", ex);
+            }
+            mapped = null;  // the mapping is released when the buffer is collected
+            stringTable = -1;
+        }
+    }
+
+    /**
+     * Returns a contact of the snapshot by id. If the snapshot is mapped and has not been decoded yet,
+     * only the record of the contact is decoded; the same Contact is then part of getContacts().
+     *
+     * @param id the id of the contact.
+     * @return the contact, or null if the snapshot has no contact with that id.
+     * @throws UncheckedIOException if the snapshot is mapped and its content is not valid.
+     */
+    public Contact getContact(int id) {
+        if (stringTable < 0) {
+            decode();
+            if (contactsById == null) {
+                contactsById = new IntHashMap<>(contacts.size());
+                for (Contact c : contacts) {
+                    contactsById.put(c.getId(), c);
+                }
+            }
+            return contactsById.get(id);
+        }
+        Contact c = contactsById.get(id);
+        if (c == null) {
+            try {
+                int position = findContact(id);
+                if (position < 0) {
+                    return null;
+                }
+                c = readContact(at(position), this::readString, null);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Invalid content of the mapped snapshot", ex);
+            }
+            contactsById.put(id, c);
+        }
+        return c;
+    }
+
+    /**
+     * Returns a meeting of the snapshot by id, with its contacts taken from getContact(). If the snapshot
+     * is mapped and has not been decoded yet, only the record of the meeting (and the ones of its contacts)
+     * are decoded; the same Meeting is then part of getMeetings().
+     *
+     * @param id the id of the meeting.
+     * @return the meeting, or null if the snapshot has no meeting with that id.
+     * @throws UncheckedIOException if the snapshot is mapped and its content is not valid.
+     */
+    public Meeting getMeeting(int id) {
+        if (stringTable < 0) {
+            decode();
+            if (meetingsById == null) {
+                meetingsById = new IntHashMap<>(meetings.size());
+                for (Meeting m : meetings) {
+                    meetingsById.put(m.getId(), m);
+                }
+            }
+            return meetingsById.get(id);
+        }
+        Meeting m = meetingsById.get(id);
+        if (m == null) {
+            try {
+                int position = findMeeting(id);
+                if (position < 0) {
+                    return null;
+                }
+                m = readMeeting(at(position), this::readString, this::getContact);
+                if (m.getId() != id) {
+                    throw new IOException("The record of meeting " + id + " is the one of " + m.getId());
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Invalid content of the mapped snapshot", ex);
+            }
+            meetingsById.put(id, m);
+        }
+        return m;
+    }
+
+    /**
+     * Returns the position of the record of a contact, with a binary search of the records of the mapped file.
+     *
+     * @return the position, or -1 if there is no contact with that id.
+     */
+    private int findContact(int id) {
+        int low = 0;
+        int high = mapped.getInt(contactRecords) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int position = contactRecords + 4 + 12 * mid;
+            int found = mapped.getInt(position);
+            if (found < id) {
+                low = mid + 1;
+            } else if (found > id) {
+                high = mid - 1;
+            } else {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the position of the record of a meeting, with a binary search of the table of the positions
+     * of the meetings of the mapped file.
+     *
+     * @return the position, or -1 if there is no meeting with that id.
+     */
+    private int findMeeting(int id) {
+        int low = 0;
+        int high = mapped.getInt(meetingTable) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int found = mapped.getInt(meetingTable + 4 + 8 * mid);
+            if (found < id) {
+                low = mid + 1;
+            } else if (found > id) {
+                high = mid - 1;
+            } else {
+                return mapped.getInt(meetingTable + 8 + 8 * mid);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns an input over the mapped file, from a position read from the file.
+     */
+    private Input at(int position) throws IOException {
+        if (position < 0 || position >= mapped.limit()) {
+            throw new IOException("Invalid position " + position + ", the snapshot has " + mapped.limit() + " bytes");
+        }
+        ByteBuffer buffer = mapped.duplicate();
+        buffer.position(position);
+        return new Input(buffer);
+    }
+
+    /**
+     * Decode a string of the mapped file by its position in the table of strings.
+     */
+    private String readString(int index) throws IOException {
+        if (index < 0 || index >= mapped.getInt(stringTable)) {
+            throw new IOException("Invalid string " + index + ", the table has " + mapped.getInt(stringTable));
+        }
+        return new String(at(mapped.getInt(stringTable + 4 + 4 * index)).getBytes(), StandardCharsets.UTF_8);
+    }
+
+    // writing ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Write the snapshot to a file in the binary format, replacing its content, and force it to disk.
+     *
+     * @param file the file to be written.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        List<Contact> contacts = inOrderOfId(this.contacts);
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        int[] contactStrings = new int[2 * contacts.size()];
+        int[] meetingNotes = new int[meetings.size()];
+        int n = 0;
+        for (Contact c : contacts) {    // notes are read once, as they may be added to while the file is written
+            contactStrings[n++] = intern(strings, c.getName());
+            contactStrings[n++] = intern(strings, c.getNotes());
+        }
+        n = 0;
+        for (Meeting m : meetings) {
+            meetingNotes[n++] = m instanceof PastMeeting ? intern(strings, ((PastMeeting) m).getNotes()) : -1;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.require(14);
+            out.buffer.putInt(MAGIC).putShort(VERSION).putInt(lastContactId).putInt(lastMeetingId);
+            out.putInt(strings.size());
+            int[] stringPositions = new int[strings.size()];
+            n = 0;
+            for (String s : strings.keySet()) {
+                stringPositions[n++] = (int) out.position();
+                out.putBytes(s.getBytes(StandardCharsets.UTF_8));
+            }
+            int contactRecords = (int) out.position();
+            out.putInt(contacts.size());
+            n = 0;
+            for (Contact c : contacts) {
+                out.require(12);
+                out.buffer.putInt(c.getId()).putInt(contactStrings[n++]).putInt(contactStrings[n++]);
+            }
+            out.putInt(meetings.size());
+            long[] meetingPositions = new long[meetings.size()];
+            n = 0;
+            for (Meeting m : meetings) {
+                int[] attendees = ContactManagerImpl.attendeesOf(m);
+                int length = 21 + 4 * attendees.length;
+                meetingPositions[n] = entry(m.getId(), out.position());
+                out.require(4 + length);
+                out.buffer.putInt(length).putInt(m.getId());
+                out.buffer.put(m instanceof PastMeeting ? PAST : FUTURE).putLong(ContactManagerImpl.dateOf(m))
+                        .putInt(meetingNotes[n++]);
+                out.buffer.putInt(attendees.length);
+                for (int c : attendees) {
+                    out.buffer.putInt(c);
+                }
+            }
+            int tables = (int) out.position();
+            out.putInt(stringPositions.length);
+            for (int position : stringPositions) {
+                out.putInt(position);
+            }
+            Arrays.sort(meetingPositions);
+            out.putInt(meetingPositions.length);
+            for (long e : meetingPositions) {
+                out.require(8);
+                out.buffer.putInt((int) (e >>> 32)).putInt((int) e);
+            }
+            out.require(12);
+            out.buffer.putInt(contactRecords).putInt(tables).putInt(MAGIC);
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Replace the content of a file with the snapshot in a single step: the snapshot is written and forced
+     * to disk next to the file, with the name of the file followed by ".tmp", and then moved over the file.
+     * The folder is forced to disk too, so that once this returns the file holds the new snapshot even
+     * after a crash, and until then it holds either the old snapshot or the new one, complete. A mapping
+     * of the old file stays valid.
+     *
+     * @param file the file to be replaced.
+     * @throws IOException if the snapshot cannot be written or moved.
+     */
+    public void replace(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        write(temp);
+        moveDurably(temp, file);
+    }
+
+    /**
+     * Move a file which has been forced to disk over another one in a single step, and force their folder
+     * to disk, so that the move is not lost after a crash.
+     *
+     * @param source the file to be moved.
+     * @param target the file to be replaced.
+     * @throws IOException if the file cannot be moved.
+     */
+    static void moveDurably(Path source, Path target) throws IOException {
+        Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel folder = FileChannel.open(target.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            folder.force(true);
+        } catch (AccessDeniedException ex) {
+            // a folder cannot be opened on some platforms (e.g. Windows), where the move is forced with the file
+        }
+    }
+
+    /**
+     * Returns an entry of the table of the positions of the meetings, which sorts by id as a long.
+     */
+    private static long entry(int id, long position) {
+        return (long) id << 32 | (position & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the contacts in order of id: the list itself if it is already in order, or a sorted copy.
+     */
+    private static List<Contact> inOrderOfId(List<Contact> contacts) {
+        int previous = Integer.MIN_VALUE;
+        for (Contact c : contacts) {
+            if (c.getId() < previous) {
+                List<Contact> sorted = new ArrayList<>(contacts);
+                sorted.sort(Comparator.comparingInt(Contact::getId));
+                return sorted;
+            }
+            previous = c.getId();
+        }
+        return contacts;
+    }
+
+    private static int intern(Map<String, Integer> strings, String s) {
+        Integer index = strings.putIfAbsent(s, strings.size());
+        return index == null ? strings.size() - 1 : index;
+    }
+
+    /**
+     * A buffer in front of a channel, which is written out when more space is required.
+     */
+    private static class Output {
+        final FileChannel channel;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long written;   // the bytes written out of the buffer
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Returns the position in the file of the next byte to be put.
+         */
+        long position() {
+            return written + buffer.position();
+        }
+
+        void require(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+                if (buffer.capacity() < bytes) {    // a meeting with a very large number of contacts
+                    buffer = ByteBuffer.allocateDirect(bytes);
+                }
+            }
+        }
+
+        void putInt(int value) throws IOException {
+            require(4);
+            buffer.putInt(value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            putInt(bytes.length);
+            if (bytes.length <= buffer.remaining()) {
+                buffer.put(bytes);
+            } else {
+                flush();
+                ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+                while (wrapped.hasRemaining()) {
+                    channel.write(wrapped);
+                }
+                written += bytes.length;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            written += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    // reading ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Read a snapshot from a file, either in the binary format or in the format of previous versions.
+     *
+     * @param file the file to be read.
+     * @return the snapshot read from the file.
+     * @throws NoSuchFileException if the file does not exist.
+     * @throws IOException if the file cannot be read, or its content is not valid.
+     */
+    public static Snapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            if (!in.fill(4) || in.buffer.getInt(0) != MAGIC) {
+                return readLegacy(file);
+            }
+            Snapshot snapshot = readHeader(in);
+            snapshot.readContent(in);
+            return snapshot;
+        }
+    }
+
+    /**
+     * Map a snapshot file in memory, reading only its header and the end of its tables of positions:
+     * the contacts and meetings are decoded from the mapped file when they are requested, so the time
+     * taken by this method does not depend on the size of the file.
+     * Files written with Java serialization by previous versions, and files too large to be mapped in
+     * one piece, are read as by read(). Files of version 1, and files whose tables of positions cannot
+     * be found, are decoded whole by the first request.
+     *
+     * @param file the file to be mapped.
+     * @return the snapshot mapped from the file.
+     * @throws NoSuchFileException if the file does not exist.
+     * @throws IOException if the file cannot be mapped, or its header is not valid.
+     */
+    public static Snapshot map(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return read(file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 4 || buffer.getInt(0) != MAGIC) {
+            return readLegacy(file);
+        }
+        Input in = new Input(buffer);
+        Snapshot snapshot = readHeader(in);
+        snapshot.mapped = in.buffer;
+        if (snapshot.indexed) {
+            snapshot.findTables();
+        }
+        return snapshot;
+    }
+
+    private static Snapshot readHeader(Input in) throws IOException {
+        in.require(14);
+        in.buffer.getInt();
+        short version = in.buffer.getShort();
+        if (version != VERSION && version != FIRST_VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int lastContactId = in.buffer.getInt();
+        int lastMeetingId = in.buffer.getInt();
+        Snapshot snapshot = new Snapshot(lastContactId, lastMeetingId, Collections.emptyList(), Collections.emptyList());
+        snapshot.indexed = version != FIRST_VERSION;
+        return snapshot;
+    }
+
+    /**
+     * Find the tables of positions at the end of the mapped file, checking that they fill it exactly.
+     * If they do not, the snapshot is decoded whole on the first request, which reports what is wrong.
+     */
+    private void findTables() {
+        int end = mapped.limit() - 12;
+        if (end < 14 || mapped.getInt(end + 8) != MAGIC) {
+            return;
+        }
+        long contacts = mapped.getInt(end);
+        long strings = mapped.getInt(end + 4);
+        if (contacts < 14 || contacts + 4 > strings || mapped.getInt((int) contacts) < 0
+                || contacts + 4 + 12L * mapped.getInt((int) contacts) > strings) {
+            return;
+        }
+        if (strings + 4 > end || mapped.getInt((int) strings) < 0) {
+            return;
+        }
+        long meetingPositions = strings + 4 + 4L * mapped.getInt((int) strings);
+        if (meetingPositions + 4 > end || mapped.getInt((int) meetingPositions) < 0
+                || meetingPositions + 4 + 8L * mapped.getInt((int) meetingPositions) != end) {
+            return;
+        }
+        contactRecords = (int) contacts;
+        stringTable = (int) strings;
+        meetingTable = (int) meetingPositions;
+        contactsById = new IntHashMap<>();
+        meetingsById = new IntHashMap<>();
+    }
+
+    /**
+     * The strings of a snapshot, by their position in the table of strings.
+     */
+    private interface Strings {
+        String get(int index) throws IOException;
+    }
+
+    /**
+     * Read the strings, contacts and meetings which follow the header.
+     */
+    private void readContent(Input in) throws IOException {
+        String[] strings = new String[count(in)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = new String(in.getBytes(), StandardCharsets.UTF_8);
+        }
+        Strings table = index -> string(strings, index);
+        int contactCount = count(in);
+        List<Contact> contacts = new ArrayList<>(contactCount);
+        IntHashMap<Contact> byId = new IntHashMap<>(contactCount);
+        for (int i = 0; i < contactCount; i++) {
+            Contact c = readContact(in, table, contactsById);
+            if (indexed && i > 0 && c.getId() <= contacts.get(i - 1).getId()) {
+                throw new IOException("The contacts are not in order of id at contact " + c.getId());
+            }
+            contacts.add(c);
+            byId.put(c.getId(), c);
+        }
+        int meetingCount = count(in);
+        List<Meeting> meetings = new ArrayList<>(meetingCount);
+        ContactResolver resolver = byId::get;     // shared by all the meetings, as byId is not changed after this
+        for (int i = 0; i < meetingCount; i++) {
+            Meeting m = readMeeting(in, table, resolver);
+            Meeting decoded = meetingsById == null ? null : meetingsById.get(m.getId());
+            meetings.add(decoded != null ? decoded : m);
+        }
+        if (indexed) {  // the tables of positions are only used by a mapped snapshot, but must be complete
+            if (count(in) != strings.length) {
+                throw new IOException("The table of the positions of the strings does not match them");
+            }
+            in.skip(4L * strings.length);
+            if (count(in) != meetingCount) {
+                throw new IOException("The table of the positions of the meetings does not match them");
+            }
+            in.skip(8L * meetingCount);
+            in.require(12);
+            in.buffer.getLong();
+            if (in.buffer.getInt() != MAGIC) {
+                throw new IOException("Invalid end of the snapshot");
+            }
+        }
+        this.contacts = contacts;
+        this.meetings = meetings;
+        this.contactsById = byId;
+        this.meetingsById = null;   // built again by getMeeting() if needed
+    }
+
+    /**
+     * Read the number of items of a table, which cannot be negative.
+     */
+    private static int count(Input in) throws IOException {
+        int count = in.getInt();
+        if (count < 0) {
+            throw new IOException("Invalid number of items " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Returns a string of the table by its position, which is read from the file and so may be out of the table.
+     */
+    private static String string(String[] strings, int index) throws IOException {
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("Invalid string " + index + ", the table has " + strings.length);
+        }
+        return strings[index];
+    }
+
+    /**
+     * Read the record of a contact, unless a contact with its id has already been decoded.
+     *
+     * @param decoded the contacts already decoded, or null.
+     */
+    private static Contact readContact(Input in, Strings strings, IntHashMap<Contact> decoded) throws IOException {
+        in.require(12);
+        int id = in.buffer.getInt();
+        int name = in.buffer.getInt();
+        int notes = in.buffer.getInt();
+        Contact c = decoded == null ? null : decoded.get(id);
+        return c != null ? c : new ContactImpl(strings.get(name), id, strings.get(notes));
+    }
+
+    /**
+     * Read the record of a meeting, with its contacts taken from the given resolver.
+     */
+    private Meeting readMeeting(Input in, Strings strings, ContactResolver contacts) throws IOException {
+        int length = in.getInt();
+        in.require(length);
+        int id = in.buffer.getInt();
+        if (id <= 0 || id > lastMeetingId) {
+            throw new IOException("Meeting " + id + " has not been issued, the last id is " + lastMeetingId);
+        }
+        byte kind = in.buffer.get();
+        long date = in.buffer.getLong();
+        int notes = in.buffer.getInt();
+        int[] ids = new int[in.buffer.getInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = in.buffer.getInt();
+            if (contacts.getContact(ids[i]) == null) {
+                throw new IOException("Meeting " + id + " refers to the unknown contact " + ids[i]);
+            }
+        }
+        Arrays.sort(ids);
+        Set<Contact> attendees = new AttendeeSet(ids, contacts);
+        if (kind == PAST) {
+            return PastMeetingImpl.createChecked(date, attendees, id, strings.get(notes));
+        } else {
+            return new FutureMeetingImpl(date, attendees, id);
+        }
+    }
+
+    /**
+     * A buffer in front of a channel, which is refilled when more bytes are required,
+     * or over a file already mapped in memory.
+     */
+    private static class Input {
+        final FileChannel channel;
+        ByteBuffer buffer;
+
+        Input(FileChannel channel) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.flip();
+            this.channel = channel;
+        }
+
+        Input(ByteBuffer mapped) {
+            buffer = mapped;
+            channel = null;
+        }
+
+        /**
+         * Make at least the given number of bytes available in the buffer, if the file has them.
+         */
+        boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return true;
+            } else if (channel == null) {
+                return false;
+            }
+            if (buffer.capacity() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(bytes);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            return buffer.remaining() >= bytes;
+        }
+
+        void require(int bytes) throws IOException {
+            if (!fill(bytes)) {
+                throw new EOFException("Unexpected end of the snapshot");
+            }
+        }
+
+        int getInt() throws IOException {
+            require(4);
+            return buffer.getInt();
+        }
+
+        void skip(long bytes) throws IOException {
+            while (bytes > 0) {
+                int n = (int) Math.min(bytes, BUFFER_SIZE);
+                require(n);
+                buffer.position(buffer.position() + n);
+                bytes -= n;
+            }
+        }
+
+        byte[] getBytes() throws IOException {
+            int length = getInt();
+            if (length < 0) {
+                throw new IOException("Invalid string length " + length);
+            }
+            byte[] bytes = new byte[length];
+            int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, 0, read);
+            while (read < length) {
+                require(1);
+                int n = Math.min(length - read, buffer.remaining());
+                buffer.get(bytes, read, n);
+                read += n;
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Read a file written with Java serialization by previous versions of ContactManagerImpl:
+     * an IdCreatorImpl, followed by the set of contacts and the list of meetings.
+     *
+     * @param file the file to be read.
+     * @return the snapshot read from the file.
+     * @throws IOException if the file cannot be read, or its content is not valid.
+     */
+    @SuppressWarnings("unchecked")
+    public static Snapshot readLegacy(Path file) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file.toFile())))) {
+            IdCreatorImpl idCreator = (IdCreatorImpl) in.readObject();
+            Set<Contact> contacts = (Set<Contact>) in.readObject();
+            List<Meeting> meetings = (List<Meeting>) in.readObject();
+            return new Snapshot(idCreator.getLastContactId(), idCreator.getLastMeetingId(),
+                    new ArrayList<>(contacts), new ArrayList<>(meetings));
+        } catch (ClassNotFoundException | ClassCastException ex) {
+            throw new IOException("Invalid content of " + file, ex);
+        }
+    }
+
+    /**
+     * Convert a file written by previous versions with Java serialization to the binary format.
+     *
+     * @param from the file to be converted.
+     * @param to the file where the snapshot will be written (it may be the same file).
+     * @throws IOException if one of the files cannot be read or written.
+     */
+    public static void migrate(Path from, Path to) throws IOException {
+        read(from).write(to);
+    }
+
+}
@@ -0,0 +1,385 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A sorted collection of ids keyed by a value, held in blocks of parallel arrays (a two-level B+tree):
+ * the common part of {@see DateIndex} and {@see PrefixIndex}, which add the queries of their own keys.
+ *
+ * Entries are ordered by key and then by id. A binary search over the first entry of each block finds
+ * the block, and a second one finds the position inside the block. A block is split in two when it is
+ * full, so an insertion only shifts the entries of one block, and a range of keys is read by walking
+ * consecutive blocks. Small collections fit in a single block which grows as needed.
+ *
+ * The keys of a block are held in an array of type A (e.g. long[] for dates, so that they are not boxed),
+ * which is created and compared by the subclass. The methods which search for a key compare the entries
+ * with the search key, which the subclass holds in a field of its own type (e.g. a long) and sets before
+ * calling them, so that no array or boxed key is created for each call. Searching therefore changes the
+ * collection, and must not be done by many threads at the same time.
+ *
+ * @param <A> the type of the arrays of the keys.
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public abstract class SortedBlocks<A> {
+    private static final int BLOCK_SIZE = 512;
+    private static final int MIN_CAPACITY = 4;
+    protected final ArrayList<Block<A>> blocks = new ArrayList<>();
+    private int size;
+
+    /**
+     * A leaf of the collection, holding up to BLOCK_SIZE entries sorted by key and id.
+     */
+    protected static final class Block<A> {
+        A keys;
+        int[] ids;
+        int size;
+
+        Block(A keys, int capacity) {
+            this.keys = keys;
+            ids = new int[capacity];
+        }
+    }
+
+    /**
+     * Constructor for an empty collection.
+     */
+    protected SortedBlocks() {
+        blocks.add(newBlock(MIN_CAPACITY));
+    }
+
+    /**
+     * Returns a new array of keys.
+     *
+     * @param capacity the length of the array.
+     * @return the array.
+     */
+    protected abstract A newKeys(int capacity);
+
+    /**
+     * Compare two keys.
+     *
+     * @return a negative number, zero or a positive number if the first key is before, equal to or
+     *     after the second one.
+     */
+    protected abstract int compareKeys(A keys1, int i1, A keys2, int i2);
+
+    /**
+     * Compare a key with the search key.
+     *
+     * @return a negative number, zero or a positive number if the key is before, equal to or
+     *     after the search key.
+     */
+    protected abstract int compareToKey(A keys, int i);
+
+    /**
+     * Set a key to the search key.
+     */
+    protected abstract void setKey(A keys, int i);
+
+    /**
+     * Release the references held by a range of keys which are no longer used (e.g. by setting them
+     * to null). Keys of primitive types have nothing to release.
+     */
+    protected void clearKeys(A keys, int from, int to) {
+    }
+
+    private Block<A> newBlock(int capacity) {
+        return new Block<>(newKeys(capacity), capacity);
+    }
+
+    private int compare(A keys1, int[] ids1, int i1, A keys2, int[] ids2, int i2) {
+        int cmp = compareKeys(keys1, i1, keys2, i2);
+        return cmp != 0 ? cmp : Integer.compare(ids1[i1], ids2[i2]);
+    }
+
+    /**
+     * Compare the entry at a position of a block with the entry (search key, id).
+     */
+    private int compare(Block<A> block, int i, int id) {
+        int cmp = compareToKey(block.keys, i);
+        return cmp != 0 ? cmp : Integer.compare(block.ids[i], id);
+    }
+
+    /**
+     * Returns the block where the entry (search key, id) is, or should be inserted:
+     * the last block whose first entry is not after it.
+     */
+    protected int findBlock(int id) {
+        int low = 1;
+        int high = blocks.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compare(blocks.get(mid), 0, id) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * Returns the first block which may contain an entry with a key equal to or after the search key.
+     */
+    protected int findBlock() {
+        int low = 1;
+        int high = blocks.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compareToKey(blocks.get(mid).keys, 0) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * Returns the position of the entry (search key, id) in a block if present, otherwise
+     * (-(insertion point) - 1).
+     */
+    protected int search(Block<A> block, int id) {
+        int low = 0;
+        int high = block.size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(block, mid, id);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Returns the first position of a block whose key is equal to or after the search key.
+     */
+    protected int lowerBound(Block<A> block) {
+        int low = 0;
+        int high = block.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareToKey(block.keys, mid) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Add the entry (search key, id). Adding the same entry twice has no effect.
+     *
+     * @return true if the entry was added, false if it was already there.
+     */
+    protected boolean insert(int id) {
+        int b = findBlock(id);
+        Block<A> block = blocks.get(b);
+        int pos = search(block, id);
+        if (pos >= 0) {
+            return false;
+        }
+        pos = -(pos + 1);
+        if (block.size == BLOCK_SIZE) {
+            Block<A> upper = split(block);
+            blocks.add(b + 1, upper);
+            if (pos > block.size) {
+                pos -= block.size;
+                block = upper;
+            }
+        }
+        if (block.size == block.ids.length) {
+            int capacity = Math.min(block.size * 2, BLOCK_SIZE);
+            A keys = newKeys(capacity);
+            System.arraycopy(block.keys, 0, keys, 0, block.size);
+            block.keys = keys;
+            block.ids = Arrays.copyOf(block.ids, capacity);
+        }
+        System.arraycopy(block.keys, pos, block.keys, pos + 1, block.size - pos);
+        System.arraycopy(block.ids, pos, block.ids, pos + 1, block.size - pos);
+        setKey(block.keys, pos);
+        block.ids[pos] = id;
+        block.size++;
+        size++;
+        return true;
+    }
+
+    /**
+     * Move the upper half of the entries of a full block to a new block, and return it.
+     */
+    private Block<A> split(Block<A> block) {
+        int half = block.size / 2;
+        Block<A> upper = newBlock(BLOCK_SIZE);
+        upper.size = block.size - half;
+        System.arraycopy(block.keys, half, upper.keys, 0, upper.size);
+        System.arraycopy(block.ids, half, upper.ids, 0, upper.size);
+        clearKeys(block.keys, half, block.size);
+        block.size = half;
+        return upper;
+    }
+
+    /**
+     * Remove the entry (search key, id).
+     *
+     * @return true if the entry was there, false otherwise.
+     */
+    protected boolean delete(int id) {
+        int b = findBlock(id);
+        Block<A> block = blocks.get(b);
+        int pos = search(block, id);
+        if (pos < 0) {
+            return false;
+        }
+        System.arraycopy(block.keys, pos + 1, block.keys, pos, block.size - pos - 1);
+        System.arraycopy(block.ids, pos + 1, block.ids, pos, block.size - pos - 1);
+        block.size--;
+        clearKeys(block.keys, block.size, block.size + 1);
+        size--;
+        if (block.size == 0 && blocks.size() > 1) {
+            blocks.remove(b);
+        }
+        return true;
+    }
+
+    /**
+     * Remove the first entries of the first block, and the block itself if it is left empty and
+     * is not the only one.
+     *
+     * @param n the number of entries to remove, at most the size of the first block.
+     */
+    protected void deleteFirst(int n) {
+        Block<A> block = blocks.get(0);
+        System.arraycopy(block.keys, n, block.keys, 0, block.size - n);
+        System.arraycopy(block.ids, n, block.ids, 0, block.size - n);
+        clearKeys(block.keys, block.size - n, block.size);
+        block.size -= n;
+        size -= n;
+        if (block.size == 0 && blocks.size() > 1) {
+            blocks.remove(0);
+        }
+    }
+
+    /**
+     * Add many entries at once: each block is merged in a single pass with the new entries which fall
+     * into it, and replaced by as few blocks as hold the result; the blocks which no new entry falls into
+     * are kept as they are. Adding k entries then takes a time proportional to k and to the size of the
+     * blocks they fall into (at most k blocks), rather than to the size of the collection, nor to the
+     * number of entries times the size of a block, as adding them one at a time would.
+     * Entries already in the collection, or repeated, are only kept once. If the entries are not sorted
+     * the collection is left unchanged.
+     *
+     * @param keys the keys of the entries.
+     * @param ids the ids of the entries.
+     * @param from the first entry to add (inclusive).
+     * @param to the last entry to add (exclusive); the entries in the range must be sorted by key and then by id.
+     * @throws IllegalArgumentException if the entries are not sorted.
+     */
+    protected void merge(A keys, int[] ids, int from, int to) {
+        ArrayList<Block<A>> merged = new ArrayList<>(blocks.size() + (to - from) / BLOCK_SIZE + 1);
+        int added = 0;
+        int i = from;
+        for (int b = 0; b < blocks.size(); b++) {
+            Block<A> block = blocks.get(b);
+            int end = to;   // the new entries before the first entry of the next block fall into this one
+            if (b + 1 < blocks.size()) {
+                Block<A> next = blocks.get(b + 1);
+                end = i;
+                while (end < to && compare(keys, ids, end, next.keys, next.ids, 0) < 0) {
+                    end++;
+                }
+            }
+            if (end == i) {
+                merged.add(block);
+            } else {
+                added += mergeBlock(block, keys, ids, i, end, merged);
+                i = end;
+            }
+        }
+        blocks.clear();
+        blocks.addAll(merged);
+        size += added;
+    }
+
+    /**
+     * Merge the entries of a block with a range of new entries, and add the blocks which hold the result
+     * to a list: the entries are spread evenly over the fewest blocks, so that each keeps some room
+     * for later insertions.
+     *
+     * @return the number of entries added to the ones of the block.
+     */
+    private int mergeBlock(Block<A> block, A keys, int[] ids, int from, int to, ArrayList<Block<A>> merged) {
+        A mergedKeys = newKeys(block.size + to - from);
+        int[] mergedIds = new int[block.size + to - from];
+        int n = 0;
+        int i = from;
+        for (int j = 0; j < block.size; j++) {
+            for (; i < to && compare(keys, ids, i, block.keys, block.ids, j) <= 0; i++) {
+                n = append(mergedKeys, mergedIds, n, keys, ids, i);
+            }
+            n = append(mergedKeys, mergedIds, n, block.keys, block.ids, j);
+        }
+        for (; i < to; i++) {
+            n = append(mergedKeys, mergedIds, n, keys, ids, i);
+        }
+        int count = Math.max(1, (n + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        for (int k = 0, first = 0; k < count; k++) {
+            int length = (int) ((long) n * (k + 1) / count) - first;
+            Block<A> part = newBlock(Math.max(length, MIN_CAPACITY));
+            System.arraycopy(mergedKeys, first, part.keys, 0, length);
+            System.arraycopy(mergedIds, first, part.ids, 0, length);
+            part.size = length;
+            merged.add(part);
+            first += length;
+        }
+        return n - block.size;
+    }
+
+    /**
+     * Append an entry to the merged ones, unless it is the same as the last one.
+     *
+     * @return the new number of merged entries.
+     */
+    private int append(A mergedKeys, int[] mergedIds, int n, A keys, int[] ids, int i) {
+        if (n > 0) {
+            int cmp = compare(mergedKeys, mergedIds, n - 1, keys, ids, i);
+            if (cmp == 0) {
+                return n;
+            } else if (cmp > 0) {
+                throw new IllegalArgumentException("The entries to add must be sorted by key and id");
+            }
+        }
+        System.arraycopy(keys, i, mergedKeys, n, 1);
+        mergedIds[n] = ids[i];
+        return n + 1;
+    }
+
+    /**
+     * Returns the ids of all the entries, in order of key and id.
+     *
+     * @return a new array of the ids.
+     */
+    public int[] toArray() {
+        int[] ids = new int[size];
+        int n = 0;
+        for (Block<A> block : blocks) {
+            System.arraycopy(block.ids, 0, ids, n, block.size);
+            n += block.size;
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+}
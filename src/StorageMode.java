@@ -0,0 +1,26 @@
+/**
+ * The ways a {@see ContactManagerImpl} can save its data to disk.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public enum StorageMode {
+
+    /**
+     * Every flush() writes the whole data as a {@see Snapshot}.
+     */
+    SNAPSHOT,
+
+    /**
+     * Every change is recorded in a {@see WriteAheadLog} next to the snapshot, and flush() only forces
+     * the new records to disk. The log is folded into the snapshot when it grows larger than it.
+     */
+    WRITE_AHEAD_LOG,
+
+    /**
+     * As SNAPSHOT, but the snapshot is memory-mapped when the ContactManager is created, so that creating
+     * it takes the same time whatever the size of the file. Contacts and meetings requested by id are
+     * decoded from the file one at a time, and the whole data is only decoded when the ContactManager is
+     * first used in another way.
+     */
+    MAPPED
+}
@@ -0,0 +1,147 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see AtomicIdCreator}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestAtomicIdCreator {
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Paths.get("TestAtomicIdCreator.ids");
+        Files.deleteIfExists(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void idsOfASingleThreadShouldStartAsForIdCreatorImplAndIncrease() {
+        IdCreator test = new AtomicIdCreator();
+        assertEquals(test.createContactId(), 1000);
+        assertEquals(test.createContactId(), 1001);
+        assertEquals(test.createMeetingId(), 1);
+        assertEquals(test.createMeetingId(), 2);
+    }
+
+    @Test
+    public void nonPositiveBlockSizeShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        new AtomicIdCreator(file, 0);
+    }
+
+    @Test
+    public void nullFileShouldThrowNullPointerException() {
+        exception.expect(NullPointerException.class);
+        new AtomicIdCreator(null, 10);
+    }
+
+    @Test
+    public void idsIssuedByManyThreadsShouldBeUnique() throws Exception {
+        AtomicIdCreator test = new AtomicIdCreator(file, 16);
+        int threads = 8;
+        int perThread = 20000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                long[] ids = new long[perThread];
+                for (int i = 0; i < perThread; i++) {
+                    ids[i] = test.nextMeetingId();
+                }
+                return ids;
+            }));
+        }
+        Set<Long> all = new HashSet<>();
+        for (Future<long[]> result : results) {
+            for (long id : result.get(60, TimeUnit.SECONDS)) {
+                assertTrue(all.add(id));
+            }
+        }
+        executor.shutdown();
+        assertEquals(all.size(), threads * perThread);
+        assertTrue(Collections.max(all) <= test.getMeetingHighWaterMark());
+    }
+
+    @Test
+    public void highWaterMarkShouldBeSavedBeforeTheIdsOfABlockAreIssued() throws IOException {
+        AtomicIdCreator test = new AtomicIdCreator(file, 100);
+        test.createContactId();
+        test.createMeetingId();
+        ByteBuffer marks = ByteBuffer.wrap(Files.readAllBytes(file));
+        assertEquals(marks.getLong(), 1099);
+        assertEquals(marks.getLong(), 100);
+    }
+
+    @Test
+    public void idsAfterARestartShouldNotCollideWithThoseIssuedBefore() {
+        AtomicIdCreator first = new AtomicIdCreator(file, 100);
+        long last = 0;
+        for (int i = 0; i < 250; i++) {
+            last = first.nextContactId();
+        }
+        // no shutdown: the creator is simply abandoned, as after a crash
+        AtomicIdCreator second = new AtomicIdCreator(file, 100);
+        assertTrue(second.nextContactId() > last);
+        assertEquals(second.nextMeetingId(), 1);
+    }
+
+    @Test
+    public void lastIdsGivenToTheConstructorShouldNotBeIssuedAgain() {
+        AtomicIdCreator test = new AtomicIdCreator(file, 10, 5000, 70);
+        assertEquals(test.createContactId(), 5001);
+        assertEquals(test.createMeetingId(), 71);
+    }
+
+    @Test
+    public void idsBeyondTheRangeOfAnIntShouldBeIssuedAsLong() {
+        AtomicIdCreator test = new AtomicIdCreator(null, 10, 999, Integer.MAX_VALUE);
+        assertEquals(test.nextMeetingId(), Integer.MAX_VALUE + 1L);
+    }
+
+    @Test
+    public void createIdBeyondTheRangeOfAnIntShouldThrowArithmeticException() {
+        AtomicIdCreator test = new AtomicIdCreator(null, 10, 999, Integer.MAX_VALUE);
+        exception.expect(ArithmeticException.class);
+        test.createMeetingId();
+    }
+
+    @Test
+    public void idsBeyondTheRangeOfALongShouldThrowArithmeticException() {
+        AtomicIdCreator test = new AtomicIdCreator(null, 10, 999, Long.MAX_VALUE - 5);
+        exception.expect(ArithmeticException.class);
+        test.nextMeetingId();
+    }
+
+    @Test
+    public void lastBlockOfALongShouldIssueItsIdsAndThenThrowArithmeticException() {
+        AtomicIdCreator test = new AtomicIdCreator(null, 10, 999, Long.MAX_VALUE - 10);
+        for (long expected = Long.MAX_VALUE - 9; expected > 0; expected++) {
+            assertEquals(test.nextMeetingId(), expected);
+        }
+        exception.expect(ArithmeticException.class);
+        test.nextMeetingId();
+    }
+
+}
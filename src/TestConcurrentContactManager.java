@@ -0,0 +1,279 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see ConcurrentContactManager}, including multi-threaded stress tests.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestConcurrentContactManager {
+    private static final int THREADS = 8;
+    private Path file;
+    private Clock clock;
+    private ConcurrentContactManager test;
+    private ThreadRunner threads;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Paths.get("TestConcurrentContactManager.bin");
+        tearDown();
+        clock = Clock.fixed(new GregorianCalendar(2015, 1, 1).toInstant(), ZoneId.systemDefault());
+        test = new ConcurrentContactManager(file, clock);
+        threads = new ThreadRunner(THREADS);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (threads != null) {
+            threads.shutdown();
+        }
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(Paths.get("TestConcurrentContactManager.bin.ids"));
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".tmp"));
+    }
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void meetingsShouldBeReturnedInChronologicalOrder() {
+        test.addNewContact("Contact1", "Notes");
+        Set<Contact> contacts = test.getContacts("Contact1");
+        int later = test.addFutureMeeting(contacts, new GregorianCalendar(2020, 5, 1));
+        int sooner = test.addFutureMeeting(contacts, new GregorianCalendar(2020, 1, 1));
+        test.addNewPastMeeting(contacts, new GregorianCalendar(2010, 1, 1), "Past");
+        List<Meeting> future = test.getFutureMeetingList(contacts.iterator().next());
+        assertEquals(future.size(), 2);
+        assertEquals(future.get(0).getId(), sooner);
+        assertEquals(future.get(1).getId(), later);
+        assertEquals(test.getPastMeetingList(contacts.iterator().next()).get(0).getNotes(), "Past");
+        assertEquals(test.getFutureMeetingList(new GregorianCalendar(2020, 1, 1)).size(), 1);
+        assertEquals(test.getMeetings(new GregorianCalendar(2000, 1, 1), new GregorianCalendar(2030, 1, 1)).size(), 3);
+    }
+
+    @Test
+    public void addFutureMeetingWithUnknownContactShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        Set<Contact> contacts = new HashSet<>();
+        contacts.add(new ContactImpl("Unknown", 1000, ""));
+        test.addFutureMeeting(contacts, new GregorianCalendar(2020, 1, 1));
+    }
+
+    @Test
+    public void dataShouldBeRestoredAfterFlush() {
+        test.addNewContact("Contact1", "Notes");
+        test.addNewPastMeeting(test.getContacts("Contact1"), new GregorianCalendar(2010, 1, 1), "Past");
+        test.flush();
+        ConcurrentContactManager reopened = new ConcurrentContactManager(file, clock);
+        assertEquals(reopened.getPastMeeting(1).getNotes(), "Past");
+        reopened.addNewContact("Contact2", "Notes");
+        assertTrue(reopened.getContacts("Contact2").iterator().next().getId() > 1000);
+    }
+
+    @Test
+    public void contactsAddedConcurrentlyShouldAllHaveDistinctIds() throws Exception {
+        threads.runConcurrently(thread -> {
+            for (int i = 0; i < 1000; i++) {
+                test.addNewContact("Thread" + thread + "Contact" + i, "");
+            }
+        });
+        Set<Contact> all = test.getContacts("Contact");
+        assertEquals(all.size(), THREADS * 1000);
+        Set<Integer> ids = new HashSet<>();
+        for (Contact c : all) {
+            ids.add(c.getId());
+        }
+        assertEquals(ids.size(), THREADS * 1000);
+    }
+
+    @Test
+    public void meetingsAddedWhileOthersReadShouldAllBeIndexed() throws Exception {
+        for (int t = 0; t < THREADS; t++) {
+            test.addNewContact("Contact" + t, "");
+        }
+        threads.runConcurrently(thread -> {
+            Contact own = test.getContacts("Contact" + thread).iterator().next();
+            Set<Contact> contacts = Collections.singleton(own);
+            Random random = new Random(thread);
+            for (int i = 0; i < 500; i++) {
+                test.addFutureMeeting(contacts, new GregorianCalendar(2020, random.nextInt(12), 1 + random.nextInt(28)));
+                List<Meeting> list = test.getFutureMeetingList(own);
+                assertEquals(list.size(), i + 1);
+                for (int j = 1; j < list.size(); j++) {
+                    assertFalse(list.get(j - 1).getDate().after(list.get(j).getDate()));
+                }
+            }
+        });
+        assertEquals(test.getMeetings(new GregorianCalendar(2020, 0, 1), new GregorianCalendar(2021, 0, 1)).size(),
+                THREADS * 500);
+    }
+
+    @Test
+    public void notesAddedConcurrentlyToTheSameMeetingShouldAllBeKept() throws Exception {
+        test.addNewContact("Contact1", "");
+        test.addNewPastMeeting(test.getContacts("Contact1"), new GregorianCalendar(2010, 1, 1), "");
+        threads.runConcurrently(thread -> {
+            for (int i = 0; i < 200; i++) {
+                test.addMeetingNotes(1, "n");
+            }
+        });
+        String notes = test.getPastMeeting(1).getNotes();
+        assertEquals(notes.replace(" ", "").length(), THREADS * 200);
+    }
+
+    @Test
+    public void concurrentConversionsShouldReturnTheSamePastMeeting() throws Exception {
+        Clock earlier = Clock.fixed(new GregorianCalendar(2000, 1, 1).toInstant(), ZoneId.systemDefault());
+        ConcurrentContactManager early = new ConcurrentContactManager(file, earlier);
+        early.addNewContact("Contact1", "");
+        early.addFutureMeeting(early.getContacts("Contact1"), new GregorianCalendar(2010, 1, 1));
+        early.flush();
+        ConcurrentContactManager reopened = new ConcurrentContactManager(file, clock);
+        PastMeeting[] seen = new PastMeeting[THREADS];
+        threads.runConcurrently(thread -> seen[thread] = reopened.getPastMeeting(1));
+        for (PastMeeting p : seen) {
+            assertSame(p, seen[0]);
+        }
+        assertSame(reopened.getMeeting(1), seen[0]);
+    }
+
+    @Test
+    public void getContactsByNameShouldFindEverySubstringWhileContactsAreAdded() throws Exception {
+        threads.runConcurrently(thread -> {
+            for (int i = 0; i < 200; i++) {
+                test.addNewContact("Thread" + thread + "Name" + i, "");
+                Set<Contact> own = test.getContacts("Thread" + thread + "Name" + i);
+                assertTrue(own.size() >= 1);
+                assertEquals(test.getContacts("d" + thread + "Nam").size(), i + 1);
+            }
+        });
+        assertEquals(test.getContacts("Name").size(), THREADS * 200);
+        assertEquals(test.getContacts("e1").size(), THREADS * 111);     // too short for the index
+        assertEquals(test.getContacts("Thread3Name199").iterator().next().getName(), "Thread3Name199");
+        assertTrue(test.getContacts("Name1991").isEmpty());
+    }
+
+    @Test
+    public void flushWhileAddingShouldWriteAConsistentSnapshot() throws Exception {
+        threads.runConcurrently(thread -> {
+            for (int i = 0; i < 300; i++) {
+                if (thread == 0 && i % 30 == 0) {
+                    test.flush();
+                } else {
+                    test.addNewContact("Thread" + thread + "Contact" + i, "");
+                    Set<Contact> contacts = test.getContacts("Thread" + thread + "Contact" + i);
+                    test.addFutureMeeting(contacts, new GregorianCalendar(2020, 1, 1));
+                }
+            }
+        });
+        ConcurrentContactManager reopened = new ConcurrentContactManager(file, clock);
+        List<Meeting> meetings = reopened.getFutureMeetingList(new GregorianCalendar(2020, 1, 1));
+        for (Meeting m : meetings) {
+            Contact c = m.getContacts().iterator().next();
+            assertSame(reopened.getContacts(c.getId()).iterator().next(), c);
+        }
+        int contacts = reopened.getContacts("Contact").size();
+        assertTrue(meetings.size() <= contacts);
+        reopened.addNewContact("New", "");
+        int id = reopened.getContacts("New").iterator().next().getId();
+        for (Contact c : reopened.getContacts("Contact")) {
+            assertTrue(id > c.getId());
+        }
+    }
+
+    @Test
+    public void getContactsByPrefixShouldReturnMatchingContactsInOrderOfName() throws Exception {
+        threads.runConcurrently(thread -> {
+            for (int i = 0; i < 100; i++) {
+                test.addNewContact(String.format("Name%03d", i * THREADS + thread), "");
+            }
+        });
+        List<Contact> list = test.getContactsByPrefix("Name1", 20);
+        assertEquals(list.size(), 20);
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals(list.get(i).getName(), String.format("Name%03d", 100 + i));
+        }
+        assertEquals(test.getContactsByPrefix("Name7", 1000).size(), 100);
+    }
+
+    @Test
+    public void meetingPagesShouldReturnTheListsWhileMeetingsAreAdded() throws Exception {
+        test.addNewContact("Contact1", "");
+        Contact contact = test.getContacts("Contact1").iterator().next();
+        Set<Contact> contacts = Collections.singleton(contact);
+        for (int i = 0; i < 100; i++) {
+            test.addNewPastMeeting(contacts, new GregorianCalendar(2010, 0, 1 + i), "Past" + i);
+        }
+        threads.runConcurrently(thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < 50; i++) {
+                test.addFutureMeeting(contacts, new GregorianCalendar(2020, random.nextInt(12), 1 + random.nextInt(28)));
+            }
+        });
+        List<Meeting> future = new ArrayList<>();
+        MeetingCursor cursor = MeetingCursor.START;
+        do {
+            MeetingPage<Meeting> page = test.getFutureMeetingPage(contact, cursor, 33);
+            future.addAll(page.getMeetings());
+            cursor = page.getNext();
+        } while (cursor != null);
+        assertEquals(future, test.getFutureMeetingList(contact));
+        assertEquals(future.size(), THREADS * 50);
+        MeetingPage<PastMeeting> past = test.getPastMeetingPage(contact, MeetingCursor.START, 10);
+        assertEquals(past.getMeetings(), test.getPastMeetingList(contact).subList(0, 10));
+        assertEquals(test.getPastMeetingPage(contact, past.getNext(), 1).getMeetings().get(0).getNotes(), "Past10");
+    }
+
+    @Test
+    public void flushShouldReplaceTheFileWithoutLeavingATemporaryOne() {
+        test.addNewContact("Contact1", "Notes");
+        test.flush();
+        test.addNewContact("Contact2", "Notes");
+        test.flush();
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+        assertEquals(new ConcurrentContactManager(file, clock).getContacts("Contact").size(), 2);
+    }
+
+    @Test
+    public void snapshotShouldRecordTheLargestIdsStoredRatherThanTheHighWaterMarks() throws Exception {
+        test.addNewContact("Contact1", "Notes");
+        Set<Contact> contacts = test.getContacts("Contact1");
+        threads.runConcurrently(thread -> {
+            for (int i = 0; i < 10; i++) {
+                test.addFutureMeeting(contacts, new GregorianCalendar(2020, 1, 1 + i));
+            }
+        });
+        int largest = 0;
+        for (Meeting m : test.getFutureMeetingList(contacts.iterator().next())) {
+            largest = Math.max(largest, m.getId());
+        }
+        test.flush();
+        Snapshot snapshot = Snapshot.read(file);
+        assertEquals(snapshot.getLastMeetingId(), largest);
+        assertEquals(snapshot.getLastContactId(), contacts.iterator().next().getId());
+        ConcurrentContactManager reopened = new ConcurrentContactManager(file, clock);
+        assertTrue(reopened.addFutureMeeting(reopened.getContacts("Contact1"), new GregorianCalendar(2020, 1, 1)) > largest);
+    }
+
+    @Test
+    public void flushToAMissingFolderShouldThrowUncheckedIOException() {
+        ConcurrentContactManager missing = new ConcurrentContactManager(Paths.get("missing", "file.bin"), clock);
+        exception.expect(UncheckedIOException.class);
+        missing.flush();
+    }
+
+}
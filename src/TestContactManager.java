@@ -3,7 +3,16 @@ import org.junit.*;
 import org.junit.rules.ExpectedException;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
@@ -257,6 +266,17 @@ public class TestContactManager {
         test.getContacts(1231, validID);
     }
 
+    @Test
+    public void testGetContactsByIdsShouldReturnThemInTheOrderOfTheIds() {
+        addContacts(5);
+        Contact[] byName = test.getContacts("Contact").toArray(new Contact[5]);
+        Contact[] byIds = test.getContacts(byName[3].getId(), byName[0].getId(), byName[4].getId())
+                .toArray(new Contact[3]);
+        assertEquals(byIds[0], byName[3]);
+        assertEquals(byIds[1], byName[0]);
+        assertEquals(byIds[2], byName[4]);
+    }
+
     @Test
     public void testGetContactEmptyStringShouldThrowNullPointerException() {
         exception.expect(NullPointerException.class);
@@ -440,6 +460,22 @@ public class TestContactManager {
         assertEquals(list.get(2).getId(), third);
     }
 
+    @Test
+    public void getFutureMeetingListWithValidContactShouldIgnoreOtherContactsAndPastMeetingsAndBeSorted() {
+        Contact valid = addContactgetContact();
+        addContactsSmith(2);
+        test.addFutureMeeting(test.getContacts("Smith"), new GregorianCalendar(2900, 1, 1));
+        test.addNewPastMeeting(test.getContacts("Valid"), getPastDate(), "Should be ignored");
+        int third = test.addFutureMeeting(test.getContacts("Valid"), getFutureDate());  // it is year 3015
+        int first = test.addFutureMeeting(test.getContacts("Valid"), new GregorianCalendar(2500, 6, 4, 16, 30));
+        int second = test.addFutureMeeting(test.getContacts("Valid"), new GregorianCalendar(2700, 12, 12, 13, 13));
+        List<Meeting> list = test.getFutureMeetingList(valid);
+        assertEquals(list.size(), 3);
+        assertEquals(list.get(0).getId(), first);
+        assertEquals(list.get(1).getId(), second);
+        assertEquals(list.get(2).getId(), third);
+    }
+
     @Test
     public void getFutureMeetingListWithValidContactFewMeetingsShouldReturnAListWithNoDuplicates() {
         Contact valid = addContactgetContact();
@@ -572,6 +608,43 @@ public class TestContactManager {
         assertEquals(meetings.get(2).getId(), third);
     }
 
+    @Test
+    public void getMeetingsWithNullDateShouldThrowNullPointerException() {
+        exception.expect(NullPointerException.class);
+        test.getMeetings(null, getFutureDate());
+    }
+
+    @Test
+    public void getMeetingsWithStartAfterEndShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        test.getMeetings(getFutureDate(), getPastDate());
+    }
+
+    @Test
+    public void getMeetingsShouldReturnPastAndFutureMeetingsInTheRangeSorted() {
+        addContacts(2);
+        test.addNewPastMeeting(test.getContacts("Contact1"), new GregorianCalendar(1990, 1, 1), "Before the range");
+        test.addNewPastMeeting(test.getContacts("Contact2"), getPastDate(), "In the range");
+        int future = test.addFutureMeeting(test.getContacts("Contact1"), new GregorianCalendar(2500, 1, 1));
+        test.addFutureMeeting(test.getContacts("Contact2"), getFutureDate());   // it is year 3015, ignored
+        List<Meeting> list = test.getMeetings(new GregorianCalendar(2000, 1, 1), new GregorianCalendar(3000, 1, 1));
+        assertEquals(list.size(), 2);
+        assertEquals(((PastMeeting) list.get(0)).getNotes(), "In the range");
+        assertEquals(list.get(1).getId(), future);
+    }
+
+    @Test
+    public void getMeetingsShouldExcludeTheEndOfTheRange() {
+        addContacts(1);
+        Calendar date = getFutureDate();
+        test.addFutureMeeting(test.getContacts("Contact1"), date);
+        assertTrue(test.getMeetings(getPastDate(), date).isEmpty());
+        assertEquals(test.getMeetings(date, getFutureDate()).size(), 0);
+        Calendar after = getFutureDate();
+        after.add(Calendar.MINUTE, 1);
+        assertEquals(test.getMeetings(date, after).size(), 1);
+    }
+
     @Test
     public void getPastMeetingListWithNullContactShouldThrowNullPointerException() {
         exception.expect(NullPointerException.class);
@@ -818,6 +891,22 @@ public class TestContactManager {
         assertEquals(future.getDate(), past.getDate());
     }
 
+    @Test
+    public void addMeetingNotesToAPastMeetingShouldUpdateTheSameMeeting() {
+        addContactgetContact();   // added contact named "Valid"
+        Calendar date = Calendar.getInstance();
+        date.set(2010, Calendar.OCTOBER, 10);
+        test.addNewPastMeeting(test.getContacts("V"), date, "First");
+        int id = test.getPastMeetingList(test.getContacts("V").iterator().next()).get(0).getId();
+        PastMeeting before = test.getPastMeeting(id);
+        for (int i = 0; i < 1000; i++) {
+            test.addMeetingNotes(id, "n");
+        }
+        assertEquals(test.getPastMeeting(id), before);
+        assertEquals(before.getNotes().length(), "First".length() + 2 * 1000);
+        assertTrue(before.getNotes().startsWith("First n n"));
+    }
+
     @Test
     public void convertFutureMeetingToPastMeetingCompareFieldsWithMeeting() {
         addContactgetContact();   // added contact named "Valid"
@@ -906,6 +995,391 @@ public class TestContactManager {
         assertEquals(list.get(4).getNotes(), "2000 Meeting");
     }
 
+    // testing a ContactManager with a fixed clock -------------------------------------------------------------------
+
+    /**
+     * This method is used in following tests to get a clock fixed at the given date.
+     *
+     * @return a clock whose current time is always the given date.
+     */
+    public Clock clockAt(Calendar date) {
+        return Clock.fixed(date.toInstant(), ZoneId.systemDefault());
+    }
+
+    @Test
+    public void contactManagerWithNullClockShouldThrowNullPointerException() {
+        exception.expect(NullPointerException.class);
+        new ContactManagerImpl(null);
+    }
+
+    @Test
+    public void addFutureMeetingWithFixedClockShouldCompareTheDateWithTheClock() {
+        test = new ContactManagerImpl(clockAt(new GregorianCalendar(1990, 1, 1)));
+        addContacts(1);
+        int id = test.addFutureMeeting(test.getContacts("Contact1"), new GregorianCalendar(2000, 1, 1));
+        assertEquals(test.getFutureMeeting(id).getId(), id);
+    }
+
+    @Test
+    public void addNewPastMeetingWithFixedClockShouldAcceptADateAfterTheSystemClock() {
+        test = new ContactManagerImpl(clockAt(new GregorianCalendar(3100, 1, 1)));
+        addContacts(1);
+        test.addNewPastMeeting(test.getContacts("Contact1"), getFutureDate(), "Notes");
+        assertEquals(test.getPastMeetingList(test.getContacts("Contact1").iterator().next()).size(), 1);
+    }
+
+    @Test
+    public void futureMeetingShouldBecomePastWhenReopenedWithALaterClock() {
+        test = new ContactManagerImpl(clockAt(new GregorianCalendar(2010, 1, 1)));
+        Contact contact = addContactgetContact();
+        int id1 = test.addFutureMeeting(test.getContacts("Valid"), new GregorianCalendar(2020, 1, 1));
+        int id2 = test.addFutureMeeting(test.getContacts("Valid"), new GregorianCalendar(2040, 1, 1));
+        assertEquals(test.getFutureMeetingList(contact).size(), 2);
+        test.flush();
+        test = new ContactManagerImpl(clockAt(new GregorianCalendar(2030, 1, 1)));
+        contact = test.getContacts("Valid").iterator().next();
+        List<PastMeeting> past = test.getPastMeetingList(contact);
+        assertEquals(past.size(), 1);
+        assertEquals(past.get(0).getId(), id1);
+        assertEquals(test.getFutureMeetingList(contact).get(0).getId(), id2);
+        test.addMeetingNotes(id1, "Notes");
+        assertEquals(test.getPastMeeting(id1).getNotes(), "Notes");
+    }
+
+    // testing importContacts(), importMeetings() --------------------------------------------------------------------
+
+    /**
+     * This method is used in following tests to get n records of contacts named "Imported" followed by a number.
+     *
+     * @return an iterator over the records.
+     */
+    public Iterator<ContactRecord> contactRecords(int n) {
+        List<ContactRecord> records = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            records.add(new ContactRecord("Imported" + i, "Notes" + i));
+        }
+        return records.iterator();
+    }
+
+    @Test
+    public void importContactsShouldAddAllTheContactsWithConsecutiveIds() {
+        ContactManagerImpl manager = new ContactManagerImpl(clockAt(new GregorianCalendar(2015, 1, 1)));
+        manager.addNewContact("Before", "");
+        int[] ids = manager.importContacts(contactRecords(1000), false);
+        assertEquals(ids.length, 1000);
+        for (int i = 1; i < ids.length; i++) {
+            assertEquals(ids[i], ids[i - 1] + 1);
+        }
+        Contact c = manager.getContacts(ids[10]).iterator().next();
+        assertEquals(c.getName(), "Imported10");
+        assertEquals(c.getNotes(), "Notes10");
+        assertEquals(manager.getContacts("Imported").size(), 1000);
+        assertEquals(manager.getContacts("rted99").size(), 11);
+        List<Contact> prefix = manager.getContactsByPrefix("Imported1", 3);
+        assertEquals(prefix.get(0).getName(), "Imported1");
+        assertEquals(prefix.get(1).getName(), "Imported10");
+        assertEquals(prefix.get(2).getName(), "Imported100");
+        manager.addNewContact("After", "");
+        assertTrue(manager.getContacts("After").iterator().next().getId() > ids[999]);
+    }
+
+    @Test
+    public void importContactsWithANullRecordShouldThrowNullPointerExceptionAndAddNothing() {
+        ContactManagerImpl manager = new ContactManagerImpl();
+        try {
+            manager.importContacts(Arrays.asList(new ContactRecord("First", ""), null).iterator(), false);
+            fail();
+        } catch (NullPointerException ex) {
+            assertTrue(manager.getContacts("First").isEmpty());
+        }
+    }
+
+    @Test
+    public void importMeetingsShouldIndexThemAsTheSingleMethods() {
+        for (boolean parallel : new boolean[] {false, true}) {
+            ContactManagerImpl imported = new ContactManagerImpl(clockAt(new GregorianCalendar(2015, 1, 1)));
+            ContactManagerImpl single = new ContactManagerImpl(clockAt(new GregorianCalendar(2015, 1, 1)));
+            int[] contacts = imported.importContacts(contactRecords(50), parallel);
+            single.importContacts(contactRecords(50), parallel);
+            single.addFutureMeeting(single.getContacts(contacts[0]), new GregorianCalendar(2016, 1, 1));
+            imported.addFutureMeeting(imported.getContacts(contacts[0]), new GregorianCalendar(2016, 1, 1));
+            Random random = new Random(5);
+            List<MeetingRecord> records = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                int[] attendees = {contacts[random.nextInt(50)], contacts[random.nextInt(50)]};
+                boolean past = random.nextBoolean();
+                Calendar date = new GregorianCalendar(past ? 2010 : 2020, random.nextInt(12), 1 + random.nextInt(28));
+                records.add(new MeetingRecord(date, attendees, past ? "Notes" + i : null));
+                if (past) {
+                    single.addNewPastMeeting(single.getContacts(attendees), date, "Notes" + i);
+                } else {
+                    single.addFutureMeeting(single.getContacts(attendees), date);
+                }
+            }
+            int[] ids = imported.importMeetings(records.iterator(), parallel);
+            assertEquals(ids.length, 2000);
+            for (int c : contacts) {
+                assertEquals(idsOf(imported.getFutureMeetingList(imported.getContacts(c).iterator().next())),
+                        idsOf(single.getFutureMeetingList(single.getContacts(c).iterator().next())));
+                assertEquals(idsOf(imported.getPastMeetingList(imported.getContacts(c).iterator().next())),
+                        idsOf(single.getPastMeetingList(single.getContacts(c).iterator().next())));
+            }
+            Calendar from = new GregorianCalendar(2000, 1, 1);
+            Calendar to = new GregorianCalendar(2030, 1, 1);
+            assertEquals(idsOf(imported.getMeetings(from, to)), idsOf(single.getMeetings(from, to)));
+            assertEquals(imported.getPastMeeting(ids[1999]).getNotes(), single.getPastMeeting(ids[1999]).getNotes());
+        }
+    }
+
+    private static List<Integer> idsOf(List<? extends Meeting> meetings) {
+        List<Integer> ids = new ArrayList<>();
+        for (Meeting m : meetings) {
+            ids.add(m.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void importMeetingsWithAnUnknownContactShouldThrowIllegalArgumentExceptionAndAddNothing() {
+        ContactManagerImpl manager = new ContactManagerImpl(clockAt(new GregorianCalendar(2015, 1, 1)));
+        int[] contacts = manager.importContacts(contactRecords(1), false);
+        List<MeetingRecord> records = Arrays.asList(
+                new MeetingRecord(new GregorianCalendar(2010, 1, 1), contacts, "Notes"),
+                new MeetingRecord(new GregorianCalendar(2010, 1, 1), new int[] {contacts[0], 99}, "Notes"));
+        try {
+            manager.importMeetings(records.iterator(), true);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertTrue(manager.getPastMeetingList(manager.getContacts(contacts).iterator().next()).isEmpty());
+            assertNull(manager.getMeeting(1));
+        }
+    }
+
+    @Test
+    public void importMeetingsWithAFutureMeetingInThePastShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        ContactManagerImpl manager = new ContactManagerImpl(clockAt(new GregorianCalendar(2015, 1, 1)));
+        int[] contacts = manager.importContacts(contactRecords(1), false);
+        manager.importMeetings(Collections.singleton(
+                new MeetingRecord(new GregorianCalendar(2010, 1, 1), contacts, null)).iterator(), false);
+    }
+
+    /**
+     * Export the data of a ContactManager with contacts whose names and notes need quoting or escaping,
+     * and import it into another one, in both formats.
+     */
+    @Test
+    public void exportDataThenImportDataShouldRestoreTheSameContactsAndMeetings() throws IOException {
+        Path exported = Paths.get("TestContactManager.export");
+        String[] names = {"Plain", "Comma, Name", "Quote \"Name\"", "Line\r\nBreak", " Spaces ", "Ünïcödé 名前 \uD83D\uDE00",
+                "Back\\slash\ttab\u0001", ""};
+        try {
+            for (DataFormat format : DataFormat.values()) {
+                ContactManagerImpl manager = new ContactManagerImpl(clockAt(new GregorianCalendar(2015, 1, 1)));
+                for (String name : names) {
+                    manager.addNewContact(name, "Notes of " + name);
+                }
+                int[] contacts = new int[names.length];
+                for (int i = 0; i < names.length; i++) {
+                    contacts[i] = 1000 + i;
+                }
+                manager.addNewPastMeeting(manager.getContacts(contacts), new GregorianCalendar(2010, 1, 1), names[2]);
+                manager.addFutureMeeting(manager.getContacts(1000, 1003), new GregorianCalendar(2020, 1, 1));
+                manager.addNewPastMeeting(manager.getContacts(1005), new GregorianCalendar(2011, 1, 1), "");
+                assertEquals(manager.exportData(exported, format), names.length + 3);
+
+                ContactManagerImpl imported = new ContactManagerImpl(clockAt(new GregorianCalendar(2015, 1, 1)));
+                imported.addNewContact("Existing", "");
+                assertEquals(imported.importData(exported, format, false), names.length + 3);
+                for (int i = 0; i < names.length; i++) {
+                    Contact c = imported.getContacts(1001 + i).iterator().next();
+                    assertEquals(c.getName(), names[i]);
+                    assertEquals(c.getNotes(), "Notes of " + names[i]);
+                }
+                PastMeeting past = imported.getPastMeeting(1);
+                assertEquals(past.getDate(), new GregorianCalendar(2010, 1, 1));
+                assertEquals(past.getNotes(), names[2]);
+                assertEquals(past.getContacts().size(), names.length);
+                assertFalse(past.getContacts().contains(imported.getContacts(1000).iterator().next()));
+                FutureMeeting future = imported.getFutureMeeting(2);
+                assertEquals(future.getDate(), new GregorianCalendar(2020, 1, 1));
+                assertEquals(future.getContacts(), imported.getContacts(1001, 1004));
+                assertEquals(imported.getPastMeeting(3).getNotes(), "");
+            }
+        } finally {
+            Files.deleteIfExists(exported);
+        }
+    }
+
+    @Test
+    public void importDataShouldAddDueFutureMeetingsAsPastMeetings() throws IOException {
+        Path exported = Paths.get("TestContactManager.export");
+        try {
+            ContactManagerImpl manager = new ContactManagerImpl(clockAt(new GregorianCalendar(2015, 1, 1)));
+            manager.addNewContact("Contact1", "");
+            manager.addFutureMeeting(manager.getContacts(1000), new GregorianCalendar(2016, 1, 1));
+            manager.exportData(exported, DataFormat.JSON_LINES);
+            ContactManagerImpl later = new ContactManagerImpl(clockAt(new GregorianCalendar(2017, 1, 1)));
+            later.importData(exported, DataFormat.JSON_LINES, true);
+            assertEquals(later.getPastMeeting(1).getNotes(), "");
+        } finally {
+            Files.deleteIfExists(exported);
+        }
+    }
+
+    @Test
+    public void importDataWithAMeetingOfAContactNotInTheFileShouldThrowIllegalArgumentException() throws IOException {
+        Path exported = Paths.get("TestContactManager.export");
+        try {
+            Files.write(exported, "contact,1000,Name,Notes\npast,1,0,1000;1001,Notes\n".getBytes(StandardCharsets.UTF_8));
+            ContactManagerImpl manager = new ContactManagerImpl(clockAt(new GregorianCalendar(2015, 1, 1)));
+            manager.addNewContact("Unrelated", "");
+            manager.addNewContact("Unrelated", "");
+            try {
+                manager.importData(exported, DataFormat.CSV, false);
+                fail("A meeting should not be bound to a contact which is not in the file");
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+            assertTrue(manager.getPastMeetingList(manager.getContacts(1001).iterator().next()).isEmpty());
+        } finally {
+            Files.deleteIfExists(exported);
+        }
+    }
+
+    @Test
+    public void importDataWithAnInvalidRecordShouldThrowUncheckedIOException() throws IOException {
+        exception.expect(UncheckedIOException.class);
+        exception.expectMessage("TestContactManager.export");
+        Path exported = Paths.get("TestContactManager.export");
+        try {
+            Files.write(exported, "contact,1000,Name,Notes\nmeeting,1,0,1000\n".getBytes(StandardCharsets.UTF_8));
+            new ContactManagerImpl().importData(exported, DataFormat.CSV, false);
+        } finally {
+            Files.deleteIfExists(exported);
+        }
+    }
+
+    /**
+     * Add a contact and n meetings of it, one every three in the past, in random order of date,
+     * to a ContactManager whose clock is fixed in 2015.
+     */
+    public ContactManagerImpl addMeetingsOfOneContact(int n) {
+        ContactManagerImpl manager = new ContactManagerImpl(clockAt(new GregorianCalendar(2015, 1, 1)));
+        manager.addNewContact("Contact", "");
+        Set<Contact> contacts = manager.getContacts(1000);
+        Random random = new Random(n);
+        for (int i = 0; i < n; i++) {
+            Calendar date = new GregorianCalendar(i % 3 == 0 ? 2010 : 2020, random.nextInt(12), 1 + random.nextInt(5));
+            if (i % 3 == 0) {
+                manager.addNewPastMeeting(contacts, date, "Notes" + i);
+            } else {
+                manager.addFutureMeeting(contacts, date);
+            }
+        }
+        return manager;
+    }
+
+    @Test
+    public void getFutureMeetingPageShouldReturnTheListOnePageAtATime() {
+        ContactManagerImpl manager = addMeetingsOfOneContact(60);
+        Contact contact = manager.getContacts(1000).iterator().next();
+        List<Meeting> read = new ArrayList<>();
+        MeetingPage<Meeting> page = manager.getFutureMeetingPage(contact, MeetingCursor.START, 15);
+        read.addAll(page.getMeetings());
+        while (page.hasNext()) {
+            assertEquals(page.getMeetings().size(), 15);
+            String token = page.getNext().toString();
+            page = manager.getFutureMeetingPage(contact, MeetingCursor.valueOf(token), 15);
+            read.addAll(page.getMeetings());
+        }
+        assertEquals(page.getMeetings().size(), 10);
+        assertEquals(read, manager.getFutureMeetingList(contact));
+    }
+
+    @Test
+    public void getPastMeetingPageShouldReturnTheListOnePageAtATime() {
+        ContactManagerImpl manager = addMeetingsOfOneContact(60);
+        Contact contact = manager.getContacts(1000).iterator().next();
+        List<PastMeeting> read = new ArrayList<>();
+        MeetingCursor cursor = MeetingCursor.START;
+        do {
+            MeetingPage<PastMeeting> page = manager.getPastMeetingPage(contact, cursor, 6);
+            read.addAll(page.getMeetings());
+            cursor = page.getNext();
+        } while (cursor != null);
+        assertEquals(read.size(), 20);
+        assertEquals(read, manager.getPastMeetingList(contact));
+    }
+
+    @Test
+    public void getFutureMeetingPageWithLimitZeroShouldReturnAnEmptyPageWithANextOne() {
+        ContactManagerImpl manager = addMeetingsOfOneContact(3);
+        Contact contact = manager.getContacts(1000).iterator().next();
+        MeetingPage<Meeting> page = manager.getFutureMeetingPage(contact, MeetingCursor.START, 0);
+        assertTrue(page.getMeetings().isEmpty());
+        assertTrue(page.hasNext());
+        page = manager.getFutureMeetingPage(contact, page.getNext(), 2);
+        assertEquals(page.getMeetings(), manager.getFutureMeetingList(contact));
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    public void getPastMeetingPageShouldConvertDueFutureMeetings() {
+        test = new ContactManagerImpl(clockAt(new GregorianCalendar(1990, 1, 1)));
+        Contact contact = addContactgetContact();
+        test.addFutureMeeting(test.getContacts(contact.getId()), new GregorianCalendar(2000, 1, 1));
+        test.flush();
+        test = new ContactManagerImpl(clockAt(new GregorianCalendar(2015, 1, 1)));
+        contact = test.getContacts(contact.getId()).iterator().next();
+        List<PastMeeting> page = test.getPastMeetingPage(contact, MeetingCursor.START, 10).getMeetings();
+        assertEquals(page.size(), 1);
+        assertEquals(page.get(0).getNotes(), "");
+        assertEquals(test.getMeeting(page.get(0).getId()), page.get(0));
+    }
+
+    @Test
+    public void getMeetingPageWithNegativeLimitShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        test.getFutureMeetingPage(addContactgetContact(), MeetingCursor.START, -1);
+    }
+
+    @Test
+    public void getMeetingPageWithNullCursorShouldThrowNullPointerException() {
+        exception.expect(NullPointerException.class);
+        test.getPastMeetingPage(addContactgetContact(), null, 10);
+    }
+
+    @Test
+    public void getMeetingPageWithUnknownContactShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        test.getPastMeetingPage(new ContactImpl("Unknown", 1000, ""), MeetingCursor.START, 10);
+    }
+
+    @Test
+    public void meetingCursorWithInvalidTokenShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        MeetingCursor.valueOf("12345");
+    }
+
+    @Test
+    public void getMeetingStreamsShouldReturnTheListsLazilyInPages() {
+        ContactManagerImpl manager = addMeetingsOfOneContact(300);
+        Contact contact = manager.getContacts(1000).iterator().next();
+        assertEquals(manager.getFutureMeetingStream(contact).collect(Collectors.toList()),
+                manager.getFutureMeetingList(contact));
+        assertEquals(manager.getPastMeetingStream(contact).collect(Collectors.toList()),
+                manager.getPastMeetingList(contact));
+        assertEquals(manager.getFutureMeetingStream(contact).limit(20).collect(Collectors.toList()),
+                manager.getFutureMeetingList(contact).subList(0, 20));
+    }
+
+    @Test
+    public void getMeetingStreamWithUnknownContactShouldThrowIllegalArgumentExceptionAtOnce() {
+        exception.expect(IllegalArgumentException.class);
+        test.getFutureMeetingStream(new ContactImpl("Unknown", 1000, ""));
+    }
+
     /* testing flush() ------------------------------------------------------------------------------------------------
     In order to test the flush() method and a correct serialization of data, after each JUnit methods
     the file "Contacts.txt" is deleted (as well as a new instance of ContactManager is created).
@@ -958,4 +1432,40 @@ public class TestContactManager {
         assertNotEquals(validMeetingID, smithMeetingID);
     }
 
+    @Test
+    public void getContactsByPrefixShouldReturnMatchingContactsInOrderOfName() {
+        test.addNewContact("Smithers", "");
+        addContactsSmith(2);
+        addContacts(2);
+        test.addNewContact("Smart", "");
+        List<Contact> list = test.getContactsByPrefix("Sm", 10);
+        assertEquals(list.size(), 4);
+        assertEquals(list.get(0).getName(), "Smart");
+        assertEquals(list.get(1).getName(), "Smith");
+        assertEquals(list.get(2).getName(), "Smith");
+        assertTrue(list.get(1).getId() < list.get(2).getId());
+        assertEquals(list.get(3).getName(), "Smithers");
+    }
+
+    @Test
+    public void getContactsByPrefixShouldReturnAtMostLimitContacts() {
+        addContactsSmith(10);
+        assertEquals(test.getContactsByPrefix("Smi", 3).size(), 3);
+        assertEquals(test.getContactsByPrefix("", 5).size(), 5);
+        assertTrue(test.getContactsByPrefix("Smi", 0).isEmpty());
+        assertTrue(test.getContactsByPrefix("smi", 3).isEmpty());
+    }
+
+    @Test
+    public void getContactsByPrefixWithNegativeLimitShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        test.getContactsByPrefix("Smith", -1);
+    }
+
+    @Test
+    public void getContactsByPrefixWithNullPrefixShouldThrowNullPointerException() {
+        exception.expect(NullPointerException.class);
+        test.getContactsByPrefix(null, 10);
+    }
+
 }
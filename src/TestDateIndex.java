@@ -0,0 +1,258 @@
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see DateIndex}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestDateIndex {
+    private DateIndex test;
+
+    @Before
+    public void setUp() {
+        test = new DateIndex();
+    }
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    /**
+     * This method is used in following tests to collect the ids of a range of the index.
+     */
+    public List<Integer> idsInRange(long from, long to) {
+        List<Integer> ids = new ArrayList<>();
+        test.forEachInRange(from, to, ids::add);
+        return ids;
+    }
+
+    /**
+     * This method is used in following tests to collect all the ids of the index.
+     */
+    public List<Integer> allIds() {
+        List<Integer> ids = new ArrayList<>();
+        test.forEach(ids::add);
+        return ids;
+    }
+
+    @Test
+    public void newIndexShouldBeEmpty() {
+        assertEquals(test.size(), 0);
+        assertTrue(allIds().isEmpty());
+        assertTrue(idsInRange(Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void addInRandomOrderShouldKeepThemSortedByDate() {
+        test.add(300, 3);
+        test.add(100, 1);
+        test.add(200, 2);
+        assertEquals(test.size(), 3);
+        assertEquals(allIds(), Arrays.asList(1, 2, 3));
+    }
+
+    @Test
+    public void meetingsWithTheSameDateShouldBeSortedById() {
+        test.add(100, 7);
+        test.add(100, 5);
+        test.add(100, 6);
+        assertEquals(allIds(), Arrays.asList(5, 6, 7));
+    }
+
+    @Test
+    public void addTheSameEntryTwiceShouldBeIgnored() {
+        test.add(100, 1);
+        test.add(100, 1);
+        assertEquals(test.size(), 1);
+    }
+
+    @Test
+    public void removeShouldOnlyRemoveTheMatchingEntry() {
+        test.add(100, 1);
+        test.add(200, 2);
+        assertFalse(test.remove(100, 2));
+        assertTrue(test.remove(100, 1));
+        assertEquals(test.size(), 1);
+        assertEquals(allIds(), Arrays.asList(2));
+    }
+
+    @Test
+    public void rangeShouldIncludeTheStartAndExcludeTheEnd() {
+        for (int i = 1; i <= 10; i++) {
+            test.add(i * 100, i);
+        }
+        assertEquals(idsInRange(300, 600), Arrays.asList(3, 4, 5));
+        assertEquals(idsInRange(Long.MIN_VALUE, 300), Arrays.asList(1, 2));
+        assertEquals(idsInRange(901, Long.MAX_VALUE), Arrays.asList(10));
+        assertTrue(idsInRange(350, 399).isEmpty());
+    }
+
+    @Test
+    public void add10000EntriesInRandomOrderShouldSplitBlocksAndKeepThemSorted() {
+        List<Integer> dates = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            dates.add(i);
+        }
+        java.util.Collections.shuffle(dates, new Random(7));
+        for (int date : dates) {
+            test.add(date * 10L, date);
+        }
+        assertEquals(test.size(), 10000);
+        List<Integer> ids = allIds();
+        for (int i = 0; i < 10000; i++) {
+            assertEquals((int) ids.get(i), i);
+        }
+        List<Integer> range = idsInRange(25000, 75000);
+        assertEquals(range.size(), 5000);
+        assertEquals((int) range.get(0), 2500);
+        assertEquals((int) range.get(4999), 7499);
+    }
+
+    @Test
+    public void removeMostEntriesShouldLeaveTheOthersInOrder() {
+        for (int i = 0; i < 5000; i++) {
+            test.add(i, i);
+        }
+        for (int i = 0; i < 5000; i++) {
+            if (i % 100 != 0) {
+                assertTrue(test.remove(i, i));
+            }
+        }
+        assertEquals(test.size(), 50);
+        List<Integer> ids = allIds();
+        for (int i = 0; i < 50; i++) {
+            assertEquals((int) ids.get(i), i * 100);
+        }
+        assertEquals(idsInRange(150, 450), Arrays.asList(200, 300, 400));
+    }
+
+    @Test
+    public void addAllShouldMergeTheEntriesWithTheOnesInTheIndex() {
+        for (int i = 0; i < 3000; i += 2) {
+            test.add(i, i);
+        }
+        long[] dates = new long[1500];
+        int[] ids = new int[1500];
+        for (int i = 0; i < 1500; i++) {
+            dates[i] = 2 * i + 1;
+            ids[i] = 2 * i + 1;
+        }
+        test.addAll(dates, ids, 0, 1500);
+        assertEquals(test.size(), 3000);
+        List<Integer> all = allIds();
+        for (int i = 0; i < 3000; i++) {
+            assertEquals((int) all.get(i), i);
+        }
+        test.add(1000, 5000);
+        assertEquals(idsInRange(999, 1001), Arrays.asList(999, 1000, 5000));
+        assertTrue(test.remove(2999, 2999));
+        assertEquals(test.size(), 3000);
+    }
+
+    @Test
+    public void addAllShouldKeepRepeatedEntriesOnce() {
+        test.add(10, 1);
+        test.addAll(new long[] {5, 10, 10, 20}, new int[] {2, 1, 1, 3}, 0, 4);
+        assertEquals(test.size(), 3);
+        assertEquals(allIds(), Arrays.asList(2, 1, 3));
+    }
+
+    @Test
+    public void addAllWithUnsortedEntriesShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        test.addAll(new long[] {20, 10}, new int[] {1, 2}, 0, 2);
+    }
+
+    @Test
+    public void addAllWithUnsortedEntriesShouldLeaveTheIndexUnchanged() {
+        for (int i = 0; i < 2000; i++) {
+            test.add(i, i);
+        }
+        try {
+            test.addAll(new long[] {100, 1500, 1400}, new int[] {5000, 5001, 5002}, 0, 3);
+            fail("Unsorted entries should not be added");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        assertEquals(test.size(), 2000);
+        assertEquals(idsInRange(Long.MIN_VALUE, Long.MAX_VALUE).size(), 2000);
+    }
+
+    @Test
+    public void addAllInBatchesShouldOnlyRebuildTheBlocksTheEntriesFallInto() {
+        Random random = new Random(42);
+        List<long[]> expected = new ArrayList<>();
+        for (int batch = 0; batch < 20; batch++) {
+            long[] dates = new long[500];
+            int[] ids = new int[500];
+            for (int i = 0; i < dates.length; i++) {
+                dates[i] = random.nextInt(10_000);
+                ids[i] = batch * 500 + i;
+            }
+            long[][] entries = new long[500][];
+            for (int i = 0; i < dates.length; i++) {
+                entries[i] = new long[] {dates[i], ids[i]};
+                expected.add(entries[i]);
+            }
+            Arrays.sort(entries, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+            for (int i = 0; i < dates.length; i++) {
+                dates[i] = entries[i][0];
+                ids[i] = (int) entries[i][1];
+            }
+            test.addAll(dates, ids, 0, dates.length);
+        }
+        expected.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        List<Integer> expectedIds = new ArrayList<>();
+        for (long[] e : expected) {
+            expectedIds.add((int) e[1]);
+        }
+        assertEquals(idsInRange(Long.MIN_VALUE, Long.MAX_VALUE), expectedIds);
+        assertEquals(test.size(), 10_000);
+        List<SortedBlocks.Block<long[]>> before = new ArrayList<>(test.blocks);
+        test.addAll(new long[] {20_000, 20_001}, new int[] {1, 2}, 0, 2);
+        assertSame(test.blocks.get(0), before.get(0));
+        assertSame(test.blocks.get(before.size() - 2), before.get(before.size() - 2));
+        assertEquals(test.size(), 10_002);
+        assertEquals(idsInRange(20_000, Long.MAX_VALUE), Arrays.asList(1, 2));
+    }
+
+    @Test
+    public void forEachAfterShouldReadTheRangeOnePageAtATime() {
+        for (int i = 0; i < 2000; i++) {
+            test.add(i / 2, i);     // two entries for each date, across many blocks
+        }
+        List<Integer> read = new ArrayList<>();
+        long date = Long.MIN_VALUE;
+        int id = Integer.MIN_VALUE;
+        int count;
+        do {
+            List<Integer> page = new ArrayList<>();
+            count = test.forEachAfter(date, id, 900, 7, page::add);
+            assertEquals(count, page.size());
+            assertTrue(count <= 7);
+            if (count > 0) {
+                id = page.get(count - 1);
+                date = id / 2;
+            }
+            read.addAll(page);
+        } while (count == 7);
+        assertEquals(read, idsInRange(Long.MIN_VALUE, 900));
+        assertEquals(read.size(), 1800);
+        List<Integer> after = new ArrayList<>();
+        assertEquals(test.forEachAfter(10, 20, Long.MAX_VALUE, 3, after::add), 3);
+        assertEquals(after, Arrays.asList(21, 22, 23));
+        after.clear();
+        test.forEachAfter(10, 19, Long.MAX_VALUE, 2, after::add);  // an entry not in the index
+        assertEquals(after, Arrays.asList(20, 21));
+    }
+
+}
@@ -0,0 +1,203 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.GregorianCalendar;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for flushAsync() of {@see ContactManagerImpl}, and for the group commit of
+ * the flushes requested at the same time.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestFlushAsync {
+    private Path file;
+    private Path logFile;
+    private Path folder;
+    private Clock now;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Paths.get("TestFlushAsync.bin");
+        logFile = Paths.get("TestFlushAsync.bin.log");
+        folder = Paths.get("TestFlushAsyncFolder");
+        tearDown();
+        now = Clock.fixed(new GregorianCalendar(2015, 1, 1).toInstant(), ZoneId.systemDefault());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(logFile);
+        Files.deleteIfExists(folder.resolve(file));
+        Files.deleteIfExists(folder);
+    }
+
+    public ContactManagerImpl populate(ContactManagerImpl test) {
+        test.addNewContact("Contact1", "Notes1");
+        test.addNewContact("Contact2", "Notes2");
+        test.addFutureMeeting(test.getContacts("Contact"), new GregorianCalendar(2020, 1, 1));
+        test.addNewPastMeeting(test.getContacts("Contact1"), new GregorianCalendar(2010, 1, 1), "Past");
+        return test;
+    }
+
+    /**
+     * Wait until the flusher is blocked on the lock of the ContactManager held by the caller.
+     *
+     * @return the thread of the flusher.
+     */
+    private static Thread awaitBlockedFlusher() throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            for (Thread t : Thread.getAllStackTraces().keySet()) {
+                if (t.getName().equals("ContactManagerFlusher") && t.getState() == Thread.State.BLOCKED) {
+                    return t;
+                }
+            }
+            Thread.sleep(5);
+        }
+        fail("The flusher did not start");
+        return null;
+    }
+
+    @Test
+    public void flushAsyncShouldSaveTheDataWhenTheFutureCompletes() {
+        ContactManagerImpl test = populate(new ContactManagerImpl(file, now, StorageMode.SNAPSHOT));
+        test.flushAsync().join();
+        assertTrue(Files.exists(file));
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+        ContactManagerImpl reopened = new ContactManagerImpl(file, now, StorageMode.SNAPSHOT);
+        assertEquals(reopened.getContacts("Contact").size(), 2);
+        assertEquals(reopened.getPastMeeting(2).getNotes(), "Past");
+        assertEquals(reopened.getFutureMeeting(1).getContacts().size(), 2);
+    }
+
+    @Test
+    public void flushAsyncShouldSaveTheRecordsOfTheLog() {
+        ContactManagerImpl test = populate(new ContactManagerImpl(file, now, StorageMode.WRITE_AHEAD_LOG));
+        test.flushAsync().join();
+        test.addMeetingNotes(2, "More");
+        test.flushAsync().join();
+        ContactManagerImpl reopened = new ContactManagerImpl(file, now, StorageMode.WRITE_AHEAD_LOG);
+        assertEquals(reopened.getContacts("Contact").size(), 2);
+        assertEquals(reopened.getPastMeeting(2).getNotes(), "Past More");
+    }
+
+    @Test
+    public void requestsMadeWhileAFlushIsRunningShouldShareTheNextFlush() throws InterruptedException {
+        ContactManagerImpl test = populate(new ContactManagerImpl(file, now, StorageMode.SNAPSHOT));
+        CompletableFuture<Void> first;
+        CompletableFuture<Void> second;
+        CompletableFuture<Void> third;
+        synchronized (test) {
+            first = test.flushAsync();
+            awaitBlockedFlusher();
+            second = test.flushAsync();
+            test.addNewContact("Contact3", "Notes3");
+            third = test.flushAsync();
+            assertFalse(first.isDone());
+        }
+        assertNotSame(first, second);
+        assertSame(second, third);
+        third.join();
+        assertTrue(first.isDone());
+        ContactManagerImpl reopened = new ContactManagerImpl(file, now, StorageMode.SNAPSHOT);
+        assertEquals(reopened.getContacts("Contact").size(), 3);
+    }
+
+    @Test
+    public void changesMadeAfterTheDataIsCapturedShouldBeSavedByTheNextFlush() throws InterruptedException {
+        ContactManagerImpl test = populate(new ContactManagerImpl(file, now, StorageMode.WRITE_AHEAD_LOG));
+        test.flush();
+        CompletableFuture<Void> first;
+        synchronized (test) {
+            first = test.flushAsync();
+            awaitBlockedFlusher();
+        }
+        test.addNewContact("Contact3", "Notes3");
+        test.compact();
+        first.join();
+        assertEquals(logFile.toFile().length(), 0);
+        ContactManagerImpl reopened = new ContactManagerImpl(file, now, StorageMode.WRITE_AHEAD_LOG);
+        assertEquals(reopened.getContacts("Contact").size(), 3);
+    }
+
+    @Test
+    public void flushAsyncShouldFailWithUncheckedIOExceptionIfTheFileCannotBeWritten() throws IOException {
+        Path missing = folder.resolve(file);
+        ContactManagerImpl test = populate(new ContactManagerImpl(missing, now, StorageMode.SNAPSHOT));
+        try {
+            test.flushAsync().join();
+            fail("The flush should fail");
+        } catch (CompletionException ex) {
+            assertTrue(ex.getCause() instanceof UncheckedIOException);
+        }
+        try {
+            test.flush();
+            fail("The flush should fail");
+        } catch (UncheckedIOException ex) {
+            assertTrue(ex.getMessage().contains(missing.toString()));
+        }
+        Files.createDirectory(folder);
+        test.flush();     // a failed flush does not stop the following ones
+        ContactManagerImpl reopened = new ContactManagerImpl(missing, now, StorageMode.SNAPSHOT);
+        assertEquals(reopened.getContacts("Contact").size(), 2);
+    }
+
+    @Test
+    public void closeShouldWriteThePendingFlushesAndStopTheFlusher() throws InterruptedException {
+        ContactManagerImpl test = populate(new ContactManagerImpl(file, now, StorageMode.WRITE_AHEAD_LOG));
+        CompletableFuture<Void> pending;
+        Thread flusher;
+        synchronized (test) {
+            pending = test.flushAsync();
+            flusher = awaitBlockedFlusher();
+        }
+        test.close();
+        assertTrue(pending.isDone());
+        flusher.join(10_000);
+        assertFalse(flusher.isAlive());
+        test.close();   // closing again has no effect
+        try {
+            test.flushAsync();
+            fail("A closed ContactManager should not be flushed");
+        } catch (IllegalStateException ex) {
+            assertTrue(ex.getMessage().contains("closed"));
+        }
+        try (ContactManagerImpl reopened = new ContactManagerImpl(file, now, StorageMode.WRITE_AHEAD_LOG)) {
+            assertEquals(reopened.getContacts("Contact").size(), 2);
+        }
+    }
+
+    @Test
+    public void flushWhileHoldingTheLockShouldThrowIllegalStateException() {
+        ContactManagerImpl test = populate(new ContactManagerImpl(file, now, StorageMode.SNAPSHOT));
+        synchronized (test) {
+            try {
+                test.flush();
+                fail("The flush should not wait for the flusher while the lock is held");
+            } catch (IllegalStateException ex) {
+                assertTrue(ex.getMessage().contains("lock"));
+            }
+            try {
+                test.compact();
+                fail("The compaction should not wait for the flusher while the lock is held");
+            } catch (IllegalStateException ex) {
+                assertTrue(ex.getMessage().contains("lock"));
+            }
+        }
+        test.flush();
+        assertTrue(Files.exists(file));
+    }
+
+}
@@ -0,0 +1,90 @@
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see Histogram}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestHistogram {
+    private Histogram histogram;
+
+    @Before
+    public void setUp() {
+        histogram = new Histogram();
+    }
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void emptyHistogramShouldReturnZeros() {
+        assertEquals(histogram.getCount(), 0);
+        assertEquals(histogram.getMax(), 0);
+        assertEquals(histogram.getMean(), 0, 0);
+        assertEquals(histogram.getValueAtPercentile(99), 0);
+    }
+
+    @Test
+    public void smallValuesShouldBeExact() {
+        for (int v = 0; v < 32; v++) {
+            histogram.record(v);
+        }
+        assertEquals(histogram.getCount(), 32);
+        assertEquals(histogram.getValueAtPercentile(0), 0);
+        assertEquals(histogram.getValueAtPercentile(50), 15);
+        assertEquals(histogram.getValueAtPercentile(100), 31);
+        assertEquals(histogram.getMean(), 15.5, 0);
+    }
+
+    @Test
+    public void percentilesShouldBeWithinThreePercentOfTheValues() {
+        for (long v = 1; v <= 1_000_000; v++) {
+            histogram.record(v * 1000);
+        }
+        for (double p : new double[] {1, 50, 90, 99, 99.9}) {
+            double exact = p / 100 * 1_000_000 * 1000;
+            long value = histogram.getValueAtPercentile(p);
+            assertTrue(p + ": " + value, value >= exact && value <= exact * 1.032);
+        }
+        assertEquals(histogram.getValueAtPercentile(100), 1_000_000_000L);
+        assertEquals(histogram.getMax(), 1_000_000_000L);
+    }
+
+    @Test
+    public void bucketsShouldCoverEveryValueOnce() {
+        long previous = -1;
+        for (int bucket = 0; bucket <= Histogram.bucketOf(Histogram.MAX_VALUE); bucket++) {
+            assertEquals(Histogram.bucketOf(previous + 1), bucket);
+            assertEquals(Histogram.bucketOf(Histogram.highestOf(bucket)), bucket);
+            previous = Histogram.highestOf(bucket);
+        }
+        assertEquals(previous, Histogram.MAX_VALUE);
+    }
+
+    @Test
+    public void valuesTooLargeShouldBeCountedAsTheLargest() {
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(histogram.getMax(), Histogram.MAX_VALUE);
+        assertEquals(histogram.getValueAtPercentile(50), Histogram.MAX_VALUE);
+    }
+
+    @Test
+    public void resetShouldForgetTheValues() {
+        histogram.record(100);
+        histogram.reset();
+        assertEquals(histogram.getCount(), 0);
+        assertEquals(histogram.getMax(), 0);
+    }
+
+    @Test
+    public void negativeValueShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        histogram.record(-1);
+    }
+
+}
@@ -0,0 +1,151 @@
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see IntHashMap}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestIntHashMap {
+    private IntHashMap<String> test;
+
+    @Before
+    public void setUp() {
+        test = new IntHashMap<>();
+    }
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void getOnEmptyMapShouldReturnNull() {
+        assertNull(test.get(1));
+        assertTrue(test.isEmpty());
+    }
+
+    @Test
+    public void putAndGetShouldReturnTheSameValue() {
+        test.put(10, "ten");
+        assertEquals(test.get(10), "ten");
+        assertEquals(test.size(), 1);
+    }
+
+    @Test
+    public void putWithExistingKeyShouldReplaceTheValueAndReturnTheOldOne() {
+        test.put(10, "ten");
+        assertEquals(test.put(10, "TEN"), "ten");
+        assertEquals(test.get(10), "TEN");
+        assertEquals(test.size(), 1);
+    }
+
+    @Test
+    public void putNullValueShouldThrowNullPointerException() {
+        exception.expect(NullPointerException.class);
+        test.put(1, null);
+    }
+
+    @Test
+    public void createMapWithNegativeSizeShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        new IntHashMap<String>(-1);
+    }
+
+    @Test
+    public void createMapLargerThanTheMaximumSizeShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        new IntHashMap<String>(IntHashMap.MAX_SIZE + 1);
+    }
+
+    @Test
+    public void ensureCapacityLargerThanTheMaximumSizeShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        test.ensureCapacity(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void negativeAndZeroKeysShouldBeValid() {
+        test.put(0, "zero");
+        test.put(-1, "minus one");
+        test.put(Integer.MIN_VALUE, "min");
+        assertEquals(test.get(0), "zero");
+        assertEquals(test.get(-1), "minus one");
+        assertEquals(test.get(Integer.MIN_VALUE), "min");
+    }
+
+    @Test
+    public void put10000KeysShouldResizeAndGetThemAll() {
+        for (int i = 0; i < 10000; i++) {
+            test.put(i * 31, "value" + i);
+        }
+        assertEquals(test.size(), 10000);
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(test.get(i * 31), "value" + i);
+        }
+        assertNull(test.get(1));
+    }
+
+    @Test
+    public void removeShouldReturnTheValueAndLeaveTheOtherKeysReachable() {
+        for (int i = 0; i < 1000; i++) {
+            test.put(i, "value" + i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            assertEquals(test.remove(i), "value" + i);
+        }
+        assertEquals(test.size(), 500);
+        for (int i = 0; i < 1000; i++) {
+            if (i % 2 == 0) {
+                assertNull(test.get(i));
+            } else {
+                assertEquals(test.get(i), "value" + i);
+            }
+        }
+    }
+
+    @Test
+    public void removeNonExistentKeyShouldReturnNull() {
+        test.put(1, "one");
+        assertNull(test.remove(2));
+        assertEquals(test.size(), 1);
+    }
+
+    @Test
+    public void forEachValueShouldVisitEveryValueOnce() {
+        for (int i = 0; i < 100; i++) {
+            test.put(i, "value" + i);
+        }
+        Set<String> visited = new HashSet<>();
+        test.forEachValue(visited::add);
+        assertEquals(visited.size(), 100);
+        assertTrue(visited.contains("value99"));
+    }
+
+    @Test
+    public void clearShouldRemoveAllTheEntries() {
+        test.put(1, "one");
+        test.put(2, "two");
+        test.clear();
+        assertTrue(test.isEmpty());
+        assertNull(test.get(1));
+    }
+
+    @Test
+    public void ensureCapacityShouldKeepTheEntries() {
+        for (int i = 0; i < 100; i++) {
+            test.put(i, "value" + i);
+        }
+        test.ensureCapacity(100_000);
+        assertEquals(test.size(), 100);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(test.get(i), "value" + i);
+        }
+    }
+
+}
@@ -128,4 +128,56 @@ public class TestMeeting {
         Meeting test = new MeetingImpl(date, empty, 10);
     }
 
+    @Test
+    public void getContactsShouldContainOnlyTheSameContactObjects() {
+        contacts = createSetOfContactsMock(10);
+        Meeting test = new MeetingImpl(date, contacts, 5);
+        for (Contact c : contacts) {
+            assertTrue(test.getContacts().contains(c));
+            assertTrue(((MeetingImpl) test).hasAttendee(c.getId()));
+        }
+        assertFalse(test.getContacts().contains(createContactsMock("Contact1", 1, "Notes about Contact1")));
+        assertFalse(((MeetingImpl) test).hasAttendee(11));
+    }
+
+    @Test
+    public void getContactsShouldBeReadOnly() {
+        exception.expect(UnsupportedOperationException.class);
+        Meeting test = new MeetingImpl(date, createSetOfContactsMock(2), 5);
+        test.getContacts().add(createContactsMock("Contact3", 3, ""));
+    }
+
+    @Test
+    public void meetingsShouldHoldTheSortedIdsOfTheirContactsAndResolveThemWhenRequested() {
+        Contact[] all = new Contact[1000];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = new ContactImpl("Contact" + i, i, "");
+        }
+        ContactResolver resolver = id -> all[id];
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            Set<Contact> contacts = randomContacts(all, random);
+            MeetingImpl test = new MeetingImpl(date, AttendeeSet.of(contacts, resolver), i);
+            int[] ids = test.getAttendeeIds();
+            assertEquals(ids.length, 5);    // no room is kept for more contacts
+            for (int j = 1; j < ids.length; j++) {
+                assertTrue(ids[j - 1] < ids[j]);
+            }
+            contacts.clear();   // the meeting keeps no reference to the set it was given
+            for (Contact c : test.getContacts()) {
+                assertSame(c, all[c.getId()]);
+                assertTrue(test.hasAttendee(c.getId()));
+            }
+            assertEquals(test.getContacts().size(), 5);
+        }
+    }
+
+    private static Set<Contact> randomContacts(Contact[] all, Random random) {
+        Set<Contact> set = new LinkedHashSet<>();
+        while (set.size() < 5) {
+            set.add(all[random.nextInt(all.length)]);
+        }
+        return set;
+    }
+
 }
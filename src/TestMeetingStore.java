@@ -0,0 +1,124 @@
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see MeetingStore}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestMeetingStore {
+    private IntHashMap<Contact> contacts;
+    private MeetingStore test;
+
+    @Before
+    public void setUp() {
+        contacts = new IntHashMap<>();
+        for (int id = 1000; id < 1010; id++) {
+            contacts.put(id, new ContactImpl("Contact " + id, id, ""));
+        }
+        test = new MeetingStore(contacts::get);
+        test.setLastId(10_000);
+    }
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void getOnEmptyStoreShouldReturnNull() {
+        assertNull(test.get(1));
+        assertNull(test.get(-1));
+        assertFalse(test.contains(100_000));
+        assertEquals(test.size(), 0);
+    }
+
+    @Test
+    public void meetingsShouldBeReadAsViewsOfTheirKind() {
+        test.add(1, 5000L, new int[] {1001, 1003}, null);
+        test.add(2, -5000L, new int[] {1002}, "Notes");
+        Meeting future = test.get(1);
+        assertTrue(future instanceof FutureMeeting);
+        assertEquals(future.getId(), 1);
+        assertEquals(future.getDate().getTimeInMillis(), 5000L);
+        assertEquals(future.getContacts().size(), 2);
+        assertTrue(future.getContacts().contains(contacts.get(1003)));
+        assertFalse(future.getContacts().contains(contacts.get(1002)));
+        PastMeeting past = (PastMeeting) test.get(2);
+        assertEquals(past.getNotes(), "Notes");
+        assertEquals(ContactManagerImpl.dateOf(past), -5000L);
+        assertTrue(Arrays.equals(ContactManagerImpl.attendeesOf(past), new int[] {1002}));
+        assertEquals(test.size(), 2);
+    }
+
+    @Test
+    public void viewsOfTheSameMeetingShouldBeEqual() {
+        test.add(1, 0L, new int[] {1000}, "");
+        test.add(2, 0L, new int[] {1000}, "");
+        assertEquals(test.get(1), test.get(1));
+        assertEquals(test.get(1).hashCode(), test.get(1).hashCode());
+        assertNotEquals(test.get(1), test.get(2));
+        assertNotEquals(test.get(1), new MeetingStore(contacts::get).get(1));
+    }
+
+    @Test
+    public void convertShouldTurnTheMeetingIntoAPastMeetingWithTheSameContacts() {
+        test.add(1, 0L, new int[] {1000, 1009}, null);
+        Meeting before = test.get(1);
+        test.convert(1, "Converted");
+        assertTrue(test.isPast(1));
+        PastMeeting after = (PastMeeting) test.get(1);
+        assertEquals(after.getNotes(), "Converted");
+        assertEquals(after.getContacts(), before.getContacts());
+        assertTrue(before instanceof FutureMeeting);
+        assertNotEquals(after, before);
+    }
+
+    @Test
+    public void notesAppendedShouldBeSeenByTheViewsAlreadyCreated() {
+        test.add(1, 0L, new int[] {1000}, "First");
+        PastMeeting view = (PastMeeting) test.get(1);
+        test.notesOf(1).append("Second");
+        assertEquals(view.getNotes(), "First Second");
+    }
+
+    @Test
+    public void viewsShouldKeepTheirContactsWhenTheStoreGrows() {
+        List<Meeting> views = new ArrayList<>();
+        for (int id = 0; id < 10_000; id++) {
+            test.add(id, id, new int[] {1000 + id % 10}, null);
+            views.add(test.get(id));
+        }
+        for (int id = 0; id < 10_000; id++) {
+            assertEquals(views.get(id).getContacts().iterator().next().getId(), 1000 + id % 10);
+            assertEquals(ContactManagerImpl.dateOf(test.get(id)), id);
+        }
+    }
+
+    @Test
+    public void addingAnIdTwiceShouldThrowIllegalArgumentException() {
+        test.add(1, 0L, new int[] {1000}, null);
+        exception.expect(IllegalArgumentException.class);
+        test.add(1, 0L, new int[] {1000}, null);
+    }
+
+    @Test
+    public void addingAnIdNotIssuedShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        test.add(1 << 30, 0L, new int[] {1000}, null);
+    }
+
+    @Test
+    public void convertingAPastMeetingShouldThrowIllegalStateException() {
+        test.add(1, 0L, new int[] {1000}, "");
+        exception.expect(IllegalStateException.class);
+        test.convert(1, "");
+    }
+
+}
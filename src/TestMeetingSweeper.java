@@ -0,0 +1,124 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see MeetingSweeper} and the conversion of due meetings by {@see ContactManagerImpl}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestMeetingSweeper {
+    private ContactManagerImpl manager;
+    private MovableClock clock;
+    private MeetingSweeper sweeper;
+
+    @Before
+    public void setUp() {
+        clock = new MovableClock(new GregorianCalendar(2010, 1, 1));
+        manager = new ContactManagerImpl(clock);
+        manager.addNewContact("Valid", "Notes");
+    }
+
+    @After
+    public void tearDown() {
+        if (sweeper != null) {
+            sweeper.close();
+        }
+        new File("Contact.txt").delete();
+    }
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    /**
+     * This method is used in following tests to add a future meeting for each of the given years.
+     */
+    public int[] addMeetings(int... years) {
+        int[] ids = new int[years.length];
+        for (int i = 0; i < years.length; i++) {
+            ids[i] = manager.addFutureMeeting(manager.getContacts("Valid"), new GregorianCalendar(years[i], 1, 1));
+        }
+        return ids;
+    }
+
+    @Test
+    public void createSweeperWithNullManagerShouldThrowNullPointerException() {
+        exception.expect(NullPointerException.class);
+        new MeetingSweeper(null, 1, TimeUnit.SECONDS, 10);
+    }
+
+    @Test
+    public void createSweeperWithZeroBatchSizeShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        new MeetingSweeper(manager, 1, TimeUnit.SECONDS, 0);
+    }
+
+    @Test
+    public void promoteDueMeetingsWithNoDueMeetingsShouldConvertNothing() {
+        addMeetings(2020, 2030);
+        assertEquals(manager.promoteDueMeetings(10), 0);
+    }
+
+    @Test
+    public void promoteDueMeetingsShouldConvertOnlyTheDueOnesEarliestFirst() {
+        int[] ids = addMeetings(2040, 2020, 2015, 2030);
+        clock.moveTo(new GregorianCalendar(2025, 1, 1));
+        assertEquals(manager.promoteDueMeetings(1), 1);
+        assertTrue(manager.getMeeting(ids[2]) instanceof PastMeeting);     // 2015
+        assertTrue(manager.getMeeting(ids[1]) instanceof FutureMeeting);   // 2020, not converted yet
+        assertEquals(manager.promoteDueMeetings(10), 1);
+        assertTrue(manager.getMeeting(ids[1]) instanceof PastMeeting);
+        assertTrue(manager.getMeeting(ids[3]) instanceof FutureMeeting);
+        assertEquals(manager.promoteDueMeetings(10), 0);
+    }
+
+    @Test
+    public void meetingConvertedByAQueryShouldNotBeConvertedAgain() {
+        int[] ids = addMeetings(2020);
+        clock.moveTo(new GregorianCalendar(2025, 1, 1));
+        manager.addMeetingNotes(ids[0], "Notes");
+        assertEquals(manager.promoteDueMeetings(10), 0);
+        assertEquals(manager.getPastMeeting(ids[0]).getNotes(), "Notes");
+    }
+
+    @Test
+    public void sweepShouldConvertAllTheDueMeetingsInBatches() {
+        int[] ids = addMeetings(2011, 2012, 2013, 2014, 2015, 2016, 2017, 2050);
+        clock.moveTo(new GregorianCalendar(2030, 1, 1));
+        sweeper = new MeetingSweeper(manager, 1, TimeUnit.HOURS, 3);
+        assertEquals(sweeper.sweep(), 7);
+        assertTrue(manager.getMeeting(ids[6]) instanceof PastMeeting);
+        assertTrue(manager.getMeeting(ids[7]) instanceof FutureMeeting);
+    }
+
+    @Test
+    public void startedSweeperShouldConvertDueMeetingsInTheBackground() throws InterruptedException {
+        int[] ids = addMeetings(2020, 2021);
+        clock.moveTo(new GregorianCalendar(2030, 1, 1));
+        sweeper = new MeetingSweeper(manager, 10, TimeUnit.MILLISECONDS, 1);
+        sweeper.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!(manager.getMeeting(ids[1]) instanceof PastMeeting) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(manager.getMeeting(ids[0]) instanceof PastMeeting);
+        assertTrue(manager.getMeeting(ids[1]) instanceof PastMeeting);
+    }
+
+    @Test
+    public void startSweeperTwiceShouldThrowIllegalStateException() {
+        exception.expect(IllegalStateException.class);
+        sweeper = new MeetingSweeper(manager, 1, TimeUnit.HOURS, 10);
+        sweeper.start();
+        sweeper.start();
+    }
+
+}
@@ -0,0 +1,162 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see Metrics}, as recorded by {@see ContactManagerImpl}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestMetrics {
+    private static final Clock BEFORE = clockAt(2010);
+    private static final Clock AFTER = clockAt(2015);
+    private Path file;
+    private ContactManagerImpl manager;
+    private Metrics metrics;
+
+    private static Clock clockAt(int year) {
+        return Clock.fixed(new GregorianCalendar(year, 0, 1).toInstant(), ZoneId.systemDefault());
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        file = Paths.get("TestMetrics.txt");
+        Files.deleteIfExists(file);
+        manager = new ContactManagerImpl(file, BEFORE, StorageMode.SNAPSHOT);
+        metrics = manager.getMetrics();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        metrics.unregister();
+        Files.deleteIfExists(file);
+    }
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void disabledMetricsShouldRecordNothing() {
+        assertFalse(metrics.isEnabled());
+        manager.addNewContact("Name", "Notes");
+        manager.getContacts("Name");
+        assertTrue(metrics.getOperations().isEmpty());
+        assertEquals(metrics.getOperation(Metrics.Operation.ADD_NEW_CONTACT).getCalls(), 0);
+    }
+
+    @Test
+    public void callsShouldBeRecordedWithTheirResultSizes() {
+        metrics.setEnabled(true);
+        for (int i = 0; i < 10; i++) {
+            manager.addNewContact("Name " + i, "");
+        }
+        manager.getContacts("Name");
+        manager.getContacts("Name 3");
+        try {
+            manager.getContacts(-1);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            // a call which throws is not recorded
+        }
+        OperationSnapshot added = metrics.getOperation(Metrics.Operation.ADD_NEW_CONTACT);
+        assertEquals(added.getCalls(), 10);
+        assertTrue(added.getMaxLatency() > 0);
+        assertTrue(added.getMedianLatency() <= added.getP99Latency());
+        OperationSnapshot search = metrics.getOperation(Metrics.Operation.GET_CONTACTS_BY_NAME);
+        assertEquals(search.getCalls(), 2);
+        assertEquals(search.getMaxResultSize(), 10);
+        assertEquals(search.getMeanResultSize(), 5.5, 0);
+        assertEquals(search.getScanned(), 11);     // every candidate of the index is checked
+        List<String> names = new ArrayList<>();
+        for (OperationSnapshot s : metrics.getOperations()) {
+            names.add(s.getOperation());
+        }
+        assertEquals(names, Arrays.asList("addNewContact", "getContacts(String)"));
+    }
+
+    @Test
+    public void shortNamesShouldScanEveryContact() {
+        metrics.setEnabled(true);
+        for (int i = 0; i < 10; i++) {
+            manager.addNewContact(i % 2 == 0 ? "Ab" : "Cd", "");
+        }
+        manager.getContacts("A");
+        OperationSnapshot search = metrics.getOperation(Metrics.Operation.GET_CONTACTS_BY_NAME);
+        assertEquals(search.getMaxResultSize(), 5);
+        assertEquals(search.getScanned(), 10);
+    }
+
+    @Test
+    public void lazyConversionsShouldBeCounted() {
+        manager.addNewContact("Name", "");
+        Contact contact = manager.getContacts("Name").iterator().next();
+        Set<Contact> contacts = Collections.singleton(contact);
+        for (int i = 0; i < 3; i++) {
+            manager.addFutureMeeting(contacts, new GregorianCalendar(2012, 0, i + 1));
+        }
+        manager.flush();
+        manager = new ContactManagerImpl(file, AFTER, StorageMode.SNAPSHOT);
+        metrics = manager.getMetrics();
+        metrics.setEnabled(true);
+        contact = manager.getContacts("Name").iterator().next();
+        manager.getPastMeeting(1);
+        manager.getPastMeetingList(contact);
+        manager.getPastMeetingList(contact);
+        assertEquals(metrics.getOperation(Metrics.Operation.GET_PAST_MEETING).getConversions(), 1);
+        OperationSnapshot list = metrics.getOperation(Metrics.Operation.GET_PAST_MEETING_LIST);
+        assertEquals(list.getConversions(), 2);
+        assertEquals(list.getScanned(), 6);
+        assertEquals(manager.promoteDueMeetings(10), 0);
+    }
+
+    @Test
+    public void resetShouldForgetTheCalls() {
+        metrics.setEnabled(true);
+        manager.getMeeting(1);
+        assertEquals(metrics.getOperation(Metrics.Operation.GET_MEETING).getCalls(), 1);
+        assertEquals(metrics.getOperation(Metrics.Operation.GET_MEETING).getMaxResultSize(), 0);
+        metrics.reset();
+        assertTrue(metrics.getOperations().isEmpty());
+    }
+
+    @Test
+    public void metricsShouldBeReadAndSwitchedThroughJmx() throws Exception {
+        ObjectName name = metrics.register("TestMetrics");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(server.getAttribute(name, "Enabled"), false);
+        server.setAttribute(name, new javax.management.Attribute("Enabled", true));
+        manager.addNewContact("Name", "");
+        CompositeData[] operations = (CompositeData[]) server.getAttribute(name, "Operations");
+        assertEquals(operations.length, 1);
+        assertEquals(operations[0].get("operation"), "addNewContact");
+        assertEquals(operations[0].get("calls"), 1L);
+        server.invoke(name, "reset", null, null);
+        assertEquals(((CompositeData[]) server.getAttribute(name, "Operations")).length, 0);
+        metrics.unregister();
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void registeringTheSameNameTwiceShouldThrowIllegalArgumentException() {
+        metrics.register("TestMetrics");
+        exception.expect(IllegalArgumentException.class);
+        new ContactManagerImpl(file, BEFORE, StorageMode.SNAPSHOT).getMetrics().register("TestMetrics");
+    }
+
+}
@@ -0,0 +1,99 @@
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see NameIndex}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestNameIndex {
+    private NameIndex test;
+
+    @Before
+    public void setUp() {
+        test = new NameIndex();
+        test.add(1, "Federico Bartolomei");
+        test.add(2, "Frederick Bart");
+        test.add(3, "Ada Lovelace");
+        test.add(4, "Bartholomew");
+    }
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void searchShouldReturnEveryContactContainingTheQuery() {
+        assertArrayEquals(test.search("Bart"), new int[] {1, 2, 4});
+        assertArrayEquals(test.search("Lovelace"), new int[] {3});
+        assertArrayEquals(test.search("rico"), new int[] {1});
+    }
+
+    @Test
+    public void searchOfAMissingTrigramShouldReturnNoCandidates() {
+        assertEquals(test.search("xyz").length, 0);
+        assertEquals(test.search("Bartz").length, 0);
+    }
+
+    @Test
+    public void searchShorterThanATrigramShouldThrowIllegalArgumentException() {
+        assertFalse(NameIndex.canSearch("Ba"));
+        exception.expect(IllegalArgumentException.class);
+        test.search("Ba");
+    }
+
+    @Test
+    public void removedContactShouldNotBeReturned() {
+        test.remove(2, "Frederick Bart");
+        assertArrayEquals(test.search("Bart"), new int[] {1, 4});
+        test.add(2, "Frederick Barton");
+        assertArrayEquals(test.search("Barto"), new int[] {1, 2});
+    }
+
+    @Test
+    public void repeatedTrigramsShouldNotDuplicateIds() {
+        test.add(5, "aaaaaa");
+        assertArrayEquals(test.search("aaaa"), new int[] {5});
+    }
+
+    @Test
+    public void idsAddedOutOfOrderShouldBeReturnedSorted() {
+        test.add(10, "Zed Shaw");
+        test.add(7, "Zed Zeppelin");
+        assertArrayEquals(test.search("Zed"), new int[] {7, 10});
+    }
+
+    @Test
+    public void candidatesShouldIncludeEveryMatchOfAScan() {
+        Random random = new Random(7);
+        String letters = "abcde";
+        List<String> names = new ArrayList<>();
+        NameIndex index = new NameIndex();
+        for (int id = 0; id < 5000; id++) {
+            StringBuilder name = new StringBuilder();
+            for (int i = 0, n = 3 + random.nextInt(10); i < n; i++) {
+                name.append(letters.charAt(random.nextInt(letters.length())));
+            }
+            names.add(name.toString());
+            index.add(id, name.toString());
+        }
+        for (int q = 0; q < 200; q++) {
+            String query = names.get(random.nextInt(names.size())).substring(0, 3);
+            Set<Integer> candidates = new HashSet<>();
+            for (int id : index.search(query)) {
+                candidates.add(id);
+            }
+            for (int id = 0; id < names.size(); id++) {
+                if (names.get(id).contains(query)) {
+                    assertTrue(query + " in " + names.get(id), candidates.contains(id));
+                }
+            }
+        }
+    }
+
+}
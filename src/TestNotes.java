@@ -0,0 +1,101 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.*;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see Notes}, and for the notes of ContactImpl and PastMeetingImpl which use it.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestNotes {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void createNotesWithNullTextShouldThrowNullPointerException() {
+        exception.expect(NullPointerException.class);
+        new Notes(null);
+    }
+
+    @Test
+    public void appendNullShouldThrowNullPointerException() {
+        exception.expect(NullPointerException.class);
+        new Notes("").append(null);
+    }
+
+    @Test
+    public void appendToEmptyNotesShouldNotAddASpace() {
+        Notes notes = new Notes("");
+        notes.append("First");
+        assertEquals(notes.toString(), "First");
+    }
+
+    @Test
+    public void appendShouldAddASpaceBetweenNotes() {
+        Notes notes = new Notes("First");
+        notes.append("Second");
+        assertEquals(notes.toString(), "First Second");
+        notes.append("Third");
+        assertEquals(notes.toString(), "First Second Third");
+        assertEquals(notes.length(), "First Second Third".length());
+    }
+
+    @Test
+    public void toStringShouldReturnTheSameStringUntilNotesAreAdded() {
+        Notes notes = new Notes("First");
+        notes.append("Second");
+        String text = notes.toString();
+        assertSame(notes.toString(), text);
+        notes.append("Third");
+        assertNotSame(notes.toString(), text);
+    }
+
+    @Test
+    public void manyAppendsShouldKeepAllTheNotes() {
+        Notes notes = new Notes("");
+        for (int i = 0; i < 100_000; i++) {
+            notes.append("n");
+            assertEquals(notes.length(), 2 * i + 1);
+        }
+        String text = notes.toString();
+        assertEquals(text.replace(" ", "").length(), 100_000);
+    }
+
+    @Test
+    public void contactNotesShouldBeKeptBySerialization() throws Exception {
+        ContactImpl contact = new ContactImpl("Contact", 1000, "First");
+        contact.addNotes("Second");
+        ContactImpl copy = (ContactImpl) serializeAndRead(contact);
+        assertEquals(copy.getNotes(), "First Second");
+        assertEquals(copy.getId(), 1000);
+        assertEquals(copy.getName(), "Contact");
+    }
+
+    @Test
+    public void pastMeetingNotesShouldBeKeptBySerialization() throws Exception {
+        Contact contact = new ContactImpl("Contact", 1000, "");
+        PastMeetingImpl meeting = new PastMeetingImpl(0L, Collections.singleton(contact), 1, "First");
+        meeting.addNotes("Second");
+        PastMeetingImpl copy = (PastMeetingImpl) serializeAndRead(meeting);
+        assertEquals(copy.getNotes(), "First Second");
+        assertEquals(copy.getNotesLength(), "First Second".length());
+        assertEquals(copy.getContacts().iterator().next().getName(), "Contact");
+    }
+
+    private static Object serializeAndRead(Object o) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(o);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return in.readObject();
+        }
+    }
+
+}
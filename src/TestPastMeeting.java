@@ -96,10 +96,25 @@ public class TestPastMeeting {
     public void createPastMeetingWithFutureDateShouldThrowIllegalArgumentException() {
         exception.expect(IllegalArgumentException.class);
         contacts.add(createContactMock());
-        date = new GregorianCalendar(2017, 2, 7, 20, 00);
+        date = new GregorianCalendar(2999, 2, 7, 20, 00);
         Meeting futureDate =  new PastMeetingImpl(date, contacts, 10);
     }
 
+    @Test
+    public void createPastMeetingWithFutureDateInMillisShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        contacts.add(createContactMock());
+        Meeting futureDate = new PastMeetingImpl(new GregorianCalendar(2999, 2, 7).getTimeInMillis(), contacts, 10, "");
+    }
+
+    @Test
+    public void createCheckedPastMeetingWithFutureDateShouldLeaveTheCheckToTheContactManager() {
+        contacts.add(createContactMock());
+        date = new GregorianCalendar(2999, 2, 7, 20, 00);
+        Meeting futureDate = PastMeetingImpl.createChecked(date.getTimeInMillis(), contacts, 10, "");
+        assertEquals(futureDate.getDate(), date);
+    }
+
 
 
 }
\ No newline at end of file
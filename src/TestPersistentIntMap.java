@@ -0,0 +1,77 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see PersistentIntMap}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestPersistentIntMap {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void getOnEmptyMapShouldReturnNull() {
+        PersistentIntMap<String> test = PersistentIntMap.empty();
+        assertNull(test.get(1));
+        assertEquals(test.size(), 0);
+    }
+
+    @Test
+    public void putShouldReturnANewMapAndLeaveTheOldOneUnchanged() {
+        PersistentIntMap<String> empty = PersistentIntMap.empty();
+        PersistentIntMap<String> one = empty.put(10, "ten");
+        PersistentIntMap<String> two = one.put(10, "TEN");
+        assertNull(empty.get(10));
+        assertEquals(one.get(10), "ten");
+        assertEquals(two.get(10), "TEN");
+        assertEquals(one.size(), 1);
+        assertEquals(two.size(), 1);
+    }
+
+    @Test
+    public void keysWhichShareTheirLowBitsShouldBeKeptApart() {
+        PersistentIntMap<String> test = PersistentIntMap.<String>empty().put(1, "one").put(1 + (1 << 30), "high")
+                .put(1 + (1 << 31), "negative").put(1 + (1 << 10), "middle");
+        assertEquals(test.get(1), "one");
+        assertEquals(test.get(1 + (1 << 30)), "high");
+        assertEquals(test.get(1 + (1 << 31)), "negative");
+        assertEquals(test.get(1 + (1 << 10)), "middle");
+        assertNull(test.get(1 + (1 << 20)));
+        assertEquals(test.size(), 4);
+    }
+
+    @Test
+    public void manyRandomKeysShouldAllBeFound() {
+        Random random = new Random(42);
+        PersistentIntMap<Integer> test = PersistentIntMap.empty();
+        Set<Integer> keys = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt();
+            keys.add(key);
+            test = test.put(key, key);
+        }
+        assertEquals(test.size(), keys.size());
+        for (int key : keys) {
+            assertEquals(test.get(key), Integer.valueOf(key));
+        }
+        Set<Integer> values = new HashSet<>();
+        test.forEach(values::add);
+        assertEquals(values, keys);
+    }
+
+    @Test
+    public void putNullValueShouldThrowNullPointerException() {
+        exception.expect(NullPointerException.class);
+        PersistentIntMap.<String>empty().put(1, null);
+    }
+
+}
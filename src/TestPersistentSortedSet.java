@@ -0,0 +1,76 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see PersistentSortedSet}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestPersistentSortedSet {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private static List<Integer> toList(Iterator<Integer> it) {
+        List<Integer> list = new ArrayList<>();
+        it.forEachRemaining(list::add);
+        return list;
+    }
+
+    @Test
+    public void emptySetShouldHaveNoElements() {
+        PersistentSortedSet<Integer> test = new PersistentSortedSet<>(Comparator.naturalOrder());
+        assertEquals(test.size(), 0);
+        assertFalse(test.iterator().hasNext());
+        assertFalse(test.contains(1));
+    }
+
+    @Test
+    public void withShouldReturnANewSetAndLeaveTheOldOneUnchanged() {
+        PersistentSortedSet<Integer> one = new PersistentSortedSet<Integer>(Comparator.naturalOrder()).with(5);
+        PersistentSortedSet<Integer> two = one.with(3);
+        assertEquals(toList(one.iterator()), Arrays.asList(5));
+        assertEquals(toList(two.iterator()), Arrays.asList(3, 5));
+        assertSame(two.with(3), two);
+        assertEquals(two.size(), 2);
+    }
+
+    @Test
+    public void elementsShouldBeIteratedInOrderWhateverTheOrderOfInsertion() {
+        Random random = new Random(42);
+        PersistentSortedSet<Integer> test = new PersistentSortedSet<>(Comparator.naturalOrder());
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 50_000; i++) {
+            int n = i % 2 == 0 ? i : random.nextInt();   // both sequential and random insertions
+            test = test.with(n);
+            expected.add(n);
+        }
+        assertEquals(test.size(), expected.size());
+        assertEquals(toList(test.iterator()), new ArrayList<>(expected));
+    }
+
+    @Test
+    public void iteratorFromShouldStartAtTheFirstElementAfterTheBound() {
+        PersistentSortedSet<Integer> test = new PersistentSortedSet<>(Comparator.naturalOrder());
+        for (int i = 0; i < 100; i += 10) {
+            test = test.with(i);
+        }
+        assertEquals(toList(test.iterator(50, true)), Arrays.asList(50, 60, 70, 80, 90));
+        assertEquals(toList(test.iterator(50, false)), Arrays.asList(60, 70, 80, 90));
+        assertEquals(toList(test.iterator(55, true)), Arrays.asList(60, 70, 80, 90));
+        assertEquals(toList(test.iterator(-1, false)).size(), 10);
+        assertFalse(test.iterator(90, false).hasNext());
+    }
+
+    @Test
+    public void withNullShouldThrowNullPointerException() {
+        exception.expect(NullPointerException.class);
+        new PersistentSortedSet<Integer>(Comparator.naturalOrder()).with(null);
+    }
+
+}
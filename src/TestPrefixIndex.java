@@ -0,0 +1,108 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see PrefixIndex}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestPrefixIndex {
+    private PrefixIndex test;
+
+    @Before
+    public void setUp() {
+        test = new PrefixIndex();
+    }
+
+    public List<Integer> search(String prefix, int limit) {
+        List<Integer> ids = new ArrayList<>();
+        test.forEachWithPrefix(prefix, limit, ids::add);
+        return ids;
+    }
+
+    @Test
+    public void searchShouldReturnMatchingIdsInOrderOfNameAndId() {
+        test.add("Bart", 4);
+        test.add("Barbara", 2);
+        test.add("Bart", 1);
+        test.add("Ada", 3);
+        test.add("Bartholomew", 5);
+        assertEquals(search("Bar", 10), Arrays.asList(2, 1, 4, 5));
+        assertEquals(search("Bart", 10), Arrays.asList(1, 4, 5));
+        assertEquals(search("", 10), Arrays.asList(3, 2, 1, 4, 5));
+        assertTrue(search("C", 10).isEmpty());
+    }
+
+    @Test
+    public void searchShouldStopAtTheLimit() {
+        for (int i = 0; i < 100; i++) {
+            test.add("Smith", i);
+        }
+        assertEquals(test.forEachWithPrefix("Smith", 7, id -> { }), 7);
+        assertEquals(search("Sm", 3), Arrays.asList(0, 1, 2));
+    }
+
+    @Test
+    public void addingTheSameEntryTwiceShouldHaveNoEffect() {
+        test.add("Ada", 1);
+        test.add("Ada", 1);
+        assertEquals(test.size(), 1);
+    }
+
+    @Test
+    public void removedEntryShouldNotBeReturned() {
+        test.add("Ada", 1);
+        test.add("Ada", 2);
+        assertTrue(test.remove("Ada", 1));
+        assertFalse(test.remove("Ada", 1));
+        assertEquals(search("Ada", 10), Arrays.asList(2));
+    }
+
+    @Test
+    public void manyShuffledEntriesShouldBeReturnedInOrderAcrossBlocks() {
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            numbers.add(i);
+        }
+        Collections.shuffle(numbers, new Random(3));
+        for (int n : numbers) {
+            test.add(String.format("Name%05d", n), n);
+        }
+        assertEquals(test.size(), 20000);
+        List<Integer> found = search("Name1", 20000);
+        assertEquals(found.size(), 10000);
+        for (int i = 0; i < found.size(); i++) {
+            assertEquals((int) found.get(i), 10000 + i);
+        }
+        assertEquals(search("Name0999", 100), Arrays.asList(9990, 9991, 9992, 9993, 9994, 9995, 9996, 9997, 9998, 9999));
+        for (int n = 0; n < 20000; n += 2) {
+            assertTrue(test.remove(String.format("Name%05d", n), n));
+        }
+        assertEquals(search("Name0000", 100), Arrays.asList(1, 3, 5, 7, 9));
+    }
+
+    @Test
+    public void addAllShouldMergeTheEntriesWithTheOnesInTheIndex() {
+        for (int n = 0; n < 2000; n += 2) {
+            test.add(String.format("Name%04d", n), n);
+        }
+        String[] names = new String[1000];
+        int[] ids = new int[1000];
+        for (int i = 0; i < 1000; i++) {
+            names[i] = String.format("Name%04d", 2 * i + 1);
+            ids[i] = 2 * i + 1;
+        }
+        test.addAll(names, ids, 0, 1000);
+        assertEquals(test.size(), 2000);
+        List<Integer> found = search("Name", 2000);
+        for (int i = 0; i < 2000; i++) {
+            assertEquals((int) found.get(i), i);
+        }
+        assertEquals(search("Name100", 3), Arrays.asList(1000, 1001, 1002));
+    }
+
+}
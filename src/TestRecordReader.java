@@ -0,0 +1,156 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see RecordReader}, and for {@see RecordWriter} through it.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestRecordReader {
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Paths.get("TestRecordReader.txt");
+        tearDown();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    /**
+     * Collects the records read as strings, e.g. "contact 1000 [Name] [Notes]".
+     */
+    private static class Collector implements RecordReader.Handler {
+        final List<String> records = new ArrayList<>();
+
+        @Override
+        public void contactRead(int id, String name, String notes) {
+            records.add("contact " + id + " [" + name + "] [" + notes + "]");
+        }
+
+        @Override
+        public void meetingRead(int id, long date, String notes, int[] contacts) {
+            records.add((notes == null ? "future " : "past ") + id + " " + date + " " + Arrays.toString(contacts)
+                    + (notes == null ? "" : " [" + notes + "]"));
+        }
+    }
+
+    public List<String> read(String content, DataFormat format, int bufferSize) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        Collector collector = new Collector();
+        try (RecordReader reader = new RecordReader(file, format, bufferSize)) {
+            assertEquals(reader.read(collector), collector.records.size());
+        }
+        return collector.records;
+    }
+
+    @Test
+    public void csvRecordsShouldBeRead() throws IOException {
+        String csv = "contact,1000,Name,Notes\r\n"
+                + "\n"
+                + "contact,1001,\"Comma, \"\"Quote\"\"\nLine\",\n"
+                + "past,1,-5,1000;1001,\"Notes, more\"\n"
+                + "future,2,1420070400000,1001";
+        List<String> expected = Arrays.asList("contact 1000 [Name] [Notes]",
+                "contact 1001 [Comma, \"Quote\"\nLine] []",
+                "past 1 -5 [1000, 1001] [Notes, more]",
+                "future 2 1420070400000 [1001]");
+        for (int bufferSize : new int[] {1, 7, RecordReader.BUFFER_SIZE}) {
+            assertEquals(read(csv, DataFormat.CSV, bufferSize), expected);
+        }
+    }
+
+    @Test
+    public void jsonRecordsShouldBeReadWithMembersInAnyOrder() throws IOException {
+        String json = "{\"type\":\"contact\",\"id\":1000,\"name\":\"Na\\\"me\\u00e9\\ud83d\\ude00\",\"notes\":\"a\\nb\"}\n"
+                + "\n"
+                + "{ \"id\" : 1001, \"extra\" : {\"a\": [1, \"]}\"]}, \"name\" : \"Other\", \"type\" : \"contact\" }\r\n"
+                + "{\"contacts\":[1000, 1001],\"notes\":\"Past\",\"date\":-5,\"id\":1,\"type\":\"past\"}\n"
+                + "{\"type\":\"future\",\"id\":2,\"date\":1420070400000,\"contacts\":[1001],\"notes\":null}\n";
+        List<String> expected = Arrays.asList("contact 1000 [Na\"meé😀] [a\nb]",
+                "contact 1001 [Other] []",
+                "past 1 -5 [1000, 1001] [Past]",
+                "future 2 1420070400000 [1001]");
+        for (int bufferSize : new int[] {1, 7, RecordReader.BUFFER_SIZE}) {
+            assertEquals(read(json, DataFormat.JSON_LINES, bufferSize), expected);
+        }
+    }
+
+    @Test
+    public void recordsWrittenShouldBeReadBackInBothFormats() throws IOException {
+        Contact contact = new ContactImpl("Ünïcödé, \"名前\" 😀\t\u0001", 1000, " \\ ");
+        Meeting past = new PastMeetingImpl(Long.MIN_VALUE, Collections.singleton(contact), 1, "Line\r\nBreak");
+        Meeting future = new FutureMeetingImpl(Long.MAX_VALUE, Collections.singleton(contact), 2);
+        for (DataFormat format : DataFormat.values()) {
+            try (RecordWriter writer = new RecordWriter(file, format)) {
+                writer.writeContact(contact);
+                writer.writeMeeting(past);
+                writer.writeMeeting(future);
+            }
+            Collector collector = new Collector();
+            try (RecordReader reader = new RecordReader(file, format, 3)) {
+                reader.read(collector);
+            }
+            assertEquals(collector.records, Arrays.asList(
+                    "contact 1000 [" + contact.getName() + "] [ \\ ]",
+                    "past 1 " + Long.MIN_VALUE + " [1000] [Line\r\nBreak]",
+                    "future 2 " + Long.MAX_VALUE + " [1000]"));
+        }
+    }
+
+    @Test
+    public void csvRecordWithMissingFieldShouldThrowIOExceptionWithItsLine() throws IOException {
+        exception.expect(IOException.class);
+        exception.expectMessage("Line 3");
+        read("contact,1000,\"Two\nlines\",\ncontact,1001\n", DataFormat.CSV, 4);
+    }
+
+    @Test
+    public void csvRecordOfUnknownTypeShouldThrowIOException() throws IOException {
+        exception.expect(IOException.class);
+        exception.expectMessage("Line 1");
+        read("meeting,1,0,1000\n", DataFormat.CSV, RecordReader.BUFFER_SIZE);
+    }
+
+    @Test
+    public void idTooLargeShouldThrowIOException() throws IOException {
+        exception.expect(IOException.class);
+        read("future,1,0,4294967296\n", DataFormat.CSV, RecordReader.BUFFER_SIZE);
+    }
+
+    @Test
+    public void jsonRecordWithoutIdShouldThrowIOException() throws IOException {
+        exception.expect(IOException.class);
+        exception.expectMessage("Line 2");
+        read("{\"type\":\"contact\",\"id\":1000,\"name\":\"\"}\n{\"type\":\"contact\",\"name\":\"\"}",
+                DataFormat.JSON_LINES, RecordReader.BUFFER_SIZE);
+    }
+
+    @Test
+    public void jsonRecordWithUnterminatedStringShouldThrowIOException() throws IOException {
+        exception.expect(IOException.class);
+        read("{\"type\":\"contact\",\"id\":1000,\"name\":\"Name}\n", DataFormat.JSON_LINES, RecordReader.BUFFER_SIZE);
+    }
+
+}
@@ -0,0 +1,213 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see ResultCache}, and for the caches of the results of {@see ContactManagerImpl}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestResultCache {
+    private long ticks;
+    private Path file;
+    private MovableClock clock;
+    private ContactManagerImpl manager;
+    private Metrics metrics;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Paths.get("TestResultCache.txt");
+        Files.deleteIfExists(file);
+        clock = new MovableClock(new GregorianCalendar(2010, 1, 1));
+        manager = new ContactManagerImpl(file, clock, StorageMode.SNAPSHOT);
+        manager.setResultCache(100, Duration.ofHours(1));
+        metrics = manager.getMetrics();
+        metrics.setEnabled(true);
+        manager.addNewContact("First", "");
+        manager.addNewContact("Second", "");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private ResultCache<Integer, String> cache(int capacity) {
+        return new ResultCache<>(capacity, 100, () -> ticks, null);
+    }
+
+    private Contact contact(String name) {
+        return manager.getContacts(name).iterator().next();
+    }
+
+    private long hits(Metrics.Operation op) {
+        return metrics.getOperation(op).getCacheHits();
+    }
+
+    @Test
+    public void getShouldReturnTheValuesPutAndCountHitsAndMisses() {
+        ResultCache<Integer, String> test = cache(10);
+        assertNull(test.get(1));
+        test.put(1, "one");
+        test.put(2, "two");
+        test.put(1, "ONE");
+        assertEquals(test.get(1), "ONE");
+        assertEquals(test.get(2), "two");
+        assertEquals(test.size(), 2);
+        assertEquals(test.getHits(), 2);
+        assertEquals(test.getMisses(), 1);
+        assertEquals(test.getHitRate(), 2.0 / 3, 1e-9);
+    }
+
+    @Test
+    public void entriesShouldExpireAfterTheirTimeToLive() {
+        ResultCache<Integer, String> test = cache(10);
+        test.put(1, "one");
+        ticks = 99;
+        assertEquals(test.get(1), "one");
+        ticks = 100;
+        assertNull(test.get(1));
+        assertEquals(test.size(), 0);
+        test.put(1, "again");
+        ticks = 199;
+        assertEquals(test.get(1), "again");
+    }
+
+    @Test
+    public void frequentlyRequestedEntriesShouldSurviveAScanOfNewKeys() {
+        ResultCache<Integer, String> test = cache(100);
+        for (int round = 0; round < 5; round++) {
+            for (int key = 0; key < 50; key++) {
+                if (test.get(key) == null) {
+                    test.put(key, "hot");
+                }
+            }
+        }
+        for (int key = 1000; key < 11_000; key++) {
+            assertEquals(test.get(key % 50), "hot");    // the hot keys are still requested during the scan
+            test.get(key);
+            test.put(key, "cold");
+            assertTrue(test.size() <= 100);
+        }
+        for (int key = 0; key < 50; key++) {
+            assertEquals(test.get(key), "hot");
+        }
+        assertTrue(test.getEvictions() >= 10_000 - 50);
+    }
+
+    @Test
+    public void invalidateShouldRemoveTheEntryAndNotifyTheListener() {
+        List<Integer> removed = new ArrayList<>();
+        ResultCache<Integer, String> test = new ResultCache<>(10, 100, () -> ticks, removed::add);
+        test.put(1, "one");
+        test.put(2, "two");
+        test.invalidate(1);
+        test.invalidate(3);
+        assertNull(test.get(1));
+        assertEquals(test.getInvalidations(), 1);
+        test.invalidateAll();
+        assertEquals(removed, Arrays.asList(1, 2));
+        assertEquals(test.size(), 0);
+    }
+
+    @Test
+    public void cacheWithNoCapacityShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        cache(0);
+    }
+
+    @Test
+    public void futureMeetingListShouldBeCachedUntilAMeetingOfTheContactIsAdded() {
+        manager.addFutureMeeting(manager.getContacts("First"), new GregorianCalendar(2011, 1, 1));
+        manager.addFutureMeeting(manager.getContacts("Second"), new GregorianCalendar(2011, 1, 1));
+        List<Meeting> first = manager.getFutureMeetingList(contact("First"));
+        assertEquals(manager.getFutureMeetingList(contact("First")), first);
+        manager.getFutureMeetingList(contact("Second"));
+        assertEquals(hits(Metrics.Operation.GET_FUTURE_MEETING_LIST), 1);
+        manager.addFutureMeeting(manager.getContacts("First"), new GregorianCalendar(2010, 6, 1));
+        manager.addNewPastMeeting(manager.getContacts("Second"), new GregorianCalendar(2009, 1, 1), "Past");
+        List<Meeting> updated = manager.getFutureMeetingList(contact("First"));
+        assertEquals(updated.size(), 2);
+        assertEquals(updated.get(1), first.get(0));
+        assertEquals(manager.getFutureMeetingList(contact("Second")).size(), 1);
+        assertEquals(hits(Metrics.Operation.GET_FUTURE_MEETING_LIST), 2);   // the past meeting changed nothing
+    }
+
+    @Test
+    public void meetingsWhichBecomeDueShouldBeDroppedFromACachedList() {
+        manager.setResultCache(100, Duration.ofDays(365));
+        Set<Contact> contacts = manager.getContacts("First");
+        int sooner = manager.addFutureMeeting(contacts, new GregorianCalendar(2010, 6, 1));
+        int later = manager.addFutureMeeting(contacts, new GregorianCalendar(2011, 1, 1));
+        assertEquals(manager.getFutureMeetingList(contact("First")).get(0).getId(), sooner);
+        clock.moveTo(new GregorianCalendar(2010, 6, 1));
+        assertEquals(manager.getFutureMeetingList(contact("First")).get(0).getId(), later);
+        assertEquals(manager.getFutureMeetingList(contact("First")).size(), 1);
+        assertEquals(hits(Metrics.Operation.GET_FUTURE_MEETING_LIST), 2);
+    }
+
+    @Test
+    public void meetingListOfADayShouldBeInvalidatedOnlyByChangesToThatDay() {
+        Set<Contact> contacts = manager.getContacts("First");
+        int id = manager.addFutureMeeting(contacts, new GregorianCalendar(2010, 6, 1, 10, 0));
+        assertTrue(manager.getFutureMeetingList(new GregorianCalendar(2010, 6, 1)).get(0) instanceof FutureMeeting);
+        manager.addFutureMeeting(contacts, new GregorianCalendar(2010, 6, 2, 0, 0));
+        assertEquals(manager.getFutureMeetingList(new GregorianCalendar(2010, 6, 1, 18, 0)).size(), 1);
+        assertEquals(hits(Metrics.Operation.GET_FUTURE_MEETING_LIST_BY_DATE), 1);
+        clock.moveTo(new GregorianCalendar(2010, 7, 1));
+        assertEquals(manager.promoteDueMeetings(10), 2);
+        List<Meeting> day = manager.getFutureMeetingList(new GregorianCalendar(2010, 6, 1));
+        assertEquals(day.get(0).getId(), id);
+        assertTrue(day.get(0) instanceof PastMeeting);
+        manager.addNewPastMeeting(contacts, new GregorianCalendar(2010, 6, 1, 23, 59), "Late");
+        assertEquals(manager.getFutureMeetingList(new GregorianCalendar(2010, 6, 1)).size(), 2);
+        assertEquals(hits(Metrics.Operation.GET_FUTURE_MEETING_LIST_BY_DATE), 1);
+    }
+
+    @Test
+    public void cachedListsShouldExpireAfterTheTimeToLiveOfTheClockOfTheContactManager() {
+        manager.addFutureMeeting(manager.getContacts("First"), new GregorianCalendar(2011, 1, 1));
+        manager.getFutureMeetingList(contact("First"));
+        clock.moveTo(new GregorianCalendar(2010, 1, 1, 0, 59));
+        manager.getFutureMeetingList(contact("First"));
+        assertEquals(hits(Metrics.Operation.GET_FUTURE_MEETING_LIST), 1);
+        clock.moveTo(new GregorianCalendar(2010, 1, 1, 1, 0));
+        assertEquals(manager.getFutureMeetingList(contact("First")).size(), 1);
+        assertEquals(hits(Metrics.Operation.GET_FUTURE_MEETING_LIST), 1);
+        manager.getFutureMeetingList(contact("First"));
+        assertEquals(hits(Metrics.Operation.GET_FUTURE_MEETING_LIST), 2);
+    }
+
+    @Test
+    public void disabledCacheShouldRecordNoHits() {
+        manager.setResultCache(0, Duration.ofHours(1));
+        manager.addFutureMeeting(manager.getContacts("First"), new GregorianCalendar(2011, 1, 1));
+        manager.getFutureMeetingList(contact("First"));
+        manager.getFutureMeetingList(contact("First"));
+        OperationSnapshot snapshot = metrics.getOperation(Metrics.Operation.GET_FUTURE_MEETING_LIST);
+        assertEquals(snapshot.getCalls(), 2);
+        assertEquals(snapshot.getCacheHitRate(), 0, 0);
+        assertEquals(snapshot.getScanned(), 2);
+    }
+
+    @Test
+    public void negativeCapacityShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        manager.setResultCache(-1, Duration.ofHours(1));
+    }
+
+}
@@ -0,0 +1,304 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see Snapshot}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestSnapshot {
+    private Path file;
+    private List<Contact> contacts;
+    private List<Meeting> meetings;
+
+    @Before
+    public void setUp() {
+        file = Paths.get("TestSnapshot.bin");
+        contacts = new ArrayList<>();
+        meetings = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            contacts.add(new ContactImpl("Contact" + i, 1000 + i, "Notes about Contact" + i));
+        }
+        Set<Contact> all = new LinkedHashSet<>(contacts);
+        Set<Contact> first = new LinkedHashSet<>(contacts.subList(0, 1));
+        meetings.add(new PastMeetingImpl(new GregorianCalendar(2001, 1, 1).getTimeInMillis(), all, 1, "Past notes"));
+        meetings.add(new FutureMeetingImpl(new GregorianCalendar(3001, 1, 1), first, 2));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void readNonExistentFileShouldThrowNoSuchFileException() throws IOException {
+        exception.expect(NoSuchFileException.class);
+        Snapshot.read(file);
+    }
+
+    @Test
+    public void writeAndReadShouldRestoreIdsContactsAndMeetings() throws IOException {
+        new Snapshot(1003, 2, contacts, meetings).write(file);
+        Snapshot read = Snapshot.read(file);
+        assertEquals(read.getLastContactId(), 1003);
+        assertEquals(read.getLastMeetingId(), 2);
+        assertEquals(read.getContacts().size(), 3);
+        Contact c = read.getContacts().get(1);
+        assertEquals(c.getId(), 1002);
+        assertEquals(c.getName(), "Contact2");
+        assertEquals(c.getNotes(), "Notes about Contact2");
+        assertEquals(read.getMeetings().size(), 2);
+        PastMeeting past = (PastMeeting) read.getMeetings().get(0);
+        assertEquals(past.getId(), 1);
+        assertEquals(past.getNotes(), "Past notes");
+        assertEquals(past.getDate(), new GregorianCalendar(2001, 1, 1));
+        assertEquals(past.getContacts().size(), 3);
+        FutureMeeting future = (FutureMeeting) read.getMeetings().get(1);
+        assertEquals(future.getDate(), new GregorianCalendar(3001, 1, 1));
+    }
+
+    @Test
+    public void contactsOfReadMeetingsShouldBeTheSameObjectsAsTheReadContacts() throws IOException {
+        new Snapshot(1003, 2, contacts, meetings).write(file);
+        Snapshot read = Snapshot.read(file);
+        Contact first = read.getContacts().get(0);
+        assertSame(read.getMeetings().get(1).getContacts().iterator().next(), first);
+    }
+
+    @Test
+    public void sameNamesShouldBeWrittenOnce() throws IOException {
+        List<Contact> smiths = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            smiths.add(new ContactImpl("A rather long name shared by many contacts", i, ""));
+        }
+        new Snapshot(1000, 0, smiths, new ArrayList<>()).write(file);
+        assertTrue(Files.size(file) < 1000 * 20);
+        assertEquals(Snapshot.read(file).getContacts().get(999).getName(), "A rather long name shared by many contacts");
+    }
+
+    @Test
+    public void notesLargerThanTheBufferShouldBeRestored() throws IOException {
+        char[] chars = new char[200000];
+        Arrays.fill(chars, 'x');
+        String notes = new String(chars) + "è";
+        contacts.add(new ContactImpl("Long notes", 2000, notes));
+        new Snapshot(2000, 2, contacts, meetings).write(file);
+        assertEquals(Snapshot.read(file).getContacts().get(3).getNotes(), notes);
+    }
+
+    @Test
+    public void meetingWithManyContactsShouldBeRestored() throws IOException {
+        List<Contact> many = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            many.add(new ContactImpl("Contact", i));
+        }
+        List<Meeting> big = new ArrayList<>();
+        big.add(new FutureMeetingImpl(new GregorianCalendar(3001, 1, 1), new LinkedHashSet<>(many), 1));
+        new Snapshot(50000, 1, many, big).write(file);
+        assertEquals(Snapshot.read(file).getMeetings().get(0).getContacts().size(), 50000);
+    }
+
+    @Test
+    public void readFileWrittenWithJavaSerializationShouldMigrateIt() throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file.toFile()))) {
+            out.writeObject(new IdCreatorImpl(1003, 2));
+            out.writeObject(new LinkedHashSet<>(contacts));
+            out.writeObject(new LinkedList<>(meetings));
+        }
+        Snapshot.migrate(file, file);
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file.toFile()))) {
+            assertEquals(in.readInt(), Snapshot.MAGIC);
+        }
+        Snapshot read = Snapshot.read(file);
+        assertEquals(read.getLastContactId(), 1003);
+        assertEquals(((PastMeeting) read.getMeetings().get(0)).getNotes(), "Past notes");
+        assertSame(read.getMeetings().get(0).getContacts().iterator().next(), read.getContacts().get(0));
+    }
+
+    @Test
+    public void readUnsupportedVersionShouldThrowIOException() throws IOException {
+        exception.expect(IOException.class);
+        ByteBuffer header = ByteBuffer.allocate(14).putInt(Snapshot.MAGIC).putShort((short) 99).putInt(0).putInt(0);
+        Files.write(file, header.array());
+        Snapshot.read(file);
+    }
+
+    @Test
+    public void readTruncatedSnapshotShouldThrowIOException() throws IOException {
+        exception.expect(IOException.class);
+        new Snapshot(1003, 2, contacts, meetings).write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 5));
+        Snapshot.read(file);
+    }
+
+    @Test
+    public void readStringOutsideTheTableShouldThrowIOException() throws IOException {
+        new Snapshot(1003, 2, contacts, meetings).write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int position = 14;
+        int strings = buffer.getInt(position);
+        position += 4;
+        for (int i = 0; i < strings; i++) {
+            position += 4 + buffer.getInt(position);
+        }
+        buffer.putInt(position + 4 + 4, strings);   // the name of the first contact, after the count and its id
+        Files.write(file, bytes);
+        exception.expect(IOException.class);
+        Snapshot.read(file);
+    }
+
+    @Test
+    public void readMeetingWithAnIdNotIssuedShouldThrowIOException() throws IOException {
+        meetings.add(new FutureMeetingImpl(new GregorianCalendar(3001, 1, 1), new LinkedHashSet<>(contacts), 1 << 30));
+        new Snapshot(1003, 2, contacts, meetings).write(file);
+        exception.expect(IOException.class);
+        Snapshot.read(file);
+    }
+
+    @Test
+    public void mapShouldReadTheHeaderAndDecodeTheContentOnFirstAccess() throws IOException {
+        new Snapshot(1003, 2, contacts, meetings).write(file);
+        Snapshot mapped = Snapshot.map(file);
+        assertFalse(mapped.isDecoded());
+        assertEquals(mapped.getLastContactId(), 1003);
+        assertEquals(mapped.getLastMeetingId(), 2);
+        assertFalse(mapped.isDecoded());
+        assertEquals(mapped.getMeetings().size(), 2);
+        assertTrue(mapped.isDecoded());
+        assertEquals(mapped.getContacts().get(2).getNotes(), "Notes about Contact3");
+        assertEquals(((PastMeeting) mapped.getMeetings().get(0)).getNotes(), "Past notes");
+        assertSame(mapped.getMeetings().get(1).getContacts().iterator().next(), mapped.getContacts().get(0));
+    }
+
+    @Test
+    public void mapShouldDecodeOnlyTheRecordsRequestedById() throws IOException {
+        Collections.reverse(contacts);
+        new Snapshot(1003, 2, contacts, meetings).write(file);
+        Snapshot mapped = Snapshot.map(file);
+        Contact second = mapped.getContact(1002);
+        assertEquals(second.getNotes(), "Notes about Contact2");
+        assertNull(mapped.getContact(1004));
+        Meeting past = mapped.getMeeting(1);
+        assertEquals(((PastMeeting) past).getNotes(), "Past notes");
+        assertEquals(past.getContacts().size(), 3);
+        assertTrue(mapped.getMeeting(2) instanceof FutureMeeting);
+        assertNull(mapped.getMeeting(3));
+        assertFalse(mapped.isDecoded());
+        assertEquals(mapped.getContacts().get(0).getId(), 1001);   // written in order of id
+        assertSame(mapped.getContacts().get(1), second);
+        assertSame(mapped.getMeetings().get(0), past);
+        assertSame(mapped.getMeeting(1), past);
+        assertTrue(mapped.isDecoded());
+    }
+
+    /**
+     * Write the snapshot as version 1 did: without the tables of positions at the end.
+     */
+    private void writeFirstVersion() throws IOException {
+        new Snapshot(1003, 2, contacts, meetings).write(file);
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        int tables = bytes.getInt(bytes.limit() - 8);
+        bytes.putShort(4, Snapshot.FIRST_VERSION);
+        Files.write(file, Arrays.copyOf(bytes.array(), tables));
+    }
+
+    @Test
+    public void fileOfTheFirstVersionShouldBeReadAndMapped() throws IOException {
+        writeFirstVersion();
+        assertEquals(Snapshot.read(file).getMeetings().size(), 2);
+        Snapshot mapped = Snapshot.map(file);
+        assertEquals(mapped.getContact(1003).getName(), "Contact3");
+        assertTrue(mapped.isDecoded());     // decoded whole, as there are no tables of positions
+        assertEquals(((PastMeeting) mapped.getMeeting(1)).getNotes(), "Past notes");
+    }
+
+    @Test
+    public void readFileWithoutItsTablesOfPositionsShouldThrowIOException() throws IOException {
+        new Snapshot(1003, 2, contacts, meetings).write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, ByteBuffer.wrap(bytes).getInt(bytes.length - 8)));
+        exception.expect(EOFException.class);
+        Snapshot.read(file);
+    }
+
+    @Test
+    public void contactManagerInMappedModeShouldFindByIdWithoutDecodingTheOtherRecords() throws IOException {
+        Clock clock = Clock.fixed(new GregorianCalendar(2015, 1, 1).toInstant(), ZoneId.systemDefault());
+        new Snapshot(1003, 2, contacts, meetings).write(file);
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        int strings = bytes.getInt(bytes.limit() - 8);
+        bytes.putInt(bytes.getInt(strings + 4 + 4 * 4), -1);   // the name of Contact3
+        Files.write(file, bytes.array());
+        ContactManagerImpl test = new ContactManagerImpl(file, clock, StorageMode.MAPPED);
+        assertEquals(test.getFutureMeeting(2).getContacts().iterator().next().getName(), "Contact1");
+        assertNull(test.getMeeting(3));
+        assertEquals(test.getContacts(1002).iterator().next().getNotes(), "Notes about Contact2");
+        exception.expect(UncheckedIOException.class);
+        test.getContacts("Contact");
+    }
+
+    @Test
+    public void mapFileWrittenWithJavaSerializationShouldReadIt() throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file.toFile()))) {
+            out.writeObject(new IdCreatorImpl(1003, 2));
+            out.writeObject(new LinkedHashSet<>(contacts));
+            out.writeObject(new LinkedList<>(meetings));
+        }
+        Snapshot mapped = Snapshot.map(file);
+        assertTrue(mapped.isDecoded());
+        assertEquals(mapped.getContacts().size(), 3);
+    }
+
+    @Test
+    public void decodeTruncatedMappedSnapshotShouldThrowUncheckedIOException() throws IOException {
+        new Snapshot(1003, 2, contacts, meetings).write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 5));
+        Snapshot mapped = Snapshot.map(file);
+        exception.expect(UncheckedIOException.class);
+        mapped.getMeetings();
+    }
+
+    @Test
+    public void contactManagerInMappedModeShouldRestoreAndSaveTheData() throws IOException {
+        Clock clock = Clock.fixed(new GregorianCalendar(2015, 1, 1).toInstant(), ZoneId.systemDefault());
+        new Snapshot(1003, 2, contacts, meetings).write(file);
+        ContactManagerImpl test = new ContactManagerImpl(file, clock, StorageMode.MAPPED);
+        test.addNewContact("Contact4", "Notes4");
+        test.flush();
+        ContactManagerImpl reopened = new ContactManagerImpl(file, clock, StorageMode.MAPPED);
+        assertEquals(reopened.getContacts("Contact4").iterator().next().getId(), 1004);
+        assertEquals(reopened.getFutureMeeting(2).getContacts().size(), 1);
+    }
+
+    @Test
+    public void flushOfUnusedContactManagerInMappedModeShouldNotRewriteTheFile() throws IOException {
+        new Snapshot(1003, 2, contacts, meetings).write(file);
+        FileTime written = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(file, written);
+        new ContactManagerImpl(file, Clock.systemDefaultZone(), StorageMode.MAPPED).flush();
+        assertEquals(Files.getLastModifiedTime(file), written);
+    }
+
+}
@@ -0,0 +1,299 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see VersionedContactManager}, including multi-threaded tests of the consistency
+ * of the versions read.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestVersionedContactManager {
+    private static final int THREADS = 8;
+    private Path file;
+    private Clock clock;
+    private VersionedContactManager test;
+    private ThreadRunner threads;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Paths.get("TestVersionedContactManager.bin");
+        tearDown();
+        clock = Clock.fixed(new GregorianCalendar(2015, 1, 1).toInstant(), ZoneId.systemDefault());
+        test = new VersionedContactManager(file, clock);
+        threads = new ThreadRunner(THREADS);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (threads != null) {
+            threads.shutdown();
+        }
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".tmp"));
+    }
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void meetingsShouldBeReturnedInChronologicalOrder() {
+        test.addNewContact("Contact1", "Notes");
+        Set<Contact> contacts = test.getContacts("Contact1");
+        int later = test.addFutureMeeting(contacts, new GregorianCalendar(2020, 5, 1));
+        int sooner = test.addFutureMeeting(contacts, new GregorianCalendar(2020, 1, 1));
+        test.addNewPastMeeting(contacts, new GregorianCalendar(2010, 1, 1), "Past");
+        List<Meeting> future = test.getFutureMeetingList(contacts.iterator().next());
+        assertEquals(future.size(), 2);
+        assertEquals(future.get(0).getId(), sooner);
+        assertEquals(future.get(1).getId(), later);
+        assertEquals(test.getPastMeetingList(contacts.iterator().next()).get(0).getNotes(), "Past");
+        assertEquals(test.getFutureMeetingList(new GregorianCalendar(2020, 1, 1)).size(), 1);
+        assertEquals(test.getMeetings(new GregorianCalendar(2000, 1, 1), new GregorianCalendar(2030, 1, 1)).size(), 3);
+    }
+
+    @Test
+    public void getContactsByNameShouldFindTheNamesContainingItInOrderOfName() {
+        test.addNewContact("Smithers", "");
+        test.addNewContact("John Smith", "");
+        test.addNewContact("Smit", "");
+        test.addNewContact("Anna", "");
+        test.addNewContact("Mitchell", "");
+        List<String> names = new ArrayList<>();
+        for (Contact c : test.getContacts("mit")) {
+            names.add(c.getName());
+        }
+        assertEquals(names, Arrays.asList("John Smith", "Smit", "Smithers"));
+        assertEquals(test.getContacts("Smith").size(), 2);
+        assertEquals(test.getContacts("n").size(), 2);
+        assertEquals(test.getContacts("ithe").iterator().next().getName(), "Smithers");
+        assertTrue(test.getContacts("Smitt").isEmpty());
+        assertTrue(test.getContacts("xyz").isEmpty());
+    }
+
+    @Test
+    public void addFutureMeetingWithUnknownContactShouldThrowIllegalArgumentException() {
+        exception.expect(IllegalArgumentException.class);
+        Set<Contact> contacts = new HashSet<>();
+        contacts.add(new ContactImpl("Unknown", 1000, ""));
+        test.addFutureMeeting(contacts, new GregorianCalendar(2020, 1, 1));
+    }
+
+    @Test
+    public void dataShouldBeRestoredAfterFlush() {
+        test.addNewContact("Contact1", "Notes");
+        test.addNewPastMeeting(test.getContacts("Contact1"), new GregorianCalendar(2010, 1, 1), "Past");
+        test.flush();
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+        VersionedContactManager reopened = new VersionedContactManager(file, clock);
+        assertEquals(reopened.getPastMeeting(1).getNotes(), "Past");
+        reopened.addNewContact("Contact2", "Notes");
+        assertEquals(reopened.getContacts("Contact2").iterator().next().getId(), 1001);
+        assertEquals(reopened.addFutureMeeting(reopened.getContacts("Contact2"), new GregorianCalendar(2020, 1, 1)), 2);
+    }
+
+    @Test
+    public void aMeetingReadBeforeNotesAreAddedShouldKeepItsNotes() {
+        test.addNewContact("Contact1", "");
+        test.addNewPastMeeting(test.getContacts("Contact1"), new GregorianCalendar(2010, 1, 1), "Past");
+        PastMeeting before = test.getPastMeeting(1);
+        test.addMeetingNotes(1, "More");
+        assertEquals(before.getNotes(), "Past");
+        assertEquals(test.getPastMeeting(1).getNotes(), "Past More");
+        assertEquals(test.getPastMeeting(1).getContacts(), before.getContacts());
+    }
+
+    @Test
+    public void aMeetingOfAnOldVersionShouldNotBeChangedByItsReaders() {
+        test.addNewContact("Contact1", "");
+        test.addNewPastMeeting(test.getContacts("Contact1"), new GregorianCalendar(2010, 1, 1), "Past");
+        test.addNewPastMeeting(test.getContacts("Contact1"), new GregorianCalendar(2011, 1, 1), "");
+        test.flush();
+        VersionedContactManager reopened = new VersionedContactManager(file, clock);
+        for (VersionedContactManager manager : Arrays.asList(test, reopened)) {
+            List<PastMeeting> meetings = manager.getPastMeetingList(manager.getContacts("Contact1").iterator().next());
+            assertEquals(meetings.size(), 2);
+            for (PastMeeting m : meetings) {
+                assertFalse(m instanceof PastMeetingImpl);  // which has a public addNotes()
+            }
+            PastMeeting before = manager.getPastMeeting(1);
+            manager.addMeetingNotes(1, "More");
+            assertEquals(before.getNotes(), "Past");
+            assertEquals(manager.getPastMeeting(1).getNotes(), "Past More");
+            assertFalse(manager.getPastMeeting(1) instanceof PastMeetingImpl);
+        }
+    }
+
+    @Test
+    public void aFailedChangeShouldLeaveTheDataUnchanged() {
+        test.addNewContact("Contact1", "");
+        test.addFutureMeeting(test.getContacts("Contact1"), new GregorianCalendar(2020, 1, 1));
+        try {
+            test.addMeetingNotes(1, "Too early");
+            fail("Notes cannot be added to a meeting in the future");
+        } catch (IllegalStateException ex) {
+            assertTrue(test.getMeeting(1) instanceof FutureMeeting);
+        }
+        assertEquals(test.addFutureMeeting(test.getContacts("Contact1"), new GregorianCalendar(2020, 1, 1)), 2);
+    }
+
+    @Test
+    public void contactsAddedConcurrentlyShouldAllHaveDistinctIds() throws Exception {
+        threads.runConcurrently(thread -> {
+            for (int i = 0; i < 1000; i++) {
+                test.addNewContact("Thread" + thread + "Contact" + i, "");
+            }
+        });
+        Set<Contact> all = test.getContacts("Contact");
+        assertEquals(all.size(), THREADS * 1000);
+        Set<Integer> ids = new HashSet<>();
+        for (Contact c : all) {
+            ids.add(c.getId());
+        }
+        assertEquals(ids.size(), THREADS * 1000);
+    }
+
+    @Test
+    public void readersShouldSeeEveryMeetingAddedBeforeTheLastOneTheySee() throws Exception {
+        test.addNewContact("Contact1", "");
+        Contact contact = test.getContacts("Contact1").iterator().next();
+        Set<Contact> contacts = Collections.singleton(contact);
+        threads.runConcurrently(thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < 300; i++) {
+                if (thread % 2 == 0) {
+                    test.addNewPastMeeting(contacts, new GregorianCalendar(2010, random.nextInt(12), 1), "Past");
+                } else {
+                    List<PastMeeting> list = test.getPastMeetingList(contact);
+                    Set<Integer> ids = new HashSet<>();
+                    for (PastMeeting m : list) {
+                        ids.add(m.getId());
+                    }
+                    for (int id = 1; id <= list.size(); id++) {
+                        assertTrue(ids.contains(id));   // the ids are published in order, without gaps
+                    }
+                }
+            }
+        });
+        assertEquals(test.getPastMeetingList(contact).size(), THREADS / 2 * 300);
+    }
+
+    @Test
+    public void notesAddedConcurrentlyToTheSameMeetingShouldAllBeKept() throws Exception {
+        test.addNewContact("Contact1", "");
+        test.addNewPastMeeting(test.getContacts("Contact1"), new GregorianCalendar(2010, 1, 1), "");
+        threads.runConcurrently(thread -> {
+            for (int i = 0; i < 200; i++) {
+                test.addMeetingNotes(1, "n");
+            }
+        });
+        String notes = test.getPastMeeting(1).getNotes();
+        assertEquals(notes.replace(" ", "").length(), THREADS * 200);
+    }
+
+    @Test
+    public void concurrentConversionsShouldReturnTheSamePastMeeting() throws Exception {
+        Clock earlier = Clock.fixed(new GregorianCalendar(2000, 1, 1).toInstant(), ZoneId.systemDefault());
+        VersionedContactManager early = new VersionedContactManager(file, earlier);
+        early.addNewContact("Contact1", "");
+        early.addFutureMeeting(early.getContacts("Contact1"), new GregorianCalendar(2010, 1, 1));
+        early.flush();
+        VersionedContactManager reopened = new VersionedContactManager(file, clock);
+        Meeting future = reopened.getMeeting(1);
+        PastMeeting[] seen = new PastMeeting[THREADS];
+        threads.runConcurrently(thread -> seen[thread] = reopened.getPastMeeting(1));
+        for (PastMeeting p : seen) {
+            assertSame(p, seen[0]);
+        }
+        assertSame(reopened.getMeeting(1), seen[0]);
+        assertTrue(future instanceof FutureMeeting);
+    }
+
+    @Test
+    public void flushWhileAddingShouldWriteAConsistentVersion() throws Exception {
+        threads.runConcurrently(thread -> {
+            for (int i = 0; i < 300; i++) {
+                if (thread == 0 && i % 30 == 0) {
+                    test.flush();
+                } else {
+                    test.addNewContact("Thread" + thread + "Contact" + i, "");
+                    Set<Contact> contacts = test.getContacts("Thread" + thread + "Contact" + i);
+                    test.addFutureMeeting(contacts, new GregorianCalendar(2020, 1, 1));
+                }
+            }
+        });
+        VersionedContactManager reopened = new VersionedContactManager(file, clock);
+        List<Meeting> meetings = reopened.getFutureMeetingList(new GregorianCalendar(2020, 1, 1));
+        for (Meeting m : meetings) {
+            Contact c = m.getContacts().iterator().next();
+            assertSame(reopened.getContacts(c.getId()).iterator().next(), c);
+        }
+        assertTrue(meetings.size() <= reopened.getContacts("Contact").size());
+        assertEquals(reopened.addFutureMeeting(meetings.get(0).getContacts(), new GregorianCalendar(2020, 1, 1)),
+                meetings.size() + 1);
+    }
+
+    @Test
+    public void flushToAMissingFolderShouldThrowUncheckedIOException() {
+        VersionedContactManager missing = new VersionedContactManager(Paths.get("missing", "file.bin"), clock);
+        exception.expect(UncheckedIOException.class);
+        missing.flush();
+    }
+
+    @Test
+    public void getContactsByPrefixShouldReturnMatchingContactsInOrderOfName() throws Exception {
+        threads.runConcurrently(thread -> {
+            for (int i = 0; i < 100; i++) {
+                test.addNewContact(String.format("Name%03d", i * THREADS + thread), "");
+            }
+        });
+        List<Contact> list = test.getContactsByPrefix("Name1", 20);
+        assertEquals(list.size(), 20);
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals(list.get(i).getName(), String.format("Name%03d", 100 + i));
+        }
+        assertEquals(test.getContactsByPrefix("Name7", 1000).size(), 100);
+    }
+
+    @Test
+    public void meetingPagesShouldReturnTheListsWhileMeetingsAreAdded() throws Exception {
+        test.addNewContact("Contact1", "");
+        Contact contact = test.getContacts("Contact1").iterator().next();
+        Set<Contact> contacts = Collections.singleton(contact);
+        for (int i = 0; i < 100; i++) {
+            test.addNewPastMeeting(contacts, new GregorianCalendar(2010, 0, 1 + i), "Past" + i);
+        }
+        threads.runConcurrently(thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < 50; i++) {
+                test.addFutureMeeting(contacts, new GregorianCalendar(2020, random.nextInt(12), 1 + random.nextInt(28)));
+            }
+        });
+        List<Meeting> future = new ArrayList<>();
+        MeetingCursor cursor = MeetingCursor.START;
+        do {
+            MeetingPage<Meeting> page = test.getFutureMeetingPage(contact, cursor, 33);
+            future.addAll(page.getMeetings());
+            cursor = page.getNext();
+        } while (cursor != null);
+        assertEquals(future, test.getFutureMeetingList(contact));
+        assertEquals(future.size(), THREADS * 50);
+        MeetingPage<PastMeeting> past = test.getPastMeetingPage(contact, MeetingCursor.START, 10);
+        assertEquals(past.getMeetings(), test.getPastMeetingList(contact).subList(0, 10));
+        assertEquals(test.getPastMeetingPage(contact, past.getNext(), 1).getMeetings().get(0).getNotes(), "Past10");
+    }
+
+}
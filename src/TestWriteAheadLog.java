@@ -0,0 +1,325 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test class for {@see WriteAheadLog}, through a {@see ContactManagerImpl} in mode WRITE_AHEAD_LOG.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class TestWriteAheadLog {
+    private Path file;
+    private Path logFile;
+    private Clock now;
+    private Clock later;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Paths.get("TestWriteAheadLog.bin");
+        logFile = Paths.get("TestWriteAheadLog.bin.log");
+        tearDown();
+        now = clockAt(new GregorianCalendar(2015, 1, 1));
+        later = clockAt(new GregorianCalendar(2030, 1, 1));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(logFile);
+    }
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    public Clock clockAt(Calendar date) {
+        return Clock.fixed(date.toInstant(), ZoneId.systemDefault());
+    }
+
+    public ContactManagerImpl open(Clock clock) {
+        return new ContactManagerImpl(file, clock, StorageMode.WRITE_AHEAD_LOG);
+    }
+
+    /**
+     * Add two contacts, a FutureMeeting with both and a PastMeeting with the first, and flush.
+     */
+    public ContactManagerImpl populate() {
+        ContactManagerImpl test = open(now);
+        test.addNewContact("Contact1", "Notes1");
+        test.addNewContact("Contact2", "Notes2");
+        test.addFutureMeeting(test.getContacts("Contact"), new GregorianCalendar(2020, 1, 1));
+        test.addNewPastMeeting(test.getContacts("Contact1"), new GregorianCalendar(2010, 1, 1), "Past");
+        test.flush();
+        return test;
+    }
+
+    @Test
+    public void flushedChangesShouldBeRestoredFromTheLog() {
+        populate();
+        assertFalse(Files.exists(file));
+        ContactManagerImpl reopened = open(now);
+        assertEquals(reopened.getContacts("Contact").size(), 2);
+        assertEquals(reopened.getContacts(1001).iterator().next().getNotes(), "Notes2");
+        FutureMeeting future = reopened.getFutureMeeting(1);
+        assertEquals(future.getDate(), new GregorianCalendar(2020, 1, 1));
+        assertEquals(future.getContacts(), reopened.getContacts(1000, 1001));
+        assertEquals(reopened.getPastMeeting(2).getNotes(), "Past");
+    }
+
+    @Test
+    public void changesNotFlushedShouldNotBeRestored() {
+        ContactManagerImpl test = populate();
+        test.addNewContact("Contact3", "Notes3");
+        test.addMeetingNotes(2, "More");
+        ContactManagerImpl reopened = open(now);
+        assertEquals(reopened.getContacts("Contact").size(), 2);
+        assertEquals(reopened.getPastMeeting(2).getNotes(), "Past");
+    }
+
+    @Test
+    public void notesAndConversionsShouldBeRestoredFromTheLog() {
+        populate();
+        ContactManagerImpl test = open(later);
+        test.addMeetingNotes(2, "More");
+        test.addMeetingNotes(1, "Converted");
+        test.addNewPastMeeting(test.getContacts("Contact2"), new GregorianCalendar(2025, 1, 1), "");
+        test.addFutureMeeting(test.getContacts("Contact2"), new GregorianCalendar(2031, 1, 1));
+        test.flush();
+        ContactManagerImpl promoted = open(clockAt(new GregorianCalendar(2032, 1, 1)));
+        assertEquals(promoted.promoteDueMeetings(10), 1);
+        promoted.flush();
+        ContactManagerImpl reopened = open(now);
+        assertEquals(reopened.getPastMeeting(2).getNotes(), "Past More");
+        assertTrue(reopened.getMeeting(1) instanceof PastMeeting);
+        assertEquals(((PastMeeting) reopened.getMeeting(1)).getNotes(), "Converted");
+        assertTrue(reopened.getMeeting(4) instanceof PastMeeting);
+        assertEquals(((PastMeeting) reopened.getMeeting(4)).getNotes(), "");
+    }
+
+    @Test
+    public void contactNotesShouldBeRestoredFromTheLog() {
+        populate().getContacts(1000).iterator().next().addNotes("Added");
+        ContactManagerImpl test = open(now);
+        assertEquals(test.getContacts(1000).iterator().next().getNotes(), "Notes1");
+        test.getContacts(1000).iterator().next().addNotes("Added");
+        test.addNewContact("Contact3", "");
+        test.getContacts("Contact3").iterator().next().addNotes("New");
+        test.flush();
+        test.close();
+        ContactManagerImpl reopened = open(now);
+        assertEquals(reopened.getContacts(1000).iterator().next().getNotes(), "Notes1 Added");
+        assertEquals(reopened.getContacts("Contact3").iterator().next().getNotes(), "New");
+        reopened.compact();
+        reopened.close();
+        assertEquals(open(now).getContacts(1000).iterator().next().getNotes(), "Notes1 Added");
+    }
+
+    @Test
+    public void idsShouldNotBeReusedAfterRecovery() {
+        populate();
+        ContactManagerImpl reopened = open(now);
+        reopened.addNewContact("Contact3", "Notes3");
+        int id = reopened.addFutureMeeting(reopened.getContacts("Contact3"), new GregorianCalendar(2020, 1, 1));
+        assertEquals(reopened.getContacts("Contact3").iterator().next().getId(), 1002);
+        assertEquals(id, 3);
+    }
+
+    @Test
+    public void compactShouldFoldTheLogIntoTheSnapshot() throws IOException {
+        ContactManagerImpl test = populate();
+        assertTrue(Files.size(logFile) > 0);
+        test.compact();
+        assertTrue(Files.exists(file));
+        assertEquals(Files.size(logFile), 0);
+        test.addMeetingNotes(2, "More");
+        test.flush();
+        ContactManagerImpl reopened = open(now);
+        assertEquals(reopened.getContacts("Contact").size(), 2);
+        assertEquals(reopened.getPastMeeting(2).getNotes(), "Past More");
+        assertEquals(reopened.getFutureMeeting(1).getContacts().size(), 2);
+    }
+
+    @Test
+    public void flushShouldCompactTheLogWhenItGrowsLargerThanTheSnapshot() throws IOException {
+        ContactManagerImpl test = populate();
+        test.compact();
+        StringBuilder notes = new StringBuilder();
+        for (int i = 0; i < 1 << 16; i++) {
+            notes.append("0123456789abcdef");
+        }
+        test.addMeetingNotes(2, notes.toString());
+        test.flush();
+        assertEquals(Files.size(logFile), 0);
+        assertTrue(Files.size(file) > 1 << 20);
+        assertEquals(open(now).getPastMeeting(2).getNotes(), "Past " + notes);
+    }
+
+    @Test
+    public void replayingTheLogOverASnapshotWhichContainsItShouldNotApplyChangesTwice() throws IOException {
+        ContactManagerImpl test = populate();
+        test.addMeetingNotes(2, "More");
+        test.flush();
+        byte[] log = Files.readAllBytes(logFile);
+        test.compact();
+        Files.write(logFile, log);  // as if the application crashed before emptying the log
+        ContactManagerImpl reopened = open(now);
+        assertEquals(reopened.getContacts("Contact").size(), 2);
+        assertEquals(reopened.getPastMeeting(2).getNotes(), "Past More");
+        assertEquals(reopened.getFutureMeetingList(new GregorianCalendar(2020, 1, 1)).size(), 1);
+    }
+
+    @Test
+    public void incompleteRecordAtTheEndOfTheLogShouldBeDiscarded() throws IOException {
+        populate();
+        long size = Files.size(logFile);
+        ContactManagerImpl test = open(now);
+        test.addNewContact("Contact3", "Notes3");
+        test.flush();
+        byte[] log = Files.readAllBytes(logFile);
+        Files.write(logFile, Arrays.copyOf(log, log.length - 3));
+        ContactManagerImpl reopened = open(now);
+        assertEquals(reopened.getContacts("Contact").size(), 2);
+        assertEquals(Files.size(logFile), size);
+        reopened.addNewContact("Contact4", "Notes4");
+        reopened.flush();
+        assertEquals(open(now).getContacts("Contact4").size(), 1);
+    }
+
+    @Test
+    public void corruptedRecordShouldBeDiscardedWithTheRecordsAfterIt() throws IOException {
+        populate();
+        long size = Files.size(logFile);
+        ContactManagerImpl test = open(now);
+        test.addNewContact("Contact3", "Notes3");
+        test.addNewContact("Contact4", "Notes4");
+        test.flush();
+        byte[] log = Files.readAllBytes(logFile);
+        log[(int) size + 12] ^= 0x7F;
+        Files.write(logFile, log, StandardOpenOption.TRUNCATE_EXISTING);
+        ContactManagerImpl reopened = open(now);
+        assertEquals(reopened.getContacts("Contact").size(), 2);
+    }
+
+    @Test
+    public void logLargerThanAChunkShouldBeReplayedWhole() throws IOException {
+        char[] large = new char[WriteAheadLog.CHUNK + 100];
+        Arrays.fill(large, 'x');
+        try (WriteAheadLog log = new WriteAheadLog(logFile)) {
+            for (int i = 0; i < 50_000; i++) {
+                log.logContact(i, "Contact" + i, "Notes about contact " + i);
+                if (i == 25_000) {
+                    log.logNotes(1, 0, new String(large));  // a record larger than a chunk
+                }
+            }
+            log.sync();
+        }
+        long size = Files.size(logFile);
+        assertTrue(size > 2 * WriteAheadLog.CHUNK);
+        List<String> names = new ArrayList<>();
+        int[] notesLength = new int[1];
+        try (WriteAheadLog log = new WriteAheadLog(logFile)) {
+            log.replay(new WriteAheadLog.Handler() {
+                public void contactAdded(int id, String name, String notes) {
+                    names.add(name);
+                }
+
+                public void meetingAdded(int id, long date, String notes, int[] contacts) {
+                }
+
+                public void notesAdded(int id, int previousLength, String text) {
+                    notesLength[0] = text.length();
+                }
+
+                public void meetingPromoted(int id) {
+                }
+
+                public void contactNotesAdded(int id, int previousLength, String text) {
+                }
+            });
+            assertEquals(log.size(), size);
+        }
+        assertEquals(names.size(), 50_000);
+        assertEquals(names.get(49_999), "Contact49999");
+        assertEquals(notesLength[0], large.length);
+        assertEquals(Files.size(logFile), size);
+    }
+
+    @Test
+    public void closeShouldReleaseTheLogAndKeepTheChangesFlushed() {
+        try (ContactManagerImpl test = populate()) {
+            test.addNewContact("Contact3", "Not flushed");
+        }
+        ContactManagerImpl reopened = open(now);
+        assertEquals(reopened.getContacts("Contact").size(), 2);
+        reopened.close();
+        exception.expect(IllegalStateException.class);
+        reopened.flush();
+    }
+
+    @Test
+    public void fileWithALogShouldOnlyBeOpenedInTheOtherModesOnceCompacted() {
+        ContactManagerImpl test = populate();
+        try {
+            new ContactManagerImpl(file, now, StorageMode.SNAPSHOT);
+            fail("A log which is not empty should not be ignored");
+        } catch (UncheckedIOException ex) {
+            // expected
+        }
+        test.compact();
+        test.close();
+        ContactManagerImpl reopened = new ContactManagerImpl(file, now, StorageMode.SNAPSHOT);
+        assertEquals(reopened.getContacts("Contact").size(), 2);
+        assertEquals(reopened.getPastMeeting(2).getNotes(), "Past");
+        exception.expect(UncheckedIOException.class);
+        populate();
+        new ContactManagerImpl(file, now, StorageMode.MAPPED);
+    }
+
+    @Test
+    public void recordOfAnUnknownTypeShouldMakeTheLogInvalid() throws IOException {
+        populate();
+        ByteBuffer payload = ByteBuffer.allocate(5).put((byte) 99).putInt(1000);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        ByteBuffer record = ByteBuffer.allocate(13).putInt(5).putInt((int) crc.getValue()).put(payload.array());
+        Files.write(logFile, record.array(), StandardOpenOption.APPEND);
+        try {
+            open(now);
+            fail("A record with a valid checksum and an unknown type should not be ignored");
+        } catch (UncheckedIOException ex) {
+            assertTrue(ex.getCause() instanceof StreamCorruptedException);
+        }
+    }
+
+    @Test
+    public void meetingIdNotIssuedInOrderShouldMakeTheLogInvalid() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(logFile)) {
+            log.logContact(1000, "Contact1", "");
+            log.logMeeting(1 << 30, 0L, "Corrupt", new int[] {1000});
+            log.sync();
+        }
+        exception.expect(UncheckedIOException.class);
+        open(now);
+    }
+
+}
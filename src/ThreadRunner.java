@@ -0,0 +1,66 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a task on a fixed number of threads at the same time, for the multi-threaded tests of
+ * {@see ConcurrentContactManager} and {@see VersionedContactManager}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+class ThreadRunner {
+    private final int threads;
+    private final ExecutorService executor;
+
+    /**
+     * A task run by each thread, given the index of the thread.
+     */
+    interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+
+    /**
+     * Constructor for a runner with its own pool of threads.
+     *
+     * @param threads the number of threads which run each task.
+     */
+    ThreadRunner(int threads) {
+        this.threads = threads;
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Run the task on all the threads at the same time, passing the index of the thread,
+     * and wait for all of them to complete.
+     *
+     * @param task the task to be run.
+     * @throws Exception the exception thrown by a thread, wrapped in an ExecutionException.
+     */
+    void runConcurrently(ThreadTask task) throws Exception {
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            results.add(executor.submit(() -> {
+                start.await();
+                task.run(thread);
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stop the threads, interrupting the tasks still running.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,688 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Implementation of interface {@see ContactManager} whose data is held in immutable versions, for reads
+ * which never block and always see a consistent state.
+ *
+ * Every change builds a new {@see Version} from the current one, with persistent structures which share
+ * all but the few nodes the change touches: a {@see PersistentIntMap} of the contacts and one of the meetings
+ * by id, and {@see PersistentSortedSet}s for the index by name, for the posting lists of the trigrams of the
+ * names (as in {@see NameIndex}) and for the chronological indexes (of all the meetings, and of the meetings
+ * of each contact). The new version is then published with a single volatile
+ * write. A query reads the current version once and answers from it alone, without locks, so it sees each
+ * change either completely or not at all: unlike {@see ConcurrentContactManager}, whose maps and indexes are
+ * updated one after the other, a meeting is never found in one index and missing from another.
+ * flush() writes the version current when it is called, while the changes go on.
+ *
+ * Changes are applied one at a time, under a lock held only while the new version is built. Meetings are
+ * immutable too (the PastMeetings returned have no addNotes()): adding notes to a PastMeeting, or converting
+ * a FutureMeeting, replaces the meeting in the new version, so a meeting returned earlier keeps the notes
+ * it had when it was read.
+ * Contacts are not: they are shared by all the versions (and by the meetings which refer to them), so the
+ * notes added to a contact are seen at once by every version, and are not part of the changes above.
+ * The data is saved to the same {@see Snapshot} file as {@see ContactManagerImpl}.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class VersionedContactManager implements ContactManager {
+    private static final Path FILE = Paths.get("Contact.txt");
+    private final Path file;
+    private final Clock clock;
+    private volatile Version current;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock fileLock = new ReentrantLock();
+    private final ContactResolver resolver = id -> current.contacts.get(id);
+
+    /**
+     * The position of a meeting in a chronological index: its date, and then its id.
+     */
+    private static final class DateKey implements Comparable<DateKey> {
+        final long date;
+        final int id;
+
+        DateKey(long date, int id) {
+            this.date = date;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(DateKey other) {
+            return date != other.date ? Long.compare(date, other.date) : Integer.compare(id, other.id);
+        }
+    }
+
+    /**
+     * The position of a contact in the index by name: its name, and then its id.
+     */
+    private static final class NameKey implements Comparable<NameKey> {
+        final String name;
+        final int id;
+
+        NameKey(String name, int id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(NameKey other) {
+            int cmp = name.compareTo(other.name);
+            return cmp != 0 ? cmp : Integer.compare(id, other.id);
+        }
+    }
+
+    /**
+     * A PastMeeting whose notes cannot be changed, unlike a {@see PastMeetingImpl}, so that a meeting read
+     * from a version is never changed by another reader: notes are added by replacing it in a new version.
+     */
+    private static final class ImmutablePastMeeting extends MeetingImpl implements PastMeeting {
+        private static final long serialVersionUID = 1L;
+        private final String notes;
+
+        ImmutablePastMeeting(long date, Set<Contact> contacts, int id, String notes) {
+            super(date, contacts, id);
+            this.notes = notes;
+        }
+
+        @Override
+        public String getNotes() {
+            return notes;
+        }
+    }
+
+    /**
+     * A version of the data: the contacts and the meetings, their indexes and the last ids issued.
+     * A version is never changed once built.
+     */
+    private static final class Version {
+        static final PersistentSortedSet<DateKey> NO_MEETINGS = new PersistentSortedSet<>(Comparator.naturalOrder());
+        static final PersistentSortedSet<Integer> NO_CONTACTS = new PersistentSortedSet<>(Comparator.naturalOrder());
+        final int lastContactId;
+        final int lastMeetingId;
+        final PersistentIntMap<Contact> contacts;
+        final PersistentSortedSet<NameKey> contactsByName;
+        final PersistentIntMap<PersistentSortedSet<Integer>> contactsByTrigram;
+        final PersistentIntMap<Meeting> meetings;
+        final PersistentSortedSet<DateKey> meetingsByDate;
+        final PersistentIntMap<PersistentSortedSet<DateKey>> meetingsByContact;
+
+        Version(int lastContactId, int lastMeetingId) {
+            this(lastContactId, lastMeetingId, PersistentIntMap.empty(),
+                    new PersistentSortedSet<>(Comparator.naturalOrder()), PersistentIntMap.empty(),
+                    PersistentIntMap.empty(), NO_MEETINGS, PersistentIntMap.empty());
+        }
+
+        Version(int lastContactId, int lastMeetingId, PersistentIntMap<Contact> contacts,
+                PersistentSortedSet<NameKey> contactsByName,
+                PersistentIntMap<PersistentSortedSet<Integer>> contactsByTrigram, PersistentIntMap<Meeting> meetings,
+                PersistentSortedSet<DateKey> meetingsByDate,
+                PersistentIntMap<PersistentSortedSet<DateKey>> meetingsByContact) {
+            this.lastContactId = lastContactId;
+            this.lastMeetingId = lastMeetingId;
+            this.contacts = contacts;
+            this.contactsByName = contactsByName;
+            this.contactsByTrigram = contactsByTrigram;
+            this.meetings = meetings;
+            this.meetingsByDate = meetingsByDate;
+            this.meetingsByContact = meetingsByContact;
+        }
+
+        /**
+         * Returns the version with a new contact, whose id becomes the last contact id if it is larger.
+         */
+        Version withContact(Contact c) {
+            String name = c.getName();
+            PersistentIntMap<PersistentSortedSet<Integer>> byTrigram = contactsByTrigram;
+            for (int i = 0; i + NameIndex.GRAM <= name.length(); i++) {
+                int key = NameIndex.key(name, i);
+                PersistentSortedSet<Integer> postings = byTrigram.get(key);
+                byTrigram = byTrigram.put(key, (postings == null ? NO_CONTACTS : postings).with(c.getId()));
+            }
+            return new Version(Math.max(lastContactId, c.getId()), lastMeetingId, contacts.put(c.getId(), c),
+                    contactsByName.with(new NameKey(name, c.getId())), byTrigram, meetings, meetingsByDate,
+                    meetingsByContact);
+        }
+
+        /**
+         * Returns the version with a new meeting in the map and in the indexes, whose id becomes the last
+         * meeting id if it is larger.
+         */
+        Version withMeeting(Meeting m) {
+            DateKey key = new DateKey(ContactManagerImpl.dateOf(m), m.getId());
+            PersistentIntMap<PersistentSortedSet<DateKey>> byContact = meetingsByContact;
+            for (int c : ContactManagerImpl.attendeesOf(m)) {
+                PersistentSortedSet<DateKey> postings = byContact.get(c);
+                byContact = byContact.put(c, (postings == null ? NO_MEETINGS : postings).with(key));
+            }
+            return new Version(lastContactId, Math.max(lastMeetingId, m.getId()), contacts, contactsByName,
+                    contactsByTrigram, meetings.put(m.getId(), m), meetingsByDate.with(key), byContact);
+        }
+
+        /**
+         * Returns the version with a stored meeting replaced by one with the same id, date and contacts.
+         */
+        Version replaceMeeting(Meeting m) {
+            return new Version(lastContactId, lastMeetingId, contacts, contactsByName, contactsByTrigram,
+                    meetings.put(m.getId(), m), meetingsByDate, meetingsByContact);
+        }
+
+        /**
+         * Returns the version with the given meetings converted to PastMeetings without notes,
+         * if they are still FutureMeetings.
+         */
+        Version convert(List<DateKey> keys) {
+            Version v = this;
+            for (DateKey key : keys) {
+                Meeting m = v.meetings.get(key.id);
+                if (m instanceof FutureMeeting) {
+                    v = v.replaceMeeting(new ImmutablePastMeeting(key.date, m.getContacts(), key.id, ""));
+                }
+            }
+            return v;
+        }
+
+        boolean isKnown(Contact c) {
+            return c != null && contacts.get(c.getId()) == c;
+        }
+
+        PersistentSortedSet<DateKey> meetingsOf(Contact c) {
+            PersistentSortedSet<DateKey> postings = meetingsByContact.get(c.getId());
+            return postings == null ? NO_MEETINGS : postings;
+        }
+    }
+
+    /**
+     * Constructor for the ContactManager, restoring the data saved in the file "Contact.txt" if it exists,
+     * and using the system clock.
+     *
+     * @throws UncheckedIOException if the file exists but cannot be read.
+     */
+    public VersionedContactManager() {
+        this(FILE, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Constructor for a ContactManager which saves its data to the given file, and uses the given clock
+     * to decide whether a meeting is in the past or in the future.
+     *
+     * @param file the file where the data is saved.
+     * @param clock the clock giving the current time.
+     * @throws NullPointerException if any of the arguments is null.
+     * @throws UncheckedIOException if the file exists but cannot be read.
+     */
+    public VersionedContactManager(Path file, Clock clock) {
+        if (file == null || clock == null) {
+            throw new NullPointerException("Argument cannot be null");
+        }
+        this.file = file;
+        this.clock = clock;
+        Snapshot snapshot;
+        try {
+            snapshot = Snapshot.read(file);
+        } catch (NoSuchFileException fl) {  // initialize a new ContactManager from scratch
+            IdCreatorImpl fresh = new IdCreatorImpl();
+            snapshot = new Snapshot(fresh.getLastContactId(), fresh.getLastMeetingId(),
+                    new ArrayList<>(), new ArrayList<>());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read " + file, ex);
+        }
+        Version v = new Version(snapshot.getLastContactId(), snapshot.getLastMeetingId());
+        for (Contact c : snapshot.getContacts()) {
+            v = v.withContact(c);
+        }
+        for (Meeting m : snapshot.getMeetings()) {
+            if (m instanceof PastMeeting) {
+                m = new ImmutablePastMeeting(ContactManagerImpl.dateOf(m), m.getContacts(), m.getId(),
+                        ((PastMeeting) m).getNotes());
+            }
+            v = v.withMeeting(m);
+        }
+        current = v;
+    }
+
+    /**
+     * Build a new version from the current one and publish it. The changes are applied one at a time,
+     * so the function always receives the last version published.
+     *
+     * @param change the function which builds the new version, and may throw to leave the data unchanged.
+     * @return the version published.
+     */
+    private Version update(UnaryOperator<Version> change) {
+        writeLock.lock();
+        try {
+            Version next = change.apply(current);
+            current = next;
+            return next;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static boolean checkContacts(Version v, Set<Contact> toCheck) {
+        for (Contact c : toCheck) {
+            if (!v.isKnown(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the keys of an index from the given one up to a date (excluded, unless it is Long.MAX_VALUE,
+     * which stands for no end), at most limit of them.
+     */
+    private static List<DateKey> range(PersistentSortedSet<DateKey> index, DateKey from, boolean inclusive,
+                                       long to, long limit) {
+        List<DateKey> keys = new ArrayList<>();
+        for (Iterator<DateKey> it = index.iterator(from, inclusive); it.hasNext() && keys.size() < limit; ) {
+            DateKey key = it.next();
+            if (key.date >= to && to != Long.MAX_VALUE) {
+                break;
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    private static List<DateKey> range(PersistentSortedSet<DateKey> index, long from, long to) {
+        return range(index, new DateKey(from, Integer.MIN_VALUE), true, to, Long.MAX_VALUE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Meeting> List<T> resolve(Version v, List<DateKey> keys) {
+        List<T> list = new ArrayList<>(keys.size());
+        for (DateKey key : keys) {
+            list.add((T) v.meetings.get(key.id));
+        }
+        return list;
+    }
+
+    private static boolean hasFutureMeetings(Version v, List<DateKey> keys) {
+        for (DateKey key : keys) {
+            if (v.meetings.get(key.id) instanceof FutureMeeting) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if the meeting is set for a time in the past,
+     *     or if any contact is unknown / non-existent
+     */
+    @Override
+    public int addFutureMeeting(Set<Contact> contacts, Calendar date) {
+        if (contacts == null || date == null) {
+            throw new NullPointerException("Argument cannot be null");
+        } else if (!checkContacts(current, contacts)) {
+            throw new IllegalArgumentException("All the contacts of the meeting need to be valid");
+        } else if (date.getTimeInMillis() < clock.millis()) {
+            throw new IllegalArgumentException("Cannot create a FutureMeeting with a past date");
+        }
+        AttendeeSet attendees = AttendeeSet.of(contacts, resolver);
+        return update(v -> v.withMeeting(new FutureMeetingImpl(date, attendees, v.lastMeetingId + 1))).lastMeetingId;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * If the meeting with the requested ID has a past date but has not been converted to PastMeeting yet,
+     * it will be converted without notes
+     */
+    @Override
+    public PastMeeting getPastMeeting(int id) {
+        Meeting m = current.meetings.get(id);
+        if (m == null) {
+            return null;
+        } else if (ContactManagerImpl.dateOf(m) > clock.millis()) {
+            throw new IllegalArgumentException("Meeting " + id + " is happening in the future");
+        } else if (m instanceof FutureMeeting) {
+            List<DateKey> key = Collections.singletonList(new DateKey(ContactManagerImpl.dateOf(m), id));
+            return (PastMeeting) update(v -> v.convert(key)).meetings.get(id);
+        } else {
+            return (PastMeeting) m;
+        }
+    }
+
+    @Override
+    public FutureMeeting getFutureMeeting(int id) {
+        Meeting m = current.meetings.get(id);
+        if (m == null) {
+            return null;
+        } else if (ContactManagerImpl.dateOf(m) < clock.millis()) {
+            throw new IllegalArgumentException("Meeting " + id + " is happening in the past");
+        } else {
+            return (FutureMeeting) m;
+        }
+    }
+
+    @Override
+    public Meeting getMeeting(int id) {
+        return current.meetings.get(id);
+    }
+
+    @Override
+    public List<Meeting> getFutureMeetingList(Contact contact) {
+        Version v = current;
+        if (contact == null) {
+            throw new NullPointerException("Cannot have a null contact");
+        } else if (!v.isKnown(contact)) {
+            throw new IllegalArgumentException(contact.getName() + " has not been added to the list of contacts");
+        }
+        return resolve(v, range(v.meetingsOf(contact), clock.millis() + 1, Long.MAX_VALUE));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The parameter date will use only the date part (year, month and day) and ignore the time.
+     */
+    @Override
+    public List<Meeting> getFutureMeetingList(Calendar date) {
+        if (date == null) {
+            throw new NullPointerException("Cannot have a null date");
+        }
+        Calendar day = (Calendar) date.clone();
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        long from = day.getTimeInMillis();
+        day.add(Calendar.DAY_OF_MONTH, 1);
+        Version v = current;
+        return resolve(v, range(v.meetingsByDate, from, day.getTimeInMillis()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * FutureMeetings with a past date are returned as they are, without being converted to PastMeetings.
+     */
+    @Override
+    public List<Meeting> getMeetings(Calendar from, Calendar to) {
+        if (from == null || to == null) {
+            throw new NullPointerException("Cannot have a null date");
+        } else if (from.after(to)) {
+            throw new IllegalArgumentException("The start of the range cannot be after its end");
+        }
+        Version v = current;
+        return resolve(v, range(v.meetingsByDate, from.getTimeInMillis(), to.getTimeInMillis()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * If a meeting with matching contacts is a FutureMeeting with a past date,
+     * it will be converted to a PastMeeting without notes, and the list is read from the version
+     * published by the conversion.
+     */
+    @Override
+    public List<PastMeeting> getPastMeetingList(Contact contact) {
+        Version v = current;
+        if (contact == null) {
+            throw new NullPointerException("Cannot have null argument");
+        } else if (!v.isKnown(contact)) {
+            throw new IllegalArgumentException(contact.getName() + " has not been added to the Contacts list");
+        }
+        long now = clock.millis();
+        List<DateKey> keys = range(v.meetingsOf(contact), Long.MIN_VALUE, now);
+        while (hasFutureMeetings(v, keys)) {
+            List<DateKey> due = keys;
+            v = update(old -> old.convert(due));
+            keys = range(v.meetingsOf(contact), Long.MIN_VALUE, now);
+        }
+        return resolve(v, keys);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * This implementation throws an IllegalArgumentException also if the date
+     * as parameter is set for a future date
+     */
+    @Override
+    public void addNewPastMeeting(Set<Contact> contacts, Calendar date, String text) {
+        if (contacts == null || date == null || text == null) {
+            throw new NullPointerException("Cannot have a null argument");
+        } else if (contacts.isEmpty()) {
+            throw new IllegalArgumentException("The set of contacts is empty");
+        } else if (date.getTimeInMillis() > clock.millis()) {
+            throw new IllegalArgumentException("Cannot create a past meeting with a future date");
+        } else if (!checkContacts(current, contacts)) {
+            throw new IllegalArgumentException("All the contacts of the meeting need to be valid");
+        }
+        AttendeeSet attendees = AttendeeSet.of(contacts, resolver);
+        update(v -> v.withMeeting(new ImmutablePastMeeting(date.getTimeInMillis(), attendees, v.lastMeetingId + 1, text)));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The meeting is replaced by a new PastMeeting with the notes added, so the PastMeetings
+     * returned earlier keep their notes.
+     */
+    @Override
+    public void addMeetingNotes(int id, String text) {
+        if (text == null) {
+            throw new NullPointerException("Cannot have null notes");
+        }
+        long now = clock.millis();
+        update(v -> {
+            Meeting m = v.meetings.get(id);
+            if (m == null) {
+                throw new IllegalArgumentException("The meeting does not exist");
+            }
+            long date = ContactManagerImpl.dateOf(m);
+            if (date > now) {
+                throw new IllegalStateException("Meeting " + id + " is set for a date in the future.");
+            }
+            String notes = text;
+            if (m instanceof PastMeeting) {
+                String previous = ((PastMeeting) m).getNotes();
+                notes = previous.isEmpty() ? text : previous + " " + text;  // as Notes.append()
+            }
+            return v.replaceMeeting(new ImmutablePastMeeting(date, m.getContacts(), id, notes));
+        });
+    }
+
+    @Override
+    public void addNewContact(String name, String notes) {
+        if (name == null || notes == null) {
+            throw new NullPointerException("Argument cannot be null");
+        }
+        update(v -> v.withContact(new ContactImpl(name, v.lastContactId + 1, notes)));
+    }
+
+    @Override
+    public Set<Contact> getContacts(int... ids) {
+        Version v = current;
+        Set<Contact> set = new LinkedHashSet<>(ids.length * 2);
+        for (int id : ids) {
+            Contact c = v.contacts.get(id);
+            if (c == null) {
+                throw new IllegalArgumentException(id + " do not correspond to a real contact");
+            }
+            set.add(c);
+        }
+        return set;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The contacts are returned in order of name. The candidates are the contacts in every posting list
+     * of the trigrams of the name, found in the current version: the shortest list is read, and each of
+     * its ids looked for in the others. A name shorter than a trigram is searched by scanning the index
+     * by name.
+     */
+    @Override
+    public Set<Contact> getContacts(String name) {
+        if (name == null || name.equals("")) {
+            throw new NullPointerException("Name of the contact to get cannot be null or empty");
+        }
+        Version v = current;
+        List<NameKey> found = new ArrayList<>();
+        if (NameIndex.canSearch(name)) {
+            int count = name.length() - NameIndex.GRAM + 1;
+            List<PersistentSortedSet<Integer>> lists = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                PersistentSortedSet<Integer> postings = v.contactsByTrigram.get(NameIndex.key(name, i));
+                if (postings == null) {
+                    return new LinkedHashSet<>();
+                }
+                lists.add(postings);
+            }
+            lists.sort(Comparator.comparingInt(PersistentSortedSet::size));
+            for (Integer id : lists.get(0)) {
+                String candidate = v.contacts.get(id).getName();
+                if (inAll(lists, id) && candidate.contains(name)) {
+                    found.add(new NameKey(candidate, id));
+                }
+            }
+            Collections.sort(found);
+        } else {
+            for (NameKey key : v.contactsByName) {
+                if (key.name.contains(name)) {
+                    found.add(key);
+                }
+            }
+        }
+        Set<Contact> set = new LinkedHashSet<>(found.size() * 2);
+        for (NameKey key : found) {
+            set.add(v.contacts.get(key.id));
+        }
+        return set;
+    }
+
+    /**
+     * Returns whether an id is in all the posting lists after the first one.
+     */
+    private static boolean inAll(List<PersistentSortedSet<Integer>> lists, Integer id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The contacts are read in order from the index by name of the current version.
+     */
+    @Override
+    public List<Contact> getContactsByPrefix(String prefix, int limit) {
+        if (prefix == null) {
+            throw new NullPointerException("Prefix cannot be null");
+        } else if (limit < 0) {
+            throw new IllegalArgumentException("The number of contacts cannot be negative");
+        }
+        Version v = current;
+        List<Contact> list = new ArrayList<>(Math.min(limit, 64));
+        for (Iterator<NameKey> it = v.contactsByName.iterator(new NameKey(prefix, Integer.MIN_VALUE), true);
+             it.hasNext() && list.size() < limit; ) {
+            NameKey key = it.next();
+            if (!key.name.startsWith(prefix)) {
+                break;
+            }
+            list.add(v.contacts.get(key.id));
+        }
+        return list;
+    }
+
+    @Override
+    public MeetingPage<Meeting> getFutureMeetingPage(Contact contact, MeetingCursor after, int limit) {
+        Version v = current;
+        checkPage(v, contact, after, limit);
+        MeetingCursor from = after.atLeast(clock.millis(), Integer.MAX_VALUE);
+        return page(v, contact, from, Long.MAX_VALUE, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * If a meeting of the page is a FutureMeeting with a past date,
+     * it will be converted to a PastMeeting without notes, and the page is read from the version
+     * published by the conversion.
+     */
+    @Override
+    public MeetingPage<PastMeeting> getPastMeetingPage(Contact contact, MeetingCursor after, int limit) {
+        Version v = current;
+        checkPage(v, contact, after, limit);
+        long now = clock.millis();
+        while (true) {
+            List<DateKey> keys = range(v.meetingsOf(contact), new DateKey(after.getDate(), after.getId()), false,
+                    now, limit);
+            if (!hasFutureMeetings(v, keys)) {
+                return page(v, contact, after, now, limit);
+            }
+            v = update(old -> old.convert(keys));
+        }
+    }
+
+    private static void checkPage(Version v, Contact contact, MeetingCursor after, int limit) {
+        if (contact == null || after == null) {
+            throw new NullPointerException("Argument cannot be null");
+        } else if (!v.isKnown(contact)) {
+            throw new IllegalArgumentException(contact.getName() + " has not been added to the list of contacts");
+        } else if (limit < 0) {
+            throw new IllegalArgumentException("The number of meetings cannot be negative");
+        }
+    }
+
+    /**
+     * Read a page of the meetings of a contact: the first ones after the cursor and before the given date,
+     * up to the limit. One more meeting is looked for, to know whether there is a next page.
+     */
+    private static <T extends Meeting> MeetingPage<T> page(Version v, Contact contact, MeetingCursor after,
+                                                           long to, int limit) {
+        if (after.getDate() >= to) {
+            return new MeetingPage<>(new ArrayList<>(), null);
+        }
+        List<DateKey> keys = range(v.meetingsOf(contact), new DateKey(after.getDate(), after.getId()), false,
+                to, limit + 1L);
+        if (keys.size() <= limit) {
+            return new MeetingPage<>(resolve(v, keys), null);
+        }
+        DateKey last = limit == 0 ? null : keys.get(limit - 1);
+        return new MeetingPage<>(resolve(v, keys.subList(0, limit)),
+                last == null ? after : new MeetingCursor(last.date, last.id));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The version current when the file is free is written as a binary {@see Snapshot}, without stopping
+     * the changes, to a file next to the data file which is forced to disk and then moved over it, so the
+     * file always holds a complete snapshot (see {@see Snapshot#replace(Path)}). Concurrent calls of flush()
+     * write their versions one at a time.
+     *
+     * @throws UncheckedIOException if the data cannot be written.
+     */
+    @Override
+    public void flush() {
+        fileLock.lock();
+        try {
+            Version v = current;
+            List<Contact> contacts = new ArrayList<>(v.contacts.size());
+            v.contacts.forEach(contacts::add);
+            List<Meeting> meetings = resolve(v, range(v.meetingsByDate, Long.MIN_VALUE, Long.MAX_VALUE));
+            new Snapshot(v.lastContactId, v.lastMeetingId, contacts, meetings).replace(file);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot write " + file, ex);
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,446 @@
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the changes made to a ContactManager since its last {@see Snapshot}.
+ * Every change is encoded as a small record, and records are kept in memory until sync() appends them
+ * to the file and forces them to disk: saving is then proportional to the changes since the last save,
+ * rather than to the whole data.
+ *
+ * Each record is written as
+ * <pre>
+ *     int length, int CRC32 of the payload, byte type, payload
+ * </pre>
+ * so that a record partially written by a crash is detected and discarded when the log is replayed.
+ * Replaying a record whose change is already in the snapshot has no effect, so a crash between
+ * writing a snapshot and resetting the log does not apply any change twice.
+ *
+ * Records are logged, and taken with drain(), by the thread which holds the lock of the ContactManager,
+ * while write(), truncate() and size() may be called by another thread (one at a time), so that the
+ * records taken are written and forced to disk while new ones are logged.
+ *
+ * @author federico.bartolomei (BBK-PiJ-2014-21)
+ */
+public class WriteAheadLog implements AutoCloseable {
+    static final byte CONTACT = 1;
+    static final byte MEETING = 2;
+    static final byte NOTES = 3;
+    static final byte PROMOTION = 4;
+    static final byte CONTACT_NOTES = 5;
+    private static final int HEADER = 8;
+    static final int CHUNK = 1 << 20;
+
+    private final FileChannel channel;
+    private ByteBuffer pending = ByteBuffer.allocate(4096);
+    private final CRC32 crc = new CRC32();
+    private long written;
+
+    /**
+     * Receives the changes read from the log by replay().
+     */
+    public interface Handler {
+
+        /**
+         * A new contact was added.
+         *
+         * @param id the id of the contact.
+         * @param name the name of the contact.
+         * @param notes the notes about the contact.
+         */
+        void contactAdded(int id, String name, String notes);
+
+        /**
+         * A new meeting was added.
+         *
+         * @param id the id of the meeting.
+         * @param date the date of the meeting, in milliseconds since the epoch.
+         * @param notes the notes of a PastMeeting, or null for a FutureMeeting.
+         * @param contacts the ids of the contacts of the meeting.
+         */
+        void meetingAdded(int id, long date, String notes, int[] contacts);
+
+        /**
+         * Notes were added to a meeting.
+         *
+         * @param id the id of the meeting.
+         * @param previousLength the length of the notes of the meeting before the change,
+         *                       or -1 if the meeting was a FutureMeeting converted by the change.
+         * @param text the notes added.
+         */
+        void notesAdded(int id, int previousLength, String text);
+
+        /**
+         * A FutureMeeting was converted to a PastMeeting without notes.
+         *
+         * @param id the id of the meeting.
+         */
+        void meetingPromoted(int id);
+
+        /**
+         * Notes were added to a contact.
+         *
+         * @param id the id of the contact.
+         * @param previousLength the length of the notes of the contact before the change.
+         * @param text the notes added.
+         */
+        void contactNotesAdded(int id, int previousLength, String text);
+    }
+
+    /**
+     * Constructor for a log stored in the given file, which is created if it does not exist.
+     * The records already in the file are not read until replay() is called.
+     *
+     * @param file the file of the log.
+     * @throws IOException if the file cannot be opened.
+     */
+    public WriteAheadLog(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        written = channel.size();
+    }
+
+    /**
+     * Read all the records of the log, passing them to the handler in the order they were written.
+     * The log is read in chunks of CHUNK bytes (or of one record, if larger), so it is never held in memory
+     * as a whole. If the log ends with an incomplete or corrupted record (e.g. after a crash), it is truncated
+     * after the last valid one.
+     *
+     * @param handler the handler of the changes.
+     * @throws IOException if the log cannot be read.
+     * @throws StreamCorruptedException if a valid record has a type which is not known.
+     */
+    public void replay(Handler handler) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, CHUNK));
+        buffer.limit(0);
+        long start = 0;     // the position in the file of the first byte of the buffer
+        long valid = 0;     // the end of the last record checked
+        while (size - valid >= HEADER) {
+            if (buffer.limit() - (valid - start) < HEADER) {
+                buffer = fill(buffer, (int) (valid - start), HEADER, valid);
+                start = valid;
+                if (buffer.limit() < HEADER) {
+                    break;
+                }
+            }
+            int at = (int) (valid - start);
+            int length = buffer.getInt(at);
+            int checksum = buffer.getInt(at + 4);
+            if (length <= 0 || length > size - valid - HEADER) {
+                break;
+            }
+            if (buffer.limit() - at < HEADER + length) {
+                buffer = fill(buffer, at, HEADER + length, valid);
+                start = valid;
+                at = 0;
+                if (buffer.limit() < HEADER + length) {
+                    break;
+                }
+            }
+            crc.reset();
+            ByteBuffer payload = buffer.duplicate().position(at + HEADER).limit(at + HEADER + length);
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            apply(payload, handler);
+            valid += HEADER + length;
+        }
+        channel.truncate(valid);
+        channel.position(valid);
+        written = valid;
+    }
+
+    /**
+     * Move the bytes of the buffer not yet replayed to its beginning, and read the bytes which follow them
+     * from the file until the buffer is full or the file ends.
+     *
+     * @param buffer the buffer read so far.
+     * @param at the position in the buffer of the first byte not yet replayed.
+     * @param needed the number of bytes which the buffer must be able to hold.
+     * @param offset the position in the file of the first byte not yet replayed.
+     * @return the buffer to be read from position 0 (a larger one if needed exceeds the capacity).
+     * @throws IOException if the log cannot be read.
+     */
+    private ByteBuffer fill(ByteBuffer buffer, int at, int needed, long offset) throws IOException {
+        buffer.position(at);
+        ByteBuffer target = buffer;
+        if (needed > buffer.capacity()) {
+            target = ByteBuffer.allocate(needed);
+            target.put(buffer);
+        } else {
+            target.compact();
+        }
+        long next = offset + target.position();
+        while (target.hasRemaining()) {
+            int read = channel.read(target, next);
+            if (read < 0) {
+                break;
+            }
+            next += read;
+        }
+        target.flip();
+        return target;
+    }
+
+    private static void apply(ByteBuffer payload, Handler handler) throws StreamCorruptedException {
+        byte type = payload.get();
+        int id = payload.getInt();
+        switch (type) {
+            case CONTACT:
+                handler.contactAdded(id, getString(payload), getString(payload));
+                break;
+            case MEETING:
+                long date = payload.getLong();
+                String notes = payload.get() == 1 ? getString(payload) : null;
+                int[] contacts = new int[payload.getInt()];
+                for (int i = 0; i < contacts.length; i++) {
+                    contacts[i] = payload.getInt();
+                }
+                handler.meetingAdded(id, date, notes, contacts);
+                break;
+            case NOTES:
+                int previousLength = payload.getInt();
+                handler.notesAdded(id, previousLength, getString(payload));
+                break;
+            case PROMOTION:
+                handler.meetingPromoted(id);
+                break;
+            case CONTACT_NOTES:
+                int contactLength = payload.getInt();
+                handler.contactNotesAdded(id, contactLength, getString(payload));
+                break;
+            default:
+                throw new StreamCorruptedException("Unknown record type " + type);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // appending records -----------------------------------------------------------------------------------------------
+
+    private void ensure(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+
+    /**
+     * Start a record, leaving space for its length and checksum, and return its position.
+     */
+    private int begin(byte type, int id, int size) {
+        ensure(HEADER + 5 + size);
+        int start = pending.position();
+        pending.position(start + HEADER);
+        pending.put(type).putInt(id);
+        return start;
+    }
+
+    private void end(int start) {
+        int length = pending.position() - start - HEADER;
+        crc.reset();
+        ByteBuffer payload = pending.duplicate().position(start + HEADER).limit(pending.position());
+        crc.update(payload);
+        pending.putInt(start, length);
+        pending.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private void putString(byte[] bytes) {
+        pending.putInt(bytes.length);
+        pending.put(bytes);
+    }
+
+    /**
+     * Record the addition of a new contact.
+     *
+     * @param id the id of the contact.
+     * @param name the name of the contact.
+     * @param notes the notes about the contact.
+     */
+    public void logContact(int id, String name, String notes) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] notesBytes = notes.getBytes(StandardCharsets.UTF_8);
+        int start = begin(CONTACT, id, 8 + nameBytes.length + notesBytes.length);
+        putString(nameBytes);
+        putString(notesBytes);
+        end(start);
+    }
+
+    /**
+     * Record the addition of a new meeting.
+     *
+     * @param id the id of the meeting.
+     * @param date the date of the meeting, in milliseconds since the epoch.
+     * @param notes the notes of a PastMeeting, or null for a FutureMeeting.
+     * @param contacts the contacts of the meeting.
+     */
+    public void logMeeting(int id, long date, String notes, Iterable<Contact> contacts) {
+        int count = 0;
+        for (Contact ignored : contacts) {
+            count++;
+        }
+        int[] ids = new int[count];
+        count = 0;
+        for (Contact c : contacts) {
+            ids[count++] = c.getId();
+        }
+        logMeeting(id, date, notes, ids);
+    }
+
+    /**
+     * Record the addition of a new meeting, whose contacts are given by id.
+     *
+     * @param id the id of the meeting.
+     * @param date the date of the meeting, in milliseconds since the epoch.
+     * @param notes the notes of a PastMeeting, or null for a FutureMeeting.
+     * @param contacts the ids of the contacts of the meeting.
+     */
+    public void logMeeting(int id, long date, String notes, int[] contacts) {
+        byte[] notesBytes = notes == null ? new byte[0] : notes.getBytes(StandardCharsets.UTF_8);
+        int start = begin(MEETING, id, 17 + notesBytes.length + 4 * contacts.length);
+        pending.putLong(date);
+        if (notes == null) {
+            pending.put((byte) 0);
+        } else {
+            pending.put((byte) 1);
+            putString(notesBytes);
+        }
+        pending.putInt(contacts.length);
+        for (int c : contacts) {
+            pending.putInt(c);
+        }
+        end(start);
+    }
+
+    /**
+     * Record the addition of notes to a meeting.
+     *
+     * @param id the id of the meeting.
+     * @param previousLength the length of the notes before the change, or -1 if the change converts a FutureMeeting.
+     * @param text the notes added.
+     */
+    public void logNotes(int id, int previousLength, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int start = begin(NOTES, id, 8 + bytes.length);
+        pending.putInt(previousLength);
+        putString(bytes);
+        end(start);
+    }
+
+    /**
+     * Record the addition of notes to a contact.
+     *
+     * @param id the id of the contact.
+     * @param previousLength the length of the notes before the change.
+     * @param text the notes added.
+     */
+    public void logContactNotes(int id, int previousLength, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int start = begin(CONTACT_NOTES, id, 8 + bytes.length);
+        pending.putInt(previousLength);
+        putString(bytes);
+        end(start);
+    }
+
+    /**
+     * Record the conversion of a FutureMeeting to a PastMeeting without notes.
+     *
+     * @param id the id of the meeting.
+     */
+    public void logPromotion(int id) {
+        end(begin(PROMOTION, id, 0));
+    }
+
+    // saving ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Append the records logged since the last call to the file, and force them to disk.
+     *
+     * @throws IOException if the log cannot be written.
+     */
+    public void sync() throws IOException {
+        write(drain());
+    }
+
+    /**
+     * Take the records logged since the last call, to be written by write(); the records logged
+     * afterwards are kept apart from them.
+     *
+     * @return the records taken, ready to be read.
+     */
+    public ByteBuffer drain() {
+        ByteBuffer records = pending;
+        records.flip();
+        pending = ByteBuffer.allocate(4096);
+        return records;
+    }
+
+    /**
+     * Append records taken with drain() to the file, and force them to disk.
+     *
+     * @param records the records to be written.
+     * @throws IOException if the log cannot be written.
+     */
+    public void write(ByteBuffer records) throws IOException {
+        while (records.hasRemaining()) {
+            written += channel.write(records);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Discard all the records of the log, once their changes have been saved in a snapshot.
+     * Records logged but not yet synced are discarded too.
+     *
+     * @throws IOException if the log cannot be truncated.
+     */
+    public void reset() throws IOException {
+        pending.clear();
+        truncate();
+    }
+
+    /**
+     * Discard the records written to the file, once their changes have been saved in a snapshot.
+     * Records logged but not yet taken with drain() are kept, to be written later.
+     *
+     * @throws IOException if the log cannot be truncated.
+     */
+    public void truncate() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(false);
+        written = 0;
+    }
+
+    /**
+     * Returns the size of the log on disk, in bytes.
+     *
+     * @return the number of bytes synced to the file of the log.
+     */
+    public long size() {
+        return written;
+    }
+
+    /**
+     * Close the file of the log. Records not yet synced are discarded.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}